@@ -0,0 +1,214 @@
+package jpabook.jpashop.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.JpashopApplication;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderSummary;
+
+/**
+ * OrderApiController(V1~V6), OrderSimpleApiController(V1~V4) 조회 전략 비교.
+ *
+ * 메모리 H2에 회원/주문/주문상품을 members, orders, itemsPerOrder 만큼 넣고
+ * 컨트롤러 메서드 호출(리포지토리 + DTO 변환) + Jackson 직렬화까지를 한 번의 측정으로 본다.
+ * 지연로딩을 쓰는 V1~V3.1이 동작하도록 읽기 전용 트랜잭션 안에서 실행한다. (OSIV를 켠 것과 같은 상황)
+ *
+ * - Throughput : 초당 처리량
+ * - SampleTime : p50/p90/p99 지연시간
+ * - gc 프로파일러(build.gradle) : gc.alloc.rate.norm (호출당 할당량)
+ *
+ * ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderFetchStrategyBenchmark {
+
+	@Param({"100"})
+	int members;
+
+	@Param({"1000"})
+	int orders;
+
+	@Param({"2"})
+	int itemsPerOrder;
+
+	//첫 페이지 크기 (V3.1, V3.2)
+	@Param({"100"})
+	int limit;
+
+	ConfigurableApplicationContext context;
+	OrderApiController orderApi;
+	OrderSimpleApiController orderSimpleApi;
+	ObjectMapper objectMapper;
+	TransactionTemplate readOnly;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new SpringApplicationBuilder(JpashopApplication.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+					"--spring.datasource.username=sa",
+					"--spring.jpa.hibernate.ddl-auto=create",
+					"--logging.level.root=warn",
+					"--logging.level.org.hibernate.SQL=warn",
+					"--decorator.datasource.enabled=false");	//p6spy 로깅 비용은 제외
+
+		orderApi = context.getBean(OrderApiController.class);
+		orderSimpleApi = context.getBean(OrderSimpleApiController.class);
+		objectMapper = context.getBean(ObjectMapper.class);
+
+		PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+
+		seed(new TransactionTemplate(transactionManager), context.getBean(EntityManager.class));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	private void seed(TransactionTemplate tx, EntityManager em) {
+		tx.execute(status -> {
+			Member[] memberList = new Member[members];
+			for (int i = 0; i < members; i++) {
+				Member member = new Member();
+				member.setName("member" + i);
+				member.setAddress(new Address("서울", "street" + i, "12345"));
+				em.persist(member);
+				memberList[i] = member;
+			}
+
+			Book[] books = new Book[itemsPerOrder * 10];
+			for (int i = 0; i < books.length; i++) {
+				Book book = new Book();
+				book.setName("book" + i);
+				book.setPrice(10000 + i);
+				book.setStockQuantity(Integer.MAX_VALUE);
+				em.persist(book);
+				books[i] = book;
+			}
+
+			for (int i = 0; i < orders; i++) {
+				Member member = memberList[i % members];
+				OrderItem[] orderItems = new OrderItem[itemsPerOrder];
+				for (int j = 0; j < itemsPerOrder; j++) {
+					Book book = books[(i + j) % books.length];
+					orderItems[j] = OrderItem.createOrderItem(book, book.getPrice(), 1);
+				}
+				Delivery delivery = new Delivery();
+				delivery.setAddress(member.getAddress());
+				Order order = Order.createOrder(member, delivery, orderItems);
+				em.persist(order);
+				em.persist(OrderSummary.of(order));	//V4 (simple) 조회용 프로젝션
+			}
+			return null;
+		});
+	}
+
+	private byte[] render(Supplier<Object> endpoint) {
+		return readOnly.execute(status -> {
+			try {
+				return objectMapper.writeValueAsBytes(endpoint.get());
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	//== OrderApiController ==//
+	@Benchmark
+	public byte[] ordersV1_entity() {
+		return render(() -> orderApi.ordersV1());
+	}
+
+	@Benchmark
+	public byte[] ordersV2_lazyLoading() {
+		return render(() -> orderApi.ordersV2());
+	}
+
+	@Benchmark
+	public byte[] ordersV3_fetchJoin() {
+		return render(() -> orderApi.ordersV3());
+	}
+
+	@Benchmark
+	public byte[] ordersV3_1_batchFetch() {
+		return render(() -> orderApi.ordersV3_paging(0, limit));
+	}
+
+	@Benchmark
+	public byte[] ordersV3_2_keyset() {
+		return render(() -> orderApi.ordersV3_keyset(null, limit));
+	}
+
+	@Benchmark
+	public byte[] ordersV4_dtoNPlusOne() {
+		return render(() -> orderApi.ordersV4());
+	}
+
+	@Benchmark
+	public byte[] ordersV5_dtoInQuery() {
+		return render(() -> orderApi.ordersV5());
+	}
+
+	@Benchmark
+	public byte[] ordersV6_flatDto() {
+		return render(() -> orderApi.ordersV6());
+	}
+
+	//== OrderSimpleApiController ==//
+	@Benchmark
+	public byte[] simpleOrdersV1_entity() {
+		return render(() -> orderSimpleApi.ordersV1());
+	}
+
+	@Benchmark
+	public byte[] simpleOrdersV2_lazyLoading() {
+		return render(() -> orderSimpleApi.ordersV2());
+	}
+
+	@Benchmark
+	public byte[] simpleOrdersV3_fetchJoin() {
+		return render(() -> orderSimpleApi.ordersV3());
+	}
+
+	@Benchmark
+	public byte[] simpleOrdersV4_dto() {
+		return render(() -> orderSimpleApi.ordersV4());
+	}
+}
@@ -0,0 +1,121 @@
+package jpabook.jpashop.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+
+/**
+ * 주문 DTO 직렬화 비교. (DB 없이 직렬화만)
+ * - objectMapper : 지금 컨트롤러 경로. 스프링 부트 기본 설정 + Hibernate5Module
+ * - direct       : OrderJsonWriter
+ *
+ * orders 건(기본 1000건) 전체를 한 번 쓰는 시간과, gc 프로파일러(build.gradle)의 gc.alloc.rate.norm(호출당 할당량)을 본다.
+ * 출력은 버리는 OutputStream이라 응답 버퍼 비용은 빠진다.
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderJsonWriterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderJsonWriterBenchmark {
+
+	@Param({"1000"})
+	int orders;
+
+	@Param({"2"})
+	int itemsPerOrder;
+
+	ObjectMapper objectMapper;
+	OrderJsonWriter orderJsonWriter;
+	List<OrderQueryDto> orderDtos;
+	List<OrderSimpleQueryDto> simpleOrderDtos;
+	OutputStream discard;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		objectMapper = new ObjectMapper()
+				.registerModule(new JavaTimeModule())
+				.registerModule(new Hibernate5Module())
+				.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		orderJsonWriter = new OrderJsonWriter(objectMapper);
+
+		orderDtos = new ArrayList<>();
+		simpleOrderDtos = new ArrayList<>();
+		LocalDateTime now = LocalDateTime.now();
+		for (int i = 0; i < orders; i++) {
+			Address address = new Address("서울", "street" + i, "12345");
+			OrderItemQueryDto[] items = new OrderItemQueryDto[itemsPerOrder];
+			for (int j = 0; j < itemsPerOrder; j++) {
+				items[j] = new OrderItemQueryDto((long) i, "book" + j, 10000 + j, 1 + j);
+			}
+			orderDtos.add(new OrderQueryDto((long) i, "member" + i, now.minusMinutes(i), OrderStatus.ORDER, address, Arrays.asList(items)));
+			simpleOrderDtos.add(new OrderSimpleQueryDto((long) i, "member" + i, now.minusMinutes(i), OrderStatus.ORDER, address));
+		}
+
+		discard = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+	}
+
+	@Benchmark
+	public void orders_objectMapper() throws IOException {
+		objectMapper.writeValue(discard, orderDtos);
+	}
+
+	@Benchmark
+	public void orders_direct() throws IOException {
+		try (JsonGenerator generator = orderJsonWriter.createGenerator(discard)) {
+			orderJsonWriter.writeOrders(generator, orderDtos);
+		}
+	}
+
+	@Benchmark
+	public void simpleOrders_objectMapper() throws IOException {
+		objectMapper.writeValue(discard, new OrderSimpleApiController.OrderResult<>(simpleOrderDtos));
+	}
+
+	@Benchmark
+	public void simpleOrders_direct() throws IOException {
+		try (JsonGenerator generator = orderJsonWriter.createGenerator(discard)) {
+			orderJsonWriter.writeSimpleOrders(generator, simpleOrderDtos);
+		}
+	}
+}
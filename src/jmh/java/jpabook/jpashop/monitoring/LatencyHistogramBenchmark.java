@@ -0,0 +1,38 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MethodLatencyAspect가 호출마다 더하는 비용. (nanoTime 두 번 + 기록)
+ * 같은 메서드를 여러 요청 스레드가 동시에 부르는 경우를 보려고 스레드 4개로 같은 히스토그램에 기록한다.
+ *
+ * ./gradlew jmh -Pjmh.includes=LatencyHistogramBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LatencyHistogramBenchmark {
+
+	final LatencyHistogram histogram = new LatencyHistogram();
+
+	@Benchmark
+	public void timeAndRecord() {
+		long start = System.nanoTime();
+		histogram.record(System.nanoTime() - start, false);
+	}
+}
@@ -0,0 +1,94 @@
+package jpabook.jpashop.outbox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 이벤트 로그 처리량 (이벤트 300바이트, 세그먼트 64MB)
+ * - appendBatch : 릴레이 한 배치. batchSize개 append 후 flush(fsync) 한 번. 결과는 배치 하나 시간 (이벤트당은 batchSize로 나눈다)
+ * - read        : 소비자가 1000개씩 읽기. 결과는 이벤트당 시간
+ * batchSize를 1로 놓으면 이벤트마다 fsync 하는 경우다.
+ *
+ * ./gradlew jmh -Pjmh.includes=EventLogBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventLogBenchmark {
+
+	private static final int READ_BATCH = 1000;
+
+	@Param({"1", "1000"})
+	int batchSize;
+
+	final byte[] payload = new byte[300];
+	Path directory;
+	EventLog eventLog;
+	long eventId;
+	long readOffset;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("event-log-benchmark");
+		eventLog = new EventLog(directory, 64 * 1024 * 1024, 4);
+		eventLog.open();
+		for (int i = 0; i < 100_000; i++) {
+			eventLog.append(++eventId, payload);
+		}
+		eventLog.flush();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		eventLog.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public long appendBatch() {
+		for (int i = 0; i < batchSize; i++) {
+			eventLog.append(++eventId, payload);
+		}
+		eventLog.flush();
+		return eventId;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(READ_BATCH)
+	public int read() {
+		//appendBatch가 세그먼트를 넘기면서 지운 offset이면 남은 처음부터
+		readOffset = Math.max(readOffset, eventLog.firstOffset());
+		List<EventRecord> records = eventLog.read(readOffset, READ_BATCH);
+		if (records.size() < READ_BATCH) {
+			readOffset = eventLog.firstOffset();
+		} else {
+			readOffset += READ_BATCH;
+		}
+		return records.size();
+	}
+}
@@ -0,0 +1,272 @@
+package jpabook.jpashop.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import jpabook.jpashop.JpashopApplication;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+
+/**
+ * 주문 동적 검색 비교.
+ * - templates : OrderRepository.search() (조합별로 미리 만든 JPQL)
+ * - legacy    : 요청마다 조건을 이어 붙여 JPQL을 만드는 기존 방식 (아래 legacyQuery)
+ *
+ * 매 호출마다 7개 조건을 무작위로 섞어서 검색한다. (조합 128가지)
+ * hibernate 5.3은 쿼리 플랜 캐시 적중률을 따로 내주지 않으므로
+ * 종료 시 조합별 템플릿 사용 횟수와 QueryStatistics(쿼리 문자열별 실행 횟수/평균 시간)를 출력한다.
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderSearchBenchmark {
+
+	@Param({"100"})
+	int members;
+
+	@Param({"5000"})
+	int orders;
+
+	@Param({"20"})
+	int limit;
+
+	ConfigurableApplicationContext context;
+	OrderRepository orderRepository;
+	EntityManager em;
+	TransactionTemplate readOnly;
+	Statistics statistics;
+	Random random;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		context = new SpringApplicationBuilder(JpashopApplication.class)
+				.web(WebApplicationType.NONE)
+				.run("--spring.datasource.url=jdbc:h2:mem:jmh-search;DB_CLOSE_DELAY=-1",
+					"--spring.datasource.username=sa",
+					"--spring.jpa.hibernate.ddl-auto=create",
+					"--spring.jpa.properties.hibernate.generate_statistics=true",
+					"--logging.level.root=warn",
+					"--logging.level.org.hibernate.SQL=warn",
+					"--decorator.datasource.enabled=false");
+
+		orderRepository = context.getBean(OrderRepository.class);
+		em = context.getBean(EntityManager.class);
+		statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+		PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+
+		seed(new TransactionTemplate(transactionManager));
+		statistics.clear();
+		random = new Random(42);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		StringBuilder report = new StringBuilder("\n== 템플릿 사용 횟수 (mask: count) ==\n");
+		for (int mask = 0; mask < OrderSearchTemplates.COMBINATIONS; mask++) {
+			long usage = orderRepository.searchTemplateUsage(mask);
+			if (usage > 0) {
+				report.append(mask).append(": ").append(usage).append('\n');
+			}
+		}
+		report.append("== QueryStatistics ==\n")
+			.append("distinct queries: ").append(statistics.getQueries().length)
+			.append(", executions: ").append(statistics.getQueryExecutionCount())
+			.append(", max time(ms): ").append(statistics.getQueryExecutionMaxTime()).append('\n');
+		for (String query : statistics.getQueries()) {
+			QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+			report.append(queryStatistics.getExecutionCount()).append("x avg ")
+				.append(queryStatistics.getExecutionAvgTime()).append("ms : ").append(query).append('\n');
+		}
+		System.out.println(report);
+		context.close();
+	}
+
+	private void seed(TransactionTemplate tx) {
+		tx.execute(status -> {
+			Member[] memberList = new Member[members];
+			for (int i = 0; i < members; i++) {
+				Member member = new Member();
+				member.setName("member" + i);
+				member.setAddress(new Address("서울", "street" + i, "12345"));
+				em.persist(member);
+				memberList[i] = member;
+			}
+
+			Book[] books = new Book[50];
+			for (int i = 0; i < books.length; i++) {
+				Book book = new Book();
+				book.setName("book" + i);
+				book.setPrice(1000 * (1 + i));
+				book.setStockQuantity(Integer.MAX_VALUE);
+				em.persist(book);
+				books[i] = book;
+			}
+
+			Random seedRandom = new Random(1);
+			for (int i = 0; i < orders; i++) {
+				Member member = memberList[i % members];
+				Book book = books[seedRandom.nextInt(books.length)];
+				Delivery delivery = new Delivery();
+				delivery.setAddress(member.getAddress());
+				Order order = Order.createOrder(member, delivery, OrderItem.createOrderItem(book, book.getPrice(), 1 + seedRandom.nextInt(3)));
+				if (seedRandom.nextInt(10) == 0) {
+					order.setStatus(OrderStatus.CANCEL);
+				}
+				em.persist(order);
+			}
+			return null;
+		});
+	}
+
+	//7개 조건을 각각 1/2 확률로 채운다.
+	private OrderSearch randomSearch() {
+		int mask = random.nextInt(OrderSearchTemplates.COMBINATIONS);
+		OrderSearch search = new OrderSearch();
+		LocalDate today = LocalDate.now();
+		if ((mask & OrderSearchTemplates.STATUS) != 0) {
+			search.setOrderStatus(random.nextBoolean() ? OrderStatus.ORDER : OrderStatus.CANCEL);
+		}
+		if ((mask & OrderSearchTemplates.MEMBER_NAME) != 0) {
+			search.setMemberName("member" + random.nextInt(members));
+		}
+		if ((mask & OrderSearchTemplates.FROM_DATE) != 0) {
+			search.setFromDate(today.minusDays(random.nextInt(3)));
+		}
+		if ((mask & OrderSearchTemplates.TO_DATE) != 0) {
+			search.setToDate(today);
+		}
+		if ((mask & OrderSearchTemplates.MIN_TOTAL_PRICE) != 0) {
+			search.setMinTotalPrice(1000L * random.nextInt(50));
+		}
+		if ((mask & OrderSearchTemplates.MAX_TOTAL_PRICE) != 0) {
+			search.setMaxTotalPrice(1000L * (50 + random.nextInt(100)));
+		}
+		if ((mask & OrderSearchTemplates.ITEM_NAME) != 0) {
+			search.setItemName("book" + random.nextInt(5));
+		}
+		return search;
+	}
+
+	@Benchmark
+	public List<Order> templates() {
+		OrderSearch search = randomSearch();
+		return readOnly.execute(status -> orderRepository.search(search, 0, limit));
+	}
+
+	@Benchmark
+	public List<Order> legacy() {
+		OrderSearch search = randomSearch();
+		return readOnly.execute(status -> legacyQuery(search).getResultList());
+	}
+
+	/**
+	 * 기존 findAllByString 방식. 조건 순서/값에 따라 문자열을 매번 새로 이어 붙인다.
+	 * 결과를 같게 하려고 조건과 바인딩은 템플릿과 맞췄다.
+	 */
+	private TypedQuery<Order> legacyQuery(OrderSearch orderSearch) {
+		String jpql = "select o from Order o join o.member m";
+		boolean isFirstCondition = true;
+		if (orderSearch.getOrderStatus() != null) {
+			jpql += isFirstCondition ? " where" : " and";
+			isFirstCondition = false;
+			jpql += " o.status = :status";
+		}
+		if (StringUtils.hasText(orderSearch.getMemberName())) {
+			jpql += isFirstCondition ? " where" : " and";
+			isFirstCondition = false;
+			jpql += " m.name like :memberName escape '\\'";
+		}
+		if (orderSearch.getFromDate() != null) {
+			jpql += isFirstCondition ? " where" : " and";
+			isFirstCondition = false;
+			jpql += " o.orderDate >= :fromDate";
+		}
+		if (orderSearch.getToDate() != null) {
+			jpql += isFirstCondition ? " where" : " and";
+			isFirstCondition = false;
+			jpql += " o.orderDate < :toDate";
+		}
+		if (orderSearch.getMinTotalPrice() != null) {
+			jpql += isFirstCondition ? " where" : " and";
+			isFirstCondition = false;
+			jpql += " o.totalAmount >= :minTotalPrice";
+		}
+		if (orderSearch.getMaxTotalPrice() != null) {
+			jpql += isFirstCondition ? " where" : " and";
+			isFirstCondition = false;
+			jpql += " o.totalAmount <= :maxTotalPrice";
+		}
+		if (StringUtils.hasText(orderSearch.getItemName())) {
+			jpql += isFirstCondition ? " where" : " and";
+			jpql += " exists (select oi.id from OrderItem oi join oi.item i where oi.order = o and i.name like :itemName escape '\\')";
+		}
+		jpql += " order by o.id desc";
+
+		TypedQuery<Order> query = em.createQuery(jpql, Order.class).setMaxResults(limit);
+		if (orderSearch.getOrderStatus() != null) {
+			query.setParameter("status", orderSearch.getOrderStatus());
+		}
+		if (StringUtils.hasText(orderSearch.getMemberName())) {
+			query.setParameter("memberName", OrderSearchTemplates.prefixPattern(orderSearch.getMemberName()));
+		}
+		if (orderSearch.getFromDate() != null) {
+			query.setParameter("fromDate", orderSearch.getFromDate().atStartOfDay());
+		}
+		if (orderSearch.getToDate() != null) {
+			query.setParameter("toDate", orderSearch.getToDate().plusDays(1).atStartOfDay());
+		}
+		if (orderSearch.getMinTotalPrice() != null) {
+			query.setParameter("minTotalPrice", orderSearch.getMinTotalPrice());
+		}
+		if (orderSearch.getMaxTotalPrice() != null) {
+			query.setParameter("maxTotalPrice", orderSearch.getMaxTotalPrice());
+		}
+		if (StringUtils.hasText(orderSearch.getItemName())) {
+			query.setParameter("itemName", OrderSearchTemplates.prefixPattern(orderSearch.getItemName()));
+		}
+		return query;
+	}
+}
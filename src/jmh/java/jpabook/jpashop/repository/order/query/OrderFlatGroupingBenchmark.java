@@ -0,0 +1,75 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+
+/**
+ * V6 flat row 묶기 비교
+ * - groupingBy : 기존 ordersV6 방식 (row마다 OrderQueryDto key 생성 + HashMap)
+ * - grouper    : OrderFlatGrouper (order id 순으로 한 번 훑기)
+ *
+ * ./gradlew jmh 로 실행. (할당량은 gc 프로파일러 결과의 gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderFlatGroupingBenchmark {
+
+	@Param({"1000", "100000"})
+	int orders;
+
+	@Param({"2", "10"})
+	int itemsPerOrder;
+
+	List<OrderFlatDto> rows;
+
+	@Setup
+	public void setUp() {
+		rows = new ArrayList<>(orders * itemsPerOrder);
+		LocalDateTime now = LocalDateTime.now();
+		for (long orderId = 1; orderId <= orders; orderId++) {
+			Address address = new Address("서울", "street" + orderId, "12345");
+			for (int i = 0; i < itemsPerOrder; i++) {
+				rows.add(new OrderFlatDto(orderId, "member" + orderId, now, OrderStatus.ORDER, address, "item" + i, 10000, 1));
+			}
+		}
+	}
+
+	@Benchmark
+	public List<OrderQueryDto> groupingBy() {
+		Map<OrderQueryDto, List<OrderItemQueryDto>> collect = rows.stream().collect(Collectors.groupingBy(o-> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
+				Collectors.mapping(o-> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), Collectors.toList())
+				));
+
+		return collect.entrySet().stream()
+				.map(e-> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
+				.collect(Collectors.toList());
+	}
+
+	@Benchmark
+	public List<OrderQueryDto> grouper() {
+		return OrderFlatGrouper.group(rows);
+	}
+}
@@ -0,0 +1,84 @@
+package jpabook.jpashop.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 상품 100만 개 색인에서 검색 한 번의 시간. (DB 없이 색인만)
+ * 상품은 DataSeeder와 같은 모양이다. (book123, author4567, isbn 978...)
+ * - exactName      : 상품명 전체 일치. 문서 목록 하나
+ * - prefixCreator  : 저자 접두어. 여러 단어(최대 MAX_EXPANSIONS)의 문서 목록을 합친다.
+ * - twoTokens      : 흔한 접두어 + 드문 단어. 드문 쪽 문서만 후보로 돈다.
+ *
+ * ./gradlew jmh -Pjmh.includes=ItemSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ItemSearchBenchmark {
+
+	@Param({"1000000"})
+	int items;
+
+	ItemSearchIndex index;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(1);
+		List<ItemDocument> documents = new ArrayList<>(items);
+		for (int i = 0; i < items; i++) {
+			long id = i + 1;
+			switch (i % 3) {
+				case 0:
+					documents.add(ItemDocument.of(id, 'A', "album" + i, "artist" + random.nextInt(10000), null));
+					break;
+				case 1:
+					documents.add(ItemDocument.of(id, 'M', "movie" + i, "director" + random.nextInt(10000), null));
+					break;
+				default:
+					documents.add(ItemDocument.of(id, 'B', "book" + i, "author" + random.nextInt(10000), String.valueOf(9780000000000L + i)));
+			}
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			index = new ItemSearchIndex();
+			index.replace(IndexSegment.build(documents, executor, 16), 0, 0);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Benchmark
+	public Object exactName() {
+		return index.search("book123458", 20);
+	}
+
+	@Benchmark
+	public Object prefixCreator() {
+		return index.search("author123", 20);
+	}
+
+	@Benchmark
+	public Object twoTokens() {
+		return index.search("book author4242", 20);
+	}
+}
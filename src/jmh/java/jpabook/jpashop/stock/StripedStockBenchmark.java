@@ -0,0 +1,53 @@
+package jpabook.jpashop.stock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 한 상품 재고를 여러 스레드가 동시에 차감할 때의 처리량.
+ * - single  : AtomicLong 하나에 CAS (모든 스레드가 한 캐시 라인을 두고 경쟁)
+ * - striped : StripedStock (칸 수 = CPU 수)
+ * 재고가 떨어지지 않도록 충분히 크게 잡고 차감만 잰다. -t 옵션으로 스레드 수를 바꿔 가며 본다.
+ *
+ * ./gradlew jmh -Pjmh.includes=StripedStockBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class StripedStockBenchmark {
+
+	final AtomicLong single = new AtomicLong(Long.MAX_VALUE);
+	final StripedStock striped = new StripedStock(Long.MAX_VALUE, Runtime.getRuntime().availableProcessors());
+
+	@Benchmark
+	public boolean single() {
+		long current;
+		do {
+			current = single.get();
+			if (current < 1) {
+				return false;
+			}
+		} while (!single.compareAndSet(current, current - 1));
+		return true;
+	}
+
+	@Benchmark
+	public boolean striped() {
+		return striped.tryReserve(1);
+	}
+}
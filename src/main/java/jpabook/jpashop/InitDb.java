@@ -1,100 +0,0 @@
-package jpabook.jpashop;
-
-import javax.annotation.PostConstruct;
-import javax.persistence.EntityManager;
-
-import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-
-import jpabook.jpashop.domain.Address;
-import jpabook.jpashop.domain.Book;
-import jpabook.jpashop.domain.Delivery;
-import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
-import jpabook.jpashop.domain.OrderItem;
-import lombok.RequiredArgsConstructor;
-
-/**
- * 총 주문 2개
- * userA : JPA1 JP2 주문
- * userB : SPRING1 SPRING2 주문
- * 
- *
- */
-
-//@Component
-@RequiredArgsConstructor
-public class InitDb {
-	
-	private final InitService initService;
-	
-	//스프링 빈이 다 등록되고나서 호출됨.
-	@PostConstruct
-	public void init() {
-		initService.dbInit1();
-		initService.dbInit2();
-	}
-	
-	@Component
-	@Transactional
-	@RequiredArgsConstructor
-	static class InitService {
-		private final EntityManager em;
-		
-		public void dbInit1() {
-			Member member = cretaeMember("userA", "서울", "1", "1111");
-			em.persist(member);
-			
-			Book book1 = createBook("JPA1 BOOK", 10000, 100);
-			em.persist(book1);
-			
-			Book book2 = createBook("JPA2 BOOK", 20000, 200);
-			em.persist(book2);
-			
-			OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1);
-			OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2);
-			
-			Delivery delivery = createDelivery(member);
-			Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
-			em.persist(order);
-		}
-		
-		public void dbInit2() {
-			Member member = cretaeMember("userB", "진주", "2", "2222");
-			em.persist(member);
-			
-			Book book1 = createBook("SPRING1 BOOK", 20000, 200);
-			em.persist(book1);
-			Book book2 = createBook("SPRING2 BOOK", 40000, 300);
-			em.persist(book2);
-			
-			OrderItem orderItem1 = OrderItem.createOrderItem(book1, 20000, 3);
-			OrderItem orderItem2 = OrderItem.createOrderItem(book2, 40000, 4);
-			
-			Delivery delivery = createDelivery(member);
-			Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
-			em.persist(order);
-		}
-
-		private Delivery createDelivery(Member member) {
-			Delivery delivery = new Delivery();
-			delivery.setAddress(member.getAddress());
-			return delivery;
-		}
-
-		private Book createBook(String name, int price, int quantity) {
-			Book book1 = new Book();
-			book1.setName(name);
-			book1.setPrice(price);
-			book1.setStockQuantity(quantity);
-			return book1;
-		}
-
-		private Member cretaeMember(String name, String city, String street, String zipcode) {
-			Member member = new Member();
-			member.setName(name);
-			member.setAddress(new Address(city, street, zipcode));
-			return member;
-		}
-	}
-}
@@ -0,0 +1,64 @@
+package jpabook.jpashop.admin;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import jpabook.jpashop.report.SalesReportService;
+import jpabook.jpashop.search.ItemSearchIndex;
+import jpabook.jpashop.search.ItemSearchIndexBuilder;
+import jpabook.jpashop.service.OrderSummaryService;
+import jpabook.jpashop.service.OrderSummaryService.ConsistencyReport;
+import jpabook.jpashop.stock.HotStock;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 상태를 바꾸는 운영 작업. 조회는 /monitoring (MonitoringController)
+ * app.admin.enabled=true 일 때만 등록되고, 요청마다 X-Admin-Token 헤더를 확인한다. (AdminTokenInterceptor)
+ */
+@RestController
+@ConditionalOnProperty(prefix = "app.admin", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class AdminController {
+
+	private final OrderSummaryService orderSummaryService;
+	private final SalesReportService salesReportService;
+	private final ItemSearchIndex itemSearchIndex;
+	private final ItemSearchIndexBuilder itemSearchIndexBuilder;
+	private final HotStock hotStock;
+
+	//order_summary 재구성. 재구성 후 정합성 검사 결과를 돌려준다.
+	@PostMapping("/admin/order-summary/rebuild")
+	public ConsistencyReport rebuildOrderSummary() {
+		orderSummaryService.rebuild();
+		return orderSummaryService.check();
+	}
+
+	//매출 집계(sales_daily, sales_daily_item)를 원본 주문에서 다시 만든다.
+	@PostMapping("/admin/sales-rollup/rebuild")
+	public void rebuildSalesRollup() {
+		salesReportService.rebuild();
+	}
+
+	//JDBC로 상품을 넣었거나 저장/수정된 상품이 많이 쌓였을 때 전체를 다시 색인한다.
+	@PostMapping("/admin/item-search/rebuild")
+	public ItemSearchIndex.Status rebuildItemSearch() {
+		itemSearchIndexBuilder.rebuild();
+		return itemSearchIndex.status();
+	}
+
+	//플래시 세일 시작 전에 켜고 끝난 뒤에 끈다. (HotStock 참고)
+	@PostMapping("/admin/hot-stock/{itemId}")
+	public HotStock.Status activateHotStock(@PathVariable("itemId") Long itemId) {
+		hotStock.activate(itemId);
+		return hotStock.status();
+	}
+
+	@DeleteMapping("/admin/hot-stock/{itemId}")
+	public HotStock.Status deactivateHotStock(@PathVariable("itemId") Long itemId) {
+		hotStock.deactivate(itemId);
+		return hotStock.status();
+	}
+}
@@ -0,0 +1,34 @@
+package jpabook.jpashop.admin;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * /admin 요청의 X-Admin-Token 헤더가 app.admin.token과 같아야 한다. 없거나 다르면 401.
+ * 비교 시간이 앞부분 일치 길이에 따라 달라지지 않도록 MessageDigest.isEqual로 비교한다.
+ */
+public class AdminTokenInterceptor implements HandlerInterceptor {
+
+	static final String HEADER = "X-Admin-Token";
+
+	private final byte[] token;
+
+	public AdminTokenInterceptor(String token) {
+		this.token = token.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+		String given = request.getHeader(HEADER);
+		if (given != null && MessageDigest.isEqual(token, given.getBytes(StandardCharsets.UTF_8))) {
+			return true;
+		}
+		response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+		return false;
+	}
+}
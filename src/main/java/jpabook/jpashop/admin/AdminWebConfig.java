@@ -0,0 +1,31 @@
+package jpabook.jpashop.admin;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * app.admin.enabled=true 이면 /admin/** 에 토큰 확인을 건다. 토큰이 비어 있으면 기동하지 않는다.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.admin", name = "enabled", havingValue = "true")
+public class AdminWebConfig implements WebMvcConfigurer {
+
+	private final String token;
+
+	public AdminWebConfig(@Value("${app.admin.token:}") String token) {
+		if (!StringUtils.hasText(token)) {
+			throw new IllegalStateException("app.admin.enabled=true 이면 app.admin.token이 있어야 합니다.");
+		}
+		this.token = token;
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new AdminTokenInterceptor(token))
+				.addPathPatterns("/admin/**");
+	}
+}
@@ -0,0 +1,68 @@
+package jpabook.jpashop.api;
+
+import java.util.stream.Collectors;
+
+import javax.validation.ConstraintViolationException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import jpabook.jpashop.idempotency.IdempotencyKeyInProgressException;
+import jpabook.jpashop.idempotency.IdempotencyKeyReusedException;
+import jpabook.jpashop.idempotency.InvalidIdempotencyKeyException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * API 요청 값이 잘못된 경우를 500이 아니라 4xx로 돌려준다.
+ * - @Validated 컨트롤러의 @RequestParam 제약 (@Min, @Max) : 400
+ * - 해석할 수 없는 cursor : 400
+ * - 멱등 키 : 비어 있거나 너무 김 400, 다른 주문에 쓴 키 422, 같은 키가 처리 중 409 (다시 보내면 된다)
+ * (@RequestBody @Valid 실패는 스프링이 이미 400으로 돌려준다)
+ */
+@RestControllerAdvice(basePackages = {"jpabook.jpashop.api", "jpabook.jpashop.report"})
+public class ApiExceptionHandler {
+
+	@ExceptionHandler(ConstraintViolationException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public ErrorResult constraintViolation(ConstraintViolationException e) {
+		String message = e.getConstraintViolations().stream()
+				.map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+				.sorted()
+				.collect(Collectors.joining(", "));
+		return new ErrorResult("BAD_REQUEST", message);
+	}
+
+	@ExceptionHandler(InvalidCursorException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public ErrorResult invalidCursor(InvalidCursorException e) {
+		return new ErrorResult("INVALID_CURSOR", e.getMessage());
+	}
+
+	@ExceptionHandler(InvalidIdempotencyKeyException.class)
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	public ErrorResult invalidIdempotencyKey(InvalidIdempotencyKeyException e) {
+		return new ErrorResult("INVALID_IDEMPOTENCY_KEY", e.getMessage());
+	}
+
+	@ExceptionHandler(IdempotencyKeyReusedException.class)
+	@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+	public ErrorResult idempotencyKeyReused(IdempotencyKeyReusedException e) {
+		return new ErrorResult("IDEMPOTENCY_KEY_REUSED", e.getMessage());
+	}
+
+	@ExceptionHandler(IdempotencyKeyInProgressException.class)
+	@ResponseStatus(HttpStatus.CONFLICT)
+	public ErrorResult idempotencyKeyInProgress(IdempotencyKeyInProgressException e) {
+		return new ErrorResult("IDEMPOTENCY_KEY_IN_PROGRESS", e.getMessage());
+	}
+
+	@Data
+	@AllArgsConstructor
+	static class ErrorResult {
+		private String code;
+		private String message;
+	}
+}
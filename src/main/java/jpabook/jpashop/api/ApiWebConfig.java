@@ -0,0 +1,20 @@
+package jpabook.jpashop.api;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@RequiredArgsConstructor
+public class ApiWebConfig implements WebMvcConfigurer {
+
+	private final VersionedListingSupport versionedListingSupport;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(versionedListingSupport)
+				.addPathPatterns("/api/**");
+	}
+}
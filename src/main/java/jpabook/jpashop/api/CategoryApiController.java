@@ -0,0 +1,94 @@
+package jpabook.jpashop.api;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jpabook.jpashop.cache.CategoryTreeCache.Node;
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.service.CategoryService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+public class CategoryApiController {
+
+	private final CategoryService categoryService;
+
+	//네비게이션용 전체 트리
+	@GetMapping("/api/v1/categories")
+	public List<Node> categories() {
+		return categoryService.findTree().getRoots();
+	}
+
+	//breadcrumb
+	@GetMapping("/api/v1/categories/{id}/path")
+	public List<CategoryDto> path(@PathVariable("id") Long id) {
+		return categoryService.findPath(id).stream()
+				.map(node -> new CategoryDto(node.getId(), node.getName()))
+				.collect(Collectors.toList());
+	}
+
+	//하위 카테고리를 포함한 상품 목록
+	@GetMapping("/api/v1/categories/{id}/items")
+	public ItemPage items(
+			@PathVariable("id") Long id,
+			@RequestParam(value = "offset", defaultValue = "0") int offset,
+			@RequestParam(value = "limit", defaultValue = "20") int limit) {
+		List<ItemDto> items = categoryService.findItems(id, offset, limit).stream()
+				.map(ItemDto::new)
+				.collect(Collectors.toList());
+		return new ItemPage(categoryService.countItems(id), items);
+	}
+
+	@PostMapping("/api/v1/categories")
+	public CategoryDto addCategory(@RequestBody @Valid CreateCategoryRequest request) {
+		Long id = categoryService.addCategory(request.getParentId(), request.getName());
+		return new CategoryDto(id, request.getName());
+	}
+
+	@Data
+	static class CreateCategoryRequest {
+		private Long parentId;
+		@NotEmpty
+		private String name;
+	}
+
+	@Data
+	@AllArgsConstructor
+	static class CategoryDto {
+		private Long id;
+		private String name;
+	}
+
+	@Data
+	@AllArgsConstructor
+	static class ItemPage {
+		private long totalCount;
+		private List<ItemDto> data;
+	}
+
+	@Data
+	static class ItemDto {
+		private Long itemId;
+		private String name;
+		private int price;
+
+		ItemDto(Item item) {
+			itemId = item.getId();
+			name = item.getName();
+			price = item.getPrice();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package jpabook.jpashop.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.api.ApiExceptionHandler.ErrorResult;
+import jpabook.jpashop.outbox.EventRecord;
+import jpabook.jpashop.outbox.EventStream;
+import jpabook.jpashop.outbox.OffsetExpiredException;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 도메인 이벤트 로그 읽기 (EventStream)
+ * 창고, 분석, 메일 같은 소비자가 orders 테이블을 폴링하지 않고 주문/상품 변경을 따라간다.
+ *
+ * 응답은 NDJSON. 한 줄에 {"offset":N,"event":{...}}. 로그에 저장된 이벤트 JSON을 파싱하지 않고 그대로 붙여서 쓴다.
+ * 다음에 읽을 offset은 Next-Offset 헤더에 있다.
+ * 보관 개수를 넘어 지워진 offset이면 410. 남아있는 첫 offset은 First-Offset 헤더에 있다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class EventApiController {
+
+	private static final String NDJSON = "application/x-ndjson";
+	private static final String NEXT_OFFSET = "Next-Offset";
+	private static final String FIRST_OFFSET = "First-Offset";
+	private static final int MAX_LIMIT = 10000;
+	private static final long MAX_WAIT_MILLIS = 30000;
+
+	private final EventStream eventStream;
+	private final ObjectMapper objectMapper;
+
+	/**
+	 * offset부터 읽는다. (재처리, 소비자가 offset을 직접 관리할 때)
+	 * waitMillis: 새 이벤트가 없으면 그만큼 기다렸다가 응답한다. (롱 폴링)
+	 */
+	@GetMapping(value = "/api/v1/events", produces = NDJSON)
+	public void events(
+			@RequestParam(value = "offset", defaultValue = "0") long offset,
+			@RequestParam(value = "limit", defaultValue = "1000") int limit,
+			@RequestParam(value = "waitMillis", defaultValue = "0") long waitMillis,
+			HttpServletResponse response) throws IOException, InterruptedException {
+		write(response, offset, eventStream.read(offset, Math.min(limit, MAX_LIMIT), Math.min(waitMillis, MAX_WAIT_MILLIS)));
+	}
+
+	//소비자가 commit 해둔 offset부터 읽는다. 처리한 뒤 Next-Offset을 commit 한다.
+	@GetMapping(value = "/api/v1/events/consumers/{consumer}", produces = NDJSON)
+	public void consumerEvents(
+			@PathVariable("consumer") String consumer,
+			@RequestParam(value = "limit", defaultValue = "1000") int limit,
+			@RequestParam(value = "waitMillis", defaultValue = "0") long waitMillis,
+			HttpServletResponse response) throws IOException, InterruptedException {
+		long offset = eventStream.committedOffset(consumer);
+		write(response, offset, eventStream.poll(consumer, Math.min(limit, MAX_LIMIT), Math.min(waitMillis, MAX_WAIT_MILLIS)));
+	}
+
+	//처리한 다음 offset을 저장한다. 예전 offset을 넣으면 거기서부터 다시 받는다.
+	@PutMapping("/api/v1/events/consumers/{consumer}/offset")
+	public long commit(
+			@PathVariable("consumer") String consumer,
+			@RequestParam("offset") long offset) {
+		eventStream.commit(consumer, offset);
+		return offset;
+	}
+
+	//NDJSON으로 매핑된 요청이라 ErrorResult를 메시지 컨버터에 맡기지 않고 직접 쓴다.
+	@ExceptionHandler(OffsetExpiredException.class)
+	public void offsetExpired(OffsetExpiredException e, HttpServletResponse response) throws IOException {
+		response.setStatus(HttpServletResponse.SC_GONE);
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader(FIRST_OFFSET, Long.toString(e.getFirstOffset()));
+		objectMapper.writeValue(response.getOutputStream(), new ErrorResult("OFFSET_EXPIRED", e.getMessage()));
+	}
+
+	private void write(HttpServletResponse response, long offset, List<EventRecord> records) throws IOException {
+		long next = records.isEmpty() ? offset : records.get(records.size() - 1).getOffset() + 1;
+		response.setContentType(NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader(NEXT_OFFSET, Long.toString(next));
+		OutputStream out = response.getOutputStream();
+		for (EventRecord record : records) {
+			out.write(("{\"offset\":" + record.getOffset() + ",\"event\":").getBytes(StandardCharsets.US_ASCII));
+			out.write(record.getPayload());
+			out.write('}');
+			out.write('\n');
+		}
+		out.flush();
+	}
+}
@@ -0,0 +1,11 @@
+package jpabook.jpashop.api;
+
+/**
+ * 클라이언트가 보낸 keyset 페이징 cursor를 해석할 수 없다. (400, ApiExceptionHandler)
+ */
+public class InvalidCursorException extends IllegalArgumentException {
+
+	public InvalidCursorException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
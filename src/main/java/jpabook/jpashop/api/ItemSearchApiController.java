@@ -0,0 +1,39 @@
+package jpabook.jpashop.api;
+
+import java.util.List;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jpabook.jpashop.search.ItemSearchHit;
+import jpabook.jpashop.search.ItemSearchIndex;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequiredArgsConstructor
+public class ItemSearchApiController {
+
+	private final ItemSearchIndex itemSearchIndex;
+
+	/**
+	 * 상품명, 저자/아티스트/감독, ISBN 검색. 메모리 색인만 보고 DB는 조회하지 않는다.
+	 * 예) /api/v1/items/search?q=jpa 김영, 점수 순
+	 */
+	@GetMapping("/api/v1/items/search")
+	public Result<List<ItemSearchHit>> search(
+			@RequestParam("q") String query,
+			@RequestParam(value = "limit", defaultValue = "20") int limit) {
+		List<ItemSearchHit> hits = itemSearchIndex.search(query, Math.min(limit, ItemSearchIndex.MAX_LIMIT));
+		return new Result<>(hits.size(), hits);
+	}
+
+	@Data
+	@AllArgsConstructor
+	static class Result<T> {
+		private int count;
+		private T data;
+	}
+}
@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
@@ -35,7 +36,9 @@ public class MemberApiController {
 		return memberService.findMembers();
 	}
 	
+	//회원이 바뀌지 않았으면 304 또는 캐시된 응답 (VersionedListing)
 	@GetMapping("/api/v2/members")
+	@VersionedListing(Aggregate.MEMBER)
 	public Result memberV2() {
 		//자바8 스펙.
 		List<Member> findMembers = memberService.findMembers();
@@ -1,33 +1,65 @@
 package jpabook.jpashop.api;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderSearch;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.idempotency.OrderIdempotency;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
-import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderFlatGrouper;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.service.BulkCancelResult;
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderService;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
 @RestController
+@Validated
 @RequiredArgsConstructor
 public class OrderApiController {
 	
+	private static final String NDJSON = "application/x-ndjson";
+	//페이징 API 한 번에 내려주는 최대 주문 수. 범위를 벗어나면 400 (ApiExceptionHandler)
+	private static final int MAX_PAGE_SIZE = 1000;
+	
 	private final OrderRepository orderRepository;
 	private final OrderQueryRepository orderQueryRepository;
+	private final OrderService orderService;
+	private final OrderJsonWriter orderJsonWriter;
+	private final OrderIdempotency orderIdempotency;
 	/**
 	 * 계속 반복되는 예제.
 	 * Jackson 라이브러리는 getXXX() 메서드를 호출해서 get을 떼고 소문자로 만든 후, 필드값으로 사용한다. 
@@ -56,6 +88,7 @@ public class OrderApiController {
 	 * OrderDto로 껍데기만 Dto로 감싸는 것이 아니라 내부에 있는 OrderItem 또한 OrderItemDto로 만들어야 한다.
 	 */
 	@GetMapping("/api/v2/orders")
+	@VersionedListing(Aggregate.ORDER)
 	public List<OrderDto> ordersV2(){
 		List<Order> orders = orderRepository.findAllByString(new OrderSearch());
 		List<OrderDto> result = orders.stream().map(o->new OrderDto(o))
@@ -73,6 +106,7 @@ public class OrderApiController {
 	 * 이 중복을 제거하기 위해서는 distinct를 추가해야 한다. JPA가 어플리케이션 레벨에서 한 번 더 제거해줌.
 	 */
 	@GetMapping("/api/v3/orders")
+	@VersionedListing(Aggregate.ORDER)
 	public List<OrderDto> ordersV3(){
 		List<Order> orders = orderRepository.findAllWithItem();
 		List<OrderDto> result = orders.stream().map(o->new OrderDto(o))
@@ -87,9 +121,10 @@ public class OrderApiController {
 	* - 컬렉션 관계는 hibernate.default_batch_fetch_size, @BatchSize로 최적화
 	*/
 	@GetMapping("/api/v3.1/orders")
+	@VersionedListing(Aggregate.ORDER)
 	public List<OrderDto> ordersV3_paging(
-			@RequestParam(value = "offset", defaultValue = "0") int offset,
-			@RequestParam(value = "limit", defaultValue = "100") int limit)
+			@RequestParam(value = "offset", defaultValue = "0") @Min(0) int offset,
+			@RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) int limit)
 	{
 		
 		List<Order> orders = orderRepository.findAllWithMemberDelivery(offset, limit);
@@ -98,12 +133,37 @@ public class OrderApiController {
 		
 		return result;
 	}
+	
+	/**
+	* V3.2 V3.1을 keyset(seek) 페이징으로 변경
+	* - offset 대신 마지막으로 본 (orderDate, id)를 cursor로 받는다. 깊은 페이지도 앞의 row를 버리지 않으므로 일정한 속도.
+	* - 응답의 nextCursor를 그대로 다음 요청에 넘기면 된다. 더 이상 데이터가 없으면 null.
+	* - 컬렉션 관계는 V3.1과 동일하게 default_batch_fetch_size로 최적화
+	*/
+	@GetMapping("/api/v3.2/orders")
+	@VersionedListing(Aggregate.ORDER)
+	public CursorResult<List<OrderDto>> ordersV3_keyset(
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) int limit)
+	{
+		OrderCursor after = OrderCursor.decode(cursor);
+		List<Order> orders = (after == null)
+				? orderRepository.findAllWithMemberDeliveryAfter(null, null, limit)
+				: orderRepository.findAllWithMemberDeliveryAfter(after.getOrderDate(), after.getOrderId(), limit);
+		List<OrderDto> result = orders.stream().map(o->new OrderDto(o))
+							.collect(Collectors.toList());
+		
+		String nextCursor = (orders.isEmpty() || orders.size() < limit) ? null : OrderCursor.of(orders.get(orders.size() - 1)).encode();
+		return new CursorResult<>(result, nextCursor);
+	}
+	
 	/**
 	 * 1+N번의 쿼리가 발생한다.
 	 * 별도의 OrderQueryDto를 정의해야 한다.
 	 * 이전에 정의해둔 OrderDto를 사용하게 되면 OrderQueryRepository가 컨트롤러에 의존하게 되기 때문.
 	 */
 	@GetMapping("/api/v4/orders")
+	@VersionedListing(Aggregate.ORDER)
 	public List<OrderQueryDto> ordersV4(){
 		return orderQueryRepository.findOrderQueryDtos();
 	}
@@ -118,6 +178,7 @@ public class OrderApiController {
 	 * 5. 각 오더에 대해서 setOrderItems를 이용해 OrderItems를 추가해준다.
 	 */
 	@GetMapping("/api/v5/orders")
+	@VersionedListing(Aggregate.ORDER)
 	public List<OrderQueryDto> ordersV5(){
 		return orderQueryRepository.findAllByDto();
 	}
@@ -127,23 +188,138 @@ public class OrderApiController {
 	 * 쿼리가 총 1번 발생한다.
 	 * 
 	 * 1. OrderFlatDto를 만들어서 데이터베이스의 row를 한 줄 한 줄 그대로 받아 저장한다.
-	 * 2. OrderFlatDto를 Map<OrderQueryDto, List<OrderItemQueryDto>>로 만들어준다. (groupingBy, mapping)
-	 * 3. Map으로부터 List<OrderQueryDto>를 만들어준다.
+	 * 2. order id 순으로 정렬된 OrderFlatDto를 OrderFlatGrouper로 한 번 훑으면서 List<OrderQueryDto>로 묶어준다.
+	 *    (groupingBy는 row마다 key 객체를 만들고 순서가 뒤섞이기 때문에 사용하지 않음)
 	 * 
 	 */
 	@GetMapping("/api/v6/orders")
+	@VersionedListing(Aggregate.ORDER)
 	public List<OrderQueryDto> ordersV6(){
 		List<OrderFlatDto> flats = orderQueryRepository.findAllByDto_flat();
+		return OrderFlatGrouper.group(flats);
+	}
+	
+	/**
+	 * V6.1 V6 + OrderJsonWriter
+	 * - flat row를 scroll 하면서 주문 하나가 완성될 때마다 바로 JSON 배열 원소로 쓴다. (List<OrderQueryDto>를 만들지 않음)
+	 * - ObjectMapper 대신 OrderJsonWriter가 필드를 직접 쓴다. 응답 JSON은 V6와 같다.
+	 */
+	@GetMapping(value = "/api/v6.1/orders", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+	public void ordersV6_direct(HttpServletResponse response) throws IOException {
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		try (JsonGenerator generator = orderJsonWriter.createGenerator(response.getOutputStream())) {
+			generator.writeStartArray();
+			orderQueryRepository.streamAllByDto_flat(order -> write(generator, order));
+			generator.writeEndArray();
+		}
+	}
+	
+	/**
+	 * 전체 주문 그래프 export (NDJSON)
+	 * - V6와 같은 flat 쿼리를 order id 순으로 scroll 하면서 주문 하나가 완성될 때마다 바로 응답에 쓴다.
+	 * - List로 모으지 않기 때문에 주문이 만 건이든 천만 건이든 힙 사용량이 일정하다.
+	 * - 한 줄에 OrderQueryDto 하나. (OrderJsonWriter)
+	 */
+	@GetMapping(value = "/api/v6/orders/export", produces = NDJSON)
+	public void exportOrders(HttpServletResponse response) throws IOException {
+		response.setContentType(NDJSON);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
 		
-		Map<OrderQueryDto, List<OrderItemQueryDto>> collect = flats.stream().collect(Collectors.groupingBy(o-> new OrderQueryDto(o.getOrderId(), o.getName(), o.getOrderDate(), o.getOrderStatus(), o.getAddress()),
-				Collectors.mapping(o-> new OrderItemQueryDto(o.getOrderId(), o.getItemName(), o.getOrderPrice(), o.getCount()), Collectors.toList())
-				));
-		
-		return collect.entrySet().stream()
-				.map(e-> new OrderQueryDto(e.getKey().getOrderId(), e.getKey().getName(), e.getKey().getOrderDate(), e.getKey().getOrderStatus(), e.getKey().getAddress(), e.getValue()))
+		//주문마다 flush하지 않고 servlet 버퍼가 찰 때 내보낸다.
+		try (JsonGenerator generator = orderJsonWriter.createGenerator(response.getOutputStream())) {
+			generator.setRootValueSeparator(null);
+			orderQueryRepository.streamAllByDto_flat(order -> {
+				write(generator, order);
+				try {
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+	
+	private void write(JsonGenerator generator, OrderQueryDto order) {
+		try {
+			orderJsonWriter.writeOrder(generator, order);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * 장바구니 주문
+	 * 상품 여러 개를 주문 하나로 만든다. (OrderService.orderCart)
+	 * Idempotency-Key 헤더를 보내면 같은 키로 다시 보내도 주문은 한 번만 만들어지고 같은 주문 id가 온다. (OrderIdempotency)
+	 */
+	@PostMapping("/api/v1/orders/cart")
+	public CreateOrderResponse orderCart(
+			@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+			@RequestBody @Valid CartOrderRequest request) {
+		List<OrderLine> lines = request.getLines().stream()
+				.map(l -> new OrderLine(l.getItemId(), l.getCount()))
 				.collect(Collectors.toList());
+		//줄 순서만 다른 재전송도 같은 요청이다.
+		String fingerprint = lines.stream()
+				.sorted(Comparator.comparing(OrderLine::getItemId).thenComparingInt(OrderLine::getCount))
+				.map(l -> l.getItemId() + "x" + l.getCount())
+				.collect(Collectors.joining(",", "cart:" + request.getMemberId() + ":", ""));
+		Long orderId = orderIdempotency.execute(idempotencyKey, fingerprint,
+				() -> orderService.orderCart(request.getMemberId(), lines));
+		return new CreateOrderResponse(orderId);
+	}
+	
+	/**
+	 * 일괄 취소 (OrderService.cancelOrders)
+	 * 배송 완료된 주문이 섞여 있으면 하나도 취소되지 않는다.
+	 */
+	@PostMapping("/api/v1/orders/cancel")
+	public BulkCancelResult cancelOrders(@RequestBody @Valid BulkCancelRequest request) {
+		return orderService.cancelOrders(request.getOrderIds());
+	}
+	
+	//검색 조건(주문 검색과 같은 조건)에 맞는 주문 일괄 취소. 조건이 하나도 없으면({}) 전체 주문이 되므로 400.
+	//이미 취소된 주문, 배송 완료된 주문은 건너뛰고 건너뛴 수를 돌려준다.
+	@PostMapping("/api/v1/orders/cancel/search")
+	public BulkCancelResult cancelOrdersBySearch(@RequestBody @Valid OrderSearch orderSearch) {
+		return orderService.cancelOrders(orderSearch);
+	}
+	
+	@Data
+	static class BulkCancelRequest {
+		@NotEmpty
+		private List<Long> orderIds;
 	}
 	
+	@Data
+	static class CartOrderRequest {
+		@NotNull
+		private Long memberId;
+		@NotEmpty
+		@Valid
+		private List<CartLine> lines;
+	}
+	
+	@Data
+	static class CartLine {
+		@NotNull
+		private Long itemId;
+		@Positive
+		private int count;
+	}
+	
+	@Data
+	@AllArgsConstructor
+	static class CreateOrderResponse {
+		private Long orderId;
+	}
+	
+	@Data
+	@AllArgsConstructor
+	static class CursorResult<T>{
+		private T data;
+		private String nextCursor;
+	}
 	
 	@Data
 	static class OrderDto{
@@ -0,0 +1,57 @@
+package jpabook.jpashop.api;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import org.springframework.util.StringUtils;
+
+import jpabook.jpashop.domain.Order;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * keyset 페이징의 continuation token.
+ * 마지막으로 내려준 주문의 (orderDate, id)를 담는다.
+ * 클라이언트는 내용을 몰라도 되도록 base64(url-safe)로 감싸서 내려준다.
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCursor {
+
+	private static final String DELIMITER = "|";
+
+	private final LocalDateTime orderDate;
+	private final Long orderId;
+
+	public static OrderCursor of(Order order) {
+		return new OrderCursor(order.getOrderDate(), order.getId());
+	}
+
+	public String encode() {
+		String raw = orderDate + DELIMITER + orderId;
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 토큰이 없으면 첫 페이지이므로 null을 반환한다.
+	 * 해석할 수 없는 토큰이면 InvalidCursorException (400)
+	 */
+	public static OrderCursor decode(String token) {
+		if (!StringUtils.hasText(token)) {
+			return null;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int idx = raw.lastIndexOf(DELIMITER);
+			if (idx < 0) {
+				throw new IllegalArgumentException("구분자가 없습니다.");
+			}
+			return new OrderCursor(LocalDateTime.parse(raw.substring(0, idx)), Long.valueOf(raw.substring(idx + 1)));
+		} catch (DateTimeParseException | IllegalArgumentException e) {
+			throw new InvalidCursorException("잘못된 cursor 입니다.", e);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package jpabook.jpashop.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+
+/**
+ * 주문 조회 DTO 전용 JSON writer.
+ * ObjectMapper는 DTO마다 serializer를 찾고 getter를 리플렉션으로 호출한다.
+ * 여기서는 필드를 JsonGenerator에 직접 쓴다. 결과 JSON은 ObjectMapper(스프링 부트 기본 설정)와 같다.
+ * - 필드 이름은 미리 인코딩해 둔 SerializedString을 재사용한다.
+ * - 출력 버퍼는 JsonFactory의 BufferRecycler가 스레드별로 재사용한다.
+ * - 날짜는 ISO-8601 문자열 (WRITE_DATES_AS_TIMESTAMPS 꺼진 것과 같음)
+ */
+@Component
+public class OrderJsonWriter {
+
+	private static final SerializedString ORDER_ID = new SerializedString("orderId");
+	private static final SerializedString NAME = new SerializedString("name");
+	private static final SerializedString ORDER_DATE = new SerializedString("orderDate");
+	private static final SerializedString ORDER_STATUS = new SerializedString("orderStatus");
+	private static final SerializedString ADDRESS = new SerializedString("address");
+	private static final SerializedString ORDER_ITEMS = new SerializedString("orderItems");
+	private static final SerializedString CITY = new SerializedString("city");
+	private static final SerializedString STREET = new SerializedString("street");
+	private static final SerializedString ZIPCODE = new SerializedString("zipcode");
+	private static final SerializedString ITEM_NAME = new SerializedString("itemName");
+	private static final SerializedString ORDER_PRICE = new SerializedString("orderPrice");
+	private static final SerializedString COUNT = new SerializedString("count");
+	private static final SerializedString DATA = new SerializedString("data");
+
+	private final JsonFactory jsonFactory;
+
+	public OrderJsonWriter(ObjectMapper objectMapper) {
+		this.jsonFactory = objectMapper.getFactory();
+	}
+
+	public JsonGenerator createGenerator(OutputStream out) throws IOException {
+		return jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+	}
+
+	//[{...}, {...}]
+	public void writeOrders(JsonGenerator g, List<OrderQueryDto> orders) throws IOException {
+		g.writeStartArray();
+		for (OrderQueryDto order : orders) {
+			writeOrder(g, order);
+		}
+		g.writeEndArray();
+	}
+
+	//{"data": [{...}, {...}]}
+	public void writeSimpleOrders(JsonGenerator g, List<OrderSimpleQueryDto> orders) throws IOException {
+		g.writeStartObject();
+		g.writeFieldName(DATA);
+		g.writeStartArray();
+		for (OrderSimpleQueryDto order : orders) {
+			writeSimpleOrder(g, order);
+		}
+		g.writeEndArray();
+		g.writeEndObject();
+	}
+
+	public void writeOrder(JsonGenerator g, OrderQueryDto order) throws IOException {
+		g.writeStartObject();
+		writeOrderFields(g, order.getOrderId(), order.getName(), order.getOrderDate(), order.getOrderStatus(), order.getAddress());
+		g.writeFieldName(ORDER_ITEMS);
+		List<OrderItemQueryDto> orderItems = order.getOrderItems();
+		if (orderItems == null) {
+			g.writeNull();
+		} else {
+			g.writeStartArray();
+			for (OrderItemQueryDto orderItem : orderItems) {
+				writeOrderItem(g, orderItem);
+			}
+			g.writeEndArray();
+		}
+		g.writeEndObject();
+	}
+
+	//orderId는 @JsonIgnore라 쓰지 않는다.
+	public void writeOrderItem(JsonGenerator g, OrderItemQueryDto orderItem) throws IOException {
+		g.writeStartObject();
+		g.writeFieldName(ITEM_NAME);
+		g.writeString(orderItem.getItemName());
+		g.writeFieldName(ORDER_PRICE);
+		g.writeNumber(orderItem.getOrderPrice());
+		g.writeFieldName(COUNT);
+		g.writeNumber(orderItem.getCount());
+		g.writeEndObject();
+	}
+
+	public void writeSimpleOrder(JsonGenerator g, OrderSimpleQueryDto order) throws IOException {
+		g.writeStartObject();
+		writeOrderFields(g, order.getOrderId(), order.getName(), order.getOrderDate(), order.getOrderStatus(), order.getAddress());
+		g.writeEndObject();
+	}
+
+	private void writeOrderFields(JsonGenerator g, Long orderId, String name, LocalDateTime orderDate, OrderStatus orderStatus, Address address) throws IOException {
+		g.writeFieldName(ORDER_ID);
+		if (orderId == null) {
+			g.writeNull();
+		} else {
+			g.writeNumber(orderId);
+		}
+		g.writeFieldName(NAME);
+		g.writeString(name);
+		g.writeFieldName(ORDER_DATE);
+		g.writeString(orderDate == null ? null : orderDate.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+		g.writeFieldName(ORDER_STATUS);
+		g.writeString(orderStatus == null ? null : orderStatus.name());
+		g.writeFieldName(ADDRESS);
+		writeAddress(g, address);
+	}
+
+	private void writeAddress(JsonGenerator g, Address address) throws IOException {
+		if (address == null) {
+			g.writeNull();
+			return;
+		}
+		g.writeStartObject();
+		g.writeFieldName(CITY);
+		g.writeString(address.getCity());
+		g.writeFieldName(STREET);
+		g.writeString(address.getStreet());
+		g.writeFieldName(ZIPCODE);
+		g.writeString(address.getZipcode());
+		g.writeEndObject();
+	}
+}
@@ -1,20 +1,28 @@
 package jpabook.jpashop.api;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderSearch;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
-import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderSummaryRepository;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -32,7 +40,8 @@ import lombok.RequiredArgsConstructor;
 public class OrderSimpleApiController {
 	
 	private final OrderRepository orderRepository;
-	private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+	private final OrderSummaryRepository orderSummaryRepository;
+	private final OrderJsonWriter orderJsonWriter;
 	
 	/**
 	* V1. 엔티티 직접 노출
@@ -53,6 +62,7 @@ public class OrderSimpleApiController {
 	* - 단점: 지연로딩으로 쿼리 N번 호출
 	*/
 	@GetMapping("/api/v2/simple-orders")
+	@VersionedListing(Aggregate.ORDER)
 	public OrderResult<List<OrderSimpleQueryDto>> ordersV2(){
 		List<Order> orders = orderRepository.findAllByString(new OrderSearch());
 		List<OrderSimpleQueryDto> orderDto = orders.stream().map(o -> new OrderSimpleQueryDto(o)) 	//OrderSimpleQueryDto::new
@@ -68,6 +78,7 @@ public class OrderSimpleApiController {
 	* 장점 : 재활용성이 높음. 다른 API에서도 사용할 수 있음.
 	*/
 	@GetMapping("/api/v3/simple-orders")
+	@VersionedListing(Aggregate.ORDER)
 	public OrderResult<List<OrderSimpleQueryDto>> ordersV3(){
 		List<Order> orders = orderRepository.findAllWithMemberDelivery();
 		List<OrderSimpleQueryDto> orderDto = orders.stream().map(OrderSimpleQueryDto::new)
@@ -84,10 +95,37 @@ public class OrderSimpleApiController {
 	* - 따라서 repository.order.simplequery 패키지를 두고 OrderSimpleQueryRepository를 새로 만드는 게 좋음.
 	* 장점 : 성능 최적화
 	* 단점 : DTO를 조회했기 때문에 재활용이 거의 불가능하고 JPA에서 관리하는 객체가 아님. 코드도 복잡.
+	* 
+	* 지금은 조인 없이 order_summary 프로젝션 한 테이블만 읽는다. (조인 버전은 OrderSimpleQueryRepository.findOrderDtos)
 	*/
 	@GetMapping("/api/v4/simple-orders")
+	@VersionedListing(Aggregate.ORDER)
 	public OrderResult<List<OrderSimpleQueryDto>> ordersV4(){
-		return  new OrderResult<>(orderSimpleQueryRepository.findOrderDtos());
+		return  new OrderResult<>(orderSummaryRepository.findOrderDtos());
+	}
+	
+	/**
+	* V4.1 V4 + OrderJsonWriter
+	* - order_summary를 scroll 하면서 바로 응답에 쓴다. List를 만들지 않고 리플렉션도 쓰지 않는다.
+	* - 응답 JSON은 V4와 같다. {"data": [...]}
+	*/
+	@GetMapping(value = "/api/v4.1/simple-orders", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+	public void ordersV4_direct(HttpServletResponse response) throws IOException {
+		response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+		try (JsonGenerator generator = orderJsonWriter.createGenerator(response.getOutputStream())) {
+			generator.writeStartObject();
+			generator.writeFieldName("data");
+			generator.writeStartArray();
+			orderSummaryRepository.streamOrderDtos(order -> {
+				try {
+					orderJsonWriter.writeSimpleOrder(generator, order);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
 	}
 	
 	@Data
@@ -0,0 +1,19 @@
+package jpabook.jpashop.api;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+
+/**
+ * 응답이 해당 애그리거트 버전에만 의존하는 조회 API.
+ * ETag/If-None-Match, 직렬화된 응답 캐시를 적용한다. (VersionedListingSupport)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface VersionedListing {
+
+	Aggregate[] value();
+}
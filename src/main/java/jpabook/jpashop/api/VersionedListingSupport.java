@@ -0,0 +1,150 @@
+package jpabook.jpashop.api;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.datasource.PrimaryReads;
+
+/**
+ * @VersionedListing 조회 API의 조건부 GET.
+ *
+ * 핸들러 실행 전 (HandlerInterceptor)
+ * 1. 애그리거트 버전으로 ETag를 만든다. DB는 보지 않는다.
+ * 2. If-None-Match가 같으면 304.
+ * 3. 같은 URL(쿼리스트링 포함)을 같은 ETag로 직렬화해 둔 응답이 있으면 그대로 쓴다.
+ * 셋 다 아니면 컨트롤러가 실행된다. 이때 조회는 주 DB에서 한다. (PrimaryReads, afterCompletion에서 끝낸다)
+ * 지연된 복제본에서 읽으면 1의 버전보다 예전 데이터를 그 ETag로 캐시하게 된다.
+ *
+ * 응답 쓰기 전 (ResponseBodyAdvice)
+ * 4. 결과를 byte[]로 직렬화해서 1에서 만든 ETag로 캐시하고, 컨버터에는 RawValue로 넘겨 다시 직렬화하지 않게 한다.
+ *    버전을 조회 전에 읽었으므로 조회 중에 커밋된 데이터가 섞여도 다음 버전에서 다시 만들어진다.
+ */
+@ControllerAdvice
+public class VersionedListingSupport implements HandlerInterceptor, ResponseBodyAdvice<Object> {
+
+	private static final String ETAG_ATTRIBUTE = VersionedListingSupport.class.getName() + ".etag";
+	private static final String PRIMARY_READS_ATTRIBUTE = VersionedListingSupport.class.getName() + ".primaryReads";
+
+	private final AggregateVersions aggregateVersions;
+	private final ObjectMapper objectMapper;
+	private final Cache<String, CachedBody> bodies;
+
+	public VersionedListingSupport(AggregateVersions aggregateVersions, ObjectMapper objectMapper,
+			@Value("${app.listing-cache.max-entries:1000}") long maxEntries,
+			@Value("${app.listing-cache.ttl-seconds:600}") long ttlSeconds) {
+		this.aggregateVersions = aggregateVersions;
+		this.objectMapper = objectMapper;
+		this.bodies = Caffeine.newBuilder()
+				.maximumSize(maxEntries)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.build();
+	}
+
+	//== HandlerInterceptor ==//
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+		VersionedListing listing = listingOf(handler);
+		if (listing == null || !"GET".equals(request.getMethod())) {
+			return true;
+		}
+		String etag = aggregateVersions.etag(listing.value());
+		request.setAttribute(ETAG_ATTRIBUTE, etag);
+
+		//304 + ETag 헤더까지 설정해준다.
+		if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+			return false;
+		}
+
+		CachedBody cached = bodies.getIfPresent(cacheKey(request));
+		if (cached != null && cached.etag.equals(etag)) {
+			response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+			response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+			response.setContentLength(cached.body.length);
+			response.getOutputStream().write(cached.body);
+			return false;
+		}
+		PrimaryReads.begin();
+		request.setAttribute(PRIMARY_READS_ATTRIBUTE, Boolean.TRUE);
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		if (request.getAttribute(PRIMARY_READS_ATTRIBUTE) != null) {
+			request.removeAttribute(PRIMARY_READS_ATTRIBUTE);
+			PrimaryReads.end();
+		}
+	}
+
+	//== ResponseBodyAdvice ==//
+	@Override
+	public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+		return returnType.hasMethodAnnotation(VersionedListing.class);
+	}
+
+	@Override
+	public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+			Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request, ServerHttpResponse response) {
+		if (body == null || !(request instanceof ServletServerHttpRequest)) {
+			return body;
+		}
+		HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+		String etag = (String) servletRequest.getAttribute(ETAG_ATTRIBUTE);
+		if (etag == null) {
+			return body;
+		}
+		byte[] serialized;
+		try {
+			serialized = objectMapper.writeValueAsBytes(body);
+		} catch (JsonProcessingException e) {
+			return body;	//원래 경로로 직렬화하게 둔다. (같은 예외가 나면 거기서 처리)
+		}
+		bodies.put(cacheKey(servletRequest), new CachedBody(etag, serialized));
+		response.getHeaders().setETag(etag);
+		response.getHeaders().setCacheControl("no-cache");
+		return new RawValue(new String(serialized, StandardCharsets.UTF_8));
+	}
+
+	private static VersionedListing listingOf(Object handler) {
+		return (handler instanceof HandlerMethod) ? ((HandlerMethod) handler).getMethodAnnotation(VersionedListing.class) : null;
+	}
+
+	private static String cacheKey(HttpServletRequest request) {
+		String query = request.getQueryString();
+		return query == null ? request.getRequestURI() : request.getRequestURI() + "?" + query;
+	}
+
+	private static class CachedBody {
+		final String etag;
+		final byte[] body;
+
+		CachedBody(String etag, byte[] body) {
+			this.etag = etag;
+			this.body = body;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package jpabook.jpashop.cache;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 애그리거트(회원, 주문)별 버전. 쓰기가 커밋될 때마다 1씩 올라간다.
+ * 목록 API는 이 버전으로 ETag를 만들고, 버전이 그대로면 DB를 보지 않고 304나 캐시된 응답을 준다. (VersionedListingSupport)
+ *
+ * 커밋 후에 올린다. 커밋 전에 올리면 다른 요청이 새 버전으로 예전 데이터를 캐시할 수 있다.
+ * 인스턴스 메모리에만 있으므로 ETag에 기동 시각을 넣어서 재시작 후에 같은 번호가 다시 맞지 않도록 한다.
+ */
+@Component
+public class AggregateVersions {
+
+	public enum Aggregate {
+		MEMBER, ORDER
+	}
+
+	private final long epoch = System.currentTimeMillis();
+	private final Map<Aggregate, AtomicLong> versions = new EnumMap<>(Aggregate.class);
+
+	public AggregateVersions() {
+		for (Aggregate aggregate : Aggregate.values()) {
+			versions.put(aggregate, new AtomicLong());
+		}
+	}
+
+	public long current(Aggregate aggregate) {
+		return versions.get(aggregate).get();
+	}
+
+	//"기동시각-버전1-버전2..." (따옴표 포함)
+	public String etag(Aggregate... aggregates) {
+		StringBuilder etag = new StringBuilder("\"").append(Long.toString(epoch, 36));
+		for (Aggregate aggregate : aggregates) {
+			etag.append('-').append(current(aggregate));
+		}
+		return etag.append('"').toString();
+	}
+
+	/**
+	 * 트랜잭션 안이면 커밋 후에, 아니면 바로 올린다. 롤백되면 올리지 않는다.
+	 */
+	public void bump(Aggregate... aggregates) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			increment(aggregates);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				increment(aggregates);
+			}
+		});
+	}
+
+	private void increment(Aggregate... aggregates) {
+		for (Aggregate aggregate : aggregates) {
+			versions.get(aggregate).incrementAndGet();
+		}
+	}
+}
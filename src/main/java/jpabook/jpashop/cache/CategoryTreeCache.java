@@ -0,0 +1,125 @@
+package jpabook.jpashop.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.Getter;
+
+/**
+ * 카테고리 트리 로컬 캐시. (네비게이션, breadcrumb)
+ * 카테고리는 거의 바뀌지 않으므로 전체 트리를 한 번에 올려두고, 카테고리가 바뀌면 통째로 버린다.
+ * 다음 조회 때 쿼리 한 번으로 다시 만든다.
+ *
+ * 버린 뒤 커밋 전에 다른 요청이 예전 트리를 다시 올릴 수 있어서 ItemCache처럼 커밋 후에 한 번 더 버린다.
+ * 커밋 전에 예전 데이터를 읽기 시작한 요청이 커밋 후에 트리를 올리는 경우도 있어서 버릴 때마다 세대 번호를 올리고,
+ * 읽기 시작할 때와 세대가 같을 때만 올린다. (다르면 만든 트리는 그 요청에서만 쓰고 버린다)
+ */
+@Component
+public class CategoryTreeCache {
+
+	private final Object lock = new Object();
+	private long generation;
+	private volatile Tree tree;
+
+	/**
+	 * @param loader [id, name, parentId] 목록. 부모가 자식보다 먼저 나오지 않아도 된다.
+	 */
+	public Tree get(Supplier<List<Object[]>> loader) {
+		Tree current = tree;
+		if (current == null) {
+			long loadedGeneration;
+			synchronized (lock) {
+				loadedGeneration = generation;
+			}
+			current = new Tree(loader.get());
+			synchronized (lock) {
+				if (generation == loadedGeneration) {
+					tree = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	public void invalidate() {
+		clear();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					clear();
+				}
+			});
+		}
+	}
+
+	private void clear() {
+		synchronized (lock) {
+			generation++;
+			tree = null;
+		}
+	}
+
+	/**
+	 * 만들어진 뒤에는 바뀌지 않는다. 여러 요청이 같이 읽는다.
+	 */
+	public static class Tree {
+
+		private final Map<Long, Node> nodes = new HashMap<>();
+		@Getter
+		private final List<Node> roots = new ArrayList<>();
+
+		Tree(List<Object[]> rows) {
+			for (Object[] row : rows) {
+				Long id = (Long) row[0];
+				nodes.put(id, new Node(id, (String) row[1], (Long) row[2]));
+			}
+			for (Node node : nodes.values()) {
+				Node parent = node.parentId == null ? null : nodes.get(node.parentId);
+				if (parent == null) {
+					roots.add(node);
+				} else {
+					parent.children.add(node);
+				}
+			}
+			roots.sort((a, b) -> a.id.compareTo(b.id));
+			nodes.values().forEach(node -> node.children.sort((a, b) -> a.id.compareTo(b.id)));
+		}
+
+		public Node find(Long id) {
+			return nodes.get(id);
+		}
+
+		//루트부터 id까지의 경로. 없는 카테고리면 빈 목록.
+		public List<Node> path(Long id) {
+			LinkedList<Node> path = new LinkedList<>();
+			for (Node node = nodes.get(id); node != null; node = node.parentId == null ? null : nodes.get(node.parentId)) {
+				path.addFirst(node);
+			}
+			return Collections.unmodifiableList(path);
+		}
+	}
+
+	@Getter
+	public static class Node {
+		private final Long id;
+		private final String name;
+		private final Long parentId;
+		private final List<Node> children = new ArrayList<>();
+
+		Node(Long id, String name, Long parentId) {
+			this.id = id;
+			this.name = name;
+			this.parentId = parentId;
+		}
+	}
+}
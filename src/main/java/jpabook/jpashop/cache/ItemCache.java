@@ -0,0 +1,97 @@
+package jpabook.jpashop.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jpabook.jpashop.domain.Item;
+
+/**
+ * 상품 단건 조회, 상품 목록(카탈로그) 로컬 캐시.
+ * 크기와 TTL로 비우고, 상품 수정/재고 변경 시 해당 상품과 카탈로그를 지운다.
+ *
+ * 엔티티가 아니라 불변 ItemSnapshot을 올린다. (요청끼리 엔티티를 나눠 쓰지 않는다)
+ * 트랜잭션 안에서 지우면 커밋 전에 다른 요청이 예전 값을 다시 캐시에 올릴 수 있어서 커밋 후에 한 번 더 지운다.
+ */
+@Component
+public class ItemCache {
+
+	private static final String CATALOG_KEY = "all";
+
+	private final Cache<Long, ItemSnapshot> items;
+	private final Cache<String, List<ItemSnapshot>> catalog;
+
+	public ItemCache(
+			@Value("${app.item-cache.max-size:10000}") long maxSize,
+			@Value("${app.item-cache.ttl-seconds:60}") long ttlSeconds) {
+		this.items = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats()
+				.build();
+		this.catalog = Caffeine.newBuilder()
+				.maximumSize(1)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats()
+				.build();
+	}
+
+	//없는 상품(loader가 null)은 캐시하지 않는다. loader는 트랜잭션 안에서 불러야 한다. (엔티티를 읽어 복사한다)
+	public ItemSnapshot getItem(Long itemId, Function<Long, Item> loader) {
+		return items.get(itemId, id -> {
+			Item item = loader.apply(id);
+			return (item == null) ? null : ItemSnapshot.of(item);
+		});
+	}
+
+	public List<ItemSnapshot> getCatalog(Supplier<List<Item>> loader) {
+		return catalog.get(CATALOG_KEY, key -> Collections.unmodifiableList(loader.get().stream()
+				.map(ItemSnapshot::of)
+				.collect(Collectors.toList())));
+	}
+
+	/**
+	 * 상품 정보나 재고가 바뀌었을 때 호출한다.
+	 */
+	public void evict(Collection<Long> itemIds) {
+		doEvict(itemIds);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					doEvict(itemIds);
+				}
+			});
+		}
+	}
+
+	public void evict(Long itemId) {
+		evict(Collections.singletonList(itemId));
+	}
+
+	private void doEvict(Collection<Long> itemIds) {
+		items.invalidateAll(itemIds);
+		catalog.invalidateAll();
+	}
+
+	public CacheStats itemStats() {
+		return items.stats();
+	}
+
+	public CacheStats catalogStats() {
+		return catalog.stats();
+	}
+}
@@ -0,0 +1,32 @@
+package jpabook.jpashop.cache;
+
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Item;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * ItemCache에 올리는 상품 값. 조회한 시점의 값을 복사해 둔 불변 객체다.
+ * 엔티티를 여러 요청이 같이 보면 한 요청에서 바꾼 값이 다른 요청에 보이고, 지연 로딩(categories)은 LazyInitializationException이 난다.
+ * 상품을 바꿀 때는 트랜잭션 안에서 엔티티를 다시 조회한다. (ItemService)
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ItemSnapshot {
+	private final Long id;
+	private final String name;
+	private final int price;
+	private final int stockQuantity;
+	//Book이 아니면 null
+	private final String author;
+	private final String isbn;
+
+	public static ItemSnapshot of(Item item) {
+		if (item instanceof Book) {
+			Book book = (Book) item;
+			return new ItemSnapshot(book.getId(), book.getName(), book.getPrice(), book.getStockQuantity(), book.getAuthor(), book.getIsbn());
+		}
+		return new ItemSnapshot(item.getId(), item.getName(), item.getPrice(), item.getStockQuantity(), null, null);
+	}
+}
@@ -0,0 +1,87 @@
+package jpabook.jpashop.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 회원 이름 Bloom filter. 가입 시 중복 검사 앞단에서 DB 조회를 걸러낸다.
+ * - mightContain이 false면 그 이름은 확실히 없다. -> DB를 조회하지 않는다.
+ * - true면 있을 수도 있다. (오탐율 fpp) -> DB에서 확인한다.
+ *
+ * 기동 후 전체 이름을 올리기 전(loaded = false)에는 항상 true를 반환해서 DB로 보낸다.
+ * 삭제는 지원하지 않는다. 이름이 바뀌거나 가입이 롤백되어도 남아있지만 오탐이 조금 늘 뿐이다.
+ * 최종 중복 방지는 uk_member_name 유니크 제약조건이 맡는다.
+ */
+@Component
+public class MemberNameFilter {
+
+	private final AtomicLongArray bits;
+	private final long bitSize;
+	private final int hashCount;
+	private volatile boolean loaded;
+
+	public MemberNameFilter(
+			@Value("${app.member-name-filter.expected-insertions:10000000}") long expectedInsertions,
+			@Value("${app.member-name-filter.fpp:0.01}") double fpp) {
+		long size = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		this.bits = new AtomicLongArray((int) ((size + 63) / 64));
+		this.bitSize = bits.length() * 64L;
+		this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+	}
+
+	public void put(String name) {
+		if (name == null) {
+			return;
+		}
+		long hash = hash(name);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bitIndex = index(h1 + i * h2);
+			int word = (int) (bitIndex >>> 6);
+			long mask = 1L << bitIndex;
+			long current;
+			do {
+				current = bits.get(word);
+			} while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+		}
+	}
+
+	public boolean mightContain(String name) {
+		if (!loaded) {
+			return true;
+		}
+		long hash = hash(name);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashCount; i++) {
+			long bitIndex = index(h1 + i * h2);
+			if ((bits.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//전체 회원 이름을 put 한 뒤에 호출한다.
+	public void markLoaded() {
+		loaded = true;
+	}
+
+	private long index(int combinedHash) {
+		return (combinedHash & Integer.MAX_VALUE) % bitSize;
+	}
+
+	//FNV-1a 64bit
+	private static long hash(String name) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xff);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+}
@@ -1,6 +1,6 @@
 package jpabook.jpashop.controller;
 
-import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.cache.ItemSnapshot;
 import lombok.Getter;
 
 import lombok.Setter;
@@ -15,7 +15,7 @@ public class BookForm {
 	private String isbn;
 
 	
-	public static BookForm createBookForm(Book item) {
+	public static BookForm createBookForm(ItemSnapshot item) {
 		BookForm form = new BookForm();
 		form.setId(item.getId());
 		form.setName(item.getName());
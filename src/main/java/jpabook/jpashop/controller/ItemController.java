@@ -12,8 +12,8 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 
+import jpabook.jpashop.cache.ItemSnapshot;
 import jpabook.jpashop.domain.Book;
-import jpabook.jpashop.domain.Item;
 import jpabook.jpashop.service.ItemService;
 import lombok.RequiredArgsConstructor;
 
@@ -40,14 +40,14 @@ public class ItemController {
 	
 	@GetMapping("/items")
 	public String list(Model model) {
-		List<Item> items = itemService.findItems();
+		List<ItemSnapshot> items = itemService.findItems();
 		model.addAttribute("items", items);
 		return "items/itemList";
 	}
 	
 	@GetMapping("items/{itemId}/edit")
 	public String updateItemForm(@PathVariable("itemId") Long itemId, Model model) {
-		Book item = (Book) itemService.findOne(itemId);
+		ItemSnapshot item = itemService.findOne(itemId);
 		BookForm form = createBookForm(item);
 		
 		model.addAttribute("form", form);
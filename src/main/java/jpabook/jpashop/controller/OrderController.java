@@ -1,19 +1,35 @@
 package jpabook.jpashop.controller;
 
 import java.util.List;
+import java.util.UUID;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
 
-import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.cache.ItemSnapshot;
 import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.idempotency.IdempotencyKeyInProgressException;
+import jpabook.jpashop.idempotency.IdempotencyKeyReusedException;
+import jpabook.jpashop.idempotency.InvalidIdempotencyKeyException;
+import jpabook.jpashop.idempotency.OrderIdempotency;
+import jpabook.jpashop.repository.order.simplequery.OrderListPage;
+import jpabook.jpashop.repository.order.simplequery.OrderListSort;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
 import jpabook.jpashop.service.OrderService;
@@ -23,17 +39,24 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class OrderController {
 	
+	private static final int MAX_PAGE_SIZE = 100;
+	
 	private final OrderService orderService;
 	private final MemberService memberService;
 	private final ItemService itemService;
+	private final OrderListFragmentCache orderListFragmentCache;
+	private final OrderIdempotency orderIdempotency;
+	private final ITemplateEngine templateEngine;
 	
 	@GetMapping("/order")
 	public String createForm(Model model) {
 		List<Member> members = memberService.findMembers();
-		List<Item> items = itemService.findItems();
+		List<ItemSnapshot> items = itemService.findItems();
 		
 		model.addAttribute("members", members);
 		model.addAttribute("items", items);
+		//폼을 열 때마다 새 키. 다시 보내기(타임아웃, 새로고침)는 같은 키로 들어온다.
+		model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
 		
 		return "orders/orderForm";
 	}
@@ -42,24 +65,104 @@ public class OrderController {
 	public String order(
 			@RequestParam("memberId") Long memberId, 
 			@RequestParam("itemId") Long itemId,
-			@RequestParam("count") int count
+			@RequestParam("count") int count,
+			@RequestParam(value = "idempotencyKey", required = false) String idempotencyKey
 			)
 	{
-		orderService.order(memberId, itemId, count);
+		orderIdempotency.execute(idempotencyKey, "order:" + memberId + ":" + itemId + ":" + count,
+				() -> orderService.order(memberId, itemId, count));
 		return "redirect:/orders";
 	}
 	
+	/**
+	 * 주문 폼의 멱등 키 오류는 메시지와 함께 폼을 다시 보여준다.
+	 * - 처리 중(409): 같은 키를 유지한다. 다시 보내면 앞 요청이 만든 주문으로 끝난다.
+	 * - 다른 주문에 쓴 키(422), 잘못된 키(400): 새 키를 준다.
+	 */
+	@ExceptionHandler({InvalidIdempotencyKeyException.class, IdempotencyKeyReusedException.class, IdempotencyKeyInProgressException.class})
+	public ModelAndView idempotencyKeyError(RuntimeException e, HttpServletRequest request) {
+		boolean inProgress = e instanceof IdempotencyKeyInProgressException;
+		ModelAndView form = new ModelAndView("orders/orderForm");
+		form.addObject("members", memberService.findMembers());
+		form.addObject("items", itemService.findItems());
+		form.addObject("idempotencyKey", inProgress ? request.getParameter("idempotencyKey") : UUID.randomUUID().toString());
+		form.addObject("errorMessage", e.getMessage());
+		if (inProgress) {
+			form.setStatus(HttpStatus.CONFLICT);
+		} else if (e instanceof IdempotencyKeyReusedException) {
+			form.setStatus(HttpStatus.UNPROCESSABLE_ENTITY);
+		} else {
+			form.setStatus(HttpStatus.BAD_REQUEST);
+		}
+		return form;
+	}
+	
+	/**
+	 * 관리자 주문 목록
+	 * - order_summary 프로젝션을 페이지 단위로 읽는다. (엔티티, 지연 로딩 없음)
+	 * - 표(orders/orderTable)는 따로 렌더링해서 데이터 버전 + 검색 조건별로 캐시한다. (OrderListFragmentCache)
+	 *   같은 조건으로 다시 열면 주문이 바뀌기 전까지 DB를 보지 않는다.
+	 */
 	@GetMapping("/orders")
 	public String orderList(
 			@ModelAttribute("orderSearch") OrderSearch orderSearch,
+			@RequestParam(value = "sort", defaultValue = "ID") OrderListSort sort,
+			@RequestParam(value = "direction", defaultValue = "desc") String direction,
+			@RequestParam(value = "page", defaultValue = "0") int page,
+			@RequestParam(value = "size", defaultValue = "20") int size,
 			Model model)
 	{
-		List<Order> orders = orderService.findOrders(orderSearch);
-		model.addAttribute("orders", orders);
+		boolean ascending = "asc".equalsIgnoreCase(direction);
+		int pageNumber = Math.max(page, 0);
+		int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+		String filter = filterQuery(orderSearch);
+		
+		String key = filter + "|" + sort + "|" + ascending + "|" + pageNumber + "|" + pageSize;
+		String orderTable = orderListFragmentCache.get(key, () -> {
+			OrderListPage orderPage = orderService.findOrderPage(orderSearch, sort, ascending, pageNumber, pageSize);
+			String linkBase = "/orders?" + (filter.isEmpty() ? "" : filter + "&") + "size=" + pageSize + "&";
+			
+			Context context = new Context(LocaleContextHolder.getLocale());
+			context.setVariable("orderPage", orderPage);
+			context.setVariable("sort", sort.name());
+			context.setVariable("ascending", ascending);
+			context.setVariable("linkBase", linkBase);
+			context.setVariable("pageLink", linkBase + "sort=" + sort + "&direction=" + (ascending ? "asc" : "desc") + "&page=");
+			return templateEngine.process("orders/orderTable", context);
+		});
+		model.addAttribute("orderTable", orderTable);
 		
 		return "orders/orderList";
 	}
 	
+	//검색 조건을 쿼리스트링으로 (캐시 키, 정렬/페이지 링크에 같이 사용)
+	private static String filterQuery(OrderSearch orderSearch) {
+		UriComponentsBuilder builder = UriComponentsBuilder.newInstance();
+		if (StringUtils.hasText(orderSearch.getMemberName())) {
+			builder.queryParam("memberName", orderSearch.getMemberName());
+		}
+		if (orderSearch.getOrderStatus() != null) {
+			builder.queryParam("orderStatus", orderSearch.getOrderStatus());
+		}
+		if (orderSearch.getFromDate() != null) {
+			builder.queryParam("fromDate", orderSearch.getFromDate());
+		}
+		if (orderSearch.getToDate() != null) {
+			builder.queryParam("toDate", orderSearch.getToDate());
+		}
+		if (orderSearch.getMinTotalPrice() != null) {
+			builder.queryParam("minTotalPrice", orderSearch.getMinTotalPrice());
+		}
+		if (orderSearch.getMaxTotalPrice() != null) {
+			builder.queryParam("maxTotalPrice", orderSearch.getMaxTotalPrice());
+		}
+		if (StringUtils.hasText(orderSearch.getItemName())) {
+			builder.queryParam("itemName", orderSearch.getItemName());
+		}
+		String query = builder.encode().build().getQuery();
+		return query == null ? "" : query;
+	}
+	
 	@PostMapping("/orders/{orderId}/cancel")
 	public String cancelOrder(@PathVariable("orderId") Long orderId) {
 		orderService.cancelOrder(orderId);
@@ -0,0 +1,48 @@
+package jpabook.jpashop.controller;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.datasource.PrimaryReads;
+
+/**
+ * 관리자 주문 목록(/orders)의 표 HTML 캐시.
+ * 키는 주문 데이터 버전(AggregateVersions ORDER) + 검색 조건 + 정렬 + 페이지.
+ * 주문, 회원명, 상품이 바뀌면 버전이 올라가서 예전 항목은 더 이상 맞지 않는다. (크기/TTL로 정리)
+ * 버전은 조회 전에 읽으므로 조회 중에 커밋된 변경은 다음 버전에서 다시 그려진다.
+ * 그리는 조회는 주 DB에서 한다. (PrimaryReads) 지연된 복제본의 예전 데이터가 새 버전 키로 캐시되지 않도록.
+ */
+@Component
+public class OrderListFragmentCache {
+
+	private final AggregateVersions aggregateVersions;
+	private final Cache<String, String> fragments;
+
+	public OrderListFragmentCache(AggregateVersions aggregateVersions,
+			@Value("${app.order-list-cache.max-entries:200}") long maxEntries,
+			@Value("${app.order-list-cache.ttl-seconds:300}") long ttlSeconds) {
+		this.aggregateVersions = aggregateVersions;
+		this.fragments = Caffeine.newBuilder()
+				.maximumSize(maxEntries)
+				.expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats()
+				.build();
+	}
+
+	public String get(String key, Supplier<String> renderer) {
+		return fragments.get(aggregateVersions.etag(Aggregate.ORDER) + key, versionedKey -> PrimaryReads.call(renderer));
+	}
+
+	public CacheStats stats() {
+		return fragments.stats();
+	}
+}
@@ -0,0 +1,49 @@
+package jpabook.jpashop.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * 이 안에서 시작한 읽기 전용 트랜잭션도 주 DB로 보낸다. (ReplicationRoutingDataSource)
+ * 조회 결과를 애그리거트 버전으로 캐시하는 곳(VersionedListingSupport, OrderListFragmentCache)에서 쓴다.
+ * 버전은 커밋 후에 올라가므로 주 DB에는 버전만큼의 데이터가 있지만, 지연된 복제본에는 없을 수 있다.
+ * 복제본에서 읽은 예전 데이터가 새 버전(ETag)으로 캐시되면 다음 쓰기 전까지 계속 나간다.
+ *
+ * 커넥션을 얻는 시점(첫 SQL)에 보므로 트랜잭션이 이미 커넥션을 잡았으면 바뀌지 않는다.
+ * 스레드 단위라서 다른 스레드에 넘긴 조회에는 적용되지 않는다. (ChunkedInLoader는 이때 호출한 스레드에서 읽는다)
+ * 라우팅을 쓰지 않으면 아무 효과가 없다.
+ */
+public final class PrimaryReads {
+
+	private static final ThreadLocal<Integer> depth = new ThreadLocal<>();
+
+	private PrimaryReads() {
+	}
+
+	public static <T> T call(Supplier<T> work) {
+		begin();
+		try {
+			return work.get();
+		} finally {
+			end();
+		}
+	}
+
+	public static boolean isActive() {
+		return depth.get() != null;
+	}
+
+	//begin/end는 짝을 맞춘다. (인터셉터의 preHandle/afterCompletion 등)
+	public static void begin() {
+		Integer current = depth.get();
+		depth.set(current == null ? 1 : current + 1);
+	}
+
+	public static void end() {
+		Integer current = depth.get();
+		if (current == null || current <= 1) {
+			depth.remove();
+		} else {
+			depth.set(current - 1);
+		}
+	}
+}
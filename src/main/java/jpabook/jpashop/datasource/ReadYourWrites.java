@@ -0,0 +1,66 @@
+package jpabook.jpashop.datasource;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 방금 쓴 데이터를 복제본 지연 때문에 못 읽는 일을 막는다.
+ * 쓰기 트랜잭션이 커밋되면 stickyMillis 동안 읽기 전용 트랜잭션도 주 DB로 보낸다.
+ * - 같은 스레드(= 같은 요청)는 ThreadLocal로
+ * - 같은 클라이언트의 다음 요청(POST 후 redirect 등)은 쿠키로 (ReadYourWritesFilter)
+ * 요청 스레드가 다른 스레드에 넘긴 조회에는 적용되지 않는다. (ChunkedInLoader는 이때 호출한 스레드에서 읽는다)
+ */
+public class ReadYourWrites {
+
+	static final String COOKIE = "rw-primary-until";
+
+	private final long stickyMillis;
+	private final ThreadLocal<Long> primaryUntil = new ThreadLocal<>();
+	private final ThreadLocal<HttpServletResponse> response = new ThreadLocal<>();
+
+	public ReadYourWrites(long stickyMillis) {
+		this.stickyMillis = stickyMillis;
+	}
+
+	public boolean isSticky() {
+		Long until = primaryUntil.get();
+		return until != null && System.currentTimeMillis() < until;
+	}
+
+	//쓰기 트랜잭션 커밋 직후 (ReplicationRoutingDataSource)
+	void wrote() {
+		long until = System.currentTimeMillis() + stickyMillis;
+		primaryUntil.set(until);
+		HttpServletResponse current = response.get();
+		if (current != null && !current.isCommitted()) {
+			Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+			cookie.setPath("/");
+			cookie.setHttpOnly(true);
+			cookie.setMaxAge((int) Math.max(1, (stickyMillis + 999) / 1000));
+			current.addCookie(cookie);
+		}
+	}
+
+	void begin(HttpServletRequest request, HttpServletResponse response) {
+		this.response.set(response);
+		Cookie[] cookies = request.getCookies();
+		if (cookies == null) {
+			return;
+		}
+		for (Cookie cookie : cookies) {
+			if (COOKIE.equals(cookie.getName())) {
+				try {
+					primaryUntil.set(Long.parseLong(cookie.getValue()));
+				} catch (NumberFormatException e) {
+					//잘못된 쿠키는 무시
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		primaryUntil.remove();
+		response.remove();
+	}
+}
@@ -0,0 +1,33 @@
+package jpabook.jpashop.datasource;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 요청마다 read-your-writes 쿠키를 읽고, 요청이 끝나면 스레드 상태를 지운다.
+ * 쿠키는 응답이 커밋되기 전에 써야 해서 인터셉터가 아닌 필터에서 응답을 잡아 둔다.
+ */
+@RequiredArgsConstructor
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+	private final ReadYourWrites readYourWrites;
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		readYourWrites.begin(request, response);
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			readYourWrites.clear();
+		}
+	}
+}
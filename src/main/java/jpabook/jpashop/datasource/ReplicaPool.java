@@ -0,0 +1,200 @@
+package jpabook.jpashop.datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 주 DB와 복제본 DataSource, 복제본 상태.
+ *
+ * 복제 지연은 heartbeat 테이블로 잰다.
+ * 주기마다 주 DB의 replication_heartbeat에 현재 시각을 쓰고, 복제본에서 그 값을 읽어 (현재 시각 - 읽은 값)을 지연으로 본다.
+ * 시각은 애플리케이션이 쓰고 읽으므로 DB 서버끼리 시계가 달라도 상관없다.
+ * 연결이 안 되거나, heartbeat가 없거나, 지연이 maxLagMillis를 넘으면 다음 검사까지 읽기에서 뺀다.
+ */
+@Slf4j
+public class ReplicaPool {
+
+	static final String PRIMARY = "primary";
+
+	private static final int CHECK_TIMEOUT_SECONDS = 1;
+	private static final String HEARTBEAT_DDL = "create table if not exists replication_heartbeat (id int primary key, beat_at bigint not null)";
+	private static final String HEARTBEAT_WRITE = "merge into replication_heartbeat key (id) values (1, ?)";
+	private static final String HEARTBEAT_READ = "select beat_at from replication_heartbeat where id = 1";
+
+	private final DataSource primary;
+	private final List<Replica> replicas = new ArrayList<>();
+	private final long maxLagMillis;
+	private final AtomicInteger sequence = new AtomicInteger();
+	private ScheduledExecutorService scheduler;
+	private boolean heartbeatTableReady;
+
+	public ReplicaPool(DataSource primary, Map<String, DataSource> replicas, long maxLagMillis) {
+		this.primary = primary;
+		replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+		this.maxLagMillis = maxLagMillis;
+	}
+
+	public DataSource getPrimary() {
+		return primary;
+	}
+
+	//AbstractRoutingDataSource.setTargetDataSources 용
+	Map<Object, Object> targets() {
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		replicas.forEach(replica -> targets.put(replica.name, replica.dataSource));
+		return targets;
+	}
+
+	//정상인 복제본 중 하나 (라운드로빈). 없으면 null.
+	String nextHealthy() {
+		int size = replicas.size();
+		if (size == 0) {
+			return null;
+		}
+		int start = Math.floorMod(sequence.getAndIncrement(), size);
+		for (int i = 0; i < size; i++) {
+			Replica replica = replicas.get((start + i) % size);
+			if (replica.healthy) {
+				return replica.name;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * heartbeat를 쓰고 복제본 상태를 갱신한다.
+	 */
+	public synchronized void check() {
+		writeHeartbeat();
+		for (Replica replica : replicas) {
+			replica.check();
+		}
+	}
+
+	public List<ReplicaStatus> status() {
+		List<ReplicaStatus> status = new ArrayList<>();
+		for (Replica replica : replicas) {
+			status.add(new ReplicaStatus(replica.name, replica.healthy, replica.lagMillis, replica.lastError));
+		}
+		return status;
+	}
+
+	public synchronized void start(long intervalMillis) {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "replica-check");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::checkQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	//스케줄러에서 예외가 나면 이후 실행이 멈추므로 삼킨다.
+	private void checkQuietly() {
+		try {
+			check();
+		} catch (RuntimeException e) {
+			log.warn("복제본 검사 실패", e);
+		}
+	}
+
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		closeQuietly(primary);
+		replicas.forEach(replica -> closeQuietly(replica.dataSource));
+	}
+
+	private void writeHeartbeat() {
+		try (Connection connection = primary.getConnection()) {
+			if (!heartbeatTableReady) {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute(HEARTBEAT_DDL);
+				}
+				heartbeatTableReady = true;
+			}
+			try (PreparedStatement statement = connection.prepareStatement(HEARTBEAT_WRITE)) {
+				statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+				statement.setLong(1, System.currentTimeMillis());
+				statement.executeUpdate();
+			}
+			if (!connection.getAutoCommit()) {
+				connection.commit();
+			}
+		} catch (SQLException e) {
+			log.warn("heartbeat 기록 실패: {}", e.getMessage());
+		}
+	}
+
+	private static void closeQuietly(DataSource dataSource) {
+		if (dataSource instanceof AutoCloseable) {
+			try {
+				((AutoCloseable) dataSource).close();
+			} catch (Exception e) {
+				log.warn("DataSource 종료 실패", e);
+			}
+		}
+	}
+
+	private class Replica {
+		final String name;
+		final DataSource dataSource;
+		volatile boolean healthy;
+		volatile long lagMillis = -1;
+		volatile String lastError;
+
+		Replica(String name, DataSource dataSource) {
+			this.name = name;
+			this.dataSource = dataSource;
+		}
+
+		void check() {
+			boolean wasHealthy = healthy;
+			try (Connection connection = dataSource.getConnection();
+					Statement statement = connection.createStatement()) {
+				statement.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+				try (ResultSet rs = statement.executeQuery(HEARTBEAT_READ)) {
+					if (rs.next()) {
+						lagMillis = Math.max(0, System.currentTimeMillis() - rs.getLong(1));
+						healthy = lagMillis <= maxLagMillis;
+						lastError = healthy ? null : "복제 지연 " + lagMillis + "ms";
+					} else {
+						lagMillis = -1;
+						healthy = false;
+						lastError = "heartbeat 없음";
+					}
+				}
+			} catch (SQLException e) {
+				lagMillis = -1;
+				healthy = false;
+				lastError = e.getMessage();
+			}
+			if (wasHealthy != healthy) {
+				if (healthy) {
+					log.info("복제본 [{}] 읽기 복귀 (지연 {}ms)", name, lagMillis);
+				} else {
+					log.warn("복제본 [{}] 읽기 제외: {}", name, lastError);
+				}
+			}
+		}
+	}
+}
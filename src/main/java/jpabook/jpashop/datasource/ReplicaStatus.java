@@ -0,0 +1,16 @@
+package jpabook.jpashop.datasource;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 복제본 상태 (/monitoring/replicas)
+ */
+@Getter
+@AllArgsConstructor
+public class ReplicaStatus {
+	private String name;
+	private boolean healthy;
+	private long lagMillis;		//마지막 검사 시점의 지연. 검사 실패면 -1
+	private String lastError;
+}
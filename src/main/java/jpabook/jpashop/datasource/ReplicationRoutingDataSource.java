@@ -0,0 +1,46 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 읽기 전용 트랜잭션은 복제본으로, 나머지는 주 DB로 보낸다.
+ * - @Transactional(readOnly = true) : 정상인 복제본 (라운드로빈). 없거나 read-your-writes 중이거나 PrimaryReads 안이면 주 DB
+ * - 쓰기 트랜잭션, 트랜잭션 밖 : 주 DB
+ *
+ * 커넥션을 얻는 시점에 트랜잭션이 readOnly인지 알아야 하므로 LazyConnectionDataSourceProxy로 감싸서 쓴다.
+ * (JpaTransactionManager는 readOnly 표시를 하기 전에 커넥션을 먼저 얻는다)
+ */
+public class ReplicationRoutingDataSource extends AbstractRoutingDataSource {
+
+	private final ReplicaPool replicaPool;
+	private final ReadYourWrites readYourWrites;
+
+	public ReplicationRoutingDataSource(ReplicaPool replicaPool, ReadYourWrites readYourWrites) {
+		this.replicaPool = replicaPool;
+		this.readYourWrites = readYourWrites;
+		setTargetDataSources(replicaPool.targets());
+		setDefaultTargetDataSource(replicaPool.getPrimary());
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			if (TransactionSynchronizationManager.isActualTransactionActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void afterCommit() {
+						readYourWrites.wrote();
+					}
+				});
+			}
+			return ReplicaPool.PRIMARY;
+		}
+		if (readYourWrites.isSticky() || PrimaryReads.isActive()) {
+			return ReplicaPool.PRIMARY;
+		}
+		String replica = replicaPool.nextHealthy();
+		return replica != null ? replica : ReplicaPool.PRIMARY;
+	}
+}
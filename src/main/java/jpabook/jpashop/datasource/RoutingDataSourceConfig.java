@@ -0,0 +1,68 @@
+package jpabook.jpashop.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import jpabook.jpashop.datasource.RoutingProperties.Replica;
+
+/**
+ * app.datasource.routing.enabled=true 이면 DataSource를 주 DB + 복제본 라우팅으로 바꾼다.
+ * 주 DB, 복제본 DataSource는 빈으로 등록하지 않는다. (DataSource 빈이 여러 개면 주입과 p6spy 래핑이 겹친다)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.routing", name = "enabled", havingValue = "true")
+public class RoutingDataSourceConfig {
+
+	//복제본이 죽었을 때 읽기 요청이 오래 붙잡혀 있지 않도록
+	private static final long REPLICA_CONNECTION_TIMEOUT_MILLIS = 1000;
+
+	@Bean
+	public ReadYourWrites readYourWrites(RoutingProperties properties) {
+		return new ReadYourWrites(properties.getReadYourWritesMillis());
+	}
+
+	@Bean(destroyMethod = "close")
+	public ReplicaPool replicaPool(DataSourceProperties primaryProperties, RoutingProperties properties) {
+		HikariDataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+		primary.setPoolName("primary");
+
+		Map<String, DataSource> replicas = new LinkedHashMap<>();
+		for (Replica replica : properties.getReplicas()) {
+			HikariDataSource dataSource = new HikariDataSource();
+			dataSource.setPoolName(replica.getName());
+			dataSource.setJdbcUrl(replica.getUrl());
+			dataSource.setUsername(replica.getUsername());
+			dataSource.setPassword(replica.getPassword());
+			dataSource.setReadOnly(true);
+			dataSource.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT_MILLIS);
+			replicas.put(replica.getName(), dataSource);
+		}
+
+		ReplicaPool replicaPool = new ReplicaPool(primary, replicas, properties.getMaxLagMillis());
+		replicaPool.start(properties.getCheckIntervalMillis());
+		return replicaPool;
+	}
+
+	@Bean
+	public DataSource dataSource(ReplicaPool replicaPool, ReadYourWrites readYourWrites) {
+		ReplicationRoutingDataSource routing = new ReplicationRoutingDataSource(replicaPool, readYourWrites);
+		routing.afterPropertiesSet();
+		return new LazyConnectionDataSourceProxy(routing);
+	}
+
+	@Bean
+	public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReadYourWrites readYourWrites) {
+		return new FilterRegistrationBean<>(new ReadYourWritesFilter(readYourWrites));
+	}
+}
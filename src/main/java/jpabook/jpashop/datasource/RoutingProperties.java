@@ -0,0 +1,39 @@
+package jpabook.jpashop.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 읽기/쓰기 DataSource 분리 설정 (app.datasource.routing.*)
+ * 주 DB는 spring.datasource.* 를 그대로 쓰고, 복제본만 여기에 적는다.
+ */
+@Component
+@ConfigurationProperties(prefix = "app.datasource.routing")
+@Getter @Setter
+public class RoutingProperties {
+
+	private boolean enabled = false;
+
+	private List<Replica> replicas = new ArrayList<>();
+
+	//heartbeat가 이보다 오래되면 복제 지연으로 보고 읽기에서 뺀다.
+	private long maxLagMillis = 1000;
+	private long checkIntervalMillis = 1000;
+
+	//쓰기 커밋 후 이 시간 동안은 같은 요청(과 같은 클라이언트의 다음 요청)도 주 DB에서 읽는다.
+	private long readYourWritesMillis = 5000;
+
+	@Getter @Setter
+	public static class Replica {
+		private String name;
+		private String url;
+		private String username;
+		private String password;
+	}
+}
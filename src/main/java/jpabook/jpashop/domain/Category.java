@@ -1,5 +1,6 @@
 package jpabook.jpashop.domain;
 
+import static javax.persistence.CascadeType.ALL;
 import static javax.persistence.FetchType.LAZY;
 
 import java.util.ArrayList;
@@ -9,17 +10,21 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
 @Getter @Setter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Category {
 	@Id @GeneratedValue
 	@Column(name = "category_id")
@@ -30,7 +35,8 @@ public class Category {
 	@ManyToMany
 	@JoinTable(name = "category_item",
 		joinColumns = @JoinColumn(name = "category_id"),
-		inverseJoinColumns = @JoinColumn(name = "item_id"))
+		inverseJoinColumns = @JoinColumn(name = "item_id"),
+		indexes = @Index(name = "idx_category_item_category", columnList = "category_id, item_id")) //하위 카테고리 상품 조회
 	private List<Item> items = new ArrayList<>();
 	
 	@ManyToOne(fetch = LAZY)
@@ -40,9 +46,32 @@ public class Category {
 	@OneToMany(mappedBy = "parent")
 	private List<Category> child = new ArrayList<>();
 	
+	//closure table에서 이 카테고리가 자손인 줄 (자기 자신 포함)
+	@OneToMany(mappedBy = "descendant", cascade = ALL)
+	private List<CategoryClosure> ancestors = new ArrayList<>();
+	
+	//==생성 메서드==//
+	public static Category createCategory(String name) {
+		Category category = new Category();
+		category.setName(name);
+		category.ancestors.add(new CategoryClosure(category, category, 0));
+		return category;
+	}
+	
 	//==연관관계 메서드==//
+	/**
+	 * 자식 카테고리를 붙이면서 closure table 줄도 만든다.
+	 * 자식의 조상 = 내 조상 전부(depth + 1). 자식은 아직 자손이 없는 새 카테고리여야 한다.
+	 * (이미 트리에 붙은 카테고리를 옮기려면 하위 트리 전체의 closure를 다시 써야 해서 지원하지 않는다)
+	 */
 	public void addChildCategory(Category child) {
+		if (child.getParent() != null || child.ancestors.size() > 1 || !child.getChild().isEmpty()) {
+			throw new IllegalStateException("이미 트리에 속한 카테고리는 옮길 수 없습니다.");
+		}
 		this.child.add(child);
 		child.setParent(this);
+		for (CategoryClosure closure : ancestors) {
+			child.ancestors.add(new CategoryClosure(closure.getAncestor(), child, closure.getDepth() + 1));
+		}
 	}
 }
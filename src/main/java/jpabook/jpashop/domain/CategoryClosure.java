@@ -0,0 +1,58 @@
+package jpabook.jpashop.domain;
+
+import static javax.persistence.FetchType.LAZY;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 카테고리 closure table.
+ * 조상-자손 쌍마다 한 줄. 자기 자신도 depth 0으로 들어간다.
+ * "이 카테고리와 모든 하위 카테고리"를 재귀 없이 ancestor_id 한 조건으로 찾을 수 있다. (PK 인덱스)
+ *
+ * Category.addChildCategory가 만들고 Category를 저장할 때 cascade로 같이 저장된다.
+ */
+@Entity
+@Table(name = "category_closure", indexes = @Index(name = "idx_category_closure_descendant", columnList = "descendant_id, depth")) //상위 경로
+@IdClass(CategoryClosure.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class CategoryClosure {
+
+	@Id
+	@ManyToOne(fetch = LAZY)
+	@JoinColumn(name = "ancestor_id")
+	private Category ancestor;
+
+	@Id
+	@ManyToOne(fetch = LAZY)
+	@JoinColumn(name = "descendant_id")
+	private Category descendant;
+
+	private int depth;
+
+	CategoryClosure(Category ancestor, Category descendant, int depth) {
+		this.ancestor = ancestor;
+		this.descendant = descendant;
+		this.depth = depth;
+	}
+
+	@NoArgsConstructor
+	@EqualsAndHashCode
+	public static class Key implements Serializable {
+		private Long ancestor;
+		private Long descendant;
+	}
+}
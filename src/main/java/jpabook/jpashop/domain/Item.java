@@ -9,17 +9,19 @@ import javax.persistence.DiscriminatorColumn;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Inheritance;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.Table;
 
-import jpabook.jpashop.domain.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
 
 @Entity
 @Inheritance(strategy = SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
+@Table(indexes = @Index(name = "idx_item_name", columnList = "name"))	//상품명 검색
 @Getter @Setter
 public abstract class Item {
 	@Id @GeneratedValue
@@ -35,23 +37,6 @@ public abstract class Item {
 	@ManyToMany(mappedBy = "items")
 	private List<Category> categories;
 	
-	//==비즈니스 로직==//
-	/*
-	 * stock 증가
-	 */
-	public void addStock(int quantity) {
-		this.stockQuantity += quantity;
-	}
-	
-	
-	/*
-	 * stock 감소
-	 */
-	public void removeStock(int quantity) {
-		if(this.stockQuantity < quantity) {
-			throw new NotEnoughStockException("need more stock");
-		}
-		this.stockQuantity -= quantity;
-	}
+	//재고 증가/감소는 동시성 때문에 엔티티가 아니라 ItemRepository.addStock/removeStock(조건부 update)으로 한다.
 	
 }
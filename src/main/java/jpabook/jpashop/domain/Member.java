@@ -9,6 +9,8 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -16,6 +18,7 @@ import lombok.Getter;
 import lombok.Setter;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_member_name", columnNames = "name")) //회원 이름 중복 방지 + 이름 조회 인덱스
 @Getter @Setter
 public class Member {
 	@Id @GeneratedValue
@@ -14,6 +14,7 @@ import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
@@ -26,7 +27,10 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+		@Index(name = "idx_orders_order_date_id", columnList = "order_date, order_id"),	//keyset 페이징, 주문일 검색
+		@Index(name = "idx_orders_status_order_date", columnList = "status, order_date"),	//주문상태 (+ 주문일) 검색
+		@Index(name = "idx_orders_total_amount", columnList = "total_amount")})			//주문 금액 검색
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
@@ -45,11 +49,16 @@ public class Order {
 	@JoinColumn(name = "delivery_id")
 	private Delivery delivery;
 	
+	@Column(name = "order_date")
 	private LocalDateTime orderDate;
 	
 	@Enumerated(EnumType.STRING)
 	private OrderStatus status; //[ORDER, CANCEL]
 	
+	//주문 금액. 주문 시점에 계산해서 저장한다. (금액 검색용, 주문상품을 로딩하지 않아도 됨)
+	@Column(name = "total_amount")
+	private Long totalAmount;
+	
 	//==연관관계 메서드==//
 	public void setMember(Member member) {
 		this.member = member;
@@ -77,12 +86,19 @@ public class Order {
 		order.setStatus(OrderStatus.ORDER);
 		order.setOrderDate(LocalDateTime.now());
 		
+		long totalAmount = 0;
+		for(OrderItem orderItem : orderItems) {
+			totalAmount += (long) orderItem.getOrderPrice() * orderItem.getCount();
+		}
+		order.setTotalAmount(totalAmount);
+		
 		return order;
 	}
 	
 	//== 비즈니스 로직 ==//
 	/*
 	 * 주문 취소
+	 * 재고 복구는 동시성 때문에 OrderService에서 ItemRepository.addStock으로 한다.
 	 */
 	public void cancel() {
 		if(delivery.getStatus() == DeliveryStatus.COMP) {
@@ -90,9 +106,6 @@ public class Order {
 		}
 		
 		this.setStatus(OrderStatus.CANCEL);
-		for(OrderItem orderItem : orderItems) {
-			orderItem.cancel();
-		}
 	}
 	
 	//==조회 로직==//
@@ -5,9 +5,13 @@ import static javax.persistence.FetchType.LAZY;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -19,8 +23,17 @@ import lombok.Setter;
 @Entity
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Table(indexes = {
+		@Index(name = "idx_order_item_order", columnList = "order_id"),
+		@Index(name = "idx_order_item_item", columnList = "item_id")})	//상품명으로 주문 검색
+@SequenceGenerator(name = "order_item_seq_generator", sequenceName = "order_item_seq", allocationSize = OrderItem.ID_ALLOCATION_SIZE)
 public class OrderItem {
-	@Id @GeneratedValue
+	
+	//장바구니 주문은 주문상품이 여러 개라서 시퀀스를 100개씩 미리 받아온다. (주문상품마다 시퀀스 조회 X)
+	//기존 DB의 시퀀스 시작 위치는 OrderItemSequenceAligner가 맞춘다.
+	public static final int ID_ALLOCATION_SIZE = 100;
+	
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq_generator")
 	@Column(name="order_item_id")
 	private Long id;
 	
@@ -38,20 +51,17 @@ public class OrderItem {
 	private int count; //주문 수량
 
 	//==생성 메서드 ==//
+	/**
+	 * 재고는 건드리지 않는다. 재고 차감/복구는 OrderService에서 ItemRepository의 조건부 update(또는 HotStock)로 한다.
+	 * 엔티티에서 읽고-검사하고-쓰면 동시 주문이 초과 판매되고, dirty checking이 예전 값으로 덮어쓴다.
+	 */
 	public static OrderItem createOrderItem(Item item, int orderPrice, int count) {
 		OrderItem orderItem = new OrderItem();
 		orderItem.setItem(item);
 		orderItem.setOrderPrice(orderPrice);
 		orderItem.setCount(count);
-		
-		item.removeStock(count);
 		return orderItem;
 	}
-	
-	//== 비즈니스 로직 ==//
-	public void cancel() {
-		getItem().addStock(count);
-	}
 
 	//==조회 로직==//
 	/**
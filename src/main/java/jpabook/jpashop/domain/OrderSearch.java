@@ -1,11 +1,38 @@
 package jpabook.jpashop.domain;
 
+import java.time.LocalDate;
+
+import javax.validation.constraints.AssertTrue;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.util.StringUtils;
+
 import lombok.Getter;
 import lombok.Setter;
 
 @Getter @Setter
 public class OrderSearch {
 	
-	private String memberName;
+	private String memberName;		//회원명 (앞부분 일치)
 	private OrderStatus orderStatus; //주문상태 [ORDER, CANCLE]
+	
+	@DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+	private LocalDate fromDate;		//주문일 (포함)
+	@DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+	private LocalDate toDate;		//주문일 (포함)
+	
+	private Long minTotalPrice;		//주문 금액
+	private Long maxTotalPrice;
+	
+	private String itemName;		//주문한 상품명 (앞부분 일치)
+	
+	/**
+	 * 조건이 하나라도 있는지. 빈 조건은 전체 주문이다.
+	 * 목록 조회에서는 괜찮지만 일괄 취소처럼 조건으로 데이터를 바꿀 때는 @Valid로 막는다.
+	 */
+	@AssertTrue(message = "검색 조건이 하나 이상 있어야 합니다.")
+	public boolean isFiltered() {
+		return orderStatus != null || StringUtils.hasText(memberName) || fromDate != null || toDate != null
+				|| minTotalPrice != null || maxTotalPrice != null || StringUtils.hasText(itemName);
+	}
 }
@@ -0,0 +1,76 @@
+package jpabook.jpashop.domain;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Embedded;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 주문 목록 조회용 비정규화 테이블. (/api/v4/simple-orders, 관리자 주문 목록 /orders)
+ * orders + member + delivery를 조인하지 않도록 OrderSimpleQueryDto 컬럼과 주문 금액을 한 줄에 모아둔다.
+ *
+ * 원본이 바뀌는 트랜잭션 안에서 같이 갱신한다. (OrderService, MemberService)
+ * 연관관계는 두지 않는다. 원본 테이블에 FK도 걸지 않고 id만 들고 있는다.
+ */
+@Entity
+@Table(name = "order_summary", indexes = {
+		@Index(name = "idx_order_summary_member", columnList = "member_id"),		//회원 이름 변경
+		@Index(name = "idx_order_summary_delivery", columnList = "delivery_id"),		//배송지 변경
+		//관리자 주문 목록(/orders) 정렬, 검색
+		@Index(name = "idx_order_summary_member_name", columnList = "member_name"),
+		@Index(name = "idx_order_summary_status_date", columnList = "status, order_date"),
+		@Index(name = "idx_order_summary_order_date", columnList = "order_date"),
+		@Index(name = "idx_order_summary_total_amount", columnList = "total_amount")})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OrderSummary {
+
+	@Id
+	@Column(name = "order_id")
+	private Long orderId;
+
+	@Column(name = "member_id")
+	private Long memberId;
+
+	@Column(name = "member_name")
+	private String memberName;
+
+	@Column(name = "order_date")
+	private LocalDateTime orderDate;
+
+	@Enumerated(EnumType.STRING)
+	private OrderStatus status;
+
+	@Column(name = "delivery_id")
+	private Long deliveryId;
+
+	@Embedded
+	private Address address;
+
+	@Column(name = "total_amount")
+	private Long totalAmount;
+
+	//==생성 메서드==//
+	public static OrderSummary of(Order order) {
+		OrderSummary summary = new OrderSummary();
+		summary.orderId = order.getId();
+		summary.memberId = order.getMember().getId();
+		summary.memberName = order.getMember().getName();
+		summary.orderDate = order.getOrderDate();
+		summary.status = order.getStatus();
+		summary.deliveryId = order.getDelivery().getId();
+		summary.address = order.getDelivery().getAddress();
+		summary.totalAmount = order.getTotalAmount();
+		return summary;
+	}
+}
@@ -0,0 +1,51 @@
+package jpabook.jpashop.idempotency;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 클라이언트가 보낸 멱등 키와 그 요청으로 만들어진 주문.
+ * 키가 PK라서 같은 키로 동시에 들어오면 한쪽만 insert된다. 주문과 같은 트랜잭션에서 만들므로 주문이 롤백되면 키도 없다.
+ * fingerprint는 요청 내용의 해시. 같은 키를 다른 주문에 다시 쓰는 것을 막는다.
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = {
+		@Index(name = "idx_idempotency_key_created_at", columnList = "created_at")})		//보관 기간 지난 키 정리
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class IdempotencyKey {
+
+	static final int MAX_KEY_LENGTH = 64;
+
+	@Id
+	@Column(name = "idempotency_key", length = MAX_KEY_LENGTH)
+	private String key;
+
+	@Column(name = "fingerprint", length = 32, nullable = false)
+	private String fingerprint;
+
+	@Column(name = "order_id")
+	private Long orderId;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	IdempotencyKey(String key, String fingerprint) {
+		this.key = key;
+		this.fingerprint = fingerprint;
+		this.createdAt = LocalDateTime.now();
+	}
+
+	void completed(Long orderId) {
+		this.orderId = orderId;
+	}
+}
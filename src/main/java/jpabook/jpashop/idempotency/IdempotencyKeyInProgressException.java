@@ -0,0 +1,11 @@
+package jpabook.jpashop.idempotency;
+
+/**
+ * 같은 멱등 키의 앞 요청이 아직 끝나지 않았다. 잠시 뒤 같은 키로 다시 보내면 그 주문 id를 받는다. (409, ApiExceptionHandler)
+ */
+public class IdempotencyKeyInProgressException extends IllegalStateException {
+
+	public IdempotencyKeyInProgressException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
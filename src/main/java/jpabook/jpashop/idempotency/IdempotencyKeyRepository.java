@@ -0,0 +1,35 @@
+package jpabook.jpashop.idempotency;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class IdempotencyKeyRepository {
+
+	private final EntityManager em;
+
+	public IdempotencyKey find(String key) {
+		return em.find(IdempotencyKey.class, key);
+	}
+
+	/**
+	 * 키를 선점한다. 바로 insert해서 다른 트랜잭션이 같은 키를 잡고 있으면 여기서 기다리거나 실패한다.
+	 * 이미 있는 키면 DataIntegrityViolationException.
+	 */
+	public void claim(IdempotencyKey idempotencyKey) {
+		em.persist(idempotencyKey);
+		em.flush();
+	}
+
+	public int deleteCreatedBefore(LocalDateTime time) {
+		return em.createQuery("delete from IdempotencyKey k where k.createdAt < :time")
+				.setParameter("time", time)
+				.executeUpdate();
+	}
+}
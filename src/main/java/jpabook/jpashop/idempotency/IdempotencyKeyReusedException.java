@@ -0,0 +1,11 @@
+package jpabook.jpashop.idempotency;
+
+/**
+ * 이미 다른 내용의 주문에 쓴 멱등 키로 다시 보냈다. 다시 보내도 결과가 같으므로 클라이언트가 키를 새로 만들어야 한다. (422, ApiExceptionHandler)
+ */
+public class IdempotencyKeyReusedException extends IllegalStateException {
+
+	public IdempotencyKeyReusedException(String message) {
+		super(message);
+	}
+}
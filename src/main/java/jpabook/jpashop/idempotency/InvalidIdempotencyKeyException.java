@@ -0,0 +1,11 @@
+package jpabook.jpashop.idempotency;
+
+/**
+ * 멱등 키가 비어 있거나 너무 길다. (400, ApiExceptionHandler)
+ */
+public class InvalidIdempotencyKeyException extends IllegalArgumentException {
+
+	public InvalidIdempotencyKeyException(String message) {
+		super(message);
+	}
+}
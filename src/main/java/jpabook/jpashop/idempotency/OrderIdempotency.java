@@ -0,0 +1,188 @@
+package jpabook.jpashop.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 멱등 키로 주문 생성을 한 번만 실행한다. (Idempotency-Key 헤더, 주문 폼의 idempotencyKey)
+ * 클라이언트가 타임아웃 후 같은 키로 다시 보내면 주문을 새로 만들지 않고 처음 만든 주문 id를 돌려준다.
+ *
+ * - 메모리: 완료된 키 -> 주문 id. 크기와 보관 기간으로 비운다. 여기서 찾으면 DB도 트랜잭션도 쓰지 않는다.
+ * - DB(idempotency_key): 주문과 같은 트랜잭션에서 키를 먼저 insert하고 주문을 만든다.
+ *   같은 키가 동시에 들어오면 나중 요청은 키 insert에서 앞 요청이 끝나기를 기다렸다가 실패하고, 앞 요청의 주문 id를 읽어 간다.
+ *   다시 시도하는 것은 키 insert가 실패했을 때뿐이다. 주문을 만들다 난 예외(재고 부족, 다른 제약 위반, 데드락 등)는 그대로 던진다.
+ *   재시작 후나 메모리에서 밀려난 키도 여기서 찾는다. 보관 기간이 지난 키는 주기적으로 지운다.
+ */
+@Slf4j
+@Component
+public class OrderIdempotency {
+
+	//앞 요청이 끝나지 않았는데 키 insert가 먼저 실패하는 DB도 있어서 몇 번 다시 본다.
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long PURGE_INTERVAL_MINUTES = 10;
+
+	private final IdempotencyKeyRepository idempotencyKeyRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final Duration retention;
+	private final Cache<String, Placed> placed;
+	private ScheduledExecutorService scheduler;
+
+	public OrderIdempotency(IdempotencyKeyRepository idempotencyKeyRepository, PlatformTransactionManager transactionManager,
+			@Value("${app.idempotency.max-entries:100000}") long maxEntries,
+			@Value("${app.idempotency.retention-hours:24}") long retentionHours) {
+		this.idempotencyKeyRepository = idempotencyKeyRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.retention = Duration.ofHours(retentionHours);
+		this.placed = Caffeine.newBuilder()
+				.maximumSize(maxEntries)
+				.expireAfterWrite(retention)
+				.build();
+	}
+
+	@PostConstruct
+	public void start() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "idempotency-key-purge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				purge();
+			} catch (RuntimeException e) {
+				log.warn("멱등 키 정리 실패", e);
+			}
+		}, PURGE_INTERVAL_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param key 클라이언트가 만든 키. 없으면 그냥 주문한다.
+	 * @param request 요청 내용 (회원, 상품, 수량). 같은 키인데 내용이 다르면 IdempotencyKeyReusedException
+	 * @param placeOrder 주문을 만들고 주문 id를 돌려준다. (OrderService) 키와 같은 트랜잭션에서 실행된다.
+	 * @throws InvalidIdempotencyKeyException 키가 비어 있거나 너무 길다.
+	 * @throws IdempotencyKeyInProgressException 같은 키의 앞 요청이 아직 처리 중이다.
+	 */
+	public Long execute(String key, String request, Supplier<Long> placeOrder) {
+		if (key == null) {
+			return placeOrder.get();
+		}
+		validate(key);
+		String fingerprint = DigestUtils.md5DigestAsHex(request.getBytes(StandardCharsets.UTF_8));
+
+		Placed cached = placed.getIfPresent(key);
+		if (cached != null) {
+			return cached.orderIdFor(fingerprint);
+		}
+
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return transactionTemplate.execute(status -> placeOnce(key, fingerprint, placeOrder));
+			} catch (KeyConflictException e) {
+				//같은 키로 다른 요청이 먼저 주문했다. 그 주문을 다시 읽는다.
+				if (attempt == MAX_ATTEMPTS) {
+					throw new IdempotencyKeyInProgressException("같은 멱등 키의 주문이 아직 처리 중입니다.", e.getCause());
+				}
+			}
+		}
+	}
+
+	private Long placeOnce(String key, String fingerprint, Supplier<Long> placeOrder) {
+		IdempotencyKey existing = idempotencyKeyRepository.find(key);
+		if (existing != null) {
+			Placed done = new Placed(existing.getFingerprint(), existing.getOrderId());
+			placed.put(key, done);
+			return done.orderIdFor(fingerprint);
+		}
+
+		IdempotencyKey idempotencyKey = new IdempotencyKey(key, fingerprint);
+		try {
+			idempotencyKeyRepository.claim(idempotencyKey);
+		} catch (DataIntegrityViolationException | ConcurrencyFailureException e) {
+			//트랜잭션의 첫 쓰기라서 여기서 난 제약 위반/잠금 실패는 이 키 insert 때문이다.
+			throw new KeyConflictException(e);
+		}
+		Long orderId = placeOrder.get();
+		idempotencyKey.completed(orderId);
+
+		//커밋 전에 올리면 롤백된 주문 id를 돌려줄 수 있다.
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				placed.put(key, new Placed(fingerprint, orderId));
+			}
+		});
+		return orderId;
+	}
+
+	void purge() {
+		LocalDateTime before = LocalDateTime.now().minus(retention);
+		Integer deleted = transactionTemplate.execute(status -> idempotencyKeyRepository.deleteCreatedBefore(before));
+		if (deleted != null && deleted > 0) {
+			log.info("보관 기간이 지난 멱등 키 {}개 삭제", deleted);
+		}
+	}
+
+	private static void validate(String key) {
+		if (!StringUtils.hasText(key)) {
+			throw new InvalidIdempotencyKeyException("멱등 키가 비어 있습니다.");
+		}
+		if (key.length() > IdempotencyKey.MAX_KEY_LENGTH) {
+			throw new InvalidIdempotencyKeyException("멱등 키는 " + IdempotencyKey.MAX_KEY_LENGTH + "자 이하여야 합니다.");
+		}
+	}
+
+	//키 insert 실패. execute가 이것만 보고 다시 시도한다. (트랜잭션은 롤백된다)
+	private static class KeyConflictException extends RuntimeException {
+		KeyConflictException(RuntimeException cause) {
+			super(cause);
+		}
+	}
+
+	private static class Placed {
+		final String fingerprint;
+		final Long orderId;
+
+		Placed(String fingerprint, Long orderId) {
+			this.fingerprint = fingerprint;
+			this.orderId = orderId;
+		}
+
+		Long orderIdFor(String requestFingerprint) {
+			if (!fingerprint.equals(requestFingerprint)) {
+				throw new IdempotencyKeyReusedException("이미 다른 주문에 사용한 멱등 키입니다.");
+			}
+			return orderId;
+		}
+	}
+}
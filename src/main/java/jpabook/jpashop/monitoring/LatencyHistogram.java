@@ -0,0 +1,136 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 지연 시간(나노초) 히스토그램. 락 없이 기록한다.
+ *
+ * 2의 거듭제곱 구간마다 8칸으로 나눈 log-linear 버킷이라 어느 값이든 버킷 폭이 값의 12.5% 이하다.
+ * 기록은 버킷 카운터 increment 한 번과 LongAdder 두 번이라 호출당 수십 ns 수준이다.
+ * 분위수는 스냅샷을 떠서 계산하며 버킷 상한값으로 보고한다. (실제보다 최대 12.5% 크게)
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+
+	public void record(long nanos, boolean error) {
+		counts.incrementAndGet(bucketOf(nanos));
+		totalNanos.add(nanos);
+		if (error) {
+			errors.increment();
+		}
+	}
+
+	static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) Math.max(nanos, 0);
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	//버킷에 들어가는 가장 큰 값
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		if (exponent >= 62) {
+			return Long.MAX_VALUE;
+		}
+		int shift = exponent - SUB_BUCKET_BITS;
+		long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+		return new Snapshot(copy, errors.sum(), totalNanos.sum());
+	}
+
+	/**
+	 * 한 시점의 값. 두 스냅샷의 차이(minus)로 구간 통계를 낼 수 있다.
+	 * 버킷과 합계를 따로 읽으므로 기록 중에 뜬 스냅샷은 몇 건 어긋날 수 있다.
+	 */
+	public static class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long errors;
+		private final long totalNanos;
+
+		Snapshot(long[] counts, long errors, long totalNanos) {
+			long count = 0;
+			for (long c : counts) {
+				count += c;
+			}
+			this.counts = counts;
+			this.count = count;
+			this.errors = errors;
+			this.totalNanos = totalNanos;
+		}
+
+		//이전 스냅샷 이후 기록된 것만. reset 등으로 이전 값이 더 크면 자기 자신.
+		public Snapshot minus(Snapshot previous) {
+			if (previous == null || previous.count > count) {
+				return this;
+			}
+			long[] diff = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; i++) {
+				diff[i] = Math.max(0, counts[i] - previous.counts[i]);
+			}
+			return new Snapshot(diff, Math.max(0, errors - previous.errors), Math.max(0, totalNanos - previous.totalNanos));
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		//0 < quantile <= 1
+		public long percentileNanos(double quantile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * count));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return upperBoundOf(i);
+				}
+			}
+			return upperBoundOf(BUCKETS - 1);
+		}
+
+		public long maxNanos() {
+			for (int i = BUCKETS - 1; i >= 0; i--) {
+				if (counts[i] != 0) {
+					return upperBoundOf(i);
+				}
+			}
+			return 0;
+		}
+
+		public double averageMicros() {
+			return count == 0 ? 0 : totalNanos / 1000.0 / count;
+		}
+	}
+}
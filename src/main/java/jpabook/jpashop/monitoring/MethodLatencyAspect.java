@@ -0,0 +1,39 @@
+package jpabook.jpashop.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * @Repository, @Service 빈의 public 메서드 지연 시간, 호출 수, 예외 수를 기록한다.
+ * 트랜잭션 advice보다 바깥에서 재도록 가장 먼저 실행한다. (서비스 메서드 시간에 커밋까지 포함)
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class MethodLatencyAspect {
+
+	private final MethodLatencyRegistry registry;
+
+	@Around("within(jpabook.jpashop..*)" +
+			" && (@within(org.springframework.stereotype.Repository) || @within(org.springframework.stereotype.Service))")
+	public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+		LatencyHistogram histogram = registry.histogram(((MethodSignature) joinPoint.getSignature()).getMethod());
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			Object result = joinPoint.proceed();
+			error = false;
+			return result;
+		} finally {
+			histogram.record(System.nanoTime() - start, error);
+		}
+	}
+}
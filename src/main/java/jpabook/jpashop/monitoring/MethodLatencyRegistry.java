@@ -0,0 +1,93 @@
+package jpabook.jpashop.monitoring;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+import jpabook.jpashop.monitoring.LatencyHistogram.Snapshot;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 저장소/서비스 메서드별 지연 히스토그램 (MethodLatencyAspect가 기록)
+ * 호출마다 찾는 키는 Method 객체라서 문자열을 만들지 않는다. 이름은 처음 한 번만 만든다.
+ */
+@Component
+public class MethodLatencyRegistry {
+
+	private final Map<Method, MethodStats> methods = new ConcurrentHashMap<>();
+
+	public LatencyHistogram histogram(Method method) {
+		MethodStats stats = methods.get(method);
+		if (stats == null) {
+			stats = methods.computeIfAbsent(method, key -> new MethodStats(nameOf(key)));
+		}
+		return stats.histogram;
+	}
+
+	//이름 -> 현재 스냅샷
+	public Map<String, Snapshot> snapshots() {
+		Map<String, Snapshot> result = new TreeMap<>();
+		methods.values().forEach(stats -> result.put(stats.name, stats.histogram.snapshot()));
+		return result;
+	}
+
+	public Map<String, MethodLatency> summary() {
+		Map<String, MethodLatency> result = new TreeMap<>();
+		snapshots().forEach((name, snapshot) -> result.put(name, MethodLatency.of(snapshot)));
+		return result;
+	}
+
+	public void reset() {
+		methods.clear();
+	}
+
+	//OrderService.cancelOrders(Collection) 처럼 오버로딩을 구분할 수 있게 파라미터 타입까지
+	private static String nameOf(Method method) {
+		StringBuilder name = new StringBuilder(method.getDeclaringClass().getSimpleName())
+				.append('.').append(method.getName()).append('(');
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				name.append(',');
+			}
+			name.append(parameterTypes[i].getSimpleName());
+		}
+		return name.append(')').toString();
+	}
+
+	private static class MethodStats {
+		final String name;
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		MethodStats(String name) {
+			this.name = name;
+		}
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class MethodLatency {
+		private long calls;
+		private long errors;
+		private double avgMicros;
+		private double p50Micros;
+		private double p95Micros;
+		private double p99Micros;
+		private double maxMicros;
+
+		static MethodLatency of(Snapshot snapshot) {
+			return new MethodLatency(
+					snapshot.getCount(),
+					snapshot.getErrors(),
+					snapshot.averageMicros(),
+					snapshot.percentileNanos(0.50) / 1000.0,
+					snapshot.percentileNanos(0.95) / 1000.0,
+					snapshot.percentileNanos(0.99) / 1000.0,
+					snapshot.maxNanos() / 1000.0);
+		}
+	}
+}
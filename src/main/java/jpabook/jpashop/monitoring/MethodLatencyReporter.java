@@ -0,0 +1,93 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jpabook.jpashop.monitoring.LatencyHistogram.Snapshot;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 주기마다 직전 구간의 메서드 지연 요약을 로그로 남긴다. (누적값은 /monitoring/latency)
+ * 구간 합계 시간이 큰 메서드부터 MAX_LINES개까지. 호출이 없던 구간은 남기지 않는다.
+ */
+@Slf4j
+@Component
+public class MethodLatencyReporter {
+
+	private static final int MAX_LINES = 20;
+
+	private final MethodLatencyRegistry registry;
+	private final long intervalSeconds;
+	private final Map<String, Snapshot> previous = new HashMap<>();
+	private ScheduledExecutorService scheduler;
+
+	public MethodLatencyReporter(MethodLatencyRegistry registry,
+			@Value("${app.method-latency.log-interval-seconds:60}") long intervalSeconds) {
+		this.registry = registry;
+		this.intervalSeconds = intervalSeconds;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (intervalSeconds <= 0) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "method-latency-report");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(() -> {
+			try {
+				report();
+			} catch (RuntimeException e) {
+				log.warn("메서드 지연 요약 실패", e);
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	synchronized void report() {
+		Map<String, Snapshot> current = registry.snapshots();
+		List<Map.Entry<String, Snapshot>> interval = new ArrayList<>();
+		current.forEach((name, snapshot) -> {
+			Snapshot delta = snapshot.minus(previous.get(name));
+			if (delta.getCount() > 0) {
+				interval.add(new HashMap.SimpleEntry<>(name, delta));
+			}
+		});
+		previous.clear();
+		previous.putAll(current);
+		if (interval.isEmpty()) {
+			return;
+		}
+
+		interval.sort(Comparator.comparingLong((Map.Entry<String, Snapshot> e) -> e.getValue().getTotalNanos()).reversed());
+		StringBuilder message = new StringBuilder("method latency (최근 ").append(intervalSeconds).append("초, 합계 시간 순)");
+		for (Map.Entry<String, Snapshot> entry : interval.subList(0, Math.min(MAX_LINES, interval.size()))) {
+			Snapshot s = entry.getValue();
+			message.append(String.format("%n  %-60s calls=%d errors=%d p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms",
+					entry.getKey(), s.getCount(), s.getErrors(),
+					s.percentileNanos(0.50) / 1e6, s.percentileNanos(0.95) / 1e6, s.percentileNanos(0.99) / 1e6, s.maxNanos() / 1e6));
+		}
+		log.info(message.toString());
+	}
+}
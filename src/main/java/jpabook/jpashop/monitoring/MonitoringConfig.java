@@ -0,0 +1,21 @@
+package jpabook.jpashop.monitoring;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@RequiredArgsConstructor
+public class MonitoringConfig implements WebMvcConfigurer {
+
+	private final SqlStatisticsInterceptor sqlStatisticsInterceptor;
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(sqlStatisticsInterceptor)
+				.addPathPatterns("/**")
+				.excludePathPatterns("/css/**", "/js/**", "/monitoring/**");
+	}
+}
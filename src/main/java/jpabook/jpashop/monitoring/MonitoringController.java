@@ -0,0 +1,128 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jpabook.jpashop.cache.ItemCache;
+import jpabook.jpashop.controller.OrderListFragmentCache;
+import jpabook.jpashop.datasource.ReplicaPool;
+import jpabook.jpashop.datasource.ReplicaStatus;
+import jpabook.jpashop.monitoring.MethodLatencyRegistry.MethodLatency;
+import jpabook.jpashop.monitoring.SqlStatisticsRegistry.EndpointSummary;
+import jpabook.jpashop.outbox.EventStream;
+import jpabook.jpashop.search.ItemSearchIndex;
+import jpabook.jpashop.service.OrderSummaryService;
+import jpabook.jpashop.service.OrderSummaryService.ConsistencyReport;
+import jpabook.jpashop.stock.HotStock;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * actuator 스타일의 모니터링 엔드포인트. 조회와 통계 초기화만 둔다.
+ * 재구성, 핫 상품 켜기/끄기처럼 상태를 바꾸는 작업은 /admin (AdminController)
+ */
+@RestController
+@RequiredArgsConstructor
+public class MonitoringController {
+
+	private final SqlStatisticsRegistry sqlStatisticsRegistry;
+	private final MethodLatencyRegistry methodLatencyRegistry;
+	private final ItemCache itemCache;
+	private final OrderListFragmentCache orderListFragmentCache;
+	private final OrderSummaryService orderSummaryService;
+	private final ObjectProvider<ReplicaPool> replicaPool;
+	private final ItemSearchIndex itemSearchIndex;
+	private final HotStock hotStock;
+	private final EventStream eventStream;
+
+	//엔드포인트별 요청당 평균 statement 수, row 수, JDBC 시간, N+1 의심 SQL
+	@GetMapping("/monitoring/sql")
+	public Map<String, EndpointSummary> sqlStatistics() {
+		return sqlStatisticsRegistry.summary();
+	}
+
+	@DeleteMapping("/monitoring/sql")
+	public void resetSqlStatistics() {
+		sqlStatisticsRegistry.reset();
+	}
+	
+	//저장소/서비스 메서드별 호출 수, 예외 수, 지연 시간 분위수 (기동 또는 reset 이후 누적)
+	@GetMapping("/monitoring/latency")
+	public Map<String, MethodLatency> methodLatency() {
+		return methodLatencyRegistry.summary();
+	}
+	
+	@DeleteMapping("/monitoring/latency")
+	public void resetMethodLatency() {
+		methodLatencyRegistry.reset();
+	}
+	
+	//상품 캐시, 관리자 주문 목록 표 캐시 hit/miss/eviction
+	@GetMapping("/monitoring/cache")
+	public Map<String, CacheStatsDto> cacheStatistics() {
+		Map<String, CacheStatsDto> result = new LinkedHashMap<>();
+		result.put("item", new CacheStatsDto(itemCache.itemStats()));
+		result.put("catalog", new CacheStatsDto(itemCache.catalogStats()));
+		result.put("orderListFragment", new CacheStatsDto(orderListFragmentCache.stats()));
+		return result;
+	}
+	
+	//order_summary 프로젝션과 원본(orders, member, delivery) 비교
+	@GetMapping("/monitoring/order-summary")
+	public ConsistencyReport checkOrderSummary() {
+		return orderSummaryService.check();
+	}
+	
+	//상품 검색 색인 크기, 재구성 후 저장/수정되어 따로 들고 있는 상품 수
+	@GetMapping("/monitoring/item-search")
+	public ItemSearchIndex.Status itemSearch() {
+		return itemSearchIndex.status();
+	}
+	
+	//핫 상품별 메모리 재고, 재고 변경 기록 번호
+	@GetMapping("/monitoring/hot-stock")
+	public HotStock.Status hotStock() {
+		return hotStock.status();
+	}
+	
+	//이벤트 로그 offset 범위, 세그먼트 수, 아직 옮기지 않은 outbox 이벤트 수, 소비자별 offset과 밀린 수
+	@GetMapping("/monitoring/event-log")
+	public EventStream.Status eventLog() {
+		return eventStream.status();
+	}
+	
+	//복제본 상태와 지연 (읽기/쓰기 분리를 켰을 때만)
+	@GetMapping("/monitoring/replicas")
+	public List<ReplicaStatus> replicas() {
+		ReplicaPool pool = replicaPool.getIfAvailable();
+		return pool == null ? Collections.emptyList() : pool.status();
+	}
+	
+	@Data
+	static class CacheStatsDto {
+		private long hitCount;
+		private long missCount;
+		private double hitRate;
+		private long evictionCount;
+		private long loadCount;
+		private double averageLoadPenaltyMillis;
+		
+		CacheStatsDto(CacheStats stats) {
+			hitCount = stats.hitCount();
+			missCount = stats.missCount();
+			hitRate = stats.hitRate();
+			evictionCount = stats.evictionCount();
+			loadCount = stats.loadCount();
+			averageLoadPenaltyMillis = stats.averageLoadPenalty() / 1_000_000.0;
+		}
+	}
+}
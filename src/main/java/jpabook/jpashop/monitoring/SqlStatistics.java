@@ -0,0 +1,104 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import lombok.Getter;
+
+/**
+ * HTTP 요청 하나 동안 실행된 SQL 통계.
+ * 요청 스레드의 ThreadLocal에 붙어서 p6spy 이벤트가 올 때마다 누적된다.
+ * 요청이 다른 스레드에 넘긴 조회(ChunkedInLoader)는 callWith로 같은 통계에 붙인다. 그래서 누적은 동기화한다.
+ *
+ * 바인드 파라미터만 다른 같은 모양의 SQL이 여러 번 나가면 N+1로 본다.
+ * (지연로딩으로 member, delivery, orderItems를 하나씩 조회하는 경우)
+ */
+@Getter
+public class SqlStatistics {
+
+	private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+	//문자열/숫자 리터럴을 ?로 바꿔서 바인드 값만 다른 SQL을 같은 모양으로 만든다.
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private int statementCount;
+	private long rowCount;
+	private long jdbcTimeNanos;
+	private final Map<String, Integer> statementShapes = new HashMap<>();
+
+	public static void begin() {
+		CURRENT.set(new SqlStatistics());
+	}
+
+	public static SqlStatistics current() {
+		return CURRENT.get();
+	}
+
+	public static SqlStatistics end() {
+		SqlStatistics statistics = CURRENT.get();
+		CURRENT.remove();
+		return statistics;
+	}
+
+	/**
+	 * 다른 스레드에서 statistics(요청 스레드의 current())에 쌓으면서 실행한다. 끝나면 원래 상태로 돌려놓는다.
+	 */
+	public static <T> T callWith(SqlStatistics statistics, Supplier<T> work) {
+		SqlStatistics previous = CURRENT.get();
+		if (statistics == null || statistics == previous) {
+			return work.get();
+		}
+		CURRENT.set(statistics);
+		try {
+			return work.get();
+		} finally {
+			if (previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+
+	public synchronized void addStatement(String sql, long elapsedNanos) {
+		statementCount++;
+		jdbcTimeNanos += elapsedNanos;
+		if (sql != null) {
+			statementShapes.merge(normalize(sql), 1, Integer::sum);
+		}
+	}
+
+	public synchronized void addRow(long elapsedNanos) {
+		rowCount++;
+		jdbcTimeNanos += elapsedNanos;
+	}
+
+	public synchronized void addFetchTime(long elapsedNanos) {
+		jdbcTimeNanos += elapsedNanos;
+	}
+
+	/**
+	 * threshold번 이상 반복된 SQL 모양 (N+1 의심)
+	 */
+	public synchronized List<String> findRepeatedStatements(int threshold) {
+		List<String> repeated = new ArrayList<>();
+		statementShapes.forEach((sql, count) -> {
+			if (count >= threshold) {
+				repeated.add(sql);
+			}
+		});
+		return repeated;
+	}
+
+	static String normalize(String sql) {
+		String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+		normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+		return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+	}
+}
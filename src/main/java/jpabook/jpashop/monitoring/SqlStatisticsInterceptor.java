@@ -0,0 +1,56 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 요청 시작 시 SqlStatistics를 열고, 끝나면 엔드포인트별로 집계한다.
+ * 같은 모양의 SQL이 threshold번 이상 반복되면 N+1로 보고 경고 로그를 남긴다.
+ */
+@Slf4j
+@Component
+public class SqlStatisticsInterceptor implements HandlerInterceptor {
+
+	private final SqlStatisticsRegistry registry;
+	private final int nPlusOneThreshold;
+
+	public SqlStatisticsInterceptor(SqlStatisticsRegistry registry,
+			@Value("${app.sql-statistics.n-plus-one-threshold:3}") int nPlusOneThreshold) {
+		this.registry = registry;
+		this.nPlusOneThreshold = nPlusOneThreshold;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		SqlStatistics.begin();
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		SqlStatistics statistics = SqlStatistics.end();
+		if (statistics == null) {
+			return;
+		}
+		String endpoint = toEndpoint(request);
+		List<String> repeated = statistics.findRepeatedStatements(nPlusOneThreshold);
+		if (!repeated.isEmpty()) {
+			log.warn("N+1 의심 [{}] statements={} repeated={}", endpoint, statistics.getStatementCount(), repeated);
+		}
+		registry.record(endpoint, statistics, repeated);
+	}
+
+	private String toEndpoint(HttpServletRequest request) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+	}
+}
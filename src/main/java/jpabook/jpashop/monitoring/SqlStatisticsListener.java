@@ -0,0 +1,39 @@
+package jpabook.jpashop.monitoring;
+
+import java.sql.SQLException;
+
+import org.springframework.stereotype.Component;
+
+import com.p6spy.engine.common.ResultSetInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+
+/**
+ * p6spy-spring-boot-starter는 JdbcEventListener 빈을 자동으로 등록해준다.
+ * 실행된 statement, 읽은 row 수, JDBC에서 보낸 시간을 현재 요청의 SqlStatistics에 쌓는다.
+ * 요청 밖(스케줄러, 초기화 등)에서 실행된 SQL은 SqlStatistics가 없으므로 무시한다.
+ */
+@Component
+public class SqlStatisticsListener extends JdbcEventListener {
+
+	@Override
+	public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+		SqlStatistics statistics = SqlStatistics.current();
+		if (statistics != null) {
+			statistics.addStatement(statementInformation.getSql(), timeElapsedNanos);
+		}
+	}
+
+	@Override
+	public void onAfterResultSetNext(ResultSetInformation resultSetInformation, long timeElapsedNanos, boolean hasNext, SQLException e) {
+		SqlStatistics statistics = SqlStatistics.current();
+		if (statistics == null) {
+			return;
+		}
+		if (hasNext) {
+			statistics.addRow(timeElapsedNanos);
+		} else {
+			statistics.addFetchTime(timeElapsedNanos);
+		}
+	}
+}
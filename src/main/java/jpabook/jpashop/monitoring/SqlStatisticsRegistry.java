@@ -0,0 +1,92 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 엔드포인트(GET /api/v2/orders 처럼 메서드 + URL 패턴)별 SQL 통계 누적.
+ * 여러 요청 스레드가 동시에 쓰므로 LongAdder로 집계한다.
+ */
+@Component
+public class SqlStatisticsRegistry {
+
+	//N+1 의심 SQL은 엔드포인트당 이 개수까지만 보관
+	private static final int MAX_SUSPECTS = 20;
+
+	private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+	public void record(String endpoint, SqlStatistics statistics, Iterable<String> repeatedStatements) {
+		EndpointStats stats = endpoints.computeIfAbsent(endpoint, key -> new EndpointStats());
+		stats.requests.increment();
+		stats.statements.add(statistics.getStatementCount());
+		stats.rows.add(statistics.getRowCount());
+		stats.jdbcTimeNanos.add(statistics.getJdbcTimeNanos());
+		stats.maxStatements.accumulate(statistics.getStatementCount());
+
+		boolean suspected = false;
+		for (String sql : repeatedStatements) {
+			suspected = true;
+			if (stats.suspectedStatements.size() < MAX_SUSPECTS) {
+				stats.suspectedStatements.add(sql);
+			}
+		}
+		if (suspected) {
+			stats.suspectedRequests.increment();
+		}
+	}
+
+	public Map<String, EndpointSummary> summary() {
+		Map<String, EndpointSummary> result = new TreeMap<>();
+		endpoints.forEach((endpoint, stats) -> result.put(endpoint, stats.toSummary()));
+		return result;
+	}
+
+	public void reset() {
+		endpoints.clear();
+	}
+
+	static class EndpointStats {
+		final LongAdder requests = new LongAdder();
+		final LongAdder statements = new LongAdder();
+		final LongAdder rows = new LongAdder();
+		final LongAdder jdbcTimeNanos = new LongAdder();
+		final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+		final LongAdder suspectedRequests = new LongAdder();
+		final Set<String> suspectedStatements = ConcurrentHashMap.newKeySet();
+
+		EndpointSummary toSummary() {
+			long requestCount = requests.sum();
+			double divisor = Math.max(requestCount, 1);
+			return new EndpointSummary(
+					requestCount,
+					statements.sum() / divisor,
+					maxStatements.get(),
+					rows.sum() / divisor,
+					TimeUnit.NANOSECONDS.toMicros(jdbcTimeNanos.sum()) / divisor / 1000.0,
+					suspectedRequests.sum(),
+					suspectedStatements);
+		}
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class EndpointSummary {
+		private long requests;
+		private double avgStatements;
+		private long maxStatements;
+		private double avgRows;
+		private double avgJdbcTimeMillis;
+		private long suspectedRequests;
+		private Set<String> suspectedStatements;
+	}
+}
@@ -0,0 +1,85 @@
+package jpabook.jpashop.outbox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 소비자(창고, 분석, 메일 등)별로 다음에 읽을 offset. 소비자마다 파일 하나(<이름>.offset)에 숫자로 적는다.
+ * 임시 파일에 쓰고 force 한 뒤 이름을 바꾸므로 중간에 죽어도 예전 값이나 새 값 둘 중 하나가 남는다.
+ * 더 작은 offset을 적으면 거기서부터 다시 읽는다. (재처리)
+ */
+final class ConsumerOffsets {
+
+	private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+	private static final String SUFFIX = ".offset";
+
+	private final Path directory;
+	private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+
+	ConsumerOffsets(Path directory) {
+		this.directory = directory;
+	}
+
+	void load() {
+		try {
+			Files.createDirectories(directory);
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+				for (Path file : stream) {
+					String name = file.getFileName().toString();
+					String value = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+					offsets.put(name.substring(0, name.length() - SUFFIX.length()), Long.parseLong(value));
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("소비자 offset을 읽지 못했습니다. " + directory, e);
+		}
+	}
+
+	//처음 보는 소비자는 0 (로그 처음부터)
+	long get(String consumer) {
+		validate(consumer);
+		return offsets.getOrDefault(consumer, 0L);
+	}
+
+	synchronized void commit(String consumer, long offset) {
+		validate(consumer);
+		if (offset < 0) {
+			throw new IllegalArgumentException("offset은 0 이상이어야 합니다. " + offset);
+		}
+		Path file = directory.resolve(consumer + SUFFIX);
+		Path temp = directory.resolve(consumer + SUFFIX + ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				channel.write(ByteBuffer.wrap(Long.toString(offset).getBytes(StandardCharsets.US_ASCII)));
+				channel.force(true);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			throw new UncheckedIOException("소비자 offset을 저장하지 못했습니다. " + consumer, e);
+		}
+		offsets.put(consumer, offset);
+	}
+
+	Map<String, Long> snapshot() {
+		return new TreeMap<>(offsets);
+	}
+
+	private static void validate(String consumer) {
+		if (consumer == null || !NAME.matcher(consumer).matches()) {
+			throw new IllegalArgumentException("소비자 이름은 영문, 숫자, -, _ 64자 이하입니다. " + consumer);
+		}
+	}
+}
@@ -0,0 +1,395 @@
+package jpabook.jpashop.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 도메인 이벤트 로그. 덧붙이기만 하는 세그먼트 파일들을 메모리에 매핑(mmap)해서 쓰고 읽는다.
+ * 레코드: length(4) crc32(4) offset(8) eventId(8) payload(length). crc는 offset부터 payload 끝까지.
+ *
+ * - 쓰기는 한 스레드(OutboxRelay)만 한다. append는 매핑된 메모리에 복사만 하고, flush가 force(fsync)한 뒤에
+ *   읽는 쪽에 보이게 한다. 그래서 fsync는 레코드마다가 아니라 flush 한 번(릴레이 배치 하나)에 한 번이다.
+ *   디스크에 내려가지 않은 레코드를 읽어 간 소비자가 재시작 후 같은 offset의 다른 레코드를 건너뛰는 일이 없다.
+ * - 읽기는 여러 스레드가 락 없이 한다. 세그먼트마다 레코드 시작 위치 배열을 두고 offset으로 바로 찾아간다.
+ *   다 쓴 세그먼트의 위치 배열은 처음 읽을 때 만든다. (기동 때 모든 파일을 훑지 않는다)
+ * - 세그먼트 파일 이름은 첫 offset(events-00000000000000000000.log)이라서 이름 순서가 로그 순서다.
+ *   파일이 segmentBytes를 넘으면 새 파일로 넘어가고, retentionSegments개를 넘는 오래된 파일은 지운다.
+ *   지워진 offset을 읽으면 OffsetExpiredException. (남은 첫 레코드로 건너뛰지 않는다)
+ *
+ * 매핑할 때 파일을 segmentBytes만큼 늘리므로(0으로 채워짐) length가 0인 곳이 끝이다.
+ * 쓰다가 죽어서 잘린 레코드는 crc가 맞지 않으므로 open에서 거기서부터 지우고 이어 쓴다.
+ */
+@Slf4j
+public final class EventLog implements Closeable {
+
+	static final int HEADER_SIZE = 24;
+	private static final String PREFIX = "events-";
+	private static final String SUFFIX = ".log";
+
+	private final Path directory;
+	private final int segmentBytes;
+	private final int retentionSegments;
+
+	//첫 offset -> 세그먼트
+	private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+	private final CRC32 crc = new CRC32();
+	private Segment active;
+	private long nextOffset;
+	//여기까지(미포함) 디스크에 내려갔고 읽을 수 있다.
+	private volatile long durableOffset;
+	private final Object durableChanged = new Object();
+
+	EventLog(Path directory, int segmentBytes, int retentionSegments) {
+		if (segmentBytes <= HEADER_SIZE) {
+			throw new IllegalArgumentException("segmentBytes가 너무 작습니다. " + segmentBytes);
+		}
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.retentionSegments = Math.max(1, retentionSegments);
+	}
+
+	/**
+	 * 남아있는 세그먼트를 매핑하고 마지막 세그먼트를 훑어서 이어 쓸 위치를 찾는다.
+	 */
+	synchronized void open() {
+		try {
+			Files.createDirectories(directory);
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+				stream.forEach(files::add);
+			}
+			files.sort(null);
+			for (int i = 0; i < files.size(); i++) {
+				Path file = files.get(i);
+				long baseOffset = baseOffset(file);
+				//이어 쓸 마지막 세그먼트는 적어도 segmentBytes만큼 매핑한다. (다 늘리기 전에 죽었을 수도 있다)
+				int size = i == files.size() - 1 ? (int) Math.max(Files.size(file), segmentBytes) : 0;
+				segments.put(baseOffset, Segment.map(baseOffset, file, size));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("이벤트 로그를 열지 못했습니다. " + directory, e);
+		}
+
+		if (segments.isEmpty()) {
+			active = createSegment(0);
+		} else {
+			//다 쓴 세그먼트는 다음 세그먼트의 첫 offset으로 레코드 수를 안다.
+			Long previous = null;
+			for (Long baseOffset : segments.keySet()) {
+				if (previous != null) {
+					segments.get(previous).count = (int) (baseOffset - previous);
+				}
+				previous = baseOffset;
+			}
+			active = segments.lastEntry().getValue();
+			recoverActive();
+		}
+		nextOffset = active.baseOffset + active.count;
+		durableOffset = nextOffset;
+	}
+
+	//마지막 세그먼트를 처음부터 훑는다. 잘린 레코드가 있으면 거기서부터 0으로 지운다.
+	private void recoverActive() {
+		Segment segment = active;
+		ByteBuffer buffer = segment.buffer;
+		int capacity = buffer.capacity();
+		int position = 0;
+		int count = 0;
+		int[] positions = new int[1024];
+		while (position + HEADER_SIZE <= capacity) {
+			int length = buffer.getInt(position);
+			if (length == 0) {
+				break;
+			}
+			if (length < 0 || length > capacity - position - HEADER_SIZE
+					|| buffer.getLong(position + 8) != segment.baseOffset + count
+					|| buffer.getInt(position + 4) != crc(buffer, position, length)) {
+				log.warn("event log: {}의 {} 위치부터 잘린 레코드를 지웁니다.", segment.file.getFileName(), position);
+				for (int i = position; i < capacity; i++) {
+					buffer.put(i, (byte) 0);
+				}
+				segment.buffer.force();
+				break;
+			}
+			if (count == positions.length) {
+				positions = Arrays.copyOf(positions, count * 2);
+			}
+			positions[count++] = position;
+			position += HEADER_SIZE + length;
+		}
+		segment.positions = positions;
+		segment.count = count;
+		segment.end = position;
+	}
+
+	/**
+	 * 레코드를 덧붙이고 offset을 돌려준다. flush 하기 전까지는 읽을 수 없다.
+	 */
+	synchronized long append(long eventId, byte[] payload) {
+		int size = HEADER_SIZE + payload.length;
+		if (payload.length > maxPayloadBytes()) {
+			throw new IllegalArgumentException("이벤트가 세그먼트보다 큽니다. " + payload.length + " bytes");
+		}
+		if (active.buffer.capacity() - active.end < size) {
+			roll();
+		}
+		Segment segment = active;
+		int position = segment.end;
+		long offset = nextOffset;
+		ByteBuffer writer = segment.writer;
+		writer.position(position + 4);
+		writer.putInt(0);
+		writer.putLong(offset);
+		writer.putLong(eventId);
+		writer.put(payload);
+		writer.putInt(position + 4, crc(writer, position, payload.length));
+		//length를 마지막에 쓴다. 그 전에 죽으면 여기가 끝이다.
+		writer.putInt(position, payload.length);
+
+		segment.addPosition(position);
+		segment.end = position + size;
+		nextOffset = offset + 1;
+		return offset;
+	}
+
+	//레코드 하나가 세그먼트 하나를 넘을 수 없다.
+	int maxPayloadBytes() {
+		return segmentBytes - HEADER_SIZE;
+	}
+
+	/**
+	 * 지금까지 덧붙인 레코드를 디스크에 내리고 읽을 수 있게 한다.
+	 */
+	synchronized void flush() {
+		if (durableOffset == nextOffset) {
+			return;
+		}
+		active.buffer.force();
+		durableOffset = nextOffset;
+		synchronized (durableChanged) {
+			durableChanged.notifyAll();
+		}
+	}
+
+	//지금 세그먼트를 내리고 닫은 뒤 새 세그먼트로. 보관 개수를 넘는 오래된 세그먼트를 지운다.
+	private void roll() {
+		active.buffer.force();
+		active = createSegment(nextOffset);
+		while (segments.size() > retentionSegments) {
+			Segment oldest = segments.pollFirstEntry().getValue();
+			oldest.close();
+			try {
+				Files.deleteIfExists(oldest.file);
+			} catch (IOException e) {
+				log.warn("event log: 오래된 세그먼트를 지우지 못했습니다. {}", oldest.file, e);
+			}
+		}
+	}
+
+	private Segment createSegment(long baseOffset) {
+		Path file = directory.resolve(String.format("%s%020d%s", PREFIX, baseOffset, SUFFIX));
+		try {
+			Segment segment = Segment.map(baseOffset, file, segmentBytes);
+			segment.positions = new int[1024];
+			segments.put(baseOffset, segment);
+			return segment;
+		} catch (IOException e) {
+			throw new UncheckedIOException("이벤트 로그 세그먼트를 만들지 못했습니다. " + file, e);
+		}
+	}
+
+	/**
+	 * offset부터 최대 limit개.
+	 * @throws OffsetExpiredException 보관 개수를 넘어 지워진 offset
+	 */
+	public List<EventRecord> read(long offset, int limit) {
+		long end = durableOffset;
+		Map.Entry<Long, Segment> first = segments.firstEntry();
+		if (first == null || limit <= 0) {
+			return Collections.emptyList();
+		}
+		if (offset < first.getKey()) {
+			throw new OffsetExpiredException(offset, first.getKey());
+		}
+		long from = offset;
+		List<EventRecord> records = new ArrayList<>((int) Math.max(0, Math.min(limit, end - from)));
+		while (from < end && records.size() < limit) {
+			Map.Entry<Long, Segment> entry = segments.floorEntry(from);
+			if (entry == null) {
+				//읽는 사이에 보관 기간이 지나서 지워졌다. 읽은 데까지는 이어져 있으므로 돌려주고, 없으면 예외
+				if (!records.isEmpty()) {
+					break;
+				}
+				throw new OffsetExpiredException(from, firstOffset());
+			}
+			Segment segment = entry.getValue();
+			ByteBuffer reader = segment.buffer.duplicate();
+			long segmentEnd = Math.min(end, segment.baseOffset + segment.count);
+			if (from >= segmentEnd) {
+				break;
+			}
+			int[] positions = segment.positions();
+			for (; from < segmentEnd && records.size() < limit; from++) {
+				int position = positions[(int) (from - segment.baseOffset)];
+				int length = reader.getInt(position);
+				long eventId = reader.getLong(position + 16);
+				byte[] payload = new byte[length];
+				reader.position(position + HEADER_SIZE);
+				reader.get(payload);
+				records.add(new EventRecord(from, eventId, payload));
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * offset 레코드가 읽을 수 있게 될 때까지 최대 timeoutMillis 기다린다. (롱 폴링)
+	 */
+	public boolean await(long offset, long timeoutMillis) throws InterruptedException {
+		if (durableOffset > offset) {
+			return true;
+		}
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (durableChanged) {
+			long remaining = timeoutMillis;
+			while (durableOffset <= offset && remaining > 0) {
+				durableChanged.wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+		}
+		return durableOffset > offset;
+	}
+
+	/**
+	 * 마지막 count개 레코드의 eventId. 릴레이가 outbox를 지우기 전에 죽었을 때 이미 옮긴 이벤트를 찾는다.
+	 */
+	synchronized List<Long> lastEventIds(int count) {
+		long from = Math.max(firstOffset(), nextOffset - count);
+		List<Long> eventIds = new ArrayList<>();
+		for (EventRecord record : read(from, count)) {
+			eventIds.add(record.getEventId());
+		}
+		return eventIds;
+	}
+
+	public long firstOffset() {
+		Map.Entry<Long, Segment> first = segments.firstEntry();
+		return first == null ? 0 : first.getKey();
+	}
+
+	//다음에 쓸 offset = 읽을 수 있는 마지막 offset + 1
+	public long endOffset() {
+		return durableOffset;
+	}
+
+	public int segmentCount() {
+		return segments.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		flush();
+		for (Segment segment : segments.values()) {
+			segment.close();
+		}
+	}
+
+	private int crc(ByteBuffer buffer, int position, int length) {
+		ByteBuffer body = buffer.duplicate();
+		body.limit(position + HEADER_SIZE + length);
+		body.position(position + 8);
+		synchronized (crc) {
+			crc.reset();
+			crc.update(body);
+			return (int) crc.getValue();
+		}
+	}
+
+	private static long baseOffset(Path file) {
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+	}
+
+	private static final class Segment {
+		final long baseOffset;
+		final Path file;
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+		//append 전용. buffer의 position은 건드리지 않고 읽는 쪽은 duplicate로 읽는다.
+		final ByteBuffer writer;
+		//positions[i] = baseOffset + i 레코드의 시작 위치. 다 쓴 세그먼트는 처음 읽을 때 만든다.
+		volatile int[] positions;
+		volatile int count;
+		int end;
+
+		Segment(long baseOffset, Path file, FileChannel channel, MappedByteBuffer buffer) {
+			this.baseOffset = baseOffset;
+			this.file = file;
+			this.channel = channel;
+			this.buffer = buffer;
+			this.writer = buffer.duplicate();
+		}
+
+		//size가 0이면 파일 크기 그대로 매핑한다.
+		static Segment map(long baseOffset, Path file, int size) throws IOException {
+			FileChannel channel = FileChannel.open(file,
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			long length = size > 0 ? size : channel.size();
+			return new Segment(baseOffset, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+		}
+
+		void addPosition(int position) {
+			int[] current = positions;
+			if (count == current.length) {
+				current = Arrays.copyOf(current, current.length * 2);
+				positions = current;
+			}
+			current[count] = position;
+			count = count + 1;
+		}
+
+		int[] positions() {
+			int[] current = positions;
+			if (current != null) {
+				return current;
+			}
+			synchronized (this) {
+				if (positions == null) {
+					int[] built = new int[count];
+					int position = 0;
+					for (int i = 0; i < built.length; i++) {
+						built[i] = position;
+						position += HEADER_SIZE + buffer.getInt(position);
+					}
+					positions = built;
+				}
+				return positions;
+			}
+		}
+
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.warn("event log: 세그먼트를 닫지 못했습니다. {}", file, e);
+			}
+		}
+	}
+}
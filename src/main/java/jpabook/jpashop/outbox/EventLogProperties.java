@@ -0,0 +1,34 @@
+package jpabook.jpashop.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 도메인 이벤트 outbox, 이벤트 로그 설정 (app.event-log.*)
+ */
+@Component
+@ConfigurationProperties(prefix = "app.event-log")
+@Getter @Setter
+public class EventLogProperties {
+
+	//기본은 꺼져 있다. 끄면 outbox에 쓰지도 않는다.
+	private boolean enabled = false;
+
+	//세그먼트 파일과 소비자 offset 디렉터리
+	private String dir = "event-log";
+
+	//세그먼트 파일 하나의 크기. 이만큼 매핑한다.
+	private int segmentBytes = 64 * 1024 * 1024;
+
+	//남겨둘 세그먼트 수. 넘으면 오래된 파일부터 지운다. (그보다 뒤처진 소비자는 OffsetExpiredException)
+	private int retentionSegments = 32;
+
+	//outbox에서 한 번에 옮기는 이벤트 수. 배치마다 fsync 한 번
+	private int relayBatchSize = 1000;
+
+	//새 이벤트가 없을 때 outbox를 다시 보는 주기. 이 서버에서 커밋한 이벤트는 기다리지 않고 바로 옮긴다.
+	private long relayIntervalMillis = 200;
+}
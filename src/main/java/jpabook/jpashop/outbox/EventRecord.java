@@ -0,0 +1,23 @@
+package jpabook.jpashop.outbox;
+
+import java.nio.charset.StandardCharsets;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 이벤트 로그의 레코드 하나.
+ * offset은 로그 안의 순번(0부터), eventId는 outbox_event의 id, payload는 이벤트 JSON(UTF-8)
+ */
+@Getter
+@AllArgsConstructor
+public class EventRecord {
+
+	private final long offset;
+	private final long eventId;
+	private final byte[] payload;
+
+	public String payloadAsString() {
+		return new String(payload, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,284 @@
+package jpabook.jpashop.outbox;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * outbox_event -> 이벤트 로그(EventLog) 릴레이, 그리고 소비자가 로그를 읽는 곳.
+ *
+ * - 릴레이: 스레드 하나가 outbox를 id 순으로 relayBatchSize개씩 읽어서 로그에 덧붙이고, 배치마다 한 번 fsync 한 뒤
+ *   옮긴 줄을 지운다. 이 서버에서 이벤트를 커밋하면 바로 깨어나고, 아니면 relayIntervalMillis마다 본다.
+ *   fsync와 outbox 삭제 사이에 죽으면 그 배치가 로그에 있는데 outbox에도 남는다. 기동할 때 로그 끝의 eventId로 지운다.
+ *   세그먼트에 들어가지 않는 큰 이벤트는 로그 디렉터리의 parked/에 파일로 빼두고 outbox에서 지운다. (릴레이가 멈추지 않게)
+ * - 소비자: offset으로 읽는다(read). 소비자 이름으로 읽으면 저장해둔 offset부터 읽고(poll), 처리한 뒤 commit 한다.
+ *   commit 전에 죽으면 다시 읽으므로 소비자는 eventId로 중복을 거른다. (최소 한 번)
+ *   commit에 더 작은 offset을 넣으면 거기서부터 다시 읽는다. (재처리)
+ *   보관 개수를 넘어 지워진 offset을 읽으면 OffsetExpiredException. 소비자가 firstOffset을 commit 해서 넘어간다.
+ * 소비자는 OLTP 테이블을 조회하지 않고 매핑된 로그 파일만 읽는다.
+ */
+@Slf4j
+@Component
+public class EventStream {
+
+	private final EventLogProperties properties;
+	private final OutboxRepository outboxRepository;
+	private final ObjectMapper objectMapper;
+	private final TransactionTemplate transactionTemplate;
+
+	private final Semaphore wakeups = new Semaphore(0);
+	private EventLog eventLog;
+	private ConsumerOffsets consumerOffsets;
+	private Path parkedDirectory;
+	private Thread relayThread;
+	private volatile boolean running;
+	private volatile long parked;
+	//로그에는 옮겼는데 outbox에서 지우지 못한 이벤트. 다음 배치 전에 먼저 지운다.
+	private List<Long> undeleted = Collections.emptyList();
+
+	public EventStream(EventLogProperties properties, OutboxRepository outboxRepository, ObjectMapper objectMapper,
+			PlatformTransactionManager transactionManager) {
+		this.properties = properties;
+		this.outboxRepository = outboxRepository;
+		this.objectMapper = objectMapper;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		Path directory = Paths.get(properties.getDir());
+		eventLog = new EventLog(directory, properties.getSegmentBytes(), properties.getRetentionSegments());
+		eventLog.open();
+		parkedDirectory = directory.resolve("parked");
+		consumerOffsets = new ConsumerOffsets(directory.resolve("consumers"));
+		consumerOffsets.load();
+
+		//지난 실행의 마지막 배치가 outbox에 남아있으면 다시 옮기지 않도록 지운다.
+		List<Long> relayed = eventLog.lastEventIds(properties.getRelayBatchSize());
+		Integer deleted = transactionTemplate.execute(status -> outboxRepository.deleteAll(relayed));
+		if (deleted != null && deleted > 0) {
+			log.info("event log: 이미 옮긴 outbox 이벤트 {}개 삭제", deleted);
+		}
+		log.info("event log: {} offset {} ~ {}, 세그먼트 {}개", directory, eventLog.firstOffset(), eventLog.endOffset(),
+				eventLog.segmentCount());
+
+		running = true;
+		relayThread = new Thread(this::relayLoop, "outbox-relay");
+		relayThread.setDaemon(true);
+		relayThread.start();
+	}
+
+	@PreDestroy
+	public void shutdown() throws InterruptedException {
+		if (relayThread == null) {
+			return;
+		}
+		running = false;
+		wakeups.release();
+		relayThread.join(TimeUnit.SECONDS.toMillis(10));
+		eventLog.close();
+	}
+
+	//커밋된 이벤트가 있다. (OutboxEvents)
+	void wakeUp() {
+		wakeups.release();
+	}
+
+	private void relayLoop() {
+		while (running) {
+			try {
+				if (relay() < properties.getRelayBatchSize()) {
+					wakeups.tryAcquire(properties.getRelayIntervalMillis(), TimeUnit.MILLISECONDS);
+					wakeups.drainPermits();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				log.warn("event log: outbox 릴레이 실패. 다음 주기에 다시 옮깁니다.", e);
+				sleepQuietly();
+			}
+		}
+	}
+
+	/**
+	 * outbox에서 한 배치를 로그로 옮긴다.
+	 * @return 옮긴 이벤트 수
+	 */
+	public synchronized int relay() {
+		if (eventLog == null) {
+			return 0;
+		}
+		if (!undeleted.isEmpty()) {
+			transactionTemplate.execute(status -> outboxRepository.deleteAll(undeleted));
+			undeleted = Collections.emptyList();
+		}
+		List<OutboxEvent> events = transactionTemplate.execute(status -> outboxRepository.findOldest(properties.getRelayBatchSize()));
+		if (events == null || events.isEmpty()) {
+			return 0;
+		}
+		List<Long> eventIds = new ArrayList<>(events.size());
+		for (OutboxEvent event : events) {
+			byte[] envelope = envelope(event);
+			if (envelope.length > eventLog.maxPayloadBytes()) {
+				park(event, envelope);
+			} else {
+				eventLog.append(event.getId(), envelope);
+			}
+			eventIds.add(event.getId());
+		}
+		eventLog.flush();
+
+		undeleted = eventIds;
+		transactionTemplate.execute(status -> outboxRepository.deleteAll(eventIds));
+		undeleted = Collections.emptyList();
+		return events.size();
+	}
+
+	//로그에 들어가지 않는 이벤트. 지우지 않으면 매 배치 맨 앞에서 다시 실패한다. 파일을 쓰지 못하면 배치 전체를 다시 시도한다.
+	private void park(OutboxEvent event, byte[] envelope) {
+		Path file = parkedDirectory.resolve("event-" + event.getId() + ".json");
+		try {
+			Files.createDirectories(parkedDirectory);
+			Files.write(file, envelope);
+		} catch (IOException e) {
+			throw new UncheckedIOException("event log: 큰 이벤트를 빼두지 못했습니다. " + file, e);
+		}
+		parked++;
+		log.error("event log: 세그먼트({} bytes)보다 큰 이벤트라서 로그에 넣지 않고 빼둡니다. eventId={}, type={}, aggregateId={}, {} bytes -> {}",
+				properties.getSegmentBytes(), event.getId(), event.getType(), event.getAggregateId(), envelope.length, file);
+	}
+
+	private byte[] envelope(OutboxEvent event) {
+		try {
+			return objectMapper.writeValueAsBytes(new Envelope(event.getId(), event.getType(), event.getType().getAggregate(),
+					event.getAggregateId(), event.getCreatedAt(), event.getPayload()));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("이벤트를 JSON으로 만들지 못했습니다. " + event.getId(), e);
+		}
+	}
+
+	/**
+	 * offset부터 최대 limit개. 아직 없으면 waitMillis까지 기다린다. (롱 폴링)
+	 * @throws OffsetExpiredException 보관 개수를 넘어 지워진 offset
+	 */
+	public List<EventRecord> read(long offset, int limit, long waitMillis) throws InterruptedException {
+		EventLog current = requireLog();
+		if (waitMillis > 0) {
+			current.await(offset, waitMillis);
+		}
+		return current.read(offset, limit);
+	}
+
+	//소비자가 저장해둔 offset부터 읽는다. commit 하기 전까지는 같은 이벤트를 다시 받는다.
+	public List<EventRecord> poll(String consumer, int limit, long waitMillis) throws InterruptedException {
+		requireLog();
+		return read(consumerOffsets.get(consumer), limit, waitMillis);
+	}
+
+	public long committedOffset(String consumer) {
+		requireLog();
+		return consumerOffsets.get(consumer);
+	}
+
+	/**
+	 * nextOffset: 다음에 읽을 offset (처리한 마지막 offset + 1). 더 작은 값이면 거기서부터 다시 읽는다.
+	 */
+	public void commit(String consumer, long nextOffset) {
+		EventLog current = requireLog();
+		if (nextOffset > current.endOffset()) {
+			throw new IllegalArgumentException("로그 끝(" + current.endOffset() + ")보다 뒤의 offset입니다. " + nextOffset);
+		}
+		consumerOffsets.commit(consumer, nextOffset);
+	}
+
+	public Status status() {
+		if (eventLog == null) {
+			return new Status(false, 0, 0, 0, 0, 0, Collections.emptyList());
+		}
+		long first = eventLog.firstOffset();
+		long end = eventLog.endOffset();
+		List<ConsumerStatus> consumers = new ArrayList<>();
+		consumerOffsets.snapshot().forEach((name, offset) -> consumers.add(new ConsumerStatus(name, offset, Math.max(0, end - offset), offset < first)));
+		Long pending = transactionTemplate.execute(status -> outboxRepository.count());
+		return new Status(true, first, end, eventLog.segmentCount(), pending == null ? 0 : pending, parked, consumers);
+	}
+
+	private EventLog requireLog() {
+		if (eventLog == null) {
+			throw new IllegalStateException("이벤트 로그가 꺼져 있습니다. (app.event-log.enabled)");
+		}
+		return eventLog;
+	}
+
+	private void sleepQuietly() {
+		try {
+			Thread.sleep(properties.getRelayIntervalMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//로그에 쓰는 이벤트. data는 outbox의 JSON 그대로
+	@Getter
+	@AllArgsConstructor
+	static class Envelope {
+		private Long eventId;
+		private EventType type;
+		private String aggregate;
+		private Long aggregateId;
+		private LocalDateTime occurredAt;
+		@JsonRawValue
+		private String data;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class Status {
+		private boolean enabled;
+		private long firstOffset;
+		private long endOffset;
+		private int segments;
+		//아직 로그로 옮기지 않은 outbox 이벤트 수
+		private long outboxPending;
+		//이 서버가 뜬 뒤 세그먼트보다 커서 parked/로 빼둔 이벤트 수
+		private long parked;
+		private List<ConsumerStatus> consumers;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class ConsumerStatus {
+		private String name;
+		private long offset;
+		private long lag;
+		//commit한 offset이 지워졌다. 다음 poll은 OffsetExpiredException
+		private boolean expired;
+	}
+}
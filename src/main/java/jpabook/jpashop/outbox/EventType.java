@@ -0,0 +1,17 @@
+package jpabook.jpashop.outbox;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 도메인 이벤트 종류와 그 이벤트의 aggregateId가 가리키는 대상
+ */
+@Getter
+@RequiredArgsConstructor
+public enum EventType {
+	ORDER_PLACED("ORDER"),
+	ORDER_CANCELED("ORDER"),
+	ITEM_UPDATED("ITEM");
+
+	private final String aggregate;
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.outbox;
+
+import lombok.Getter;
+
+/**
+ * 보관 개수를 넘어 지워진 offset을 읽으려고 했다. (410, EventApiController)
+ * 남은 첫 레코드부터 조용히 읽어주면 소비자는 이벤트를 잃은 줄 모른다.
+ * firstOffset부터 다시 읽을지(사이의 이벤트는 잃는다), 원본에서 다시 맞출지는 소비자가 정한다.
+ */
+@Getter
+public class OffsetExpiredException extends RuntimeException {
+
+	private final long offset;
+	private final long firstOffset;
+
+	public OffsetExpiredException(long offset, long firstOffset) {
+		super("보관 기간이 지나 지워진 offset입니다. offset=" + offset + ", 남아있는 첫 offset=" + firstOffset);
+		this.offset = offset;
+		this.firstOffset = firstOffset;
+	}
+}
@@ -0,0 +1,57 @@
+package jpabook.jpashop.outbox;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 트랜잭션 outbox. 주문, 상품이 바뀌는 트랜잭션 안에서 같이 insert한다. (OutboxEvents)
+ * 커밋된 줄만 릴레이(EventStream)가 id 순으로 읽어서 이벤트 로그로 옮기고 지운다. 그래서 테이블에는 아직 옮기지 않은 이벤트만 있다.
+ * 한 트랜잭션에서 여러 줄(일괄 취소)을 넣으므로 시퀀스는 pooled, insert는 JDBC batch.
+ */
+@Entity
+@Table(name = "outbox_event")
+@SequenceGenerator(name = "outbox_event_seq_generator", sequenceName = "outbox_event_seq", allocationSize = 100)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class OutboxEvent {
+
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq_generator")
+	@Column(name = "event_id")
+	private Long id;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "event_type", length = 32, nullable = false)
+	private EventType type;
+
+	@Column(name = "aggregate_id", nullable = false)
+	private Long aggregateId;
+
+	//이벤트 내용 JSON
+	@Lob
+	@Column(name = "payload", nullable = false)
+	private String payload;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	OutboxEvent(EventType type, Long aggregateId, String payload) {
+		this.type = type;
+		this.aggregateId = aggregateId;
+		this.payload = payload;
+		this.createdAt = LocalDateTime.now();
+	}
+}
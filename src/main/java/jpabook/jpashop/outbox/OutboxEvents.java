@@ -0,0 +1,122 @@
+package jpabook.jpashop.outbox;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.domain.Order;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 주문, 상품 변경을 도메인 이벤트로 outbox_event에 남긴다. 호출한 서비스의 트랜잭션 안에서 insert하므로
+ * 변경이 커밋되면 이벤트도 있고, 롤백되면 이벤트도 없다. 커밋되면 릴레이를 깨워서 바로 이벤트 로그로 옮기게 한다.
+ * 소비자(창고, 분석, 메일 등)는 orders 테이블을 조회하지 않고 이벤트 로그를 읽는다. (EventStream)
+ *
+ * DataSeeder가 JDBC로 넣은 데이터는 이벤트가 없다. 소비자는 처음에 스냅샷을 받고 그 뒤로 로그를 따라간다.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxEvents {
+
+	private final EventLogProperties properties;
+	private final OutboxRepository outboxRepository;
+	private final ObjectMapper objectMapper;
+	private final EventStream eventStream;
+
+	public void orderPlaced(Order order) {
+		List<Line> lines = order.getOrderItems().stream()
+				.map(orderItem -> new Line(orderItem.getItem().getId(), orderItem.getCount(), orderItem.getOrderPrice()))
+				.collect(Collectors.toList());
+		add(EventType.ORDER_PLACED, order.getId(), new OrderPlaced(order.getId(), order.getMember().getId(),
+				order.getOrderDate(), order.getTotalAmount(), lines));
+	}
+
+	public void orderCanceled(Order order) {
+		orderCanceled(order.getId(), order.getOrderItems().stream()
+				.map(orderItem -> new Line(orderItem.getItem().getId(), orderItem.getCount(), orderItem.getOrderPrice()))
+				.collect(Collectors.toList()));
+	}
+
+	//일괄 취소는 주문 엔티티를 로딩하지 않으므로 주문상품을 줄로 받는다.
+	public void orderCanceled(Long orderId, List<Line> lines) {
+		add(EventType.ORDER_CANCELED, orderId, new OrderCanceled(orderId, lines));
+	}
+
+	//핫 상품 재고는 카운터가 가지고 있으므로 stockQuantity는 관리자가 입력한 값이다.
+	public void itemUpdated(Item item, int stockQuantity) {
+		add(EventType.ITEM_UPDATED, item.getId(), new ItemUpdated(item.getId(), item.getName(), item.getPrice(), stockQuantity));
+	}
+
+	private void add(EventType type, Long aggregateId, Object payload) {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			throw new IllegalStateException("도메인 이벤트는 트랜잭션 안에서만 남길 수 있습니다.");
+		}
+		try {
+			outboxRepository.save(new OutboxEvent(type, aggregateId, objectMapper.writeValueAsString(payload)));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("도메인 이벤트를 JSON으로 만들지 못했습니다. " + type, e);
+		}
+		//트랜잭션마다 한 번만 깨운다.
+		if (!TransactionSynchronizationManager.hasResource(this)) {
+			TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					eventStream.wakeUp();
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(OutboxEvents.this);
+				}
+			});
+		}
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class Line {
+		private Long itemId;
+		private int count;
+		private int orderPrice;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	static class OrderPlaced {
+		private Long orderId;
+		private Long memberId;
+		private LocalDateTime orderDate;
+		private Long totalAmount;
+		private List<Line> lines;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	static class OrderCanceled {
+		private Long orderId;
+		private List<Line> lines;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	static class ItemUpdated {
+		private Long itemId;
+		private String name;
+		private int price;
+		private int stockQuantity;
+	}
+}
@@ -0,0 +1,42 @@
+package jpabook.jpashop.outbox;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+
+	private final EntityManager em;
+
+	public void save(OutboxEvent event) {
+		em.persist(event);
+	}
+
+	//아직 옮기지 않은 이벤트. 옮긴 줄은 지우므로 앞에서부터 limit개
+	public List<OutboxEvent> findOldest(int limit) {
+		return em.createQuery("select e from OutboxEvent e order by e.id", OutboxEvent.class)
+				.setMaxResults(limit)
+				.getResultList();
+	}
+
+	public int deleteAll(Collection<Long> eventIds) {
+		if (eventIds.isEmpty()) {
+			return 0;
+		}
+		return em.createQuery("delete from OutboxEvent e where e.id in :ids")
+				.setParameter("ids", eventIds)
+				.executeUpdate();
+	}
+
+	public long count() {
+		return em.createQuery("select count(e) from OutboxEvent e", Long.class)
+				.getSingleResult();
+	}
+}
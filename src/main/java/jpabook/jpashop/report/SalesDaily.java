@@ -0,0 +1,53 @@
+package jpabook.jpashop.report;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 일별, 주문상태별 매출 집계. (주문일 기준)
+ * 주문하면 ORDER 줄에 더하고, 취소하면 ORDER 줄에서 빼서 CANCEL 줄에 더한다.
+ * 값은 SalesRollupRecorder가 증분으로만 바꾼다.
+ */
+@Entity
+@Table(name = "sales_daily")
+@IdClass(SalesDaily.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesDaily {
+
+	@Id
+	@Column(name = "sales_date")
+	private LocalDate salesDate;
+
+	@Id
+	@Enumerated(EnumType.STRING)
+	private OrderStatus status;
+
+	@Column(name = "order_count")
+	private long orderCount;
+
+	private long quantity;
+
+	private long revenue;
+
+	@NoArgsConstructor
+	@EqualsAndHashCode
+	public static class Key implements Serializable {
+		private LocalDate salesDate;
+		private OrderStatus status;
+	}
+}
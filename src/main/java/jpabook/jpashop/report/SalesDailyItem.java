@@ -0,0 +1,47 @@
+package jpabook.jpashop.report;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 일별, 상품별 판매 수량과 매출. (주문일 기준, 취소분은 뺀 순매출)
+ * 상품 FK는 두지 않는다. 집계 테이블이라 원본과 따로 움직인다.
+ */
+@Entity
+@Table(name = "sales_daily_item", indexes = @Index(name = "idx_sales_daily_item_date", columnList = "sales_date, item_id, quantity, revenue")) //기간 조회 (커버링)
+@IdClass(SalesDailyItem.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesDailyItem {
+
+	@Id
+	@Column(name = "sales_date")
+	private LocalDate salesDate;
+
+	@Id
+	@Column(name = "item_id")
+	private Long itemId;
+
+	private long quantity;
+
+	private long revenue;
+
+	@NoArgsConstructor
+	@EqualsAndHashCode
+	public static class Key implements Serializable {
+		private LocalDate salesDate;
+		private Long itemId;
+	}
+}
@@ -0,0 +1,54 @@
+package jpabook.jpashop.report;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import jpabook.jpashop.report.SalesReportService.DailySales;
+import jpabook.jpashop.report.SalesReportService.ItemSales;
+import jpabook.jpashop.report.SalesReportService.StatusSales;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 매출 리포트 API. 기간은 주문일 기준, from/to 모두 포함. (yyyy-MM-dd)
+ * 상품 순위 limit은 1 ~ MAX_TOP_ITEMS. 벗어나면 400. (ApiExceptionHandler)
+ */
+@RestController
+@Validated
+@RequiredArgsConstructor
+public class SalesReportController {
+
+	private static final int MAX_TOP_ITEMS = 100;
+
+	private final SalesReportService salesReportService;
+
+	@GetMapping("/api/v1/reports/sales/daily")
+	public List<DailySales> daily(
+			@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		return salesReportService.findDaily(from, to);
+	}
+
+	@GetMapping("/api/v1/reports/sales/status")
+	public List<StatusSales> byStatus(
+			@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+		return salesReportService.findByStatus(from, to);
+	}
+
+	@GetMapping("/api/v1/reports/sales/items")
+	public List<ItemSales> topItems(
+			@RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+			@RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+			@RequestParam(value = "limit", defaultValue = "10") @Min(1) @Max(MAX_TOP_ITEMS) int limit) {
+		return salesReportService.findTopItems(from, to, limit);
+	}
+}
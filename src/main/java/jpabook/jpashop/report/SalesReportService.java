@@ -0,0 +1,83 @@
+package jpabook.jpashop.report;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 매출 리포트. 집계 테이블만 읽는다.
+ * 주문/취소는 SalesRollupRecorder가 merge 주기(app.sales-rollup.merge-interval-millis)마다 합쳐서 반영하므로 그만큼 늦다.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class SalesReportService {
+
+	private final SalesRollupRepository salesRollupRepository;
+	private final AggregateVersions aggregateVersions;
+
+	public List<DailySales> findDaily(LocalDate from, LocalDate to) {
+		return salesRollupRepository.findDaily(from, to).stream()
+				.map(s -> new DailySales(s.getSalesDate(), s.getStatus(), s.getOrderCount(), s.getQuantity(), s.getRevenue()))
+				.collect(Collectors.toList());
+	}
+
+	public List<StatusSales> findByStatus(LocalDate from, LocalDate to) {
+		return salesRollupRepository.sumByStatus(from, to).stream()
+				.map(row -> new StatusSales((OrderStatus) row[0], (Long) row[1], (Long) row[2], (Long) row[3]))
+				.collect(Collectors.toList());
+	}
+
+	public List<ItemSales> findTopItems(LocalDate from, LocalDate to, int limit) {
+		return salesRollupRepository.sumByItem(from, to, limit).stream()
+				.map(row -> new ItemSales((Long) row[0], (Long) row[1], (Long) row[2]))
+				.collect(Collectors.toList());
+	}
+
+	//집계를 다시 만들면 주문 버전으로 캐시한 응답도 예전 값이 된다. 커밋 후에 주문 버전을 올린다.
+	@Transactional
+	public void rebuild() {
+		salesRollupRepository.rebuild();
+		aggregateVersions.bump(Aggregate.ORDER);
+		log.info("sales rollup rebuild 완료");
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class DailySales {
+		private LocalDate salesDate;
+		private OrderStatus status;
+		private long orderCount;
+		private long quantity;
+		private long revenue;
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class StatusSales {
+		private OrderStatus status;
+		private long orderCount;
+		private long quantity;
+		private long revenue;
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class ItemSales {
+		private Long itemId;
+		private long quantity;
+		private long revenue;
+	}
+}
@@ -0,0 +1,69 @@
+package jpabook.jpashop.report;
+
+import java.time.LocalDate;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 아직 집계(sales_daily, sales_daily_item)에 합치지 않은 변화량. 주문 트랜잭션마다 키별로 한 줄씩 insert만 한다.
+ * 주문 트랜잭션끼리 같은 줄을 건드리지 않으므로 row lock을 기다리지 않는다. SalesRollupRecorder.merge가 모아서 더하고 지운다.
+ * - status가 있으면 sales_daily 변화량 (itemId는 null)
+ * - itemId가 있으면 sales_daily_item 변화량 (status는 null, orderCount는 0)
+ */
+@Entity
+@Table(name = "sales_rollup_delta")
+@SequenceGenerator(name = "sales_rollup_delta_seq_generator", sequenceName = "sales_rollup_delta_seq", allocationSize = 100)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class SalesRollupDelta {
+
+	@Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sales_rollup_delta_seq_generator")
+	@Column(name = "sales_rollup_delta_id")
+	private Long id;
+
+	@Column(name = "sales_date", nullable = false)
+	private LocalDate salesDate;
+
+	@Enumerated(EnumType.STRING)
+	private OrderStatus status;
+
+	@Column(name = "item_id")
+	private Long itemId;
+
+	@Column(name = "order_count")
+	private long orderCount;
+
+	private long quantity;
+
+	private long revenue;
+
+	private SalesRollupDelta(LocalDate salesDate, OrderStatus status, Long itemId, long orderCount, long quantity, long revenue) {
+		this.salesDate = salesDate;
+		this.status = status;
+		this.itemId = itemId;
+		this.orderCount = orderCount;
+		this.quantity = quantity;
+		this.revenue = revenue;
+	}
+
+	static SalesRollupDelta daily(LocalDate salesDate, OrderStatus status, long orderCount, long quantity, long revenue) {
+		return new SalesRollupDelta(salesDate, status, null, orderCount, quantity, revenue);
+	}
+
+	static SalesRollupDelta item(LocalDate salesDate, Long itemId, long quantity, long revenue) {
+		return new SalesRollupDelta(salesDate, null, itemId, 0, quantity, revenue);
+	}
+}
@@ -0,0 +1,308 @@
+package jpabook.jpashop.report;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 주문/취소를 매출 집계(sales_daily, sales_daily_item)에 반영한다.
+ *
+ * 주문 트랜잭션은 집계 줄을 건드리지 않는다. 오늘 날짜 집계 줄은 모든 주문이 같이 쓰는 hot row라서
+ * 주문마다 update 하면 커밋(핫 상품이면 변경 기록 fsync 포함)까지 row lock을 잡고 주문이 한 줄로 선다.
+ * 1. 트랜잭션 안에서는 변화량만 모아두고 커밋 직전(beforeCommit)에 키마다 sales_rollup_delta 한 줄씩 insert 한다.
+ *    insert끼리는 lock을 기다리지 않는다. 롤백되면 변화량도 같이 없어진다.
+ * 2. merge-interval-millis마다 백그라운드 스레드(merge)가 커밋된 변화량을 batch-size개씩 읽어서 키별로 합치고
+ *    집계 줄에 키마다 update 한 번씩 더한 뒤 읽은 줄을 지운다. 집계 줄 lock은 이 스레드만 잡는다.
+ * 그래서 보고서는 최대 merge 주기만큼 늦다.
+ *
+ * 날짜/상품의 첫 변화량이면 update할 줄이 없다. 그때만 0인 줄을 insert 하고 다시 update 한다.
+ * insert는 merge 트랜잭션의 커넥션에서 savepoint로 감싼다. (SalesRollupRepository.createDaily)
+ * 서버가 여러 대라 같은 줄을 동시에 만들면 나중 insert는 먼저 만든 트랜잭션이 커밋할 때까지 기다렸다가 키 중복으로 실패한다.
+ * 그때는 savepoint까지만 되돌리고 이제 보이는 줄에 다시 update 한다.
+ */
+@Slf4j
+@Component
+public class SalesRollupRecorder {
+
+	private static final int MAX_CREATE_ATTEMPTS = 3;
+
+	private final SalesRollupRepository salesRollupRepository;
+	private final TransactionTemplate requiresNew;
+	private final long mergeIntervalMillis;
+	private final int batchSize;
+	private ScheduledExecutorService merger;
+
+	public SalesRollupRecorder(SalesRollupRepository salesRollupRepository, PlatformTransactionManager transactionManager,
+			@Value("${app.sales-rollup.merge-interval-millis:1000}") long mergeIntervalMillis,
+			@Value("${app.sales-rollup.batch-size:10000}") int batchSize) {
+		this.salesRollupRepository = salesRollupRepository;
+		this.requiresNew = new TransactionTemplate(transactionManager);
+		this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.mergeIntervalMillis = mergeIntervalMillis;
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	@PostConstruct
+	public void start() {
+		if (mergeIntervalMillis <= 0) {
+			return;
+		}
+		merger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "sales-rollup-merge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		merger.scheduleWithFixedDelay(() -> {
+			try {
+				merge();
+			} catch (RuntimeException e) {
+				log.warn("매출 집계 반영 실패. 다음 주기에 다시 반영합니다.", e);
+			}
+		}, mergeIntervalMillis, mergeIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	//남은 변화량을 반영하고 끝낸다.
+	@PreDestroy
+	public void shutdown() {
+		if (merger == null) {
+			return;
+		}
+		merger.shutdownNow();
+		try {
+			merge();
+		} catch (RuntimeException e) {
+			log.warn("매출 집계 반영 실패. 다음 기동 후에 반영합니다.", e);
+		}
+	}
+
+	/**
+	 * 커밋된 변화량을 집계 줄에 더한다. 남은 게 없을 때까지 batch-size개씩 따로 커밋한다.
+	 * 테스트나 관리 작업에서 보고서를 바로 맞추고 싶을 때도 부른다.
+	 *
+	 * @return 반영한 변화량 줄 수
+	 */
+	public synchronized int merge() {
+		int merged = 0;
+		while (true) {
+			Integer count = requiresNew.execute(status -> mergeBatch());
+			merged += count;
+			if (count < batchSize) {
+				return merged;
+			}
+		}
+	}
+
+	private int mergeBatch() {
+		List<SalesRollupDelta> rows = salesRollupRepository.findDeltas(batchSize);
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		Deltas deltas = new Deltas();
+		List<Long> ids = new ArrayList<>(rows.size());
+		for (SalesRollupDelta row : rows) {
+			if (row.getStatus() != null) {
+				deltas.addDaily(row.getSalesDate(), row.getStatus(), row.getOrderCount(), row.getQuantity(), row.getRevenue());
+			} else {
+				deltas.addItem(row.getSalesDate(), row.getItemId(), row.getQuantity(), row.getRevenue());
+			}
+			ids.add(row.getId());
+		}
+		apply(deltas);
+		salesRollupRepository.deleteDeltas(ids);
+		return rows.size();
+	}
+
+	public void orderPlaced(Order order) {
+		record(order, OrderStatus.ORDER, 1);
+	}
+
+	//주문일 기준 ORDER 줄에서 빼서 CANCEL 줄로 옮긴다. 상품별 집계는 순매출이라 빼기만 한다.
+	public void orderCanceled(Order order) {
+		record(order, OrderStatus.ORDER, -1);
+		Deltas deltas = currentDeltas();
+		long[] totals = totals(order);
+		deltas.addDaily(order.getOrderDate().toLocalDate(), OrderStatus.CANCEL, 1, totals[0], totals[1]);
+	}
+
+	/**
+	 * 일괄 취소용. 주문 엔티티 대신 주문일과 상품별 [수량, 매출]로 기록한다. 반영 내용은 orderCanceled(Order)와 같다.
+	 */
+	public void orderCanceled(LocalDate salesDate, Map<Long, long[]> items) {
+		Deltas deltas = currentDeltas();
+		long quantity = 0;
+		long revenue = 0;
+		for (Map.Entry<Long, long[]> item : items.entrySet()) {
+			long[] value = item.getValue();
+			deltas.addItem(salesDate, item.getKey(), -value[0], -value[1]);
+			quantity += value[0];
+			revenue += value[1];
+		}
+		deltas.addDaily(salesDate, OrderStatus.ORDER, -1, -quantity, -revenue);
+		deltas.addDaily(salesDate, OrderStatus.CANCEL, 1, quantity, revenue);
+	}
+
+	private void record(Order order, OrderStatus status, int sign) {
+		Deltas deltas = currentDeltas();
+		LocalDate salesDate = order.getOrderDate().toLocalDate();
+		long[] totals = totals(order);
+		deltas.addDaily(salesDate, status, sign, sign * totals[0], sign * totals[1]);
+		for (OrderItem orderItem : order.getOrderItems()) {
+			deltas.addItem(salesDate, orderItem.getItem().getId(), sign * (long) orderItem.getCount(), sign * revenue(orderItem));
+		}
+	}
+
+	//[수량, 매출]
+	private static long[] totals(Order order) {
+		long quantity = 0;
+		long revenue = 0;
+		for (OrderItem orderItem : order.getOrderItems()) {
+			quantity += orderItem.getCount();
+			revenue += revenue(orderItem);
+		}
+		return new long[] {quantity, revenue};
+	}
+
+	private static long revenue(OrderItem orderItem) {
+		return (long) orderItem.getOrderPrice() * orderItem.getCount();
+	}
+
+	private Deltas currentDeltas() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			throw new IllegalStateException("매출 집계는 트랜잭션 안에서만 기록할 수 있습니다.");
+		}
+		Deltas deltas = (Deltas) TransactionSynchronizationManager.getResource(this);
+		if (deltas == null) {
+			Deltas created = new Deltas();
+			TransactionSynchronizationManager.bindResource(this, created);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					save(created);
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(SalesRollupRecorder.this);
+				}
+			});
+			deltas = created;
+		}
+		return deltas;
+	}
+
+	//주문 트랜잭션: 키마다 변화량 한 줄 insert (집계 줄은 건드리지 않는다)
+	private void save(Deltas deltas) {
+		deltas.daily.forEach((key, value) -> {
+			if (value[0] != 0 || value[1] != 0 || value[2] != 0) {
+				salesRollupRepository.saveDelta(SalesRollupDelta.daily(key.salesDate, key.status, value[0], value[1], value[2]));
+			}
+		});
+		deltas.items.forEach((key, value) -> {
+			if (value[0] != 0 || value[1] != 0) {
+				salesRollupRepository.saveDelta(SalesRollupDelta.item(key.salesDate, key.itemId, value[0], value[1]));
+			}
+		});
+	}
+
+	//merge 트랜잭션: 키 순서(날짜, 상태/상품 id)대로 update 한 번씩. 서버끼리 lock 순서가 같다. (데드락 방지)
+	private void apply(Deltas deltas) {
+		deltas.daily.forEach((key, value) -> {
+			if (value[0] != 0 || value[1] != 0 || value[2] != 0) {
+				add(() -> salesRollupRepository.addDaily(key.salesDate, key.status, value[0], value[1], value[2]),
+					() -> salesRollupRepository.createDaily(key.salesDate, key.status));
+			}
+		});
+		deltas.items.forEach((key, value) -> {
+			if (value[0] != 0 || value[1] != 0) {
+				add(() -> salesRollupRepository.addDailyItem(key.salesDate, key.itemId, value[0], value[1]),
+					() -> salesRollupRepository.createDailyItem(key.salesDate, key.itemId));
+			}
+		});
+	}
+
+	//update할 줄이 없으면 만들고 다시 update. 다른 트랜잭션이 먼저 만들었으면 그 줄에 다시 update.
+	private void add(IntSupplier update, Runnable create) {
+		for (int attempt = 0; update.getAsInt() == 0; attempt++) {
+			if (attempt == MAX_CREATE_ATTEMPTS) {
+				throw new IllegalStateException("매출 집계 줄을 만들지 못했습니다.");
+			}
+			try {
+				create.run();
+			} catch (DataIntegrityViolationException e) {
+				//다른 트랜잭션이 먼저 만들었다.
+			}
+		}
+	}
+
+	//트랜잭션 하나(또는 merge 한 번)에서 모은 변화량. 키 순서대로 반복하도록 TreeMap.
+	private static class Deltas {
+		//[orderCount, quantity, revenue]
+		final Map<DailyKey, long[]> daily = new TreeMap<>();
+		//[quantity, revenue]
+		final Map<ItemKey, long[]> items = new TreeMap<>();
+
+		void addDaily(LocalDate salesDate, OrderStatus status, long orderCount, long quantity, long revenue) {
+			long[] value = daily.computeIfAbsent(new DailyKey(salesDate, status), key -> new long[3]);
+			value[0] += orderCount;
+			value[1] += quantity;
+			value[2] += revenue;
+		}
+
+		void addItem(LocalDate salesDate, Long itemId, long quantity, long revenue) {
+			long[] value = items.computeIfAbsent(new ItemKey(salesDate, itemId), key -> new long[2]);
+			value[0] += quantity;
+			value[1] += revenue;
+		}
+	}
+
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	private static class DailyKey implements Comparable<DailyKey> {
+		final LocalDate salesDate;
+		final OrderStatus status;
+
+		@Override
+		public int compareTo(DailyKey other) {
+			int result = salesDate.compareTo(other.salesDate);
+			return result != 0 ? result : status.compareTo(other.status);
+		}
+	}
+
+	@EqualsAndHashCode
+	@RequiredArgsConstructor
+	private static class ItemKey implements Comparable<ItemKey> {
+		final LocalDate salesDate;
+		final Long itemId;
+
+		@Override
+		public int compareTo(ItemKey other) {
+			int result = salesDate.compareTo(other.salesDate);
+			return result != 0 ? result : itemId.compareTo(other.itemId);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package jpabook.jpashop.report;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class SalesRollupRepository {
+
+	private final EntityManager em;
+	private final JdbcTemplate jdbcTemplate;
+
+	//== 변화량. 주문 트랜잭션은 insert만 한다. ==//
+	public void saveDelta(SalesRollupDelta delta) {
+		em.persist(delta);
+	}
+
+	/**
+	 * 합칠 변화량 (id 순 최대 limit개). 서버가 여러 대면 같은 줄을 두 번 합치지 않도록 select ... for update.
+	 * 먼저 잡은 쪽이 지우고 커밋하면 기다리던 쪽에는 그 줄이 나오지 않는다.
+	 */
+	public List<SalesRollupDelta> findDeltas(int limit) {
+		return em.createQuery("select d from SalesRollupDelta d order by d.id", SalesRollupDelta.class)
+				.setMaxResults(limit)
+				.setLockMode(LockModeType.PESSIMISTIC_WRITE)
+				.getResultList();
+	}
+
+	//읽은 줄만 id로 지운다. (읽은 뒤에 커밋된 더 작은 id의 줄은 다음 merge에서 합친다)
+	public int deleteDeltas(List<Long> ids) {
+		return em.createQuery("delete from SalesRollupDelta d where d.id in :ids")
+				.setParameter("ids", ids)
+				.executeUpdate();
+	}
+
+	//== 증분 반영 (merge). 줄이 없으면 0을 반환하고, 그때는 create 후에 다시 더한다. ==//
+	public int addDaily(LocalDate salesDate, OrderStatus status, long orderCount, long quantity, long revenue) {
+		return em.createNativeQuery(
+				"update sales_daily set order_count = order_count + :orderCount, quantity = quantity + :quantity, revenue = revenue + :revenue" +
+				" where sales_date = :salesDate and status = :status")
+				.setParameter("orderCount", orderCount)
+				.setParameter("quantity", quantity)
+				.setParameter("revenue", revenue)
+				.setParameter("salesDate", Date.valueOf(salesDate))
+				.setParameter("status", status.name())
+				.executeUpdate();
+	}
+
+	public int addDailyItem(LocalDate salesDate, Long itemId, long quantity, long revenue) {
+		return em.createNativeQuery(
+				"update sales_daily_item set quantity = quantity + :quantity, revenue = revenue + :revenue" +
+				" where sales_date = :salesDate and item_id = :itemId")
+				.setParameter("quantity", quantity)
+				.setParameter("revenue", revenue)
+				.setParameter("salesDate", Date.valueOf(salesDate))
+				.setParameter("itemId", itemId)
+				.executeUpdate();
+	}
+
+	/**
+	 * 0으로 채운 줄을 만든다. 동시에 같은 줄을 만들면 한쪽은 DataIntegrityViolationException. (먼저 만든 쪽이 커밋할 때까지 기다린 뒤)
+	 * 호출한 트랜잭션의 커넥션에서 savepoint를 잡고 실행하고, 실패하면 savepoint까지만 되돌린다.
+	 * EntityManager로 실행하면 실패했을 때 하이버네이트가 트랜잭션 전체를 롤백으로 표시하므로 JdbcTemplate을 쓴다.
+	 */
+	public void createDaily(LocalDate salesDate, OrderStatus status) {
+		insertInSavepoint(
+				"insert into sales_daily (sales_date, status, order_count, quantity, revenue) values (?, ?, 0, 0, 0)",
+				Date.valueOf(salesDate), status.name());
+	}
+
+	public void createDailyItem(LocalDate salesDate, Long itemId) {
+		insertInSavepoint(
+				"insert into sales_daily_item (sales_date, item_id, quantity, revenue) values (?, ?, 0, 0)",
+				Date.valueOf(salesDate), itemId);
+	}
+
+	//JpaTransactionManager가 트랜잭션의 JDBC 커넥션을 DataSource에 묶어두므로 JdbcTemplate도 같은 커넥션을 쓴다.
+	private void insertInSavepoint(String sql, Object... args) {
+		jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+			Savepoint savepoint = connection.setSavepoint();
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				for (int i = 0; i < args.length; i++) {
+					statement.setObject(i + 1, args[i]);
+				}
+				int rows = statement.executeUpdate();
+				connection.releaseSavepoint(savepoint);
+				return rows;
+			} catch (SQLException e) {
+				connection.rollback(savepoint);
+				throw e;
+			}
+		});
+	}
+
+	//== 조회. 집계 테이블만 읽으므로 주문 수와 상관없이 기간(일 수) 만큼만 읽는다. ==//
+	public List<SalesDaily> findDaily(LocalDate from, LocalDate to) {
+		return em.createQuery(
+				"select s from SalesDaily s" +
+				" where s.salesDate between :from and :to" +
+				" order by s.salesDate, s.status", SalesDaily.class)
+				.setParameter("from", from)
+				.setParameter("to", to)
+				.getResultList();
+	}
+
+	//[status, orderCount, quantity, revenue]
+	public List<Object[]> sumByStatus(LocalDate from, LocalDate to) {
+		return em.createQuery(
+				"select s.status, sum(s.orderCount), sum(s.quantity), sum(s.revenue) from SalesDaily s" +
+				" where s.salesDate between :from and :to" +
+				" group by s.status" +
+				" order by s.status", Object[].class)
+				.setParameter("from", from)
+				.setParameter("to", to)
+				.getResultList();
+	}
+
+	//[itemId, quantity, revenue] 매출 순
+	public List<Object[]> sumByItem(LocalDate from, LocalDate to, int limit) {
+		return em.createQuery(
+				"select s.itemId, sum(s.quantity), sum(s.revenue) from SalesDailyItem s" +
+				" where s.salesDate between :from and :to" +
+				" group by s.itemId" +
+				" order by sum(s.revenue) desc, s.itemId", Object[].class)
+				.setParameter("from", from)
+				.setParameter("to", to)
+				.setMaxResults(limit)
+				.getResultList();
+	}
+
+	//== 재구성 ==//
+	/**
+	 * 원본(orders, order_item)에서 다시 집계한다. 기능 도입 전 데이터나 JDBC로 넣은 데이터(DataSeeder)용.
+	 * 커밋된 주문의 합치지 않은 변화량은 원본 집계에 들어가므로 같이 지운다.
+	 */
+	public void rebuild() {
+		em.createNativeQuery("delete from sales_rollup_delta").executeUpdate();
+		em.createNativeQuery("delete from sales_daily").executeUpdate();
+		em.createNativeQuery("delete from sales_daily_item").executeUpdate();
+		em.createNativeQuery(
+				"insert into sales_daily (sales_date, status, order_count, quantity, revenue)" +
+				" select cast(o.order_date as date), o.status, count(*), sum(oi.quantity), sum(oi.revenue)" +
+				" from orders o" +
+				" join (select order_id, sum(count) quantity, sum(cast(order_price as bigint) * count) revenue" +
+				"       from order_item group by order_id) oi on oi.order_id = o.order_id" +
+				" group by cast(o.order_date as date), o.status")
+				.executeUpdate();
+		em.createNativeQuery(
+				"insert into sales_daily_item (sales_date, item_id, quantity, revenue)" +
+				" select cast(o.order_date as date), oi.item_id, sum(oi.count), sum(cast(oi.order_price as bigint) * oi.count)" +
+				" from order_item oi" +
+				" join orders o on o.order_id = oi.order_id" +
+				" where o.status = 'ORDER'" +
+				" group by cast(o.order_date as date), oi.item_id")
+				.executeUpdate();
+	}
+}
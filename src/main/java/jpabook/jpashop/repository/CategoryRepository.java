@@ -0,0 +1,98 @@
+package jpabook.jpashop.repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Repository;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.Item;
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+
+	private final EntityManager em;
+
+	//closure table 줄은 cascade로 같이 저장된다. 부모 카테고리가 먼저 저장되어 있어야 한다.
+	public void save(Category category) {
+		em.persist(category);
+	}
+
+	public Category findOne(Long id) {
+		return em.find(Category.class, id);
+	}
+
+	//트리 캐시용. 엔티티 대신 id, 이름, 부모 id만 한 번에 읽는다.
+	public List<Object[]> findAllNodes() {
+		return em.createQuery("select c.id, c.name, p.id from Category c left join c.parent p order by c.id", Object[].class)
+				.getResultList();
+	}
+
+	//자기 자신 줄(depth 0)이 없는 카테고리 수. closure table 도입 전에 만든 카테고리.
+	public long countMissingClosures() {
+		return ((Number) em.createNativeQuery(
+				"select count(*) from category c" +
+				" where not exists (select 1 from category_closure cc" +
+				"                   where cc.ancestor_id = c.category_id and cc.descendant_id = c.category_id)")
+				.getSingleResult()).longValue();
+	}
+
+	/**
+	 * closure table을 parent_id로 통째로 다시 쓴다. 카테고리마다 부모를 따라 루트까지 올라가며 (조상, 자신, 거리) 줄을 넣는다.
+	 * 카테고리 수가 적다는 전제. (줄마다 insert 한 번)
+	 * @return 넣은 줄 수
+	 */
+	public int rebuildClosures() {
+		Map<Long, Long> parents = new HashMap<>();
+		for (Object[] node : findAllNodes()) {
+			parents.put((Long) node[0], (Long) node[2]);
+		}
+		em.createNativeQuery("delete from category_closure").executeUpdate();
+		int rows = 0;
+		for (Long categoryId : parents.keySet()) {
+			int depth = 0;
+			for (Long ancestorId = categoryId; ancestorId != null; ancestorId = parents.get(ancestorId)) {
+				if (depth > parents.size()) {
+					throw new IllegalStateException("카테고리 부모 관계에 순환이 있습니다. categoryId=" + categoryId);
+				}
+				em.createNativeQuery("insert into category_closure (ancestor_id, descendant_id, depth) values (?, ?, ?)")
+						.setParameter(1, ancestorId)
+						.setParameter(2, categoryId)
+						.setParameter(3, depth++)
+						.executeUpdate();
+				rows++;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * 카테고리와 모든 하위 카테고리의 상품. 트리를 타고 내려가지 않고 closure table로 한 번에 찾는다.
+	 * category_closure PK(ancestor_id, ...) -> idx_category_item_category -> item PK
+	 * 한 상품이 하위 카테고리 여러 곳에 걸려 있어도 한 번만 나온다.
+	 */
+	public List<Item> findItemsInSubtree(Long categoryId, int offset, int limit) {
+		return em.createQuery(
+				"select i from Item i" +
+				" where i.id in (select ci.id from CategoryClosure cc join cc.descendant c join c.items ci" +
+				"                where cc.ancestor.id = :categoryId)" +
+				" order by i.id", Item.class)
+				.setParameter("categoryId", categoryId)
+				.setFirstResult(offset)
+				.setMaxResults(limit)
+				.getResultList();
+	}
+
+	public long countItemsInSubtree(Long categoryId) {
+		return em.createQuery(
+				"select count(distinct ci.id) from CategoryClosure cc join cc.descendant c join c.items ci" +
+				" where cc.ancestor.id = :categoryId", Long.class)
+				.setParameter("categoryId", categoryId)
+				.getSingleResult();
+	}
+}
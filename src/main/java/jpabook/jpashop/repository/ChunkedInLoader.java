@@ -0,0 +1,133 @@
+package jpabook.jpashop.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.datasource.PrimaryReads;
+import jpabook.jpashop.datasource.ReadYourWrites;
+import jpabook.jpashop.monitoring.SqlStatistics;
+
+/**
+ * where id in (...) 조회를 chunkSize 단위로 나눠서 실행한다.
+ * - 한 statement의 파라미터 수가 chunkSize를 넘지 않는다. (DB 파라미터 제한, 거대한 SQL 방지)
+ * - chunk가 두 개 이상이면 전용 스레드 풀에서 동시에 실행한다.
+ *   각 chunk는 자기 스레드의 읽기 전용 트랜잭션(= 자기 커넥션, 자기 영속성 컨텍스트)에서 돈다.
+ *   그래서 query 함수는 공유 EntityManager(스프링 프록시)를 그대로 쓰면 된다.
+ *   실행된 SQL은 호출한 요청의 SQL 통계(SqlStatistics)에 들어간다.
+ * - 다음 경우에는 다른 커넥션에서 읽으면 안 되므로 chunk를 호출한 스레드에서 차례로 실행한다.
+ *   - 쓰기 트랜잭션 안: 아직 커밋하지 않은 변경이 다른 커넥션에서는 보이지 않는다.
+ *   - read-your-writes 중이거나 PrimaryReads 안: 스레드 상태라서 풀 스레드의 트랜잭션은 복제본으로 갈 수 있다.
+ *
+ * 스레드 수만큼 커넥션을 더 쓰므로 threads는 커넥션 풀 크기보다 충분히 작게 잡는다.
+ * 풀 큐가 가득 차면 호출한 스레드가 직접 실행한다. (CallerRunsPolicy)
+ */
+@Component
+public class ChunkedInLoader {
+
+	private final int chunkSize;
+	private final TransactionTemplate readOnly;
+	private final ThreadPoolExecutor executor;
+	//복제본 라우팅을 켰을 때만 있다.
+	private final ObjectProvider<ReadYourWrites> readYourWrites;
+
+	public ChunkedInLoader(PlatformTransactionManager transactionManager, ObjectProvider<ReadYourWrites> readYourWrites,
+			@Value("${app.in-loader.chunk-size:1000}") int chunkSize,
+			@Value("${app.in-loader.threads:4}") int threads) {
+		this.chunkSize = chunkSize;
+		this.readYourWrites = readYourWrites;
+		this.readOnly = new TransactionTemplate(transactionManager);
+		this.readOnly.setReadOnly(true);
+
+		AtomicInteger sequence = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(threads * 16),
+				runnable -> {
+					Thread thread = new Thread(runnable, "in-loader-" + sequence.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @param ids   in 절에 넣을 값
+	 * @param query chunk 하나를 조회하는 함수
+	 * @return chunk 결과를 chunk 순서대로 이어 붙인 것
+	 */
+	public <K, V> List<V> load(List<K> ids, Function<List<K>, List<V>> query) {
+		if (ids.isEmpty()) {
+			return new ArrayList<>();
+		}
+		//한 번이면 충분하면 스레드를 넘기지 않고 호출한 트랜잭션에서 바로 조회
+		if (ids.size() <= chunkSize) {
+			return query.apply(ids);
+		}
+
+		if (mustReadOnCaller()) {
+			List<V> result = new ArrayList<>(ids.size());
+			for (int from = 0; from < ids.size(); from += chunkSize) {
+				result.addAll(query.apply(ids.subList(from, Math.min(from + chunkSize, ids.size()))));
+			}
+			return result;
+		}
+
+		SqlStatistics statistics = SqlStatistics.current();
+		List<Future<List<V>>> futures = new ArrayList<>();
+		for (int from = 0; from < ids.size(); from += chunkSize) {
+			List<K> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+			futures.add(executor.submit(() -> SqlStatistics.callWith(statistics,
+					() -> readOnly.execute(status -> query.apply(chunk)))));
+		}
+
+		List<V> result = new ArrayList<>(ids.size());
+		try {
+			for (Future<List<V>> future : futures) {
+				result.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("in 조회가 중단되었습니다.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw (cause instanceof RuntimeException) ? (RuntimeException) cause : new IllegalStateException(cause);
+		} finally {
+			//실패했으면 아직 시작하지 않은 chunk는 버린다.
+			futures.forEach(future -> future.cancel(false));
+		}
+		return result;
+	}
+
+	private boolean mustReadOnCaller() {
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return true;
+		}
+		if (PrimaryReads.isActive()) {
+			return true;
+		}
+		ReadYourWrites current = readYourWrites.getIfAvailable();
+		return current != null && current.isSticky();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
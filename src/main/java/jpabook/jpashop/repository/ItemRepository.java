@@ -1,12 +1,17 @@
 package jpabook.jpashop.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
 
 import org.springframework.stereotype.Repository;
 
 import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.domain.exception.NotEnoughStockException;
 import lombok.RequiredArgsConstructor;
 
 @Repository
@@ -27,8 +32,122 @@ public class ItemRepository {
 		return em.find(Item.class, id);
 	}
 	
+	/**
+	 * 재고 차감.
+	 * 엔티티에서 읽고-검사하고-쓰면 동시에 들어온 주문이 둘 다 검사를 통과하고 한쪽 update가 덮어써진다.
+	 * 조건부 update 한 번으로 검사와 차감을 DB에서 원자적으로 처리한다. (row lock은 커밋까지 유지)
+	 * 벌크 연산은 영속성 컨텍스트를 거치지 않으므로 넘겨받은 엔티티는 예전 재고를 들고 있다. 준영속으로 만든다. (removeStocks와 같음)
+	 */
+	public void removeStock(Item item, int quantity) {
+		//JPQL update는 item 테이블과 상관없는 대기중인 insert(주문, 주문상품)를 flush 하지 않는다.
+		//먼저 내보내서 row lock은 커밋 직전에만 잡히도록 한다.
+		em.flush();
+		int updated = em.createQuery(
+				"update Item i set i.stockQuantity = i.stockQuantity - :quantity" +
+				" where i.id = :id and i.stockQuantity >= :quantity")
+				.setParameter("quantity", quantity)
+				.setParameter("id", item.getId())
+				.executeUpdate();
+		if (updated == 0) {
+			throw new NotEnoughStockException("need more stock");
+		}
+		em.detach(item);
+	}
+	
+	/**
+	 * 여러 상품의 재고를 update 한 번으로 차감한다. (장바구니 주문)
+	 * 모든 상품의 재고가 충분할 때만 전부 차감되고, 하나라도 부족하면 NotEnoughStockException. (트랜잭션 롤백)
+	 * in 조건은 PK 인덱스를 id 순으로 타기 때문에 row lock도 id 순으로 잡혀서 장바구니끼리 데드락이 나지 않는다.
+	 *
+	 * 벌크 연산이라 영속성 컨텍스트의 상품은 예전 재고를 들고 있으므로 준영속으로 만든다.
+	 * (상품마다 refresh 하면 상품 수만큼 select가 나간다)
+	 */
+	public void removeStocks(List<Item> items, Map<Long, Integer> quantities) {
+		StringBuilder quantityCase = new StringBuilder("case item_id");
+		int i = 0;
+		for (Long itemId : quantities.keySet()) {
+			quantityCase.append(" when :id").append(i).append(" then :quantity").append(i);
+			i++;
+		}
+		quantityCase.append(" end");
+		
+		Query query = em.createNativeQuery(
+				"update item set stock_quantity = stock_quantity - " + quantityCase +
+				" where item_id in (:ids) and stock_quantity >= " + quantityCase)
+				.setParameter("ids", quantities.keySet());
+		i = 0;
+		for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+			query.setParameter("id" + i, entry.getKey())
+				.setParameter("quantity" + i, entry.getValue());
+			i++;
+		}
+		
+		//대기중인 insert(주문, 주문상품)를 batch로 먼저 내보내서 row lock은 커밋 직전에만 잡히도록 한다.
+		em.flush();
+		if (query.executeUpdate() != quantities.size()) {
+			throw new NotEnoughStockException("need more stock");
+		}
+		items.forEach(em::detach);
+	}
+	
+	/**
+	 * 재고 복구. 차감과 같은 이유로 현재 값에 더하는 update를 사용하고, 넘겨받은 엔티티는 준영속으로 만든다.
+	 */
+	public void addStock(Item item, int quantity) {
+		em.createQuery("update Item i set i.stockQuantity = i.stockQuantity + :quantity where i.id = :id")
+				.setParameter("quantity", quantity)
+				.setParameter("id", item.getId())
+				.executeUpdate();
+		em.detach(item);
+	}
+	
+	/**
+	 * 여러 상품의 재고를 상품마다 update 한 번씩 복구한다. (일괄 취소, 핫 상품 재고 반영은 음수도 넘긴다)
+	 * 주문상품 수와 상관없이 상품 종류 수만큼만 update가 나간다. id 순으로 실행해서 row lock 순서가 항상 같다.
+	 * 영속성 컨텍스트의 상품은 refresh 하지 않는다. (호출한 쪽에서 상품 엔티티를 쓰지 않음)
+	 */
+	public void addStocks(SortedMap<Long, Integer> quantities) {
+		for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+			em.createQuery("update Item i set i.stockQuantity = i.stockQuantity + :quantity where i.id = :id")
+					.setParameter("quantity", entry.getValue())
+					.setParameter("id", entry.getKey())
+					.executeUpdate();
+		}
+	}
+	
+	public List<Item> findAllById(Collection<Long> ids){
+		return em.createQuery("select i from Item i where i.id in :ids", Item.class)
+				.setParameter("ids", ids)
+				.getResultList();
+	}
+	
 	public List<Item> findAll(){
 		return em.createQuery("select i from Item i", Item.class)
 				.getResultList();
 	}
+	
+	//[min id, max id]. 상품이 없으면 null
+	public long[] findIdRange() {
+		Object[] range = em.createQuery("select min(i.id), max(i.id) from Item i", Object[].class)
+				.getSingleResult();
+		if (range[0] == null) {
+			return null;
+		}
+		return new long[] {((Number) range[0]).longValue(), ((Number) range[1]).longValue()};
+	}
+	
+	/**
+	 * 검색 색인용 [id, dtype, name, author, isbn, artist, director]. id 순.
+	 * 엔티티를 만들지 않도록 필요한 컬럼만 읽는다. 호출한 쪽에서 id 범위를 나눠 병렬로 부른다. (ItemSearchIndexBuilder)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> findSearchFields(long fromId, long toId) {
+		return em.createNativeQuery(
+				"select item_id, dtype, name, author, isbn, artist, director from item" +
+				" where item_id between :fromId and :toId" +
+				" order by item_id")
+				.setParameter("fromId", fromId)
+				.setParameter("toId", toId)
+				.getResultList();
+	}
 }
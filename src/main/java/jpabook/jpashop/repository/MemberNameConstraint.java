@@ -0,0 +1,48 @@
+package jpabook.jpashop.repository;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 회원 이름 유니크 제약조건(uk_member_name) 확인
+ * 제약조건이 생기기 전 DB에는 같은 이름의 회원이 있을 수 있다. 그러면 ddl-auto=update가 제약조건을 만들다 실패하고
+ * (경고 로그만 남기고 넘어간다) 중복 검사가 DB 제약조건 없이 돌게 된다.
+ *
+ * 기동할 때 중복된 이름이 있으면 목록을 남기고 기동을 멈춘다. 회원 이름은 고객 데이터라서 여기서 바꾸지 않는다.
+ * 운영자가 직접 정리한 뒤 다시 띄우면 제약조건이 없을 때만 만든다.
+ * 스키마가 만들어진 다음(entityManagerFactory), 이름 Bloom filter를 채우기 전(MemberService, ApplicationReadyEvent)에 실행한다.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class MemberNameConstraint {
+
+	//오류 메시지에 보여줄 중복 이름 수
+	private static final int MAX_REPORTED = 20;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	@PostConstruct
+	public void check() {
+		List<String> duplicates = jdbcTemplate.query(
+				"select name, count(*) cnt, group_concat(member_id order by member_id separator ',') ids" +
+				" from member where name is not null group by name having count(*) > 1 order by name",
+				(rs, rowNum) -> rs.getString("name") + " (" + rs.getLong("cnt") + "명, member_id " + rs.getString("ids") + ")");
+		if (!duplicates.isEmpty()) {
+			String report = duplicates.stream().limit(MAX_REPORTED).collect(Collectors.joining(", "));
+			throw new IllegalStateException("이름이 같은 회원이 있어 uk_member_name을 만들 수 없습니다. 직접 정리한 뒤 다시 시작하세요. "
+					+ duplicates.size() + "개 이름: " + report + (duplicates.size() > MAX_REPORTED ? " ..." : ""));
+		}
+		jdbcTemplate.execute("alter table member add constraint if not exists uk_member_name unique (name)");
+	}
+}
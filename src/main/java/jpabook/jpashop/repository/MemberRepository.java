@@ -1,10 +1,14 @@
 package jpabook.jpashop.repository;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
 
 import jpabook.jpashop.domain.Member;
@@ -20,8 +24,16 @@ public class MemberRepository {
 //	private EntityManager em;
 	
 	
+	//이름 유니크 제약조건 위반을 커밋 시점이 아니라 가입 시점에 바로 알 수 있도록 flush 한다.
 	public void save(Member member) {
 		em.persist(member);
+		em.flush();
+	}
+	
+	//save와 같은 이유로 flush 한다.
+	public void changeName(Member member, String name) {
+		member.setName(name);
+		em.flush();
 	}
 	
 	public Member findOne(Long id) {
@@ -39,5 +51,30 @@ public class MemberRepository {
 				.getResultList();
 	}
 	
+	//엔티티를 올리지 않고 uk_member_name 인덱스만 확인한다.
+	public boolean existsByName(String name) {
+		return !em.createQuery("select m.id from Member m where m.name = :name", Long.class)
+				.setParameter("name", name)
+				.setMaxResults(1)
+				.getResultList()
+				.isEmpty();
+	}
+	
+	//전체 회원 이름을 List에 담지 않고 하나씩 넘긴다.
+	public void forEachName(Consumer<String> consumer) {
+		ScrollableResults names = em.createQuery("select m.name from Member m", String.class)
+				.unwrap(Query.class)
+				.setFetchSize(1000)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (names.next()) {
+				consumer.accept((String) names.get(0));
+			}
+		} finally {
+			names.close();
+		}
+	}
+	
 
 }
@@ -0,0 +1,44 @@
+package jpabook.jpashop.repository;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jpabook.jpashop.domain.OrderItem;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * order_item_seq 시작 위치 맞추기
+ * 주문상품 id는 원래 hibernate_sequence에서 받았다. 기존 DB에 ddl-auto=update로 order_item_seq가 새로 생기면 1부터 시작해서
+ * 이미 있는 order_item_id와 겹친다. 기동할 때 시퀀스가 max(order_item_id)보다 뒤에 있는지 보고 아니면 뒤로 민다.
+ *
+ * pooled 옵티마이저는 시퀀스 값 v를 받으면 (v - allocationSize, v] 구간을 쓰므로 v - allocationSize가 max보다 커야 한다.
+ * 스키마가 만들어진 다음(entityManagerFactory), 요청을 받기 전(@PostConstruct)에 실행한다.
+ * JDBC로 주문상품을 넣은 뒤(DataSeeder)에도 다시 부른다. 시퀀스를 앞으로만 민다.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+public class OrderItemSequenceAligner {
+
+	private final JdbcTemplate jdbcTemplate;
+
+	@PostConstruct
+	public void align() {
+		Long maxId = jdbcTemplate.queryForObject("select max(order_item_id) from order_item", Long.class);
+		if (maxId == null) {
+			return;
+		}
+		long next = jdbcTemplate.queryForObject("select next value for order_item_seq", Long.class);
+		if (next - OrderItem.ID_ALLOCATION_SIZE > maxId) {
+			return;
+		}
+		long restart = maxId + OrderItem.ID_ALLOCATION_SIZE + 1;
+		jdbcTemplate.execute("alter sequence order_item_seq restart with " + restart);
+		log.info("order_item_seq를 {}에서 {}로 옮겼습니다. (max order_item_id {})", next, restart, maxId);
+	}
+}
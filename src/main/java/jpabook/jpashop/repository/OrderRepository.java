@@ -1,15 +1,20 @@
 package jpabook.jpashop.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.StringUtils;
 
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
 import lombok.RequiredArgsConstructor;
 
@@ -17,7 +22,10 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class OrderRepository {
 	
+	public static final int MAX_SEARCH_RESULTS = 1000;
+	
 	private final EntityManager em;
+	private final OrderSearchTemplates searchTemplates = new OrderSearchTemplates();
 	
 	public void save(Order order) {
 		em.persist(order);
@@ -27,41 +35,148 @@ public class OrderRepository {
 		return em.find(Order.class, id);
 	}
 
-	//JPA로 짜면 아주 복잡함.
+	/**
+	 * 취소용. select ... for update로 같은 주문을 동시에 취소하는 트랜잭션은 앞의 커밋을 기다렸다가 바뀐 상태를 본다.
+	 */
+	public Order findOneForUpdate(Long id) {
+		return em.find(Order.class, id, LockModeType.PESSIMISTIC_WRITE);
+	}
+
+	/**
+	 * 주문 검색 (최대 MAX_SEARCH_RESULTS건)
+	 */
 	public List<Order> findAllByString(OrderSearch orderSearch){
-		//language=JPAQL
-		String jpql = "select o From Order o join o.member m";
-		boolean isFirstCondition = true;
-		//주문 상태 검색
-		if (orderSearch.getOrderStatus() != null) {
-			if (isFirstCondition) {
-				jpql += " where";
-				isFirstCondition = false;
-			} else {
-				jpql += " and";
-			}
-			jpql += " o.status = :status";
-		}
-		
-		//회원 이름 검색
-		if (StringUtils.hasText(orderSearch.getMemberName())) {
-			if (isFirstCondition) {
-				jpql += " where";
-				isFirstCondition = false;
-			} else {
-				jpql += " and";
+		return search(orderSearch, 0, MAX_SEARCH_RESULTS);
+	}
+	
+	/**
+	 * 동적 검색.
+	 * 조건 조합마다 미리 만들어 둔 JPQL(OrderSearchTemplates)을 골라서 파라미터만 바인딩한다.
+	 */
+	public List<Order> search(OrderSearch orderSearch, int offset, int limit){
+		int mask = OrderSearchTemplates.maskOf(orderSearch);
+		TypedQuery<Order> query = em.createQuery(searchTemplates.get(mask), Order.class)
+									.setFirstResult(offset)
+									.setMaxResults(limit);
+		OrderSearchTemplates.bind(query, orderSearch, mask);
+		return query.getResultList();
+	}
+	
+	//search와 같은 조건으로 주문 id만 조회한다. (일괄 취소 대상)
+	public List<Long> searchIds(OrderSearch orderSearch, int limit){
+		int mask = OrderSearchTemplates.maskOf(orderSearch);
+		TypedQuery<Long> query = em.createQuery(searchTemplates.getIds(mask), Long.class)
+									.setMaxResults(limit);
+		OrderSearchTemplates.bind(query, orderSearch, mask);
+		return query.getResultList();
+	}
+	
+	/**
+	 * 검색 조건 일괄 취소 대상. 조건에 맞는 주문 중 주문 상태(ORDER)이고 배송 완료가 아닌 것만 id 순으로.
+	 * lock은 걸지 않는다. 취소할 때 findCancelTargets로 다시 잠그고 확인한다.
+	 */
+	public List<Long> searchCancelableIds(OrderSearch orderSearch, int limit) {
+		int mask = OrderSearchTemplates.maskOf(orderSearch);
+		TypedQuery<Long> query = em.createQuery(searchTemplates.getCancelableIds(mask), Long.class)
+									.setParameter("cancelable", OrderStatus.ORDER)
+									.setParameter("delivered", DeliveryStatus.COMP)
+									.setMaxResults(limit);
+		OrderSearchTemplates.bind(query, orderSearch, mask);
+		return query.getResultList();
+	}
+	
+	/**
+	 * 검색 조건에 맞지만 취소 대상이 아닌 주문 수 [이미 취소, 배송 완료]
+	 */
+	public long[] countCancelSkipped(OrderSearch orderSearch) {
+		int mask = OrderSearchTemplates.maskOf(orderSearch);
+		TypedQuery<Object[]> query = em.createQuery(searchTemplates.getSkippedCount(mask), Object[].class)
+									.setParameter("canceled", OrderStatus.CANCEL)
+									.setParameter("delivered", DeliveryStatus.COMP);
+		OrderSearchTemplates.bind(query, orderSearch, mask);
+		Object[] counts = query.getSingleResult();
+		return new long[] {count(counts[0]), count(counts[1])};
+	}
+	
+	//조건에 맞는 주문이 없으면 sum은 null
+	private static long count(Object sum) {
+		return sum == null ? 0 : ((Number) sum).longValue();
+	}
+	
+	/**
+	 * 기동 시 검색 조합 전부를 한 번씩 파싱해서 하이버네이트 쿼리 플랜 캐시에 올려둔다.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void precompileSearchTemplates() {
+		EntityManager warmUp = em.getEntityManagerFactory().createEntityManager();
+		try {
+			for (int mask = 0; mask < OrderSearchTemplates.COMBINATIONS; mask++) {
+				warmUp.createQuery(searchTemplates.peek(mask), Order.class);
+				warmUp.createQuery(searchTemplates.peekIds(mask), Long.class);
+				warmUp.createQuery(searchTemplates.peekCancelableIds(mask), Long.class);
+				warmUp.createQuery(searchTemplates.peekSkippedCount(mask), Object[].class);
 			}
-			jpql += " m.name like :name";
-		}
-		TypedQuery<Order> query = em.createQuery(jpql, Order.class)
-									.setMaxResults(1000); //최대 1000건
-		if (orderSearch.getOrderStatus() != null) {
-			query = query.setParameter("status", orderSearch.getOrderStatus());
-		}
-		if (StringUtils.hasText(orderSearch.getMemberName())) {
-			query = query.setParameter("name", orderSearch.getMemberName());
+		} finally {
+			warmUp.close();
 		}
-		return query.getResultList();
+	}
+	
+	/**
+	 * total_amount 컬럼이 생기기 전 주문(null)의 주문 금액을 주문상품에서 계산해 채운다.
+	 * 비어 있으면 주문 금액 검색에 걸리지 않는다.
+	 */
+	public int backfillTotalAmounts() {
+		return em.createNativeQuery(
+				"update orders o set total_amount = (" +
+				" select coalesce(sum(cast(oi.order_price as bigint) * oi.count), 0) from order_item oi where oi.order_id = o.order_id)" +
+				" where o.total_amount is null")
+				.executeUpdate();
+	}
+	
+	//조건 조합별 검색 횟수 (비트 순서: 상태, 회원명, 시작일, 종료일, 최소금액, 최대금액, 상품명)
+	public long searchTemplateUsage(int mask) {
+		return searchTemplates.usage(mask);
+	}
+
+	//== 일괄 취소 ==//
+	/**
+	 * 취소 대상 확인용 [orderId, 주문상태, 배송상태]. 주문, 배송을 엔티티로 로딩하지 않는다.
+	 * id 순으로 row lock(select ... for update)을 잡아서 검사 후 update 전에 다른 트랜잭션이 상태를 바꾸지 못하게 한다.
+	 */
+	public List<Object[]> findCancelTargets(List<Long> orderIds) {
+		return em.createQuery(
+				"select o.id, o.status, d.status from Order o" +
+				" join o.delivery d" +
+				" where o.id in :ids" +
+				" order by o.id", Object[].class)
+				.setParameter("ids", orderIds)
+				.setLockMode(LockModeType.PESSIMISTIC_WRITE)
+				.getResultList();
+	}
+	
+	/**
+	 * 주문 상태를 update 한 번으로 CANCEL로 바꾼다.
+	 * 벌크 연산이라 영속성 컨텍스트에 이미 올라온 주문은 예전 상태를 들고 있다.
+	 */
+	public int cancelAll(List<Long> orderIds) {
+		return em.createQuery(
+				"update Order o set o.status = :cancel" +
+				" where o.id in :ids and o.status = :order")
+				.setParameter("cancel", OrderStatus.CANCEL)
+				.setParameter("order", OrderStatus.ORDER)
+				.setParameter("ids", orderIds)
+				.executeUpdate();
+	}
+	
+	//주문상품 [orderId, 주문일, itemId, 수량, 주문가격] 주문 id 순. 재고 복구, 매출 집계용.
+	public List<Object[]> findOrderLines(List<Long> orderIds) {
+		return em.createQuery(
+				"select o.id, o.orderDate, oi.item.id, oi.count, oi.orderPrice from OrderItem oi" +
+				" join oi.order o" +
+				" where o.id in :ids" +
+				" order by o.id", Object[].class)
+				.setParameter("ids", orderIds)
+				.getResultList();
 	}
 
 	public List<Order> findAllWithMemberDelivery() {
@@ -82,6 +197,31 @@ public class OrderRepository {
 		.getResultList();
 	}
 
+	/**
+	 * keyset(seek) 페이징.
+	 * offset은 앞의 row를 전부 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+	 * 마지막으로 본 (orderDate, id) 다음부터 (order_date, order_id) 인덱스를 타고 읽으므로 페이지 깊이와 상관없이 일정하다.
+	 * 컬렉션(orderItems)은 그대로 default_batch_fetch_size로 로딩한다.
+	 */
+	public List<Order> findAllWithMemberDeliveryAfter(LocalDateTime lastOrderDate, Long lastId, int limit) {
+		String jpql = "select o from Order o" +
+				" join fetch o.member m" +
+				" join fetch o.delivery d";
+		if (lastOrderDate != null && lastId != null) {
+			jpql += " where o.orderDate > :lastOrderDate" +
+					" or (o.orderDate = :lastOrderDate and o.id > :lastId)";
+		}
+		jpql += " order by o.orderDate, o.id";
+
+		TypedQuery<Order> query = em.createQuery(jpql, Order.class)
+				.setMaxResults(limit);
+		if (lastOrderDate != null && lastId != null) {
+			query.setParameter("lastOrderDate", lastOrderDate)
+				.setParameter("lastId", lastId);
+		}
+		return query.getResultList();
+	}
+
 	public List<Order> findAllWithItem() {
 		return em.createQuery(
 				"select distinct o from Order o" +
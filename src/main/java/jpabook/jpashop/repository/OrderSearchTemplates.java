@@ -0,0 +1,247 @@
+package jpabook.jpashop.repository;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.persistence.TypedQuery;
+
+import org.springframework.util.StringUtils;
+
+import jpabook.jpashop.domain.OrderSearch;
+
+/**
+ * 주문 검색 JPQL 템플릿.
+ * 검색 조건 조합(비트마스크)마다 JPQL을 기동 시 한 번만 만들어 둔다.
+ * 같은 조합이면 항상 같은 문자열이므로 하이버네이트 쿼리 플랜 캐시를 그대로 탄다. (요청마다 문자열 조립/파싱 X)
+ * 주문 id만 고르는 템플릿도 조합마다 따로 만들어 둔다.
+ * 검색 조건 일괄 취소는 취소할 수 있는 주문(ORDER, 배송 완료 아님)만 고르는 템플릿과 건너뛴 주문을 세는 템플릿을 쓴다.
+ * 조건절(filter)과 파라미터 바인딩(bind)은 관리자 주문 목록(order_summary, OrderSummaryRepository)도 같이 쓴다.
+ *
+ * 조건별 인덱스
+ * - 주문상태 (+ 주문일) : idx_orders_status_order_date
+ * - 주문일             : idx_orders_order_date_id
+ * - 주문 금액           : idx_orders_total_amount
+ * - 회원명 (앞부분 일치) : uk_member_name
+ * - 상품명 (앞부분 일치) : idx_item_name -> idx_order_item_item
+ *
+ * 회원명은 예전에 입력값을 그대로 like에 넣었다. (와일드카드 없이 넣으면 전체 일치, %를 넣으면 사용자가 준 패턴)
+ * 지금은 앞부분 일치이고 %, _는 문자 그대로 찾는다. 인덱스를 탈 수 있는 형태로만 검색하기 위해서다. ("%김%" 같은 검색은 안 된다)
+ */
+public class OrderSearchTemplates {
+
+	public static final int STATUS = 1;
+	public static final int MEMBER_NAME = 1 << 1;
+	public static final int FROM_DATE = 1 << 2;
+	public static final int TO_DATE = 1 << 3;
+	public static final int MIN_TOTAL_PRICE = 1 << 4;
+	public static final int MAX_TOTAL_PRICE = 1 << 5;
+	public static final int ITEM_NAME = 1 << 6;
+	public static final int COMBINATIONS = 1 << 7;
+
+	/**
+	 * 검색 조건을 거는 대상. 조건은 같고 별칭과 경로만 다르다.
+	 * - ORDER   : 주문 엔티티 (from Order o)
+	 * - SUMMARY : 주문 목록 프로젝션 (from OrderSummary s). 회원명이 이미 들어 있어 조인하지 않는다.
+	 */
+	public enum Target {
+		ORDER(" join o.member m", "o.status", "m.name", "o.orderDate", "o.totalAmount", "oi.order = o"),
+		SUMMARY("", "s.status", "s.memberName", "s.orderDate", "s.totalAmount", "oi.order.id = s.orderId");
+
+		private final String memberJoin;
+		private final String status;
+		private final String memberName;
+		private final String orderDate;
+		private final String totalAmount;
+		private final String orderItemOfOrder;
+
+		Target(String memberJoin, String status, String memberName, String orderDate, String totalAmount, String orderItemOfOrder) {
+			this.memberJoin = memberJoin;
+			this.status = status;
+			this.memberName = memberName;
+			this.orderDate = orderDate;
+			this.totalAmount = totalAmount;
+			this.orderItemOfOrder = orderItemOfOrder;
+		}
+	}
+
+	private static final Map<Target, String[]> FILTERS = new EnumMap<>(Target.class);
+
+	static {
+		for (Target target : Target.values()) {
+			String[] filters = new String[COMBINATIONS];
+			for (int mask = 0; mask < COMBINATIONS; mask++) {
+				filters[mask] = buildFilter(target, mask);
+			}
+			FILTERS.put(target, filters);
+		}
+	}
+
+	private final String[] templates = new String[COMBINATIONS];
+	private final String[] idTemplates = new String[COMBINATIONS];
+	private final String[] cancelableIdTemplates = new String[COMBINATIONS];
+	private final String[] skippedCountTemplates = new String[COMBINATIONS];
+	private final AtomicLongArray usage = new AtomicLongArray(COMBINATIONS);
+
+	OrderSearchTemplates() {
+		for (int mask = 0; mask < COMBINATIONS; mask++) {
+			templates[mask] = build("o", mask);
+			idTemplates[mask] = build("o.id", mask);
+			cancelableIdTemplates[mask] = "select o.id from Order o join o.delivery d" + filter(Target.ORDER, mask)
+					+ (mask == 0 ? " where " : " and ") + "o.status = :cancelable and (d.status is null or d.status <> :delivered)"
+					+ " order by o.id";
+			skippedCountTemplates[mask] = "select sum(case when o.status = :canceled then 1 else 0 end),"
+					+ " sum(case when o.status <> :canceled and d.status = :delivered then 1 else 0 end)"
+					+ " from Order o join o.delivery d" + filter(Target.ORDER, mask)
+					+ (mask == 0 ? " where " : " and ") + "(o.status = :canceled or d.status = :delivered)";
+		}
+	}
+
+	public static int maskOf(OrderSearch search) {
+		int mask = 0;
+		if (search.getOrderStatus() != null) {
+			mask |= STATUS;
+		}
+		if (StringUtils.hasText(search.getMemberName())) {
+			mask |= MEMBER_NAME;
+		}
+		if (search.getFromDate() != null) {
+			mask |= FROM_DATE;
+		}
+		if (search.getToDate() != null) {
+			mask |= TO_DATE;
+		}
+		if (search.getMinTotalPrice() != null) {
+			mask |= MIN_TOTAL_PRICE;
+		}
+		if (search.getMaxTotalPrice() != null) {
+			mask |= MAX_TOTAL_PRICE;
+		}
+		if (StringUtils.hasText(search.getItemName())) {
+			mask |= ITEM_NAME;
+		}
+		return mask;
+	}
+
+	String get(int mask) {
+		usage.incrementAndGet(mask);
+		return templates[mask];
+	}
+
+	String getIds(int mask) {
+		usage.incrementAndGet(mask);
+		return idTemplates[mask];
+	}
+
+	//조건에 맞으면서 취소할 수 있는 주문 id (id 순. 취소할 때 id 순으로 lock)
+	String getCancelableIds(int mask) {
+		usage.incrementAndGet(mask);
+		return cancelableIdTemplates[mask];
+	}
+
+	//조건에 맞지만 취소하지 않는 주문 수 [이미 취소, 배송 완료]
+	String getSkippedCount(int mask) {
+		usage.incrementAndGet(mask);
+		return skippedCountTemplates[mask];
+	}
+
+	//조합별 사용 횟수 (벤치마크/모니터링용)
+	long usage(int mask) {
+		return usage.get(mask);
+	}
+
+	String peek(int mask) {
+		return templates[mask];
+	}
+
+	String peekIds(int mask) {
+		return idTemplates[mask];
+	}
+
+	String peekCancelableIds(int mask) {
+		return cancelableIdTemplates[mask];
+	}
+
+	String peekSkippedCount(int mask) {
+		return skippedCountTemplates[mask];
+	}
+
+	/**
+	 * from 대상 뒤에 붙는 조인과 where 절. 조건이 없으면 빈 문자열.
+	 * 예) Target.SUMMARY, STATUS | ITEM_NAME -> " where s.status = :status and exists (...)"
+	 */
+	public static String filter(Target target, int mask) {
+		return FILTERS.get(target)[mask];
+	}
+
+	//filter로 만든 쿼리에 검색 조건 값을 바인딩한다. mask는 filter에 넘긴 것과 같아야 한다.
+	public static void bind(TypedQuery<?> query, OrderSearch search, int mask) {
+		if ((mask & STATUS) != 0) {
+			query.setParameter("status", search.getOrderStatus());
+		}
+		if ((mask & MEMBER_NAME) != 0) {
+			query.setParameter("memberName", prefixPattern(search.getMemberName()));
+		}
+		if ((mask & FROM_DATE) != 0) {
+			query.setParameter("fromDate", search.getFromDate().atStartOfDay());
+		}
+		if ((mask & TO_DATE) != 0) {
+			query.setParameter("toDate", search.getToDate().plusDays(1).atStartOfDay());
+		}
+		if ((mask & MIN_TOTAL_PRICE) != 0) {
+			query.setParameter("minTotalPrice", search.getMinTotalPrice());
+		}
+		if ((mask & MAX_TOTAL_PRICE) != 0) {
+			query.setParameter("maxTotalPrice", search.getMaxTotalPrice());
+		}
+		if ((mask & ITEM_NAME) != 0) {
+			query.setParameter("itemName", prefixPattern(search.getItemName()));
+		}
+	}
+
+	private static String build(String select, int mask) {
+		return "select " + select + " from Order o" + filter(Target.ORDER, mask) + " order by o.id desc";
+	}
+
+	private static String buildFilter(Target target, int mask) {
+		StringBuilder jpql = new StringBuilder();
+		if ((mask & MEMBER_NAME) != 0) {
+			jpql.append(target.memberJoin);
+		}
+		String prefix = " where ";
+		if ((mask & STATUS) != 0) {
+			jpql.append(prefix).append(target.status).append(" = :status");
+			prefix = " and ";
+		}
+		if ((mask & MEMBER_NAME) != 0) {
+			jpql.append(prefix).append(target.memberName).append(" like :memberName escape '\\'");
+			prefix = " and ";
+		}
+		if ((mask & FROM_DATE) != 0) {
+			jpql.append(prefix).append(target.orderDate).append(" >= :fromDate");
+			prefix = " and ";
+		}
+		if ((mask & TO_DATE) != 0) {
+			jpql.append(prefix).append(target.orderDate).append(" < :toDate");
+			prefix = " and ";
+		}
+		if ((mask & MIN_TOTAL_PRICE) != 0) {
+			jpql.append(prefix).append(target.totalAmount).append(" >= :minTotalPrice");
+			prefix = " and ";
+		}
+		if ((mask & MAX_TOTAL_PRICE) != 0) {
+			jpql.append(prefix).append(target.totalAmount).append(" <= :maxTotalPrice");
+			prefix = " and ";
+		}
+		if ((mask & ITEM_NAME) != 0) {
+			jpql.append(prefix).append("exists (select oi.id from OrderItem oi join oi.item i")
+				.append(" where ").append(target.orderItemOfOrder).append(" and i.name like :itemName escape '\\')");
+		}
+		return jpql.toString();
+	}
+
+	//앞부분 일치 like. 사용자가 입력한 %, _는 문자 그대로 찾는다.
+	public static String prefixPattern(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+	}
+}
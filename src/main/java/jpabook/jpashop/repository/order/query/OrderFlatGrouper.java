@@ -0,0 +1,55 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * order id 순으로 정렬된 OrderFlatDto row를 한 번만 훑어서 OrderQueryDto로 묶는다.
+ *
+ * groupingBy는 row마다 key로 쓸 OrderQueryDto를 새로 만들고 HashMap에 equals/hashCode를 태우며 순서도 보장하지 않는다.
+ * 여기서는 직전 row의 order id와 비교만 하므로 row당 key 객체가 없고, 들어온 순서 그대로 결과가 나온다.
+ *
+ * 한 주문이 완성되는 시점(order id가 바뀌거나 finish() 호출)에 downstream으로 넘기기 때문에 스트리밍에도 그대로 쓸 수 있다.
+ */
+public class OrderFlatGrouper {
+
+	private final Consumer<OrderQueryDto> downstream;
+	private OrderQueryDto current;
+
+	public OrderFlatGrouper(Consumer<OrderQueryDto> downstream) {
+		this.downstream = downstream;
+	}
+
+	public void add(OrderFlatDto row) {
+		Long orderId = row.getOrderId();
+		if (current == null || !current.getOrderId().equals(orderId)) {
+			if (current != null && current.getOrderId() > orderId) {
+				throw new IllegalStateException("flat row는 order id 순으로 정렬되어 있어야 합니다.");
+			}
+			finish();
+			current = new OrderQueryDto(orderId, row.getName(), row.getOrderDate(), row.getOrderStatus(), row.getAddress(), new ArrayList<>());
+		}
+		current.getOrderItems().add(new OrderItemQueryDto(orderId, row.getItemName(), row.getOrderPrice(), row.getCount()));
+	}
+
+	/**
+	 * 조립중인 마지막 주문을 내보낸다. 모든 row를 넣은 뒤 반드시 호출해야 한다.
+	 */
+	public void finish() {
+		if (current != null) {
+			downstream.accept(current);
+			current = null;
+		}
+	}
+
+	public static List<OrderQueryDto> group(List<OrderFlatDto> rows) {
+		List<OrderQueryDto> result = new ArrayList<>();
+		OrderFlatGrouper grouper = new OrderFlatGrouper(result::add);
+		for (OrderFlatDto row : rows) {
+			grouper.add(row);
+		}
+		grouper.finish();
+		return result;
+	}
+}
@@ -2,12 +2,18 @@ package jpabook.jpashop.repository.order.query;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import jpabook.jpashop.repository.ChunkedInLoader;
 import lombok.RequiredArgsConstructor;
 
 @Repository
@@ -15,7 +21,9 @@ import lombok.RequiredArgsConstructor;
 public class OrderQueryRepository {
 	
 	private final EntityManager em;
+	private final ChunkedInLoader chunkedInLoader;
 	private final String PACKAGE_PATH = "jpabook.jpashop.repository.order.query.";
+	private static final int STREAM_FETCH_SIZE = 1000;
 
 	public List<OrderQueryDto> findOrderQueryDtos() {
 		List<OrderQueryDto> result = findOrders();
@@ -54,17 +62,25 @@ public class OrderQueryRepository {
 		return result;
 	}
 
+	/**
+	 * 주문 id를 ChunkedInLoader로 나눠서 in 조회한다. (app.in-loader.chunk-size)
+	 * 주문이 수십만 건이어도 statement 하나의 파라미터 수는 chunk 크기를 넘지 않는다.
+	 */
 	private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-		List<OrderItemQueryDto> orderItems = em.createQuery(
+		List<OrderItemQueryDto> orderItems = chunkedInLoader.load(orderIds, this::findOrderItemsIn);
+		
+		return orderItems.stream().collect(Collectors.groupingBy(orderItemQueryDto-> orderItemQueryDto.getOrderId()));
+		
+	}
+
+	private List<OrderItemQueryDto> findOrderItemsIn(List<Long> orderIds) {
+		return em.createQuery(
 				"select new "+ PACKAGE_PATH + "OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)"+
 				" from OrderItem oi" +
 				" join oi.item i" +
 				" where oi.order.id in :orderIds", OrderItemQueryDto.class)
 			.setParameter("orderIds", orderIds)
 			.getResultList();
-		
-		return orderItems.stream().collect(Collectors.groupingBy(orderItemQueryDto-> orderItemQueryDto.getOrderId()));
-		
 	}
 
 	private List<Long> toOrderIds(List<OrderQueryDto> result) {
@@ -73,15 +89,44 @@ public class OrderQueryRepository {
 				.collect(Collectors.toList());
 	}
 
+	//OrderFlatGrouper로 한 번에 묶을 수 있도록 order id 순으로 정렬.
 	public List<OrderFlatDto> findAllByDto_flat() {
-		return em.createQuery(
-			"select new "+ PACKAGE_PATH + "OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+		return em.createQuery(flatQuery() + " order by o.id", OrderFlatDto.class)
+		.getResultList();
+	}
+	
+	/**
+	 * 전체 주문 그래프를 List에 담지 않고 한 건씩 흘려보낸다.
+	 * 1. order id 순으로 정렬된 flat row를 forward-only scroll로 읽는다. (DTO라서 영속성 컨텍스트에 쌓이지 않음)
+	 * 2. OrderFlatGrouper가 order id가 바뀔 때마다 완성된 OrderQueryDto를 consumer에 넘긴다.
+	 * 메모리에는 현재 조립중인 주문 하나만 남기 때문에 주문 수와 상관없이 힙 사용량이 일정하다.
+	 */
+	@Transactional(readOnly = true)
+	public void streamAllByDto_flat(Consumer<OrderQueryDto> consumer) {
+		Query<?> query = em.createQuery(flatQuery() + " order by o.id", OrderFlatDto.class)
+				.unwrap(Query.class);
+		ScrollableResults rows = query
+				.setFetchSize(STREAM_FETCH_SIZE)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			OrderFlatGrouper grouper = new OrderFlatGrouper(consumer);
+			while (rows.next()) {
+				grouper.add((OrderFlatDto) rows.get(0));
+			}
+			grouper.finish();
+		} finally {
+			rows.close();
+		}
+	}
+
+	private String flatQuery() {
+		return "select new "+ PACKAGE_PATH + "OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
 			" from Order o" +
 			" join o.member m" +
 			" join o.delivery d" +
 			" join o.orderItems oi" +
-			" join oi.item i", OrderFlatDto.class)
-		.getResultList();
+			" join oi.item i";
 	}
 	
 }
@@ -0,0 +1,35 @@
+package jpabook.jpashop.repository.order.simplequery;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * 관리자 주문 목록 한 페이지 (page는 0부터)
+ */
+@Getter
+public class OrderListPage {
+	private final List<OrderListRow> rows;
+	private final long total;
+	private final int page;
+	private final int size;
+
+	public OrderListPage(List<OrderListRow> rows, long total, int page, int size) {
+		this.rows = rows;
+		this.total = total;
+		this.page = page;
+		this.size = size;
+	}
+
+	public int getTotalPages() {
+		return (int) ((total + size - 1) / size);
+	}
+
+	public boolean hasPrevious() {
+		return page > 0;
+	}
+
+	public boolean hasNext() {
+		return page + 1 < getTotalPages();
+	}
+}
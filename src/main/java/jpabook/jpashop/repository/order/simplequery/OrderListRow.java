@@ -0,0 +1,33 @@
+package jpabook.jpashop.repository.order.simplequery;
+
+import java.time.LocalDateTime;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Data;
+
+/**
+ * 관리자 주문 목록(/orders) 한 줄.
+ * 주문 정보는 order_summary에서, 대표상품(첫 주문상품)은 페이지 단위로 따로 채운다.
+ */
+@Data
+public class OrderListRow {
+	private Long orderId;
+	private String memberName;
+	private OrderStatus status;
+	private LocalDateTime orderDate;
+	private Long totalAmount;
+
+	//대표상품
+	private String itemName;
+	private int orderPrice;
+	private int count;
+	private int itemKinds;		//주문상품 종류 수
+
+	public OrderListRow(Long orderId, String memberName, OrderStatus status, LocalDateTime orderDate, Long totalAmount) {
+		this.orderId = orderId;
+		this.memberName = memberName;
+		this.status = status;
+		this.orderDate = orderDate;
+		this.totalAmount = totalAmount;
+	}
+}
@@ -0,0 +1,27 @@
+package jpabook.jpashop.repository.order.simplequery;
+
+/**
+ * 관리자 주문 목록 정렬 컬럼. 정렬은 이 목록 안에서만 고를 수 있다. (JPQL에 그대로 붙이므로)
+ * 값이 같으면 주문 id 순. 각 컬럼은 order_summary 인덱스를 탄다.
+ */
+public enum OrderListSort {
+	ID("s.orderId"),
+	MEMBER_NAME("s.memberName"),
+	STATUS("s.status"),
+	ORDER_DATE("s.orderDate"),
+	TOTAL_AMOUNT("s.totalAmount");
+
+	private final String path;
+
+	OrderListSort(String path) {
+		this.path = path;
+	}
+
+	String orderBy(boolean ascending) {
+		String direction = ascending ? " asc" : " desc";
+		if (this == ID) {
+			return path + direction;
+		}
+		return path + direction + ", s.orderId" + direction;
+	}
+}
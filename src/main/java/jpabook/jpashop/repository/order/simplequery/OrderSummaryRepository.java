@@ -0,0 +1,213 @@
+package jpabook.jpashop.repository.order.simplequery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
+import jpabook.jpashop.repository.OrderSearchTemplates;
+import jpabook.jpashop.repository.OrderSearchTemplates.Target;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * order_summary 프로젝션 저장소.
+ * 목록 조회는 order_summary 한 테이블만 PK 순서로 읽는다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderSummaryRepository {
+
+	private static final String COLUMNS = "order_id, member_id, member_name, order_date, status, delivery_id, city, street, zipcode, total_amount";
+
+	//원본 테이블에서 만든 기대값. 컬럼 순서는 COLUMNS와 같다.
+	private static final String SOURCE =
+			"select o.order_id, o.member_id, m.name, o.order_date, o.status, o.delivery_id, d.city, d.street, d.zipcode, o.total_amount" +
+			" from orders o" +
+			" join member m on m.member_id = o.member_id" +
+			" join delivery d on d.delivery_id = o.delivery_id";
+
+	private static final int STREAM_FETCH_SIZE = 1000;
+
+	private static final String PROJECTION = "select " + COLUMNS + " from order_summary";
+
+	private final EntityManager em;
+
+	public void save(OrderSummary summary) {
+		em.persist(summary);
+	}
+
+	public OrderSummary findOne(Long orderId) {
+		return em.find(OrderSummary.class, orderId);
+	}
+
+	public List<OrderSimpleQueryDto> findOrderDtos() {
+		return em.createQuery(
+				"select new jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto(s.orderId, s.memberName, s.orderDate, s.status, s.address)" +
+				" from OrderSummary s" +
+				" order by s.orderId", OrderSimpleQueryDto.class)
+				.getResultList();
+	}
+
+	//findOrderDtos와 같은 결과를 List에 담지 않고 하나씩 넘긴다.
+	@Transactional(readOnly = true)
+	public void streamOrderDtos(Consumer<OrderSimpleQueryDto> consumer) {
+		ScrollableResults rows = em.createQuery(
+				"select new jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto(s.orderId, s.memberName, s.orderDate, s.status, s.address)" +
+				" from OrderSummary s" +
+				" order by s.orderId", OrderSimpleQueryDto.class)
+				.unwrap(Query.class)
+				.setFetchSize(STREAM_FETCH_SIZE)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (rows.next()) {
+				consumer.accept((OrderSimpleQueryDto) rows.get(0));
+			}
+		} finally {
+			rows.close();
+		}
+	}
+
+	//== 관리자 주문 목록 (/orders) ==//
+	/**
+	 * 검색 조건에 맞는 한 페이지. order_summary만 읽고 정렬/페이징은 DB에서 한다.
+	 * 조건절은 주문 검색과 같은 것(OrderSearchTemplates)을 order_summary 경로로 쓴다.
+	 * 대표상품은 페이지의 주문 id로 한 번 더 조회해서 채운다. (페이지 크기와 상관없이 쿼리 2번)
+	 */
+	public List<OrderListRow> findListPage(OrderSearch search, OrderListSort sort, boolean ascending, int offset, int limit) {
+		int mask = OrderSearchTemplates.maskOf(search);
+		TypedQuery<OrderListRow> query = em.createQuery(
+				"select new jpabook.jpashop.repository.order.simplequery.OrderListRow(s.orderId, s.memberName, s.status, s.orderDate, s.totalAmount)" +
+				" from OrderSummary s" +
+				OrderSearchTemplates.filter(Target.SUMMARY, mask) +
+				" order by " + sort.orderBy(ascending), OrderListRow.class)
+				.setFirstResult(offset)
+				.setMaxResults(limit);
+		OrderSearchTemplates.bind(query, search, mask);
+		List<OrderListRow> rows = query.getResultList();
+		if (!rows.isEmpty()) {
+			fillRepresentativeItems(rows);
+		}
+		return rows;
+	}
+
+	public long countList(OrderSearch search) {
+		int mask = OrderSearchTemplates.maskOf(search);
+		TypedQuery<Long> query = em.createQuery("select count(s) from OrderSummary s" + OrderSearchTemplates.filter(Target.SUMMARY, mask), Long.class);
+		OrderSearchTemplates.bind(query, search, mask);
+		return query.getSingleResult();
+	}
+
+	//주문마다 첫 주문상품(id가 가장 작은 것)과 상품 종류 수
+	private void fillRepresentativeItems(List<OrderListRow> rows) {
+		Map<Long, OrderListRow> byOrderId = new HashMap<>();
+		rows.forEach(row -> byOrderId.put(row.getOrderId(), row));
+		List<Object[]> items = em.createQuery(
+				"select oi.order.id, i.name, oi.orderPrice, oi.count from OrderItem oi" +
+				" join oi.item i" +
+				" where oi.order.id in :orderIds" +
+				" order by oi.order.id, oi.id", Object[].class)
+				.setParameter("orderIds", byOrderId.keySet())
+				.getResultList();
+		for (Object[] item : items) {
+			OrderListRow row = byOrderId.get((Long) item[0]);
+			if (row.getItemKinds() == 0) {
+				row.setItemName((String) item[1]);
+				row.setOrderPrice((Integer) item[2]);
+				row.setCount((Integer) item[3]);
+			}
+			row.setItemKinds(row.getItemKinds() + 1);
+		}
+	}
+
+	//== 원본 변경 반영. 원본을 바꾸는 트랜잭션 안에서 호출한다. ==//
+	public int updateStatus(Long orderId, OrderStatus status) {
+		return em.createQuery("update OrderSummary s set s.status = :status where s.orderId = :orderId")
+				.setParameter("status", status)
+				.setParameter("orderId", orderId)
+				.executeUpdate();
+	}
+
+	public int updateStatus(List<Long> orderIds, OrderStatus status) {
+		return em.createQuery("update OrderSummary s set s.status = :status where s.orderId in :orderIds")
+				.setParameter("status", status)
+				.setParameter("orderIds", orderIds)
+				.executeUpdate();
+	}
+
+	public int updateMemberName(Long memberId, String memberName) {
+		return em.createQuery("update OrderSummary s set s.memberName = :memberName where s.memberId = :memberId")
+				.setParameter("memberName", memberName)
+				.setParameter("memberId", memberId)
+				.executeUpdate();
+	}
+
+	public int updateAddress(Long deliveryId, Address address) {
+		return em.createQuery("update OrderSummary s set s.address.city = :city, s.address.street = :street, s.address.zipcode = :zipcode" +
+				" where s.deliveryId = :deliveryId")
+				.setParameter("city", address.getCity())
+				.setParameter("street", address.getStreet())
+				.setParameter("zipcode", address.getZipcode())
+				.setParameter("deliveryId", deliveryId)
+				.executeUpdate();
+	}
+
+	//== 재구성 / 정합성 검사 ==//
+
+	/**
+	 * 원본 테이블에서 order_summary를 통째로 다시 만든다. insert ... select 한 번이라 row가 애플리케이션을 거치지 않는다.
+	 * @return 만들어진 row 수
+	 */
+	public int rebuild() {
+		em.createNativeQuery("delete from order_summary").executeUpdate();
+		return em.createNativeQuery("insert into order_summary (" + COLUMNS + ") " + SOURCE).executeUpdate();
+	}
+
+	//주문 수, order_summary row 수. 전체를 비교(except)하지 않고 빠르게 어긋났는지만 본다. (기동 시)
+	public long countOrders() {
+		return ((Number) em.createNativeQuery("select count(*) from orders").getSingleResult()).longValue();
+	}
+
+	public long countSummaries() {
+		return ((Number) em.createNativeQuery("select count(*) from order_summary").getSingleResult()).longValue();
+	}
+
+	//원본에는 있는데 order_summary에 없거나 값이 다른 주문 수
+	public long countMissingOrStale() {
+		return count(SOURCE + " except " + PROJECTION);
+	}
+
+	//order_summary에만 있거나 값이 다른 row 수
+	public long countOrphanedOrStale() {
+		return count(PROJECTION + " except " + SOURCE);
+	}
+
+	//원본과 다른 주문 id 일부
+	public List<Long> findMismatchedOrderIds(int limit) {
+		@SuppressWarnings("unchecked")
+		List<Number> ids = em.createNativeQuery(
+				"select order_id from ((" + SOURCE + " except " + PROJECTION + ") union (" + PROJECTION + " except " + SOURCE + ")) t" +
+				" order by order_id")
+				.setMaxResults(limit)
+				.getResultList();
+		return ids.stream().map(Number::longValue).distinct().collect(Collectors.toList());
+	}
+
+	private long count(String sql) {
+		return ((Number) em.createNativeQuery("select count(*) from (" + sql + ") t").getSingleResult()).longValue();
+	}
+}
@@ -0,0 +1,237 @@
+package jpabook.jpashop.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 검색 색인 본체. 만든 뒤에는 바뀌지 않으므로 검색 스레드가 잠금 없이 읽는다.
+ * 상품이 바뀌면 ItemSearchIndex가 따로 들고 있다가 다음 재구성 때 합친다.
+ *
+ * - 문서 번호: 상품 id 순서의 0부터 시작하는 번호. ids/names/types가 문서 번호로 인덱싱된다.
+ * - terms: 정렬된 단어 목록. 접두어에 맞는 단어는 이진 탐색으로 [from, to) 범위를 찾는다.
+ * - postings[t]: 단어 t가 나오는 문서. (문서 번호 << 3 | 필드 비트)를 문서 번호 순으로.
+ *   단어마다 int 배열 하나라서 상품 100만 개(단어 수백만 개)도 객체 없이 들고 있다.
+ * - docTerms[docTermStart[doc] .. docTermStart[doc + 1]): 문서에 나오는 단어. (단어 번호 << 3 | 필드 비트)
+ *   접두어에 맞는 단어들은 terms에서 연속된 범위라서 "문서에 검색어가 나오는가"는 문서의 단어 몇 개를 범위와 비교하면 된다.
+ */
+final class IndexSegment {
+
+	static final int FIELD_BITS = 3;
+	private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+	static final IndexSegment EMPTY = new IndexSegment(new long[0], new String[0], new char[0], new String[0], new int[0][]);
+
+	final long[] ids;
+	final String[] names;
+	final char[] types;
+	final String[] terms;
+	final int[][] postings;
+	final int[] docTermStart;
+	final int[] docTerms;
+
+	private IndexSegment(long[] ids, String[] names, char[] types, String[] terms, int[][] postings) {
+		this.ids = ids;
+		this.names = names;
+		this.types = types;
+		this.terms = terms;
+		this.postings = postings;
+
+		//단어별 문서 목록을 뒤집어서 문서별 단어 목록을 만든다. 단어 번호 순으로 쌓인다.
+		this.docTermStart = new int[ids.length + 1];
+		for (int[] list : postings) {
+			for (int posting : list) {
+				docTermStart[(posting >>> FIELD_BITS) + 1]++;
+			}
+		}
+		for (int doc = 0; doc < ids.length; doc++) {
+			docTermStart[doc + 1] += docTermStart[doc];
+		}
+		this.docTerms = new int[docTermStart[ids.length]];
+		int[] cursor = Arrays.copyOf(docTermStart, ids.length);
+		for (int t = 0; t < postings.length; t++) {
+			for (int posting : postings[t]) {
+				docTerms[cursor[posting >>> FIELD_BITS]++] = t << FIELD_BITS | (posting & FIELD_MASK);
+			}
+		}
+	}
+
+	int documentCount() {
+		return ids.length;
+	}
+
+	int termCount() {
+		return terms.length;
+	}
+
+	/**
+	 * @param documents id 순으로 정렬된 문서
+	 * @param parts     documents를 이만큼 나눠서 executor에서 동시에 단어별 문서 목록을 만든다.
+	 */
+	static IndexSegment build(List<ItemDocument> documents, ExecutorService executor, int parts) {
+		int size = documents.size();
+		long[] ids = new long[size];
+		String[] names = new String[size];
+		char[] types = new char[size];
+		for (int doc = 0; doc < size; doc++) {
+			ItemDocument document = documents.get(doc);
+			ids[doc] = document.getId();
+			names[doc] = document.getName();
+			types[doc] = document.getType();
+		}
+
+		//조각마다 문서 번호 순으로 쌓으므로 조각 순서대로 이어 붙이면 전체도 문서 번호 순이다.
+		int sliceSize = Math.max(1, (size + parts - 1) / Math.max(1, parts));
+		List<Future<Map<String, IntList>>> futures = new ArrayList<>();
+		for (int from = 0; from < size; from += sliceSize) {
+			int start = from;
+			int end = Math.min(from + sliceSize, size);
+			futures.add(executor.submit(() -> invert(documents, start, end)));
+		}
+		Map<String, IntList> merged = new HashMap<>();
+		try {
+			for (Future<Map<String, IntList>> future : futures) {
+				future.get().forEach((term, list) -> {
+					IntList target = merged.get(term);
+					if (target == null) {
+						merged.put(term, list);
+					} else {
+						target.addAll(list);
+					}
+				});
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("검색 색인 생성이 중단되었습니다.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("검색 색인 생성에 실패했습니다.", e.getCause());
+		}
+
+		String[] terms = merged.keySet().toArray(new String[0]);
+		Arrays.parallelSort(terms);
+		int[][] postings = new int[terms.length][];
+		for (int t = 0; t < terms.length; t++) {
+			postings[t] = merged.get(terms[t]).toArray();
+		}
+		return new IndexSegment(ids, names, types, terms, postings);
+	}
+
+	private static Map<String, IntList> invert(List<ItemDocument> documents, int from, int to) {
+		Map<String, IntList> postings = new HashMap<>();
+		for (int doc = from; doc < to; doc++) {
+			ItemDocument document = documents.get(doc);
+			for (int i = 0; i < document.terms.length; i++) {
+				postings.computeIfAbsent(document.terms[i], term -> new IntList()).add(doc << FIELD_BITS | document.fields[i]);
+			}
+		}
+		return postings;
+	}
+
+	//terms에서 key 이상인 첫 위치
+	int lowerBound(String key) {
+		int low = 0;
+		int high = terms.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (terms[mid].compareTo(key) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	//prefix로 시작하는 단어 범위의 끝 (포함하지 않음)
+	int prefixEnd(String prefix, int from) {
+		int low = from;
+		int high = terms.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (terms[mid].startsWith(prefix)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 문서 doc에 나오는 단어 중 [from, to) 범위에 있는 단어로 매긴 가장 높은 점수. 없으면 0
+	 */
+	float bestScore(int doc, String token, int from, int to) {
+		float best = 0;
+		for (int k = docTermStart[doc]; k < docTermStart[doc + 1]; k++) {
+			int t = docTerms[k] >>> FIELD_BITS;
+			if (t >= to) {
+				break; //단어 번호 순이라 뒤는 볼 필요가 없다.
+			}
+			if (t >= from) {
+				best = Math.max(best, ItemSearchIndex.score(token, terms[t], docTerms[k] & FIELD_MASK));
+			}
+		}
+		return best;
+	}
+
+	//[from, to) 단어들에 나오는 문서 번호. 오름차순, 중복 없음
+	int[] documents(int from, int to) {
+		if (to - from == 1) {
+			int[] list = postings[from];
+			int[] docs = new int[list.length];
+			for (int i = 0; i < list.length; i++) {
+				docs[i] = list[i] >>> FIELD_BITS;
+			}
+			return docs;
+		}
+		int total = 0;
+		for (int t = from; t < to; t++) {
+			total += postings[t].length;
+		}
+		int[] docs = new int[total];
+		int size = 0;
+		for (int t = from; t < to; t++) {
+			for (int posting : postings[t]) {
+				docs[size++] = posting >>> FIELD_BITS;
+			}
+		}
+		Arrays.sort(docs);
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct == 0 || docs[distinct - 1] != docs[i]) {
+				docs[distinct++] = docs[i];
+			}
+		}
+		return Arrays.copyOf(docs, distinct);
+	}
+
+	//박싱 없는 int 목록
+	static final class IntList {
+		private int[] values = new int[4];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		void addAll(IntList other) {
+			if (size + other.size > values.length) {
+				values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+			}
+			System.arraycopy(other.values, 0, values, size, other.size);
+			size += other.size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package jpabook.jpashop.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jpabook.jpashop.domain.Album;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.domain.Movie;
+import lombok.Getter;
+
+/**
+ * 색인할 상품 하나. 검색 대상 필드를 토큰으로 나눠서 (단어, 나온 필드) 목록으로 들고 있다.
+ * - NAME: 상품명
+ * - CREATOR: 저자(Book), 아티스트(Album), 감독(Movie)
+ * - ISBN: 하이픈으로 나눈 조각과 숫자만 이어붙인 전체 둘 다 넣는다. ("978-89-6077-733-0"을 "9788960777330"으로도 찾는다)
+ */
+@Getter
+public final class ItemDocument {
+
+	//필드 비트. 같은 단어가 여러 필드에 나오면 OR 해서 한 번만 넣는다.
+	static final int NAME = 1;
+	static final int CREATOR = 2;
+	static final int ISBN = 4;
+
+	private final long id;
+	private final char type;
+	private final String name;
+	final String[] terms;
+	final byte[] fields;
+
+	private ItemDocument(long id, char type, String name, Map<String, Integer> fieldsByTerm) {
+		this.id = id;
+		this.type = type;
+		this.name = name;
+		this.terms = new String[fieldsByTerm.size()];
+		this.fields = new byte[fieldsByTerm.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> entry : fieldsByTerm.entrySet()) {
+			terms[i] = entry.getKey();
+			fields[i] = entry.getValue().byteValue();
+			i++;
+		}
+	}
+
+	public static ItemDocument of(Item item) {
+		if (item instanceof Book) {
+			Book book = (Book) item;
+			return of(item.getId(), 'B', item.getName(), book.getAuthor(), book.getIsbn());
+		}
+		if (item instanceof Album) {
+			return of(item.getId(), 'A', item.getName(), ((Album) item).getArtist(), null);
+		}
+		if (item instanceof Movie) {
+			return of(item.getId(), 'M', item.getName(), ((Movie) item).getDirector(), null);
+		}
+		return of(item.getId(), '?', item.getName(), null, null);
+	}
+
+	/**
+	 * @param type dtype (B, A, M)
+	 */
+	public static ItemDocument of(long id, char type, String name, String creator, String isbn) {
+		Map<String, Integer> fieldsByTerm = new LinkedHashMap<>();
+		add(fieldsByTerm, name, NAME);
+		add(fieldsByTerm, creator, CREATOR);
+		if (isbn != null) {
+			add(fieldsByTerm, isbn, ISBN);
+			add(fieldsByTerm, isbn.replaceAll("[^0-9Xx]", ""), ISBN);
+		}
+		return new ItemDocument(id, type, name, fieldsByTerm);
+	}
+
+	private static void add(Map<String, Integer> fieldsByTerm, String text, int field) {
+		for (String term : Tokenizer.tokenize(text)) {
+			fieldsByTerm.merge(term, field, (a, b) -> a | b);
+		}
+	}
+}
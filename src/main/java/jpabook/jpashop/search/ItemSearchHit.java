@@ -0,0 +1,30 @@
+package jpabook.jpashop.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 검색 결과 한 건. 색인에 있는 값만 담는다. (가격, 재고는 자주 바뀌므로 색인하지 않음 -> 상품 조회로)
+ */
+@Getter
+@AllArgsConstructor
+public class ItemSearchHit {
+
+	private Long id;
+	private String name;
+	private String type; //BOOK, ALBUM, MOVIE
+	private float score;
+
+	static String typeName(char dtype) {
+		switch (dtype) {
+			case 'B':
+				return "BOOK";
+			case 'A':
+				return "ALBUM";
+			case 'M':
+				return "MOVIE";
+			default:
+				return "ITEM";
+		}
+	}
+}
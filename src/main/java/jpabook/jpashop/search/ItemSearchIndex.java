@@ -0,0 +1,248 @@
+package jpabook.jpashop.search;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jpabook.jpashop.domain.Item;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 상품 검색용 메모리 역색인. (상품명, 저자/아티스트/감독, ISBN)
+ * like '%x%' 조회는 item 테이블 전체를 읽는다. 여기서는 단어별 문서 목록만 읽으므로 상품 수와 거의 상관없다.
+ *
+ * 두 부분으로 나뉜다.
+ * - base: 전체 상품으로 만든 변하지 않는 색인 (IndexSegment). 기동 시 ItemSearchIndexBuilder가 병렬로 만든다.
+ * - pending: 그 뒤에 저장/수정된 상품. 커밋 후에 넣는다. (롤백된 변경은 색인에 들어가지 않는다)
+ *   base에 같은 상품이 있으면 pending이 이긴다. 다음 재구성 때 base에 합쳐지고 비워진다.
+ *   검색마다 전부 훑으므로 일정 개수 이상 쌓이면 ItemSearchIndexBuilder가 백그라운드에서 다시 만든다.
+ *
+ * 검색은 모든 검색어가 나오는 상품만 찾는다(AND). 두 글자 이상인 검색어는 접두어로도 맞춘다.
+ * 점수는 검색어마다 (필드 가중치 x 일치 정도)를 더한 값. 상품명이 다른 필드보다, 단어 전체 일치가 접두어 일치보다 높다.
+ */
+@Component
+public class ItemSearchIndex {
+
+	public static final int MAX_LIMIT = 100;
+	static final int MIN_PREFIX_LENGTH = 2;
+	//후보를 뽑을 때 접두어 하나에 맞는 단어가 너무 많으면 앞(사전 순)에서 이만큼만 본다.
+	static final int MAX_EXPANSIONS = 64;
+	static final int MAX_QUERY_TOKENS = 8;
+
+	private static final float NAME_WEIGHT = 3f;
+	private static final float OTHER_WEIGHT = 2f;
+
+	//점수 낮은 것, 같으면 id 큰 것이 앞. (상위 N개를 남기는 heap용)
+	private static final Comparator<ItemSearchHit> WORST_FIRST = Comparator.comparingDouble(ItemSearchHit::getScore)
+			.thenComparing(ItemSearchHit::getId, Comparator.reverseOrder());
+
+	private volatile IndexSegment base = IndexSegment.EMPTY;
+	private volatile LocalDateTime builtAt;
+	private volatile long buildMillis;
+	private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * 저장/수정된 상품을 색인한다. 트랜잭션 안이면 커밋 후에, 아니면 바로 반영한다.
+	 * 필드 값은 지금 읽어둔다. (커밋 후에는 엔티티가 준영속이거나 다른 값으로 바뀌었을 수 있다)
+	 */
+	public void index(Item item) {
+		ItemDocument document = ItemDocument.of(item);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			apply(document);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				apply(document);
+			}
+		});
+	}
+
+	void apply(ItemDocument document) {
+		Pending added = new Pending(sequence.incrementAndGet(), document);
+		pending.merge(document.getId(), added, (old, current) -> current.sequence > old.sequence ? current : old);
+	}
+
+	int pendingCount() {
+		return pending.size();
+	}
+
+	//재구성을 시작하기 전에 읽어둔다. 이 번호까지의 변경은 DB에 커밋된 뒤라서 새 base에 들어간다.
+	long currentSequence() {
+		return sequence.get();
+	}
+
+	void replace(IndexSegment segment, long includedSequence, long elapsedMillis) {
+		base = segment;
+		pending.values().removeIf(p -> p.sequence <= includedSequence);
+		builtAt = LocalDateTime.now();
+		buildMillis = elapsedMillis;
+	}
+
+	public List<ItemSearchHit> search(String query, int limit) {
+		List<String> tokens = Tokenizer.tokenize(query);
+		if (tokens.isEmpty() || limit <= 0) {
+			return new ArrayList<>();
+		}
+		if (tokens.size() > MAX_QUERY_TOKENS) {
+			tokens = tokens.subList(0, MAX_QUERY_TOKENS);
+		}
+		TopHits top = new TopHits(Math.min(limit, MAX_LIMIT));
+		searchBase(base, tokens, top);
+		searchPending(tokens, top);
+		return top.toList();
+	}
+
+	/**
+	 * 검색어마다 맞는 단어 범위 [from, to)를 찾고, 문서가 가장 적은 검색어의 문서만 후보로 돈다.
+	 * 후보마다 모든 검색어를 그 문서의 단어 몇 개와 범위 비교로 확인하고 점수를 매긴다.
+	 * 후보를 뽑는 검색어만 앞쪽 MAX_EXPANSIONS개 단어로 자른다. (나머지 검색어는 범위 전체로 확인)
+	 */
+	private void searchBase(IndexSegment segment, List<String> tokens, TopHits top) {
+		int count = tokens.size();
+		int[] from = new int[count];
+		int[] to = new int[count];
+		int driver = 0;
+		long driverCost = Long.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			String token = tokens.get(i);
+			from[i] = segment.lowerBound(token);
+			if (token.length() >= MIN_PREFIX_LENGTH) {
+				to[i] = segment.prefixEnd(token, from[i]);
+			} else {
+				to[i] = from[i] < segment.termCount() && segment.terms[from[i]].equals(token) ? from[i] + 1 : from[i];
+			}
+			if (from[i] == to[i]) {
+				return; //이 검색어가 나오는 상품이 없다.
+			}
+			long cost = 0;
+			for (int t = from[i]; t < Math.min(to[i], from[i] + MAX_EXPANSIONS); t++) {
+				cost += segment.postings[t].length;
+			}
+			if (cost < driverCost) {
+				driver = i;
+				driverCost = cost;
+			}
+		}
+
+		boolean hasPending = !pending.isEmpty();
+		for (int doc : segment.documents(from[driver], Math.min(to[driver], from[driver] + MAX_EXPANSIONS))) {
+			long id = segment.ids[doc];
+			if (hasPending && pending.containsKey(id)) {
+				continue; //바뀐 상품은 searchPending에서 새 값으로 본다.
+			}
+			float score = 0;
+			for (int i = 0; i < count; i++) {
+				float best = segment.bestScore(doc, tokens.get(i), from[i], to[i]);
+				if (best == 0) {
+					score = -1;
+					break;
+				}
+				score += best;
+			}
+			if (score > 0 && top.accepts(score, id)) {
+				top.add(new ItemSearchHit(id, segment.names[doc], ItemSearchHit.typeName(segment.types[doc]), score));
+			}
+		}
+	}
+
+	//pending은 재구성 사이에 저장/수정된 상품뿐이라 그냥 전부 본다.
+	private void searchPending(List<String> tokens, TopHits top) {
+		for (Pending p : pending.values()) {
+			ItemDocument document = p.document;
+			float score = 0;
+			for (String token : tokens) {
+				float best = 0;
+				for (int i = 0; i < document.terms.length; i++) {
+					String term = document.terms[i];
+					if (term.equals(token) || (token.length() >= MIN_PREFIX_LENGTH && term.startsWith(token))) {
+						best = Math.max(best, score(token, term, document.fields[i]));
+					}
+				}
+				if (best == 0) {
+					score = -1;
+					break;
+				}
+				score += best;
+			}
+			if (score > 0 && top.accepts(score, document.getId())) {
+				top.add(new ItemSearchHit(document.getId(), document.getName(), ItemSearchHit.typeName(document.getType()), score));
+			}
+		}
+	}
+
+	//필드 가중치 x 일치 정도. 단어 전체가 같으면 1, 접두어면 검색어가 단어를 덮는 비율에 따라 0.5 ~ 0.9
+	static float score(String token, String term, int fields) {
+		float weight = (fields & ItemDocument.NAME) != 0 ? NAME_WEIGHT : OTHER_WEIGHT;
+		if (term.length() == token.length()) {
+			return weight;
+		}
+		return weight * (0.5f + 0.4f * token.length() / term.length());
+	}
+
+	public Status status() {
+		IndexSegment segment = base;
+		return new Status(segment.documentCount(), segment.termCount(), pending.size(), builtAt, buildMillis);
+	}
+
+	@AllArgsConstructor
+	private static class Pending {
+		final long sequence;
+		final ItemDocument document;
+	}
+
+	//점수 상위 limit개. 점수가 같으면 id가 작은(먼저 등록된) 상품이 앞.
+	private static class TopHits {
+		private final int limit;
+		private final PriorityQueue<ItemSearchHit> heap;
+
+		TopHits(int limit) {
+			this.limit = limit;
+			this.heap = new PriorityQueue<>(limit + 1, WORST_FIRST);
+		}
+
+		//들어갈 자리가 있을 때만 결과 객체를 만들도록 먼저 확인한다.
+		boolean accepts(float score, long id) {
+			if (heap.size() < limit) {
+				return true;
+			}
+			ItemSearchHit worst = heap.peek();
+			return score > worst.getScore() || (score == worst.getScore() && id < worst.getId());
+		}
+
+		void add(ItemSearchHit hit) {
+			heap.add(hit);
+			if (heap.size() > limit) {
+				heap.poll();
+			}
+		}
+
+		List<ItemSearchHit> toList() {
+			List<ItemSearchHit> hits = new ArrayList<>(heap);
+			hits.sort(WORST_FIRST.reversed());
+			return hits;
+		}
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class Status {
+		private int documents;
+		private int terms;
+		private int pending;
+		private LocalDateTime builtAt;
+		private long buildMillis;
+	}
+}
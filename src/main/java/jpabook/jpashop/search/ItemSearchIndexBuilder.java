@@ -0,0 +1,163 @@
+package jpabook.jpashop.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * DB의 전체 상품으로 ItemSearchIndex의 base를 다시 만든다.
+ * 1. id 범위를 threads x 4 조각으로 나눠서 조각마다 자기 스레드의 읽기 전용 트랜잭션에서 필요한 컬럼만 읽고 토큰으로 나눈다.
+ * 2. 문서를 다시 조각으로 나눠서 동시에 단어별 문서 목록을 만들고 합친다. (IndexSegment.build)
+ *
+ * 기동 후 한 번 실행한다. (DataSeeder가 JDBC로 넣은 상품도 여기서 들어간다)
+ * 만드는 동안에는 예전 base로 검색하고, 다 만든 뒤에 한 번에 바꾼다.
+ * 스레드 수만큼 커넥션을 더 쓰므로 threads는 커넥션 풀 크기보다 작게 잡는다.
+ *
+ * 재구성 뒤에 저장/수정된 상품(pending)은 검색마다 전부 훑는다. 계속 쌓이지 않도록
+ * merge-check-seconds마다 확인해서 merge-threshold개 이상이면 백그라운드 스레드에서 다시 만든다. (pending이 base로 합쳐진다)
+ */
+@Slf4j
+@Component
+public class ItemSearchIndexBuilder {
+
+	private final ItemSearchIndex itemSearchIndex;
+	private final ItemRepository itemRepository;
+	private final TransactionTemplate readOnly;
+	private final int threads;
+	private final int mergeThreshold;
+	private final long mergeCheckSeconds;
+	private ScheduledExecutorService scheduler;
+
+	public ItemSearchIndexBuilder(ItemSearchIndex itemSearchIndex, ItemRepository itemRepository,
+			PlatformTransactionManager transactionManager,
+			@Value("${app.item-search.build-threads:4}") int threads,
+			@Value("${app.item-search.merge-threshold:10000}") int mergeThreshold,
+			@Value("${app.item-search.merge-check-seconds:10}") long mergeCheckSeconds) {
+		this.itemSearchIndex = itemSearchIndex;
+		this.itemRepository = itemRepository;
+		this.readOnly = new TransactionTemplate(transactionManager);
+		this.readOnly.setReadOnly(true);
+		this.threads = Math.max(1, threads);
+		this.mergeThreshold = Math.max(1, mergeThreshold);
+		this.mergeCheckSeconds = mergeCheckSeconds;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (mergeCheckSeconds <= 0) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "item-search-merge");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				mergeIfNeeded();
+			} catch (RuntimeException e) {
+				log.warn("상품 검색 색인 재구성 실패", e);
+			}
+		}, mergeCheckSeconds, mergeCheckSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	//따로 들고 있는 상품이 기준 이상이면 다시 만든다.
+	public boolean mergeIfNeeded() {
+		return mergeIfNeeded(mergeThreshold);
+	}
+
+	boolean mergeIfNeeded(int threshold) {
+		int pending = itemSearchIndex.pendingCount();
+		if (pending < threshold) {
+			return false;
+		}
+		log.info("item search index: {} pending items, rebuilding", pending);
+		rebuild();
+		return true;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void rebuild() {
+		long start = System.currentTimeMillis();
+		long sequence = itemSearchIndex.currentSequence();
+		AtomicInteger threadSequence = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "item-search-build-" + threadSequence.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<ItemDocument> documents = load(executor);
+			IndexSegment segment = IndexSegment.build(documents, executor, threads * 4);
+			long elapsed = System.currentTimeMillis() - start;
+			itemSearchIndex.replace(segment, sequence, elapsed);
+			log.info("item search index: {} items, {} terms, {}ms", segment.documentCount(), segment.termCount(), elapsed);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<ItemDocument> load(ExecutorService executor) {
+		long[] range = readOnly.execute(status -> itemRepository.findIdRange());
+		List<ItemDocument> documents = new ArrayList<>();
+		if (range == null) {
+			return documents;
+		}
+		long width = (range[1] - range[0]) / (threads * 4) + 1;
+		List<Future<List<ItemDocument>>> futures = new ArrayList<>();
+		for (long from = range[0]; from <= range[1]; from += width) {
+			long fromId = from;
+			long toId = Math.min(from + width - 1, range[1]);
+			futures.add(executor.submit(() -> readOnly.execute(status -> toDocuments(itemRepository.findSearchFields(fromId, toId)))));
+		}
+		//조각 순서대로 이어 붙이면 id 순이 된다.
+		try {
+			for (Future<List<ItemDocument>> future : futures) {
+				documents.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("상품 검색 색인 조회가 중단되었습니다.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("상품 검색 색인 조회에 실패했습니다.", e.getCause());
+		}
+		return documents;
+	}
+
+	//[id, dtype, name, author, isbn, artist, director]
+	private static List<ItemDocument> toDocuments(List<Object[]> rows) {
+		List<ItemDocument> documents = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			String creator = (String) (row[3] != null ? row[3] : row[5] != null ? row[5] : row[6]);
+			documents.add(ItemDocument.of(((Number) row[0]).longValue(), ((String) row[1]).charAt(0),
+					(String) row[2], creator, (String) row[4]));
+		}
+		return documents;
+	}
+}
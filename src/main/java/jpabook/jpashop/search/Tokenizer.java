@@ -0,0 +1,47 @@
+package jpabook.jpashop.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 색인과 검색어에 같이 쓰는 토크나이저.
+ * 글자/숫자가 아닌 문자(공백, 문장부호, 하이픈 등)에서 자르고 소문자로 바꾼다. 한글은 어절 단위가 된다.
+ * 너무 긴 토큰은 앞부분만 쓴다. 검색어도 같이 잘리므로 접두어 검색으로 찾을 수 있다.
+ */
+final class Tokenizer {
+
+	static final int MAX_TOKEN_LENGTH = 32;
+
+	private Tokenizer() {
+	}
+
+	//나온 순서대로, 중복 없이
+	static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		if (text == null) {
+			return tokens;
+		}
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean letterOrDigit = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (letterOrDigit && start < 0) {
+				start = i;
+			} else if (!letterOrDigit && start >= 0) {
+				add(tokens, text.substring(start, i));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	private static void add(List<String> tokens, String token) {
+		String normalized = token.toLowerCase(Locale.ROOT);
+		if (normalized.length() > MAX_TOKEN_LENGTH) {
+			normalized = normalized.substring(0, MAX_TOKEN_LENGTH);
+		}
+		if (!tokens.contains(normalized)) {
+			tokens.add(normalized);
+		}
+	}
+}
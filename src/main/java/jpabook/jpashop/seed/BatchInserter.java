@@ -0,0 +1,54 @@
+package jpabook.jpashop.seed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * row를 batchSize 만큼 모았다가 JDBC batch 한 번으로 insert 한다.
+ */
+class BatchInserter implements AutoCloseable {
+
+	private final JdbcTemplate jdbcTemplate;
+	private final String sql;
+	private final int batchSize;
+	private List<Object[]> rows;
+	private long inserted;
+
+	BatchInserter(JdbcTemplate jdbcTemplate, String sql, int batchSize) {
+		this.jdbcTemplate = jdbcTemplate;
+		this.sql = sql;
+		this.batchSize = batchSize;
+		this.rows = new ArrayList<>();
+	}
+
+	void add(Object... row) {
+		rows.add(row);
+		if (rows.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	void flush() {
+		if (rows.isEmpty()) {
+			return;
+		}
+		jdbcTemplate.batchUpdate(sql, rows);
+		inserted += rows.size();
+		rows = new ArrayList<>();
+	}
+
+	int getPending() {
+		return rows.size();
+	}
+
+	long getInserted() {
+		return inserted;
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+}
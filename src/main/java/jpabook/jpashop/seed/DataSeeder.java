@@ -0,0 +1,223 @@
+package jpabook.jpashop.seed;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StopWatch;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.report.SalesReportService;
+import jpabook.jpashop.repository.OrderItemSequenceAligner;
+import jpabook.jpashop.service.OrderSummaryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 부하 테스트용 대량 데이터 생성기. (app.seed.enabled=true 일 때만 동작)
+ * 회원, 상품(Book/Album/Movie), 카테고리, 주문, 배송, 주문상품을 만든다.
+ *
+ * 엔티티로 persist 하면 Order.setMember()가 회원의 orders 컬렉션을 건드리기 때문에
+ * flush/clear로 준영속이 된 회원을 주문마다 다시 조회해야 한다.
+ * 그래서 JDBC batch insert로 직접 넣고, id는 hibernate_sequence에서 이어받은 뒤 마지막에 시퀀스를 뒤로 밀어준다.
+ * 트래픽이 들어오기 전 기동 시점에 돌리는 용도.
+ *
+ * - 상품/회원은 Zipf 분포로 뽑는다. 앞쪽 id일수록 인기 상품, 헤비 구매자.
+ * - batchSize 마다 JDBC batch 실행 + 커밋(autocommit)하므로 메모리에는 한 batch만 남는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.seed", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class DataSeeder implements ApplicationRunner {
+
+	private static final String[] CITIES = {"서울", "부산", "대구", "인천", "광주", "대전", "울산", "진주"};
+
+	private final JdbcTemplate jdbcTemplate;
+	private final SeedProperties properties;
+	private final OrderSummaryService orderSummaryService;
+	private final SalesReportService salesReportService;
+	private final OrderItemSequenceAligner orderItemSequenceAligner;
+
+	private long nextId;
+
+	@Override
+	public void run(ApplicationArguments args) {
+		Random random = new Random(properties.getRandomSeed());
+		StopWatch stopWatch = new StopWatch("seed");
+
+		nextId = jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class);
+
+		stopWatch.start("members");
+		long firstMemberId = seedMembers(random);
+		stopWatch.stop();
+
+		stopWatch.start("categories");
+		long firstLeafCategoryId = seedCategories();
+		stopWatch.stop();
+
+		stopWatch.start("items");
+		int[] prices = new int[properties.getItems()];
+		long firstItemId = seedItems(random, prices, firstLeafCategoryId);
+		stopWatch.stop();
+
+		stopWatch.start("orders");
+		seedOrders(random, firstMemberId, firstItemId, prices);
+		stopWatch.stop();
+
+		//주문을 JDBC로 넣었으므로 목록 조회용 프로젝션과 매출 집계는 한 번에 다시 만든다.
+		stopWatch.start("order_summary");
+		orderSummaryService.rebuild();
+		stopWatch.stop();
+
+		stopWatch.start("sales_rollup");
+		salesReportService.rebuild();
+		stopWatch.stop();
+
+		//JPA가 이어서 발급하는 id가 겹치지 않도록
+		jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + nextId);
+		//order_item_seq는 pooled라서 받아온 값 - 99 부터 쓴다. 넣은 주문상품 id보다 뒤일 때만 앞으로 민다. (뒤로 돌리지 않음)
+		orderItemSequenceAligner.align();
+		log.info("seed 완료\n{}", stopWatch.prettyPrint());
+	}
+
+	private long seedMembers(Random random) {
+		long firstId = nextId;
+		try (BatchInserter members = inserter("insert into member (member_id, name, city, street, zipcode) values (?, ?, ?, ?, ?)")) {
+			for (int i = 0; i < properties.getMembers(); i++) {
+				long memberId = nextId++;
+				//이름은 유니크(uk_member_name)라서 id를 붙인다.
+				members.add(memberId, "member" + memberId, CITIES[random.nextInt(CITIES.length)], "street" + random.nextInt(1000), String.format("%05d", random.nextInt(100000)));
+			}
+			log.info("members: {}", properties.getMembers());
+		}
+		return firstId;
+	}
+
+	/**
+	 * 루트 카테고리 아래에 자식 카테고리를 두고, 상품은 자식(leaf) 카테고리에 연결한다.
+	 * closure table(category_closure)도 같이 채운다. 자기 자신(depth 0) + 루트 -> 자식(depth 1)
+	 * @return 첫 번째 leaf 카테고리 id (leaf id는 연속)
+	 */
+	private long seedCategories() {
+		long[] rootIds = new long[properties.getRootCategories()];
+		try (BatchInserter categories = manualInserter("insert into category (category_id, name, parent_id) values (?, ?, ?)");
+			BatchInserter closures = manualInserter("insert into category_closure (ancestor_id, descendant_id, depth) values (?, ?, ?)")) {
+			for (int r = 0; r < rootIds.length; r++) {
+				rootIds[r] = nextId++;
+				categories.add(rootIds[r], "category" + r, null);
+				closures.add(rootIds[r], rootIds[r], 0);
+			}
+			categories.flush();
+
+			long firstLeafId = nextId;
+			for (int r = 0; r < rootIds.length; r++) {
+				for (int c = 0; c < properties.getChildCategoriesPerRoot(); c++) {
+					long childId = nextId++;
+					categories.add(childId, "category" + r + "-" + c, rootIds[r]);
+					closures.add(childId, childId, 0);
+					closures.add(rootIds[r], childId, 1);
+				}
+			}
+			//category_closure가 category를 참조하므로 category를 먼저 내보낸다.
+			categories.flush();
+			closures.flush();
+			return firstLeafId;
+		}
+	}
+
+	private long seedItems(Random random, int[] prices, long firstLeafCategoryId) {
+		long firstId = nextId;
+		int leafCount = properties.getRootCategories() * properties.getChildCategoriesPerRoot();
+		try (BatchInserter items = inserter("insert into item (dtype, item_id, name, price, stock_quantity, author, isbn, artist, etc, director, actor) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			BatchInserter categoryItems = inserter("insert into category_item (category_id, item_id) values (?, ?)")) {
+			for (int i = 0; i < prices.length; i++) {
+				long itemId = nextId++;
+				prices[i] = (1 + random.nextInt(100)) * 1000;
+				int stock = 1000 + random.nextInt(100000);
+				//인기 상품(앞쪽 id)이 한 종류에 몰리지 않도록 번갈아가며 만든다. Book 3 : Album 1 : Movie 1
+				switch (i % 5) {
+				case 3:
+					items.add("A", itemId, "album" + i, prices[i], stock, null, null, "artist" + random.nextInt(10000), null, null, null);
+					break;
+				case 4:
+					items.add("M", itemId, "movie" + i, prices[i], stock, null, null, null, null, "director" + random.nextInt(10000), "actor" + random.nextInt(10000));
+					break;
+				default:
+					items.add("B", itemId, "book" + i, prices[i], stock, "author" + random.nextInt(10000), String.valueOf(9780000000000L + i), null, null, null, null);
+				}
+				if (leafCount > 0) {
+					categoryItems.add(firstLeafCategoryId + (i % leafCount), itemId);
+				}
+			}
+			//category_item이 item을 참조하므로 item을 먼저 내보낸다.
+			items.flush();
+			categoryItems.flush();
+			log.info("items: {}", prices.length);
+		}
+		return firstId;
+	}
+
+	private void seedOrders(Random random, long firstMemberId, long firstItemId, int[] prices) {
+		ZipfSampler buyers = new ZipfSampler(properties.getMembers(), properties.getMemberSkew());
+		ZipfSampler hotItems = new ZipfSampler(prices.length, properties.getItemSkew());
+		LocalDateTime now = LocalDateTime.now();
+		long periodSeconds = properties.getDays() * 24L * 60 * 60;
+
+		//orders가 delivery를, order_item이 orders를 참조하므로 세 테이블은 주문 batchSize 단위로 순서대로 같이 내보낸다.
+		try (BatchInserter deliveries = manualInserter("insert into delivery (delivery_id, city, street, zipcode, status) values (?, ?, ?, ?, ?)");
+			BatchInserter orders = manualInserter("insert into orders (order_id, member_id, delivery_id, order_date, status, total_amount) values (?, ?, ?, ?, ?, ?)");
+			BatchInserter orderItems = manualInserter("insert into order_item (order_item_id, order_id, item_id, order_price, count) values (?, ?, ?, ?, ?)")) {
+			for (int i = 0; i < properties.getOrders(); i++) {
+				long memberId = firstMemberId + buyers.next(random);
+				long deliveryId = nextId++;
+				long orderId = nextId++;
+				LocalDateTime orderDate = now.minusSeconds((long) (random.nextDouble() * periodSeconds));
+
+				DeliveryStatus deliveryStatus = random.nextDouble() < properties.getCompletedDeliveryRatio() ? DeliveryStatus.COMP : DeliveryStatus.READY;
+				OrderStatus orderStatus = (deliveryStatus == DeliveryStatus.READY && random.nextDouble() < properties.getCancelRatio()) ? OrderStatus.CANCEL : OrderStatus.ORDER;
+
+				deliveries.add(deliveryId, CITIES[random.nextInt(CITIES.length)], "street" + random.nextInt(1000), String.format("%05d", random.nextInt(100000)), deliveryStatus.name());
+
+				//total_amount를 알아야 하므로 주문상품을 먼저 만든다. (내보내는 순서는 아래 flush 순서를 따른다)
+				long totalAmount = 0;
+				int lines = 1 + random.nextInt(properties.getMaxItemsPerOrder());
+				for (int l = 0; l < lines; l++) {
+					int itemRank = hotItems.next(random);
+					int count = 1 + random.nextInt(3);
+					orderItems.add(nextId++, orderId, firstItemId + itemRank, prices[itemRank], count);
+					totalAmount += (long) prices[itemRank] * count;
+				}
+				orders.add(orderId, memberId, deliveryId, Timestamp.valueOf(orderDate), orderStatus.name(), totalAmount);
+
+				if (orders.getPending() >= properties.getBatchSize()) {
+					deliveries.flush();
+					orders.flush();
+					orderItems.flush();
+				}
+				if ((i + 1) % 100_000 == 0) {
+					log.info("orders: {} / {}", i + 1, properties.getOrders());
+				}
+			}
+			deliveries.flush();
+			orders.flush();
+			orderItems.flush();
+			log.info("orders: {}, orderItems: {}", orders.getInserted(), orderItems.getInserted());
+		}
+	}
+
+	private BatchInserter inserter(String sql) {
+		return new BatchInserter(jdbcTemplate, sql, properties.getBatchSize());
+	}
+
+	//자동으로 flush 하지 않는다. 참조 순서를 직접 맞춰야 하는 경우.
+	private BatchInserter manualInserter(String sql) {
+		return new BatchInserter(jdbcTemplate, sql, Integer.MAX_VALUE);
+	}
+}
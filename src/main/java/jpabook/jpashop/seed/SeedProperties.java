@@ -0,0 +1,57 @@
+package jpabook.jpashop.seed;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 부하 테스트용 데이터 생성 설정 (app.seed.*)
+ * 기본값으로 주문상품 약 1000만 건이 만들어진다. (orders * (maxItemsPerOrder + 1) / 2)
+ * 주문은 회원과 상품을 뽑아서 만드므로 회원, 상품은 1 이상이어야 한다. 잘못된 값이면 기동할 때 실패한다.
+ */
+@Component
+@Validated
+@ConfigurationProperties(prefix = "app.seed")
+@Getter @Setter
+public class SeedProperties {
+
+	private boolean enabled = false;
+
+	@Min(1)
+	private int members = 1_000_000;
+	@Min(1)
+	private int items = 100_000;
+	@Min(0)
+	private int rootCategories = 10;
+	@Min(0)
+	private int childCategoriesPerRoot = 10;
+	@Min(0)
+	private int orders = 4_000_000;
+	@Min(1)
+	private int maxItemsPerOrder = 4;
+
+	//주문이 분포할 기간
+	@Min(1)
+	private int days = 365;
+
+	//Zipf 분포 지수. 클수록 소수의 인기 상품/헤비 구매자에 몰린다. (0이면 균등)
+	private double itemSkew = 1.0;
+	private double memberSkew = 0.8;
+
+	//취소된 주문, 배송 완료된 주문 비율
+	@DecimalMin("0") @DecimalMax("1")
+	private double cancelRatio = 0.05;
+	@DecimalMin("0") @DecimalMax("1")
+	private double completedDeliveryRatio = 0.7;
+
+	@Min(1)
+	private int batchSize = 1000;
+	private long randomSeed = 42L;
+}
@@ -0,0 +1,35 @@
+package jpabook.jpashop.seed;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 0 ~ n-1 사이의 순위를 Zipf 분포로 뽑는다.
+ * 0번이 가장 자주 나오고 뒤로 갈수록 드물어진다. (인기 상품, 헤비 구매자)
+ * 누적분포를 미리 만들어두고 이진 탐색하므로 한 번 뽑는데 O(log n).
+ */
+class ZipfSampler {
+
+	private final double[] cdf;
+
+	ZipfSampler(int n, double exponent) {
+		if (n < 1) {
+			throw new IllegalArgumentException("n은 1 이상이어야 합니다. n=" + n);
+		}
+		cdf = new double[n];
+		double sum = 0;
+		for (int rank = 0; rank < n; rank++) {
+			sum += 1.0 / Math.pow(rank + 1, exponent);
+			cdf[rank] = sum;
+		}
+		for (int rank = 0; rank < n; rank++) {
+			cdf[rank] /= sum;
+		}
+	}
+
+	int next(Random random) {
+		int idx = Arrays.binarySearch(cdf, random.nextDouble());
+		int rank = (idx >= 0) ? idx : -idx - 1;
+		return Math.min(rank, cdf.length - 1);
+	}
+}
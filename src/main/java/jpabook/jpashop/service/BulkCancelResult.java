@@ -0,0 +1,16 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 일괄 취소 결과
+ */
+@Getter
+@AllArgsConstructor
+public class BulkCancelResult {
+	private int canceled;			//이번에 취소된 주문 수
+	private int alreadyCanceled;	//이미 취소되어 있어서 건너뛴 주문 수
+	private int delivered;			//배송 완료라서 건너뛴 주문 수 (검색 조건 취소만. id 목록 취소는 예외)
+	private int restockedItems;		//재고를 복구한 상품 종류 수
+}
@@ -0,0 +1,80 @@
+package jpabook.jpashop.service;
+
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jpabook.jpashop.cache.CategoryTreeCache;
+import jpabook.jpashop.cache.CategoryTreeCache.Node;
+import jpabook.jpashop.cache.CategoryTreeCache.Tree;
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class CategoryService {
+
+	private final CategoryRepository categoryRepository;
+	private final CategoryTreeCache categoryTreeCache;
+
+	/**
+	 * 카테고리 추가
+	 * @param parentId 없으면 루트 카테고리
+	 */
+	@Transactional
+	public Long addCategory(Long parentId, String name) {
+		Category category = Category.createCategory(name);
+		if (parentId != null) {
+			Category parent = categoryRepository.findOne(parentId);
+			if (parent == null) {
+				throw new IllegalArgumentException("존재하지 않는 카테고리입니다.");
+			}
+			parent.addChildCategory(category);
+		}
+		categoryRepository.save(category);
+		categoryTreeCache.invalidate();
+		return category.getId();
+	}
+
+	/**
+	 * closure table 도입 전 카테고리는 category_closure 줄이 없어서 하위 카테고리 상품 조회에 안 나온다.
+	 * 기동할 때 그런 카테고리가 있으면 parent_id로 closure table을 다시 만든다.
+	 */
+	@Transactional
+	@EventListener(ApplicationReadyEvent.class)
+	public void repairClosuresOnStartup() {
+		long missing = categoryRepository.countMissingClosures();
+		if (missing > 0) {
+			int rows = categoryRepository.rebuildClosures();
+			categoryTreeCache.invalidate();
+			log.info("category_closure rebuild: 카테고리 {}개에 줄이 없어서 {}줄을 다시 넣었습니다.", missing, rows);
+		}
+	}
+
+	//전체 트리 (캐시)
+	public Tree findTree() {
+		return categoryTreeCache.get(categoryRepository::findAllNodes);
+	}
+
+	//루트부터 해당 카테고리까지 (캐시)
+	public List<Node> findPath(Long categoryId) {
+		return findTree().path(categoryId);
+	}
+
+	//카테고리와 하위 카테고리 전체의 상품
+	public List<Item> findItems(Long categoryId, int offset, int limit) {
+		return categoryRepository.findItemsInSubtree(categoryId, offset, limit);
+	}
+
+	public long countItems(Long categoryId) {
+		return categoryRepository.countItemsInSubtree(categoryId);
+	}
+}
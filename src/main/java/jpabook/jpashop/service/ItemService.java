@@ -8,9 +8,16 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.fasterxml.jackson.databind.deser.impl.CreatorCandidate.Param;
 
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.cache.ItemCache;
+import jpabook.jpashop.cache.ItemSnapshot;
 import jpabook.jpashop.domain.Book;
 import jpabook.jpashop.domain.Item;
+import jpabook.jpashop.outbox.OutboxEvents;
 import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.search.ItemSearchIndex;
+import jpabook.jpashop.stock.HotStock;
 import lombok.RequiredArgsConstructor;
 
 @Service
@@ -19,18 +26,27 @@ import lombok.RequiredArgsConstructor;
 public class ItemService {
 	
 	private final ItemRepository itemRepository;
+	private final ItemCache itemCache;
+	private final AggregateVersions aggregateVersions;
+	private final ItemSearchIndex itemSearchIndex;
+	private final HotStock hotStock;
+	private final OutboxEvents outboxEvents;
 	
 	@Transactional
 	public void saveItem(Item item) {
 		itemRepository.save(item);
+		itemCache.evict(item.getId());
+		itemSearchIndex.index(item);
+		aggregateVersions.bump(Aggregate.ORDER); //주문 목록에 상품명, 가격이 나간다.
 	}
 	
-	public List<Item> findItems(){
-		return itemRepository.findAll();
+	//상품 목록, 단건 조회는 캐시를 먼저 본다. 엔티티가 아니라 조회 시점의 값(ItemSnapshot)을 돌려준다.
+	public List<ItemSnapshot> findItems(){
+		return itemCache.getCatalog(itemRepository::findAll);
 	}
 	
-	public Item findOne(Long itemId) {
-		return itemRepository.findOne(itemId);
+	public ItemSnapshot findOne(Long itemId) {
+		return itemCache.getItem(itemId, itemRepository::findOne);
 	}
 	
 	//일반적인 방법. merge는 넘어오는 모든 객체를 변경하기 때문에 직접 변경감지를 사용하는 것이 좋다.
@@ -41,7 +57,14 @@ public class ItemService {
 		//findItem.change(price,name, stockQuantity)
 		findItem.setPrice(book.getPrice());
 		findItem.setName(book.getName());
-		findItem.setStockQuantity(book.getStockQuantity());
+		//핫 상품 재고는 카운터가 가지고 있다. (item.stock_quantity는 주기적으로 반영)
+		if(!hotStock.adjustTo(itemId, book.getStockQuantity())) {
+			findItem.setStockQuantity(book.getStockQuantity());
+		}
 		
+		itemCache.evict(itemId);
+		itemSearchIndex.index(findItem);
+		outboxEvents.itemUpdated(findItem, book.getStockQuantity());
+		aggregateVersions.bump(Aggregate.ORDER);
 	}
 }
@@ -3,11 +3,18 @@ package jpabook.jpashop.service;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.cache.MemberNameFilter;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderSummaryRepository;
 import lombok.RequiredArgsConstructor;
 
 @Service
@@ -17,6 +24,9 @@ public class MemberService {
 
 	//변경할 이유가 없으니 final을 붙여주는 것이 좋다.
 	private final MemberRepository memberRepository;
+	private final MemberNameFilter memberNameFilter;
+	private final OrderSummaryRepository orderSummaryRepository;
+	private final AggregateVersions aggregateVersions;
 	
 	//생성자로 주입을 받으면 테스트할 때 MemberRepository에 대한 Mock을 넘겨줄 수 있어서 더 좋다.
 //	public MemberService(MemberRepository memberRepository) {
@@ -28,19 +38,36 @@ public class MemberService {
 	 */
 	@Transactional
 	public Long join(Member member) {
-		validateDuplicateMember(member); //중복 회원 검증
-		memberRepository.save(member);
+		validateDuplicateName(member.getName()); //중복 회원 검증
+		try {
+			memberRepository.save(member);
+		} catch (DataIntegrityViolationException e) {
+			//동시에 같은 이름으로 가입해서 검증을 둘 다 통과한 경우 (uk_member_name)
+			throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+		}
+		memberNameFilter.put(member.getName());
+		aggregateVersions.bump(Aggregate.MEMBER);
 		return member.getId();
 	}
 	
 	//두명이 동시에 접근하면 유효성 검증을 통과하게 됨. 따라서 이름을 유니크 제약조건을 잡아주는게 더 안전함.
-	private void validateDuplicateMember(Member member) {
-		List<Member> findMembers = memberRepository.findByName(member.getName());
-		if(!findMembers.isEmpty()) {
+	//처음 보는 이름은 Bloom filter에서 걸러서 DB를 조회하지 않는다. 있을 수도 있는 이름만 인덱스로 존재 여부를 확인.
+	private void validateDuplicateName(String name) {
+		if(memberNameFilter.mightContain(name) && memberRepository.existsByName(name)) {
 			throw new IllegalStateException("이미 존재하는 회원입니다.");
 		}
 	}
 	
+	/**
+	 * 기동 후 전체 회원 이름으로 Bloom filter를 채운다.
+	 * 채우기 전까지는 모든 가입이 DB로 중복 검사를 한다.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadMemberNameFilter() {
+		memberRepository.forEachName(memberNameFilter::put);
+		memberNameFilter.markLoaded();
+	}
+	
 	//회원 전체 조회
 	public List<Member> findMembers(){
 		return memberRepository.findAll();
@@ -53,9 +80,20 @@ public class MemberService {
 	//영한님은 커맨드랑 쿼리를 철저하게 분리하는 스타일.
 	//update의 리턴타입으로 Member를 주면, 쿼리를 호출한 것처럼 됨.
 	//반환하더라도 id만 반환.
+	//이름도 가입과 같이 중복 검사를 한다. 동시에 같은 이름으로 바꾸면 uk_member_name에 걸린다.
 	@Transactional
 	public void update(Long id, String name) {
 		Member member = memberRepository.findOne(id);
-		member.setName(name);
+		if(!name.equals(member.getName())) {
+			validateDuplicateName(name);
+			try {
+				memberRepository.changeName(member, name);
+			} catch (DataIntegrityViolationException e) {
+				throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+			}
+		}
+		memberNameFilter.put(name);
+		orderSummaryRepository.updateMemberName(id, name); //주문 목록 프로젝션의 회원명
+		aggregateVersions.bump(Aggregate.MEMBER, Aggregate.ORDER); //주문 목록에도 회원명이 나간다.
 	}
 }
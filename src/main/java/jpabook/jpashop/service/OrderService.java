@@ -1,19 +1,44 @@
 package jpabook.jpashop.service;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.cache.ItemCache;
+import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Item;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
+import jpabook.jpashop.outbox.OutboxEvents;
+import jpabook.jpashop.report.SalesRollupRecorder;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderListPage;
+import jpabook.jpashop.repository.order.simplequery.OrderListRow;
+import jpabook.jpashop.repository.order.simplequery.OrderListSort;
+import jpabook.jpashop.repository.order.simplequery.OrderSummaryRepository;
+import jpabook.jpashop.stock.HotStock;
 import lombok.RequiredArgsConstructor;
 
 @Service
@@ -21,9 +46,19 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor
 public class OrderService {
 	
+	//한 번에 취소할 수 있는 주문 수, in 조건 하나에 넣는 주문 수
+	public static final int MAX_BULK_CANCEL = 10000;
+	private static final int CANCEL_CHUNK_SIZE = 1000;
+	
 	private final OrderRepository orderRepository;
 	private final MemberRepository memberRepository;
 	private final ItemRepository ItemRepository;
+	private final ItemCache itemCache;
+	private final OrderSummaryRepository orderSummaryRepository;
+	private final SalesRollupRecorder salesRollupRecorder;
+	private final AggregateVersions aggregateVersions;
+	private final HotStock hotStock;
+	private final OutboxEvents outboxEvents;
 	
 	/**
 	 * 주문
@@ -46,26 +81,278 @@ public class OrderService {
 		//주문 생성
 		Order order = Order.createOrder(member, delivery, orderItem);
 	
-		//주문 저장
+		//주문 저장 (+ 목록 조회용 프로젝션)
 		orderRepository.save(order);
+		orderSummaryRepository.save(OrderSummary.of(order));
+		salesRollupRecorder.orderPlaced(order);
+		outboxEvents.orderPlaced(order);
+		aggregateVersions.bump(Aggregate.ORDER);
+		
+		//재고 차감 (조건부 update. 재고가 부족하면 NotEnoughStockException)
+		//주문 insert를 먼저 flush 하고 마지막에 실행하므로 row lock은 커밋 직전부터 잡힌다.
+		//핫 상품은 메모리 카운터에서 차감한다. (row lock 없음)
+		if(!hotStock.reserve(itemId, count)) {
+			ItemRepository.removeStock(item, count);
+			itemCache.evict(itemId);
+		}
+		
+		return order.getId();
+	}
+	
+	/**
+	 * 장바구니 주문
+	 * 상품이 1개든 100개든 DB 왕복 횟수가 같도록
+	 * - 상품은 in 쿼리 한 번으로 조회
+	 * - 주문, 배송, 주문상품 insert는 JDBC batch로 flush (hibernate.jdbc.batch_size, 주문상품 시퀀스 pooled)
+	 * - 재고는 update 한 번으로 id 순서대로 차감 (데드락 방지)
+	 */
+	@Transactional
+	public Long orderCart(Long memberId, List<OrderLine> lines) {
+		if(lines.isEmpty()) {
+			throw new IllegalArgumentException("주문할 상품이 없습니다.");
+		}
+		
+		//같은 상품은 합치고 id 순으로 정렬
+		Map<Long, Integer> quantities = new TreeMap<>();
+		for(OrderLine line : lines) {
+			if(line.getCount() <= 0) {
+				throw new IllegalArgumentException("주문 수량은 1개 이상이어야 합니다.");
+			}
+			quantities.merge(line.getItemId(), line.getCount(), Integer::sum);
+		}
+		
+		//엔티티 조회
+		Member member = memberRepository.findOne(memberId);
+		List<Item> items = ItemRepository.findAllById(quantities.keySet());
+		if(items.size() != quantities.size()) {
+			throw new IllegalArgumentException("존재하지 않는 상품이 포함되어 있습니다.");
+		}
+		
+		//배송정보 생성
+		Delivery delivery = new Delivery();
+		delivery.setAddress(member.getAddress());
+		
+		//주문 상품 생성
+		OrderItem[] orderItems = items.stream()
+				.map(item -> OrderItem.createOrderItem(item, item.getPrice(), quantities.get(item.getId())))
+				.toArray(OrderItem[]::new);
+		
+		//주문 생성, 저장
+		Order order = Order.createOrder(member, delivery, orderItems);
+		orderRepository.save(order);
+		orderSummaryRepository.save(OrderSummary.of(order));
+		salesRollupRecorder.orderPlaced(order);
+		outboxEvents.orderPlaced(order);
+		aggregateVersions.bump(Aggregate.ORDER);
+		
+		//재고 차감 (하나라도 부족하면 NotEnoughStockException -> 롤백. 먼저 차감한 핫 상품 재고도 롤백 때 돌려놓는다)
+		Map<Long, Integer> dbQuantities = new TreeMap<>();
+		quantities.forEach((itemId, count) -> {
+			if(!hotStock.reserve(itemId, count)) {
+				dbQuantities.put(itemId, count);
+			}
+		});
+		if(!dbQuantities.isEmpty()) {
+			List<Item> dbItems = items.stream()
+					.filter(item -> dbQuantities.containsKey(item.getId()))
+					.collect(Collectors.toList());
+			ItemRepository.removeStocks(dbItems, dbQuantities);
+			itemCache.evict(dbQuantities.keySet());
+		}
 		
 		return order.getId();
 	}
 	
 	/**
 	 * 주문 취소
+	 * 주문 줄을 잠그고 읽는다. 이미 취소된 주문이면 아무것도 하지 않는다. (집계, 이벤트, 재고 복구를 두 번 하지 않음)
 	 */
 	@Transactional
 	public void cancelOrder(Long orderId) {
-		//주문 엔티티 조회
-		Order order = orderRepository.findOne(orderId);
+		//주문 엔티티 조회 (for update)
+		Order order = orderRepository.findOneForUpdate(orderId);
+		if(order.getStatus() == OrderStatus.CANCEL) {
+			return;
+		}
 		
 		//주문 취소 (SQL을 직접 다루는 Mybatis 같은 경우에는 이렇게 간단하게 구현할 수가 없음.)
 		// JPA의 최고 강점
 		order.cancel();
+		orderSummaryRepository.updateStatus(orderId, OrderStatus.CANCEL);
+		salesRollupRecorder.orderCanceled(order);
+		outboxEvents.orderCanceled(order);
+		aggregateVersions.bump(Aggregate.ORDER);
+		for(OrderItem orderItem : order.getOrderItems()) {
+			if(!hotStock.release(orderItem.getItem().getId(), orderItem.getCount())) {
+				ItemRepository.addStock(orderItem.getItem(), orderItem.getCount());
+				itemCache.evict(orderItem.getItem().getId());
+			}
+		}
+	}
+	
+	/**
+	 * 일괄 취소
+	 * cancelOrder를 주문마다 부르면 주문, 배송, 주문상품, 상품을 하나씩 로딩하고 재고도 주문상품마다 update 한다.
+	 * 여기서는 주문 천 건마다
+	 * - 상태 검사 select 1번 (주문 + 배송상태, for update)
+	 * - 주문 상태 update 1번, order_summary update 1번
+	 * - 주문상품 select 1번 (스칼라 조회)
+	 * 그리고 재고는 상품 종류마다 update 1번. (여러 주문의 같은 상품은 합쳐서)
+	 * 
+	 * id를 직접 고른 경우라서 배송 완료된 주문이 하나라도 있으면 아무것도 취소하지 않는다. (IllegalStateException)
+	 * 이미 취소된 주문은 건너뛴다. (재고를 두 번 복구하지 않음)
+	 * 벌크 연산이라 이 트랜잭션의 영속성 컨텍스트에 이미 올라온 주문, 상품 엔티티에는 반영되지 않는다.
+	 */
+	@Transactional
+	public BulkCancelResult cancelOrders(Collection<Long> orderIds) {
+		List<Long> ids = new ArrayList<>(new TreeSet<>(orderIds));
+		checkBulkCancelSize(ids);
+		return cancel(ids, false, 0, 0);
+	}
+	
+	/**
+	 * 검색 조건에 맞는 주문 일괄 취소 (최대 MAX_BULK_CANCEL건)
+	 * 조건이 없으면 전체 주문이 대상이 되므로 받지 않는다.
+	 * 이미 취소된 주문과 배송 완료된 주문은 검색 쿼리에서 빼고 건너뛴 수로 돌려준다. (하나 때문에 전체를 막지 않음)
+	 * 검색과 lock 사이에 배송 완료/취소된 주문도 건너뛴다.
+	 */
+	@Transactional
+	public BulkCancelResult cancelOrders(OrderSearch orderSearch) {
+		if(!orderSearch.isFiltered()) {
+			throw new IllegalArgumentException("검색 조건이 하나 이상 있어야 합니다.");
+		}
+		List<Long> ids = orderRepository.searchCancelableIds(orderSearch, MAX_BULK_CANCEL + 1);
+		checkBulkCancelSize(ids);
+		long[] skipped = orderRepository.countCancelSkipped(orderSearch);
+		return cancel(ids, true, (int) skipped[0], (int) skipped[1]);
+	}
+	
+	private static void checkBulkCancelSize(List<Long> ids) {
+		if(ids.size() > MAX_BULK_CANCEL) {
+			throw new IllegalArgumentException("한 번에 취소할 수 있는 주문은 " + MAX_BULK_CANCEL + "건까지입니다.");
+		}
+	}
+	
+	/**
+	 * @param ids 주문 id (오름차순)
+	 * @param skipDelivered 배송 완료된 주문을 건너뛸지. false면 예외
+	 * @param alreadyCanceled 검색에서 미리 빼고 센 이미 취소된 주문 수
+	 * @param delivered 검색에서 미리 빼고 센 배송 완료된 주문 수
+	 */
+	private BulkCancelResult cancel(List<Long> ids, boolean skipDelivered, int alreadyCanceled, int delivered) {
+		//전부 검사한 다음에 바꾼다. (id 순으로 lock)
+		List<List<Long>> chunks = new ArrayList<>();
+		List<Long> deliveredIds = new ArrayList<>();
+		for(int from = 0; from < ids.size(); from += CANCEL_CHUNK_SIZE) {
+			chunks.add(findCancelable(ids.subList(from, Math.min(from + CANCEL_CHUNK_SIZE, ids.size())), skipDelivered, deliveredIds));
+		}
+		delivered += deliveredIds.size();
+		
+		int canceled = 0;
+		SortedMap<Long, Integer> restocks = new TreeMap<>();
+		for(List<Long> chunk : chunks) {
+			if(chunk.isEmpty()) {
+				continue;
+			}
+			canceled += orderRepository.cancelAll(chunk);
+			orderSummaryRepository.updateStatus(chunk, OrderStatus.CANCEL);
+			recordCanceledLines(orderRepository.findOrderLines(chunk), restocks);
+		}
+		alreadyCanceled += ids.size() - deliveredIds.size() - canceled;
+		if(canceled == 0) {
+			return new BulkCancelResult(0, alreadyCanceled, delivered, 0);
+		}
+		
+		//재고 복구 (상품 id 순). 핫 상품은 커밋 후 카운터로
+		int restockedItems = restocks.size();
+		restocks.entrySet().removeIf(restock -> hotStock.release(restock.getKey(), restock.getValue()));
+		ItemRepository.addStocks(restocks);
+		itemCache.evict(restocks.keySet());
+		aggregateVersions.bump(Aggregate.ORDER);
+		return new BulkCancelResult(canceled, alreadyCanceled, delivered, restockedItems);
+	}
+	
+	//취소할 주문 id (for update). 없는 주문이 있으면 예외. 배송 완료된 주문은 skipDelivered면 delivered에 모으고 아니면 예외.
+	private List<Long> findCancelable(List<Long> orderIds, boolean skipDelivered, List<Long> delivered) {
+		List<Object[]> rows = orderRepository.findCancelTargets(orderIds);
+		if(rows.size() != orderIds.size()) {
+			throw new IllegalArgumentException("존재하지 않는 주문이 포함되어 있습니다.");
+		}
+		List<Long> cancelable = new ArrayList<>();
+		List<Long> chunkDelivered = new ArrayList<>();
+		for(Object[] row : rows) {
+			if(row[1] == OrderStatus.CANCEL) {
+				continue;
+			}
+			if(row[2] == DeliveryStatus.COMP) {
+				chunkDelivered.add((Long) row[0]);
+			} else {
+				cancelable.add((Long) row[0]);
+			}
+		}
+		if(!chunkDelivered.isEmpty() && !skipDelivered) {
+			throw new IllegalStateException("이미 배송 완료된 상품은 취소가 불가능합니다. " + chunkDelivered);
+		}
+		delivered.addAll(chunkDelivered);
+		return cancelable;
+	}
+	
+	//주문 id 순 [orderId, 주문일, itemId, 수량, 주문가격]을 주문 단위로 매출 집계와 취소 이벤트에 넘기고, 재고 복구 수량은 상품별로 합친다.
+	private void recordCanceledLines(List<Object[]> lines, Map<Long, Integer> restocks) {
+		Long orderId = null;
+		LocalDate salesDate = null;
+		Map<Long, long[]> items = new HashMap<>();
+		List<OutboxEvents.Line> eventLines = new ArrayList<>();
+		for(Object[] line : lines) {
+			if(!line[0].equals(orderId)) {
+				if(orderId != null) {
+					salesRollupRecorder.orderCanceled(salesDate, items);
+					outboxEvents.orderCanceled(orderId, eventLines);
+					items = new HashMap<>();
+					eventLines = new ArrayList<>();
+				}
+				orderId = (Long) line[0];
+				salesDate = ((LocalDateTime) line[1]).toLocalDate();
+			}
+			Long itemId = (Long) line[2];
+			int count = (Integer) line[3];
+			int orderPrice = (Integer) line[4];
+			long[] value = items.computeIfAbsent(itemId, key -> new long[2]);
+			value[0] += count;
+			value[1] += (long) orderPrice * count;
+			eventLines.add(new OutboxEvents.Line(itemId, count, orderPrice));
+			restocks.merge(itemId, count, Integer::sum);
+		}
+		if(orderId != null) {
+			salesRollupRecorder.orderCanceled(salesDate, items);
+			outboxEvents.orderCanceled(orderId, eventLines);
+		}
+	}
+	
+	/**
+	 * 배송지 변경
+	 */
+	@Transactional
+	public void changeDeliveryAddress(Long orderId, Address address) {
+		Delivery delivery = orderRepository.findOne(orderId).getDelivery();
+		delivery.setAddress(address);
+		orderSummaryRepository.updateAddress(delivery.getId(), address);
+		aggregateVersions.bump(Aggregate.ORDER);
 	}
 	
 	public List<Order> findOrders(OrderSearch orderSearch){
 		return orderRepository.findAllByString(orderSearch);
 	}
+	
+	/**
+	 * 관리자 주문 목록 한 페이지 (page는 0부터)
+	 * 엔티티를 로딩하지 않고 order_summary 프로젝션에서 DTO로 바로 읽는다.
+	 */
+	public OrderListPage findOrderPage(OrderSearch orderSearch, OrderListSort sort, boolean ascending, int page, int size) {
+		long total = orderSummaryRepository.countList(orderSearch);
+		List<OrderListRow> rows = (total <= (long) page * size)
+				? Collections.emptyList()
+				: orderSummaryRepository.findListPage(orderSearch, sort, ascending, page * size, size);
+		return new OrderListPage(rows, total, page, size);
+	}
 }
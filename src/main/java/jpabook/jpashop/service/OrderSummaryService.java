@@ -0,0 +1,97 @@
+package jpabook.jpashop.service;
+
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderSummaryRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * order_summary 프로젝션 재구성, 정합성 검사. 주문 금액(orders.total_amount) 채우기.
+ * 평소에는 OrderService/MemberService가 같은 트랜잭션에서 갱신하므로
+ * 기능 도입 전 데이터, JDBC로 직접 넣은 데이터(DataSeeder), 장애 복구 때 사용한다.
+ * 다시 만들거나 채우면 주문 목록 캐시/ETag가 예전 내용을 내주지 않도록 커밋 후에 주문 버전을 올린다.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderSummaryService {
+
+	private static final int MISMATCH_SAMPLE_SIZE = 20;
+
+	private final OrderSummaryRepository orderSummaryRepository;
+	private final OrderRepository orderRepository;
+	private final AggregateVersions aggregateVersions;
+
+	/**
+	 * 원본 테이블에서 통째로 다시 만든다. 주문 금액이 비어 있는 주문은 먼저 채운다.
+	 * 한 트랜잭션으로 delete + insert 하므로 다른 트랜잭션은 커밋 전까지 기존 데이터를 본다.
+	 */
+	@Transactional
+	public int rebuild() {
+		orderRepository.backfillTotalAmounts();
+		int rows = orderSummaryRepository.rebuild();
+		aggregateVersions.bump(Aggregate.ORDER);
+		log.info("order_summary rebuild: {} rows", rows);
+		return rows;
+	}
+
+	//기능 도입 전 주문은 total_amount가 비어 있다. (채울 게 없으면 update 0건)
+	@Transactional
+	public int backfillTotalAmounts() {
+		int rows = orderRepository.backfillTotalAmounts();
+		if (rows > 0) {
+			aggregateVersions.bump(Aggregate.ORDER);
+			log.info("orders.total_amount backfill: {} rows", rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * 기동할 때 주문 금액을 채우고, order_summary가 비어 있거나 주문 수와 다르면 다시 만든다.
+	 * 프로젝션 도입 전 DB에서 /api/v4/simple-orders, 관리자 주문 목록이 빈 목록이 되지 않도록.
+	 * 값만 다른 경우는 잡지 않는다. (전체 비교는 check, /monitoring)
+	 */
+	@Transactional
+	@EventListener(ApplicationReadyEvent.class)
+	public void repairOnStartup() {
+		backfillTotalAmounts();
+		long orders = orderSummaryRepository.countOrders();
+		long summaries = orderSummaryRepository.countSummaries();
+		if (orders != summaries) {
+			log.info("order_summary가 주문과 맞지 않아 다시 만듭니다. (orders {}, order_summary {})", orders, summaries);
+			log.info("order_summary rebuild: {} rows", orderSummaryRepository.rebuild());
+			aggregateVersions.bump(Aggregate.ORDER);
+		}
+	}
+
+	public ConsistencyReport check() {
+		return new ConsistencyReport(
+				orderSummaryRepository.countMissingOrStale(),
+				orderSummaryRepository.countOrphanedOrStale(),
+				orderSummaryRepository.findMismatchedOrderIds(MISMATCH_SAMPLE_SIZE));
+	}
+
+	@Data
+	@AllArgsConstructor
+	public static class ConsistencyReport {
+		private long missingOrStale;		//원본 기준으로 없거나 값이 다른 주문 수
+		private long orphanedOrStale;		//프로젝션 기준으로 원본에 없거나 값이 다른 row 수
+		private List<Long> sampleOrderIds;
+
+		public boolean isConsistent() {
+			return missingOrStale == 0 && orphanedOrStale == 0;
+		}
+	}
+}
@@ -0,0 +1,341 @@
+package jpabook.jpashop.stock;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.cache.ItemCache;
+import jpabook.jpashop.domain.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 핫 상품 재고. (플래시 세일)
+ * 보통 주문은 item 줄의 조건부 update로 재고를 차감해서, 같은 상품 주문은 그 줄의 row lock을 커밋까지 차례로 기다린다.
+ * 핫 상품으로 지정한 상품은 재고를 메모리 카운터(StripedStock)로 옮겨서 lock 없이 CAS로 차감한다.
+ *
+ * - 주문 트랜잭션: 카운터에서 바로 차감(재고 확보)하고, 커밋 직전에 변경 기록(ReservationLog)에 쓰고 디스크에 내린다.
+ *   롤백되면 카운터에 돌려놓는다. (기록을 이미 썼으면 반대 기록도 쓴다)
+ *   복구(취소)와 관리자 수정은 커밋 후에 카운터에 더한다. (커밋 전에 다른 주문이 그 재고를 가져가지 않도록)
+ * - 반영: flushIntervalMillis마다 그동안의 기록을 상품별로 합쳐서 item.stock_quantity에 더하고,
+ *   같은 트랜잭션에서 반영한 마지막 번호를 hot_stock_checkpoint에 남긴다.
+ * - 재시작: 체크포인트 다음 기록부터 DB에 반영한 뒤에 시작한다. (기동 중에는 핫 상품이 없으므로 DB 재고가 맞다)
+ *
+ * 그래서 핫 상품의 item.stock_quantity(상품 화면, 캐시)는 반영 주기만큼 늦다. 재고 판단은 카운터가 한다.
+ * 커밋 직전 기록과 DB 커밋 사이에 죽으면 그 주문의 재고는 차감된 채로 남는다. (덜 팔 뿐 초과 판매는 없다)
+ * 핫 상품을 켜고 끄는 순간 DB로 차감 중이던 주문과는 어긋날 수 있으므로 세일 시작 전에 켜고 끝난 뒤에 끈다.
+ */
+@Slf4j
+@Component
+public class HotStock {
+
+	private final HotStockProperties properties;
+	private final HotStockRepository hotStockRepository;
+	private final ItemRepository itemRepository;
+	private final ItemCache itemCache;
+	private final TransactionTemplate requiresNew;
+	private final int stripes;
+
+	private final Map<Long, StripedStock> counters = new ConcurrentHashMap<>();
+	private ReservationLog reservationLog;
+	private ScheduledExecutorService flusher;
+
+	public HotStock(HotStockProperties properties, HotStockRepository hotStockRepository, ItemRepository itemRepository,
+			ItemCache itemCache, PlatformTransactionManager transactionManager) {
+		this.properties = properties;
+		this.hotStockRepository = hotStockRepository;
+		this.itemRepository = itemRepository;
+		this.itemCache = itemCache;
+		this.requiresNew = new TransactionTemplate(transactionManager);
+		this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.stripes = properties.getStripes() > 0 ? properties.getStripes() : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * 웹 요청을 받기 전에 지난 실행에서 DB에 반영하지 못한 기록을 반영한다.
+	 * 체크포인트 줄이 없으면 DB를 새로 만든 것이므로(ddl-auto=create 등) 남은 기록은 예전 DB의 것이라 버린다.
+	 */
+	@PostConstruct
+	public void recover() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		reservationLog = new ReservationLog(Paths.get(properties.getLogDir()));
+		Long checkpoint = requiresNew.execute(status -> hotStockRepository.findCheckpoint());
+		SortedMap<Long, Integer> deltas = reservationLog.recover(checkpoint == null ? 0 : checkpoint);
+		long lastSequence = reservationLog.lastSequence();
+		if (checkpoint == null && !deltas.isEmpty()) {
+			log.warn("hot stock: 체크포인트가 없어서 예전 재고 변경 기록을 버립니다. (상품 {}개)", deltas.size());
+		}
+		requiresNew.execute(status -> {
+			if (checkpoint != null) {
+				itemRepository.addStocks(deltas);
+			}
+			hotStockRepository.saveCheckpoint(lastSequence);
+			return null;
+		});
+		reservationLog.truncate(lastSequence);
+		reservationLog.start();
+		if (checkpoint != null && !deltas.isEmpty()) {
+			log.info("hot stock: 재고 변경 기록 복구 {} ~ {}, 상품 {}개", checkpoint + 1, lastSequence, deltas.size());
+		}
+
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "hot-stock-flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = properties.getFlushIntervalMillis();
+		flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	//설정에 적은 상품을 켠다. DataSeeder가 상품을 넣은 뒤라서 기동 완료 후에.
+	@EventListener(ApplicationReadyEvent.class)
+	public void activateConfigured() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		for (Long itemId : properties.getItemIds()) {
+			try {
+				activate(itemId);
+			} catch (IllegalArgumentException e) {
+				log.warn("hot stock: {}", e.getMessage());
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() throws IOException {
+		if (flusher == null) {
+			return;
+		}
+		flusher.shutdownNow();
+		try {
+			flush();
+		} finally {
+			reservationLog.close();
+		}
+	}
+
+	public boolean isHot(Long itemId) {
+		return counters.containsKey(itemId);
+	}
+
+	/**
+	 * 핫 상품이면 카운터에서 차감하고 true. 재고가 모자라면 NotEnoughStockException.
+	 * 핫 상품이 아니면 아무것도 하지 않고 false (호출한 쪽에서 DB로 차감한다)
+	 */
+	public boolean reserve(Long itemId, int count) {
+		StripedStock stock = counters.get(itemId);
+		if (stock == null) {
+			return false;
+		}
+		Changes changes = currentChanges();
+		if (!stock.tryReserve(count)) {
+			throw new NotEnoughStockException("need more stock");
+		}
+		changes.add(new Change(itemId, stock, -count, true));
+		return true;
+	}
+
+	/**
+	 * 재고 복구(주문 취소). 핫 상품이면 커밋 후에 카운터에 더하고 true, 아니면 false
+	 */
+	public boolean release(Long itemId, int count) {
+		StripedStock stock = counters.get(itemId);
+		if (stock == null) {
+			return false;
+		}
+		currentChanges().add(new Change(itemId, stock, count, false));
+		return true;
+	}
+
+	/**
+	 * 관리자 재고 수정. 핫 상품이면 지금 카운터 값과의 차이만큼 커밋 후에 더하고 true, 아니면 false
+	 * (item.stock_quantity를 직접 바꾸면 아직 반영되지 않은 기록과 어긋난다)
+	 */
+	public boolean adjustTo(Long itemId, int stockQuantity) {
+		StripedStock stock = counters.get(itemId);
+		if (stock == null) {
+			return false;
+		}
+		long delta = stockQuantity - stock.available();
+		if (delta != 0) {
+			currentChanges().add(new Change(itemId, stock, Math.toIntExact(delta), false));
+		}
+		return true;
+	}
+
+	/**
+	 * 핫 상품으로 켠다. 반영 안 된 기록을 먼저 DB에 반영하고 DB 재고로 카운터를 만든다.
+	 * @return 카운터 재고
+	 */
+	public synchronized long activate(Long itemId) {
+		if (!properties.isEnabled()) {
+			throw new IllegalStateException("핫 상품 재고가 꺼져 있습니다. (app.hot-stock.enabled)");
+		}
+		StripedStock current = counters.get(itemId);
+		if (current != null) {
+			return current.available();
+		}
+		flush();
+		Integer stockQuantity = requiresNew.execute(status -> hotStockRepository.findStock(itemId));
+		if (stockQuantity == null) {
+			throw new IllegalArgumentException("존재하지 않는 상품입니다. " + itemId);
+		}
+		counters.put(itemId, new StripedStock(stockQuantity, stripes));
+		log.info("hot stock: 상품 {} 켬, 재고 {}, 칸 {}", itemId, stockQuantity, stripes);
+		return stockQuantity;
+	}
+
+	//다시 DB로 차감하도록 끄고 지금까지의 기록을 반영한다.
+	public synchronized void deactivate(Long itemId) {
+		if (counters.remove(itemId) != null) {
+			flush();
+			log.info("hot stock: 상품 {} 끔", itemId);
+		}
+	}
+
+	/**
+	 * 지금까지의 기록을 상품별로 합쳐서 item.stock_quantity에 반영한다.
+	 * 반영과 체크포인트를 한 트랜잭션에서 바꾸고, 커밋된 뒤에 반영한 기록 파일을 지운다.
+	 */
+	public synchronized void flush() {
+		if (reservationLog == null) {
+			return;
+		}
+		ReservationLog.Cut cut = reservationLog.cut();
+		if (cut == null) {
+			return;
+		}
+		try {
+			requiresNew.execute(status -> {
+				itemRepository.addStocks(cut.getDeltas());
+				hotStockRepository.saveCheckpoint(cut.getSequence());
+				return null;
+			});
+		} catch (RuntimeException e) {
+			reservationLog.restore(cut);
+			throw e;
+		}
+		reservationLog.truncate(cut.getSequence());
+		itemCache.evict(cut.getDeltas().keySet());
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			log.warn("hot stock: 재고 반영 실패. 다음 주기에 다시 반영합니다.", e);
+		}
+	}
+
+	public Status status() {
+		List<ItemStatus> items = new ArrayList<>();
+		counters.forEach((itemId, stock) -> items.add(new ItemStatus(itemId, stock.available(), stock.stripes())));
+		if (reservationLog == null) {
+			return new Status(properties.isEnabled(), 0, 0, items);
+		}
+		return new Status(true, reservationLog.lastSequence(), reservationLog.durableSequence(), items);
+	}
+
+	private Changes currentChanges() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			throw new IllegalStateException("핫 상품 재고는 트랜잭션 안에서만 바꿀 수 있습니다.");
+		}
+		Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+		if (changes == null) {
+			changes = new Changes();
+			TransactionSynchronizationManager.bindResource(this, changes);
+			TransactionSynchronizationManager.registerSynchronization(changes);
+		}
+		return changes;
+	}
+
+	@AllArgsConstructor
+	private static class Change {
+		final Long itemId;
+		final StripedStock stock;
+		final int delta;
+		//카운터에 이미 반영했는지 (차감은 바로, 더하기는 커밋 후)
+		final boolean applied;
+	}
+
+	//트랜잭션 하나의 핫 상품 재고 변경
+	private class Changes extends TransactionSynchronizationAdapter {
+		final List<Change> changes = new ArrayList<>();
+		boolean logged;
+
+		void add(Change change) {
+			changes.add(change);
+		}
+
+		//기록이 디스크에 내려간 뒤에 주문이 커밋된다.
+		@Override
+		public void beforeCommit(boolean readOnly) {
+			long last = 0;
+			for (Change change : changes) {
+				last = reservationLog.append(change.itemId, change.delta);
+			}
+			logged = true;
+			reservationLog.sync(last);
+		}
+
+		@Override
+		public void afterCompletion(int status) {
+			TransactionSynchronizationManager.unbindResourceIfPossible(HotStock.this);
+			boolean committed = status == TransactionSynchronization.STATUS_COMMITTED;
+			for (Change change : changes) {
+				if (committed && !change.applied) {
+					change.stock.add(change.delta);
+				} else if (!committed) {
+					if (change.applied) {
+						change.stock.add(-change.delta);
+					}
+					if (logged) {
+						reservationLog.append(change.itemId, -change.delta);
+					}
+				}
+			}
+		}
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class Status {
+		private boolean enabled;
+		private long lastSequence;
+		private long durableSequence;
+		private List<ItemStatus> items;
+	}
+
+	@Getter
+	@AllArgsConstructor
+	public static class ItemStatus {
+		private Long itemId;
+		private long available;
+		private int stripes;
+	}
+}
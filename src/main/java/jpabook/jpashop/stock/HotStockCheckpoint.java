@@ -0,0 +1,38 @@
+package jpabook.jpashop.stock;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * 재고 변경 기록(ReservationLog) 중 item.stock_quantity에 반영된 마지막 번호. 줄은 하나뿐이다.
+ * 재고 반영과 같은 트랜잭션에서 바꾸므로, 재시작 후에는 이 번호 다음 기록부터 다시 반영하면 정확히 한 번씩 반영된다.
+ */
+@Entity
+@Table(name = "hot_stock_checkpoint")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class HotStockCheckpoint {
+
+	static final Long ID = 1L;
+
+	@Id
+	private Long id;
+
+	@Column(name = "applied_sequence")
+	private long appliedSequence;
+
+	HotStockCheckpoint(long appliedSequence) {
+		this.id = ID;
+		this.appliedSequence = appliedSequence;
+	}
+
+	void applied(long sequence) {
+		this.appliedSequence = sequence;
+	}
+}
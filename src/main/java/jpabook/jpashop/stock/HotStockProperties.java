@@ -0,0 +1,33 @@
+package jpabook.jpashop.stock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 핫 상품 재고 설정 (app.hot-stock.*)
+ */
+@Component
+@ConfigurationProperties(prefix = "app.hot-stock")
+@Getter @Setter
+public class HotStockProperties {
+
+	private boolean enabled = false;
+
+	//기동 후 바로 핫 상품으로 돌릴 상품. 실행 중에는 /admin/hot-stock/{itemId}로 켜고 끈다.
+	private List<Long> itemIds = new ArrayList<>();
+
+	//상품 하나의 재고를 나눠 담는 칸 수. 0이면 CPU 수
+	private int stripes = 0;
+
+	//변경 기록을 item.stock_quantity에 반영하는 주기
+	private long flushIntervalMillis = 200;
+
+	//변경 기록 파일 디렉터리. 재시작 후 DB에 반영되지 않은 기록을 여기서 다시 읽는다.
+	private String logDir = "hot-stock-log";
+}
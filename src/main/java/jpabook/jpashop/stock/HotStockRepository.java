@@ -0,0 +1,39 @@
+package jpabook.jpashop.stock;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.springframework.stereotype.Repository;
+
+import lombok.RequiredArgsConstructor;
+
+@Repository
+@RequiredArgsConstructor
+public class HotStockRepository {
+
+	private final EntityManager em;
+
+	//체크포인트 줄이 없으면 null (처음 켰거나 DB를 새로 만들었다)
+	public Long findCheckpoint() {
+		HotStockCheckpoint checkpoint = em.find(HotStockCheckpoint.class, HotStockCheckpoint.ID);
+		return checkpoint == null ? null : checkpoint.getAppliedSequence();
+	}
+
+	public void saveCheckpoint(long sequence) {
+		HotStockCheckpoint checkpoint = em.find(HotStockCheckpoint.class, HotStockCheckpoint.ID);
+		if (checkpoint == null) {
+			em.persist(new HotStockCheckpoint(sequence));
+		} else {
+			checkpoint.applied(sequence);
+		}
+	}
+
+	//상품 엔티티를 올리지 않고 재고만. 상품이 없으면 null
+	public Integer findStock(Long itemId) {
+		List<Integer> stocks = em.createQuery("select i.stockQuantity from Item i where i.id = :id", Integer.class)
+				.setParameter("id", itemId)
+				.getResultList();
+		return stocks.isEmpty() ? null : stocks.get(0);
+	}
+}
@@ -0,0 +1,282 @@
+package jpabook.jpashop.stock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 핫 상품 재고 변경 기록. 로컬 디스크에 덧붙이기만 하는 파일이다.
+ * 레코드(24바이트): sequence(8) itemId(8) delta(4) crc32(4). delta는 차감이면 음수, 복구면 양수.
+ *
+ * - append: 메모리 버퍼에 쓰고 번호를 받는다. 디스크에는 아직 없다.
+ * - sync: 그 번호까지 디스크에 쓰고 force 한다. 먼저 들어온 스레드 하나가 그때까지 쌓인 버퍼를 한꺼번에 쓰고,
+ *   기다리던 스레드들은 자기 번호가 이미 내려갔으면 바로 돌아간다. (그룹 커밋. fsync 한 번을 여러 주문이 나눠 쓴다)
+ * - cut: 지금까지의 기록을 상품별 합계로 넘기고 새 파일로 넘어간다. DB 반영이 커밋되면 truncate로 예전 파일을 지운다.
+ *
+ * 파일 이름은 첫 번호(reservation-00000000000000000001.log)라서 이름 순서가 기록 순서다.
+ * 쓰다가 죽어서 끝이 잘린 레코드는 crc가 맞지 않으므로 recover에서 거기까지만 읽는다.
+ */
+final class ReservationLog implements Closeable {
+
+	static final int RECORD_SIZE = 24;
+	private static final String PREFIX = "reservation-";
+	private static final String SUFFIX = ".log";
+
+	private final Path directory;
+
+	//파일 쓰기(sync, cut)는 한 번에 하나. 버퍼와 번호는 this로 보호한다.
+	private final Object writeLock = new Object();
+	private FileChannel channel;
+	private Path currentFile;
+	private ByteBuffer active = ByteBuffer.allocate(RECORD_SIZE * 1024);
+	private ByteBuffer standby = ByteBuffer.allocate(RECORD_SIZE * 1024);
+	private long lastSequence;
+	private volatile long durableSequence;
+	private Map<Long, long[]> pendingDeltas = new HashMap<>();
+
+	//다 쓴 파일과 그 파일의 마지막 번호. DB에 반영된 뒤 지운다.
+	private final List<Segment> closedSegments = new ArrayList<>();
+
+	ReservationLog(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * 남아있는 파일을 읽어서 checkpoint(DB에 이미 반영된 마지막 번호) 이후 기록을 상품별로 합쳐 돌려준다.
+	 * 읽은 파일은 지울 대상으로 남겨둔다. 호출한 쪽에서 DB에 반영한 뒤 truncate(lastSequence()) 한다.
+	 */
+	synchronized SortedMap<Long, Integer> recover(long checkpoint) {
+		SortedMap<Long, Integer> deltas = new TreeMap<>();
+		lastSequence = checkpoint;
+		try {
+			Files.createDirectories(directory);
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+				stream.forEach(files::add);
+			}
+			files.sort(null);
+			ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+			for (Path file : files) {
+				long fileLast = 0;
+				try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+					while (true) {
+						record.clear();
+						int read = 0;
+						while (record.hasRemaining() && read >= 0) {
+							read = in.read(record);
+						}
+						if (record.hasRemaining() || !valid(record)) {
+							break; //파일 끝 또는 잘린 레코드
+						}
+						long sequence = record.getLong(0);
+						fileLast = sequence;
+						if (sequence > checkpoint) {
+							deltas.merge(record.getLong(8), record.getInt(16), Integer::sum);
+							lastSequence = Math.max(lastSequence, sequence);
+						}
+					}
+				}
+				closedSegments.add(new Segment(file, fileLast));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("재고 변경 기록을 읽지 못했습니다. " + directory, e);
+		}
+		durableSequence = lastSequence;
+		return deltas;
+	}
+
+	//recover 다음에 호출한다. 새 기록은 새 파일에 쓴다.
+	void start() {
+		synchronized (writeLock) {
+			synchronized (this) {
+				channel = openSegment(lastSequence + 1);
+			}
+		}
+	}
+
+	synchronized long lastSequence() {
+		return lastSequence;
+	}
+
+	long durableSequence() {
+		return durableSequence;
+	}
+
+	synchronized long append(long itemId, int delta) {
+		long sequence = ++lastSequence;
+		if (active.remaining() < RECORD_SIZE) {
+			ByteBuffer larger = ByteBuffer.allocate(active.capacity() * 2);
+			active.flip();
+			larger.put(active);
+			active = larger;
+		}
+		int start = active.position();
+		active.putLong(sequence).putLong(itemId).putInt(delta);
+		active.putInt((int) crc(active, start));
+		pendingDeltas.computeIfAbsent(itemId, key -> new long[1])[0] += delta;
+		return sequence;
+	}
+
+	/**
+	 * sequence 번호까지 디스크에 내려갈 때까지 기다린다.
+	 */
+	void sync(long sequence) {
+		if (durableSequence >= sequence) {
+			return;
+		}
+		synchronized (writeLock) {
+			if (durableSequence >= sequence) {
+				return; //기다리는 동안 다른 스레드가 같이 내려줬다.
+			}
+			ByteBuffer toWrite;
+			long upTo;
+			synchronized (this) {
+				toWrite = active;
+				active = standby;
+				standby = null;
+				upTo = lastSequence;
+			}
+			try {
+				writeFully(toWrite);
+				channel.force(false);
+			} catch (IOException e) {
+				throw new UncheckedIOException("재고 변경 기록을 쓰지 못했습니다.", e);
+			} finally {
+				toWrite.clear();
+				synchronized (this) {
+					standby = toWrite;
+				}
+			}
+			durableSequence = upTo;
+		}
+	}
+
+	/**
+	 * 지금까지의 기록을 디스크에 내리고 새 파일로 넘어간다. 기록이 없으면 null
+	 */
+	Cut cut() {
+		synchronized (writeLock) {
+			synchronized (this) {
+				if (pendingDeltas.isEmpty()) {
+					return null;
+				}
+				long upTo = lastSequence;
+				try {
+					writeFully(active);
+					active.clear();
+					channel.force(false);
+					channel.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException("재고 변경 기록을 쓰지 못했습니다.", e);
+				}
+				durableSequence = upTo;
+				closedSegments.add(new Segment(currentFile, upTo));
+				channel = openSegment(upTo + 1);
+
+				SortedMap<Long, Integer> deltas = new TreeMap<>();
+				pendingDeltas.forEach((itemId, delta) -> {
+					if (delta[0] != 0) {
+						deltas.put(itemId, (int) delta[0]);
+					}
+				});
+				pendingDeltas = new HashMap<>();
+				return new Cut(upTo, deltas);
+			}
+		}
+	}
+
+	//DB 반영이 실패했을 때. 다음 cut에 다시 들어가도록 합계를 되돌린다. 파일은 그대로 남는다.
+	synchronized void restore(Cut cut) {
+		cut.getDeltas().forEach((itemId, delta) -> pendingDeltas.computeIfAbsent(itemId, key -> new long[1])[0] += delta);
+	}
+
+	//DB에 sequence까지 반영된 뒤에 호출한다. 그 번호까지만 담긴 파일을 지운다.
+	void truncate(long sequence) {
+		List<Segment> deletable = new ArrayList<>();
+		synchronized (this) {
+			closedSegments.removeIf(segment -> segment.lastSequence <= sequence && deletable.add(segment));
+		}
+		for (Segment segment : deletable) {
+			try {
+				Files.deleteIfExists(segment.file);
+			} catch (IOException e) {
+				throw new UncheckedIOException("재고 변경 기록을 지우지 못했습니다. " + segment.file, e);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (writeLock) {
+			synchronized (this) {
+				if (channel != null) {
+					writeFully(active);
+					active.clear();
+					channel.force(false);
+					channel.close();
+					channel = null;
+				}
+			}
+		}
+	}
+
+	private FileChannel openSegment(long firstSequence) {
+		currentFile = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+		try {
+			Files.createDirectories(directory);
+			return FileChannel.open(currentFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw new UncheckedIOException("재고 변경 기록 파일을 열지 못했습니다. " + currentFile, e);
+		}
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static boolean valid(ByteBuffer record) {
+		return (int) crc(record, 0) == record.getInt(RECORD_SIZE - 4);
+	}
+
+	//start부터 20바이트(sequence, itemId, delta)의 crc
+	private static long crc(ByteBuffer buffer, int start) {
+		CRC32 crc = new CRC32();
+		for (int i = start; i < start + RECORD_SIZE - 4; i++) {
+			crc.update(buffer.get(i));
+		}
+		return crc.getValue();
+	}
+
+	@RequiredArgsConstructor
+	private static class Segment {
+		final Path file;
+		final long lastSequence;
+	}
+
+	//DB에 반영할 상품별 재고 변화량과 그 마지막 번호
+	@Getter
+	@RequiredArgsConstructor
+	static class Cut {
+		private final long sequence;
+		private final SortedMap<Long, Integer> deltas;
+	}
+}
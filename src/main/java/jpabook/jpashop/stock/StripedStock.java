@@ -0,0 +1,91 @@
+package jpabook.jpashop.stock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 재고 하나를 여러 칸(stripe)에 나눠 담은 카운터. 칸마다 따로 CAS 하므로 스레드들이 한 값을 두고 경쟁하지 않는다.
+ * - 스레드는 자기 칸(스레드 id로 고름)부터 차감한다. 모자라면 다음 칸들을 본다.
+ * - 어느 한 칸에도 다 없지만 합치면 될 수도 있을 때만 여러 칸에서 조금씩 모은다. 그래도 모자라면 돌려놓고 실패.
+ *   돌려놓기 전 잠깐 동안은 다른 스레드가 재고 부족으로 볼 수 있다. (품절 직전에만 생기고, 초과 판매는 생기지 않는다)
+ * 칸 사이를 long 8개(64바이트)씩 띄워서 칸들이 같은 캐시 라인에 올라가지 않게 한다.
+ */
+final class StripedStock {
+
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray cells;
+	private final int stripes;
+
+	StripedStock(long initial, int stripes) {
+		this.stripes = Math.max(1, stripes);
+		this.cells = new AtomicLongArray(this.stripes * PADDING);
+		for (int i = 0; i < this.stripes; i++) {
+			cells.set(i * PADDING, initial / this.stripes + (i < initial % this.stripes ? 1 : 0));
+		}
+	}
+
+	long available() {
+		long sum = 0;
+		for (int i = 0; i < stripes; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	int stripes() {
+		return stripes;
+	}
+
+	boolean tryReserve(int count) {
+		int home = home();
+		for (int i = 0; i < stripes; i++) {
+			int index = ((home + i) % stripes) * PADDING;
+			long current;
+			while ((current = cells.get(index)) >= count) {
+				if (cells.compareAndSet(index, current, current - count)) {
+					return true;
+				}
+			}
+		}
+		return gather(count);
+	}
+
+	//복구, 관리자 수정. 음수도 된다. (칸이 음수면 그 칸에서는 차감하지 않는다)
+	void add(long count) {
+		cells.addAndGet(home() * PADDING, count);
+	}
+
+	private boolean gather(int count) {
+		long[] taken = new long[stripes];
+		long total = 0;
+		for (int i = 0; i < stripes && total < count; i++) {
+			int index = i * PADDING;
+			while (true) {
+				long current = cells.get(index);
+				if (current <= 0) {
+					break;
+				}
+				long take = Math.min(current, count - total);
+				if (cells.compareAndSet(index, current, current - take)) {
+					taken[i] = take;
+					total += take;
+					break;
+				}
+			}
+		}
+		if (total == count) {
+			return true;
+		}
+		for (int i = 0; i < stripes; i++) {
+			if (taken[i] > 0) {
+				cells.addAndGet(i * PADDING, taken[i]);
+			}
+		}
+		return false;
+	}
+
+	private int home() {
+		long mixed = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return (int) ((mixed >>> 32) & Integer.MAX_VALUE) % stripes;
+	}
+}
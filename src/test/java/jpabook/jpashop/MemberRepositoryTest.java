@@ -28,7 +28,7 @@ public class MemberRepositoryTest {
 	public void testMember() throws Exception{
 		//given
 		Member member = new Member();
-		member.setName("memberA");
+		member.setName("memberA-" + System.nanoTime()); //커밋되므로(@Rollback(false)) 다시 돌려도 uk_member_name에 걸리지 않게
 		
 		//when
 		memberRepository.save(member);
@@ -0,0 +1,48 @@
+package jpabook.jpashop.admin;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AdminControllerTest {
+
+	@Autowired MockMvc mockMvc;
+
+	@Test
+	public void 토큰이_없거나_다르면_401() throws Exception {
+		mockMvc.perform(post("/admin/order-summary/rebuild"))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(post("/admin/order-summary/rebuild")
+				.header(AdminTokenInterceptor.HEADER, "wrong-token"))
+				.andExpect(status().isUnauthorized());
+		mockMvc.perform(post("/admin/hot-stock/1"))
+				.andExpect(status().isUnauthorized());
+	}
+
+	@Test
+	public void 토큰이_맞으면_실행한다() throws Exception {
+		mockMvc.perform(post("/admin/order-summary/rebuild")
+				.header(AdminTokenInterceptor.HEADER, "test-admin-token"))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	public void 모니터링_경로로는_상태를_바꿀_수_없다() throws Exception {
+		mockMvc.perform(post("/monitoring/order-summary/rebuild"))
+				.andExpect(status().is4xxClientError());
+		mockMvc.perform(post("/monitoring/sales-rollup/rebuild"))
+				.andExpect(status().is4xxClientError());
+	}
+}
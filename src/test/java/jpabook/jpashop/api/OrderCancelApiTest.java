@@ -0,0 +1,43 @@
+package jpabook.jpashop.api;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OrderCancelApiTest {
+
+	@Autowired MockMvc mockMvc;
+
+	@Test
+	public void 조건_없는_검색_취소는_400() throws Exception {
+		mockMvc.perform(post("/api/v1/orders/cancel/search")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{}"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(post("/api/v1/orders/cancel/search")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"memberName\":\"  \",\"itemName\":\"\"}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void 빈_id_목록_취소는_400() throws Exception {
+		mockMvc.perform(post("/api/v1/orders/cancel")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"orderIds\":[]}"))
+				.andExpect(status().isBadRequest());
+	}
+}
@@ -0,0 +1,131 @@
+package jpabook.jpashop.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OrderCartApiTest {
+
+	@Autowired MockMvc mockMvc;
+	@Autowired ObjectMapper objectMapper;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+
+	@Test
+	public void 줄_순서만_다른_재전송은_같은_주문() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long first = createBook(10);
+		Long second = createBook(10);
+		String key = "cart-" + System.nanoTime();
+
+		//when
+		long orderId = orderCart(key, "{\"memberId\":" + memberId + ",\"lines\":[{\"itemId\":" + first + ",\"count\":1},{\"itemId\":" + second + ",\"count\":2}]}");
+		long retried = orderCart(key, "{\"memberId\":" + memberId + ",\"lines\":[{\"itemId\":" + second + ",\"count\":2},{\"itemId\":" + first + ",\"count\":1}]}");
+
+		//then
+		assertThat(retried).isEqualTo(orderId);
+		assertThat(itemService.findOne(first).getStockQuantity()).isEqualTo(9);
+		assertThat(itemService.findOne(second).getStockQuantity()).isEqualTo(8);
+	}
+
+	@Test
+	public void 상품_id가_없는_줄은_400() throws Exception {
+		mockMvc.perform(post("/api/v1/orders/cart")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"memberId\":1,\"lines\":[{\"count\":1}]}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void 수량이_0_이하인_줄은_400() throws Exception {
+		mockMvc.perform(post("/api/v1/orders/cart")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"memberId\":1,\"lines\":[{\"itemId\":1,\"count\":0}]}"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(post("/api/v1/orders/cart")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"memberId\":1,\"lines\":[{\"itemId\":1,\"count\":-3}]}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void 다른_주문에_쓴_멱등_키는_422() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(10);
+		String key = "cart-" + System.nanoTime();
+		orderCart(key, "{\"memberId\":" + memberId + ",\"lines\":[{\"itemId\":" + itemId + ",\"count\":1}]}");
+
+		//when, then 수량을 바꿔서 같은 키로
+		mockMvc.perform(post("/api/v1/orders/cart")
+				.header("Idempotency-Key", key)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"memberId\":" + memberId + ",\"lines\":[{\"itemId\":" + itemId + ",\"count\":2}]}"))
+				.andExpect(status().isUnprocessableEntity())
+				.andExpect(jsonPath("$.code").value("IDEMPOTENCY_KEY_REUSED"));
+		assertThat(itemService.findOne(itemId).getStockQuantity()).isEqualTo(9);
+	}
+
+	@Test
+	public void 비어_있거나_너무_긴_멱등_키는_400() throws Exception {
+		String tooLong = new String(new char[65]).replace('\0', 'k');
+		for (String key : new String[] {" ", tooLong}) {
+			mockMvc.perform(post("/api/v1/orders/cart")
+					.header("Idempotency-Key", key)
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("{\"memberId\":1,\"lines\":[{\"itemId\":1,\"count\":1}]}"))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$.code").value("INVALID_IDEMPOTENCY_KEY"));
+		}
+	}
+
+	private long orderCart(String key, String body) throws Exception {
+		String response = mockMvc.perform(post("/api/v1/orders/cart")
+				.header("Idempotency-Key", key)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(body))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		return objectMapper.readTree(response).get("orderId").asLong();
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("cart-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int stock) {
+		Book book = new Book();
+		book.setName("cart book");
+		book.setPrice(10000);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
@@ -0,0 +1,59 @@
+package jpabook.jpashop.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+
+public class OrderJsonWriterTest {
+
+	//스프링 부트 기본 ObjectMapper 설정과 같게
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.registerModule(new JavaTimeModule())
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private final OrderJsonWriter writer = new OrderJsonWriter(objectMapper);
+
+	@Test
+	public void 주문_ObjectMapper와_같은_JSON() throws Exception {
+		List<OrderQueryDto> orders = Arrays.asList(
+				new OrderQueryDto(1L, "회원\"1\"", LocalDateTime.of(2020, 1, 2, 3, 4, 0), OrderStatus.ORDER, new Address("서울", "ㅇㅇ", "123"),
+						Arrays.asList(new OrderItemQueryDto(1L, "시골 JPA", 10000, 2), new OrderItemQueryDto(1L, null, 20000, 1))),
+				new OrderQueryDto(2L, null, LocalDateTime.of(2020, 1, 2, 3, 4, 5, 6000000), OrderStatus.CANCEL, null, null));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonGenerator generator = writer.createGenerator(out)) {
+			writer.writeOrders(generator, orders);
+		}
+
+		assertThat(objectMapper.readTree(out.toByteArray())).isEqualTo(objectMapper.readTree(objectMapper.writeValueAsBytes(orders)));
+	}
+
+	@Test
+	public void 간단주문_ObjectMapper와_같은_JSON() throws Exception {
+		List<OrderSimpleQueryDto> orders = Arrays.asList(
+				new OrderSimpleQueryDto(1L, "회원1", LocalDateTime.of(2020, 1, 2, 3, 4, 5), OrderStatus.ORDER, new Address("서울", "ㅇㅇ", "123")));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonGenerator generator = writer.createGenerator(out)) {
+			writer.writeSimpleOrders(generator, orders);
+		}
+
+		assertThat(objectMapper.readTree(out.toByteArray()))
+			.isEqualTo(objectMapper.readTree(objectMapper.writeValueAsBytes(new OrderSimpleApiController.OrderResult<>(orders))));
+	}
+}
@@ -0,0 +1,115 @@
+package jpabook.jpashop.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+
+/**
+ * /api/v3.2/orders keyset 페이징. 주문이 각자 커밋되어야 하므로 @Transactional을 붙이지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OrderKeysetPagingTest {
+
+	@Autowired MockMvc mockMvc;
+	@Autowired ObjectMapper objectMapper;
+	@Autowired OrderService orderService;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+
+	@Test
+	public void cursor를_따라가면_모든_주문을_중복_없이_순서대로_받는다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(100);
+		List<Long> created = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			created.add(orderService.order(memberId, itemId, 1));
+		}
+
+		//when
+		List<Long> orderIds = new ArrayList<>();
+		List<String> orderDates = new ArrayList<>();
+		String cursor = null;
+		do {
+			MockHttpServletRequestBuilder request = get("/api/v3.2/orders").param("limit", "2");
+			if (cursor != null) {
+				request.param("cursor", cursor);
+			}
+			JsonNode page = objectMapper.readTree(mockMvc.perform(request)
+					.andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString());
+			assertThat(page.get("data").size()).isLessThanOrEqualTo(2);
+			for (JsonNode order : page.get("data")) {
+				orderIds.add(order.get("orderId").asLong());
+				orderDates.add(order.get("orderDate").asText());
+			}
+			cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+		} while (cursor != null);
+
+		//then
+		assertThat(orderIds).doesNotHaveDuplicates().containsAll(created);
+		assertThat(orderDates).isSorted();
+	}
+
+	@Test
+	public void limit이_범위를_벗어나면_400() throws Exception {
+		mockMvc.perform(get("/api/v3.2/orders").param("limit", "-1"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/api/v3.2/orders").param("limit", "0"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/api/v3.2/orders").param("limit", "100000"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/api/v3.1/orders").param("offset", "-1"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void 잘못된_cursor는_400() throws Exception {
+		mockMvc.perform(get("/api/v3.2/orders").param("cursor", "not-a-cursor"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(get("/api/v3.2/orders").param("cursor", "%%%"))
+				.andExpect(status().isBadRequest());
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("keyset-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int stock) {
+		Book book = new Book();
+		book.setName("keyset book");
+		book.setPrice(10000);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
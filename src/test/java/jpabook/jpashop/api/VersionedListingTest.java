@@ -0,0 +1,96 @@
+package jpabook.jpashop.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.report.SalesReportService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderSummaryService;
+
+/**
+ * 버전은 커밋 후에 올라가므로 @Transactional 없이 실제로 커밋한다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class VersionedListingTest {
+
+	@Autowired MockMvc mockMvc;
+	@Autowired MemberService memberService;
+	@Autowired OrderSummaryService orderSummaryService;
+	@Autowired SalesReportService salesReportService;
+	@Autowired AggregateVersions aggregateVersions;
+
+	@Test
+	public void 변경이_없으면_304() throws Exception {
+		//given
+		String first = mockMvc.perform(get("/api/v2/members"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		String etag = mockMvc.perform(get("/api/v2/members"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		//when, then
+		mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isNotModified());
+
+		//캐시된 응답도 컨트롤러가 만든 것과 같다.
+		String cached = mockMvc.perform(get("/api/v2/members"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(cached).isEqualTo(first);
+	}
+
+	@Test
+	public void 회원이_추가되면_ETag가_바뀐다() throws Exception {
+		//given
+		String before = mockMvc.perform(get("/api/v2/members"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		//when
+		Member member = new Member();
+		String name = "etag-" + System.nanoTime();
+		member.setName(name);
+		member.setAddress(new Address("서울", "1", "1111"));
+		memberService.join(member);
+
+		//then
+		String body = mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, before))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertThat(body).contains(name);
+	}
+
+	@Test
+	public void 주문요약과_매출집계를_다시_만들면_주문_버전이_오른다() throws Exception {
+		//given
+		long before = aggregateVersions.current(Aggregate.ORDER);
+
+		//when
+		orderSummaryService.rebuild();
+		long afterSummary = aggregateVersions.current(Aggregate.ORDER);
+		salesReportService.rebuild();
+		long afterSales = aggregateVersions.current(Aggregate.ORDER);
+
+		//then
+		assertThat(afterSummary).isGreaterThan(before);
+		assertThat(afterSales).isGreaterThan(afterSummary);
+	}
+}
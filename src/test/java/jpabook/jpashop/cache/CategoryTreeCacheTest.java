@@ -0,0 +1,39 @@
+package jpabook.jpashop.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import jpabook.jpashop.cache.CategoryTreeCache.Tree;
+
+public class CategoryTreeCacheTest {
+
+	private final CategoryTreeCache cache = new CategoryTreeCache();
+
+	@Test
+	public void 읽는_도중에_버려지면_예전_트리를_올리지_않는다() {
+		//given: 예전 데이터를 읽는 사이에 다른 트랜잭션이 카테고리를 바꾸고 커밋했다.
+		List<Object[]> before = rows(new Object[] {1L, "도서", null});
+		List<Object[]> after = rows(new Object[] {1L, "도서", null}, new Object[] {2L, "IT", 1L});
+
+		//when
+		Tree stale = cache.get(() -> {
+			cache.invalidate();
+			return before;
+		});
+		Tree next = cache.get(() -> after);
+
+		//then: 읽은 요청은 자기가 읽은 트리를 쓰지만 캐시에는 남지 않는다.
+		assertThat(stale.find(2L)).isNull();
+		assertThat(next.find(2L)).isNotNull();
+		assertThat(cache.get(Collections::emptyList)).isSameAs(next);
+	}
+
+	private static List<Object[]> rows(Object[]... rows) {
+		return Arrays.asList(rows);
+	}
+}
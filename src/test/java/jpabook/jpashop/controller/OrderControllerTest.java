@@ -0,0 +1,83 @@
+package jpabook.jpashop.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OrderControllerTest {
+
+	@Autowired MockMvc mockMvc;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+
+	@Test
+	public void 주문_폼의_멱등_키_오류는_폼을_다시_보여준다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(10);
+		String key = "form-" + System.nanoTime();
+		mockMvc.perform(order(memberId, itemId, 1, key))
+				.andExpect(redirectedUrl("/orders"));
+
+		//when, then 같은 키로 수량만 바꿔서 다시: 422, 새 키가 든 폼
+		mockMvc.perform(order(memberId, itemId, 2, key))
+				.andExpect(status().isUnprocessableEntity())
+				.andExpect(view().name("orders/orderForm"))
+				.andExpect(model().attributeExists("errorMessage"))
+				.andExpect(model().attribute("idempotencyKey", not(key)));
+
+		//빈 키: 400
+		mockMvc.perform(order(memberId, itemId, 1, " "))
+				.andExpect(status().isBadRequest())
+				.andExpect(view().name("orders/orderForm"));
+		assertThat(itemService.findOne(itemId).getStockQuantity()).isEqualTo(9);
+	}
+
+	private RequestBuilder order(Long memberId, Long itemId, int count, String key) {
+		return post("/order")
+				.param("memberId", memberId.toString())
+				.param("itemId", itemId.toString())
+				.param("count", Integer.toString(count))
+				.param("idempotencyKey", key);
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("form-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int stock) {
+		Book book = new Book();
+		book.setName("form book");
+		book.setPrice(10000);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
@@ -0,0 +1,179 @@
+package jpabook.jpashop.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.method.HandlerMethod;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.api.VersionedListing;
+import jpabook.jpashop.api.VersionedListingSupport;
+import jpabook.jpashop.cache.AggregateVersions;
+import jpabook.jpashop.cache.AggregateVersions.Aggregate;
+import jpabook.jpashop.controller.OrderListFragmentCache;
+
+/**
+ * H2 메모리 DB 3개(주 DB, 복제본 2개)로 라우팅을 확인한다.
+ * DB마다 자기 이름이 든 node 테이블이 있어서 어느 DB에서 읽었는지 알 수 있다.
+ * 실제 복제는 없으므로 replicate()로 주 DB의 heartbeat를 복제본에 복사한다.
+ */
+public class ReplicationRoutingDataSourceTest {
+
+	private final Map<String, DataSource> nodes = new LinkedHashMap<>();
+	private ReplicaPool replicaPool;
+	private ReadYourWrites readYourWrites;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate write;
+	private TransactionTemplate readOnly;
+
+	@Before
+	public void setUp() {
+		for (String name : new String[] {"primary", "replica1", "replica2"}) {
+			DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+			JdbcTemplate node = new JdbcTemplate(dataSource);
+			node.execute("create table node (name varchar(20))");
+			node.update("insert into node values (?)", name);
+			node.execute("create table replication_heartbeat (id int primary key, beat_at bigint not null)");
+			nodes.put(name, dataSource);
+		}
+		Map<String, DataSource> replicas = new LinkedHashMap<>(nodes);
+		DataSource primary = replicas.remove("primary");
+
+		replicaPool = new ReplicaPool(primary, replicas, 1000);
+		readYourWrites = new ReadYourWrites(5000);
+		ReplicationRoutingDataSource routing = new ReplicationRoutingDataSource(replicaPool, readYourWrites);
+		routing.afterPropertiesSet();
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		write = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@After
+	public void tearDown() {
+		readYourWrites.clear();
+		nodes.values().forEach(dataSource -> new JdbcTemplate(dataSource).execute("shutdown"));
+	}
+
+	@Test
+	public void 읽기전용은_복제본_쓰기는_주DB() throws Exception {
+		//given
+		replicaPool.check();
+		replicate("replica1", "replica2");
+		replicaPool.check();
+
+		//when, then 복제본끼리 돌아가면서 읽는다.
+		assertThat(readOnly.execute(status -> currentNode())).isEqualTo("replica1");
+		assertThat(readOnly.execute(status -> currentNode())).isEqualTo("replica2");
+		assertThat(readOnly.execute(status -> currentNode())).isEqualTo("replica1");
+		assertThat(currentNode()).isEqualTo("primary");	//트랜잭션 밖
+
+		assertThat(write.execute(status -> currentNode())).isEqualTo("primary");
+	}
+
+	@Test
+	public void 지연되거나_heartbeat가_없는_복제본은_제외() throws Exception {
+		//given replica2에는 heartbeat가 없다.
+		replicaPool.check();
+		replicate("replica1");
+		replicaPool.check();
+
+		//when, then
+		assertThat(readOnly.execute(status -> currentNode())).isEqualTo("replica1");
+		assertThat(readOnly.execute(status -> currentNode())).isEqualTo("replica1");
+
+		//replica1의 heartbeat가 오래되면 정상인 복제본이 없으므로 주 DB
+		new JdbcTemplate(nodes.get("replica1")).update("update replication_heartbeat set beat_at = beat_at - 60000");
+		replicaPool.check();
+		assertThat(readOnly.execute(status -> currentNode())).isEqualTo("primary");
+		assertThat(replicaPool.status()).extracting(ReplicaStatus::isHealthy).containsExactly(false, false);
+	}
+
+	@Test
+	public void 쓰기_커밋후에는_주DB에서_읽는다() throws Exception {
+		//given
+		replicaPool.check();
+		replicate("replica1", "replica2");
+		replicaPool.check();
+
+		//when
+		write.execute(status -> jdbcTemplate.update("insert into node values ('written')"));
+
+		//then 방금 쓴 데이터가 보인다.
+		assertThat(readOnly.execute(status -> jdbcTemplate.queryForObject("select count(*) from node where name = 'written'", Integer.class)))
+			.isEqualTo(1);
+
+		//요청이 끝나면 다시 복제본
+		readYourWrites.clear();
+		assertThat(readOnly.execute(status -> currentNode())).startsWith("replica");
+	}
+
+	@Test
+	public void 버전으로_캐시하는_조회는_지연된_복제본을_읽지_않는다() throws Exception {
+		//given 복제본은 heartbeat로는 정상이지만 방금 주 DB에 쓴 줄이 아직 없다. (다른 요청이라 read-your-writes도 아님)
+		replicaPool.check();
+		replicate("replica1", "replica2");
+		replicaPool.check();
+		write.execute(status -> jdbcTemplate.update("insert into node values ('written')"));
+		readYourWrites.clear();
+		assertThat(readOnly.execute(status -> written())).isZero();
+
+		//when, then 주문 목록 표 캐시는 주 DB에서 그린다.
+		OrderListFragmentCache fragmentCache = new OrderListFragmentCache(new AggregateVersions(), 10, 60);
+		assertThat(fragmentCache.get("page0", () -> String.valueOf(readOnly.execute(status -> written())))).isEqualTo("1");
+
+		//@VersionedListing 핸들러도 캐시에 없어서 실행될 때는 주 DB에서 읽는다.
+		VersionedListingSupport listingSupport = new VersionedListingSupport(new AggregateVersions(), new ObjectMapper(), 10, 60);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/listing");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		HandlerMethod handler = new HandlerMethod(this, getClass().getDeclaredMethod("listing"));
+		assertThat(listingSupport.preHandle(request, response, handler)).isTrue();
+		try {
+			assertThat(readOnly.execute(status -> written())).isEqualTo(1);
+		} finally {
+			listingSupport.afterCompletion(request, response, handler, null);
+		}
+
+		//끝나면 다시 복제본
+		assertThat(readOnly.execute(status -> written())).isZero();
+	}
+
+	@VersionedListing(Aggregate.ORDER)
+	public List<String> listing() {
+		return null;
+	}
+
+	private int written() {
+		return jdbcTemplate.queryForObject("select count(*) from node where name = 'written'", Integer.class);
+	}
+
+	private String currentNode() {
+		return jdbcTemplate.queryForObject("select name from node where name <> 'written'", String.class);
+	}
+
+	private void replicate(String... replicas) {
+		Long beatAt = new JdbcTemplate(nodes.get("primary")).queryForObject("select beat_at from replication_heartbeat where id = 1", Long.class);
+		for (String replica : replicas) {
+			new JdbcTemplate(nodes.get(replica)).update("merge into replication_heartbeat key (id) values (1, ?)", beatAt);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package jpabook.jpashop.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+
+/**
+ * 주문과 멱등 키가 각자 트랜잭션으로 커밋되어야 하므로 @Transactional을 붙이지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class OrderIdempotencyTest {
+
+	private static final int THREADS = 8;
+
+	@Autowired OrderIdempotency orderIdempotency;
+	@Autowired IdempotencyKeyRepository idempotencyKeyRepository;
+	@Autowired PlatformTransactionManager transactionManager;
+	@Autowired OrderService orderService;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+
+	@Test
+	public void 같은_키로_다시_보내면_처음_주문_id를_돌려준다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(10);
+		String key = UUID.randomUUID().toString();
+		AtomicInteger placed = new AtomicInteger();
+
+		//when
+		Long first = orderIdempotency.execute(key, request(memberId, itemId, 2), () -> order(placed, memberId, itemId, 2));
+		Long retried = orderIdempotency.execute(key, request(memberId, itemId, 2), () -> order(placed, memberId, itemId, 2));
+
+		//then
+		assertThat(retried).isEqualTo(first);
+		assertThat(placed.get()).isEqualTo(1);
+		assertThat(itemService.findOne(itemId).getStockQuantity()).isEqualTo(8);
+	}
+
+	@Test
+	public void 메모리에_없어도_DB에서_찾는다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(10);
+		String key = UUID.randomUUID().toString();
+		AtomicInteger placed = new AtomicInteger();
+		Long first = orderIdempotency.execute(key, request(memberId, itemId, 1), () -> order(placed, memberId, itemId, 1));
+
+		//when: 재시작한 서버처럼 메모리가 빈 인스턴스
+		OrderIdempotency restarted = new OrderIdempotency(idempotencyKeyRepository, transactionManager, 100, 24);
+		Long retried = restarted.execute(key, request(memberId, itemId, 1), () -> order(placed, memberId, itemId, 1));
+
+		//then
+		assertThat(retried).isEqualTo(first);
+		assertThat(placed.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void 같은_키로_동시에_보내도_주문은_하나() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(100);
+		String key = UUID.randomUUID().toString();
+		AtomicInteger placed = new AtomicInteger();
+		Set<Long> orderIds = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+
+		//when
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				orderIds.add(orderIdempotency.execute(key, request(memberId, itemId, 1), () -> order(placed, memberId, itemId, 1)));
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+
+		//then
+		assertThat(orderIds).hasSize(1);
+		assertThat(itemService.findOne(itemId).getStockQuantity()).isEqualTo(99);
+	}
+
+	@Test
+	public void 같은_키를_다른_주문에_쓰면_예외() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(10);
+		String key = UUID.randomUUID().toString();
+		AtomicInteger placed = new AtomicInteger();
+		orderIdempotency.execute(key, request(memberId, itemId, 1), () -> order(placed, memberId, itemId, 1));
+
+		//when, then
+		assertThatThrownBy(() -> orderIdempotency.execute(key, request(memberId, itemId, 3), () -> order(placed, memberId, itemId, 3)))
+			.isInstanceOf(IdempotencyKeyReusedException.class);
+		assertThat(placed.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void 주문이_실패하면_키도_남지_않는다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(1);
+		String key = UUID.randomUUID().toString();
+		AtomicInteger placed = new AtomicInteger();
+
+		//when: 재고 부족으로 롤백된 뒤 수량을 고쳐서 같은 키로 다시
+		assertThatThrownBy(() -> orderIdempotency.execute(key, request(memberId, itemId, 2), () -> order(placed, memberId, itemId, 2)))
+			.isInstanceOf(RuntimeException.class);
+		Long orderId = orderIdempotency.execute(key, request(memberId, itemId, 1), () -> order(placed, memberId, itemId, 1));
+
+		//then
+		assertThat(orderId).isNotNull();
+		assertThat(itemService.findOne(itemId).getStockQuantity()).isZero();
+	}
+
+	@Test
+	public void 주문_중에_난_제약_위반은_다시_시도하지_않는다() throws Exception {
+		//given
+		String key = UUID.randomUUID().toString();
+		AtomicInteger placed = new AtomicInteger();
+
+		//when, then: 키 insert가 아닌 곳의 실패는 같은 키 경합이 아니다.
+		assertThatThrownBy(() -> orderIdempotency.execute(key, "order:broken", () -> {
+			placed.incrementAndGet();
+			throw new DataIntegrityViolationException("order_item");
+		})).isInstanceOf(DataIntegrityViolationException.class);
+		assertThat(placed.get()).isEqualTo(1);
+		assertThat(idempotencyKeyRepository.find(key)).isNull();
+	}
+
+	private Long order(AtomicInteger placed, Long memberId, Long itemId, int count) {
+		placed.incrementAndGet();
+		return orderService.order(memberId, itemId, count);
+	}
+
+	private static String request(Long memberId, Long itemId, int count) {
+		return "order:" + memberId + ":" + itemId + ":" + count;
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("idempotency-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int stock) {
+		Book book = new Book();
+		book.setName("idempotency book");
+		book.setPrice(10000);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
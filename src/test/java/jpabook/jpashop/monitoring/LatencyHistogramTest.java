@@ -0,0 +1,50 @@
+package jpabook.jpashop.monitoring;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+
+import jpabook.jpashop.monitoring.LatencyHistogram.Snapshot;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void 버킷_상한값은_값의_12_5퍼센트_이내() throws Exception {
+		for (long value = 1; value < 1L << 40; value = value * 3 + 1) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			long upper = LatencyHistogram.upperBoundOf(bucket);
+			assertThat(upper).isGreaterThanOrEqualTo(value);
+			assertThat((double) (upper - value)).isLessThanOrEqualTo(value * 0.125);
+			//버킷은 값 순서대로
+			assertThat(LatencyHistogram.bucketOf(upper + 1)).isEqualTo(bucket + 1);
+		}
+	}
+
+	@Test
+	public void 분위수와_구간_통계() throws Exception {
+		//given 1us ~ 1000us 하나씩, 예외 10건
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000L, micros % 100 == 0);
+		}
+		Snapshot first = histogram.snapshot();
+
+		//then
+		assertThat(first.getCount()).isEqualTo(1000);
+		assertThat(first.getErrors()).isEqualTo(10);
+		assertThat(first.averageMicros()).isEqualTo(500.5, within(0.001));
+		assertThat(first.percentileNanos(0.50) / 1000.0).isBetween(500.0, 500 * 1.125);
+		assertThat(first.percentileNanos(0.99) / 1000.0).isBetween(990.0, 990 * 1.125);
+		assertThat(first.maxNanos() / 1000.0).isBetween(1000.0, 1000 * 1.125);
+
+		//when 이후 구간에는 느린 호출만
+		histogram.record(50_000_000L, false);
+		Snapshot interval = histogram.snapshot().minus(first);
+
+		//then
+		assertThat(interval.getCount()).isEqualTo(1);
+		assertThat(interval.getErrors()).isEqualTo(0);
+		assertThat(interval.percentileNanos(0.50)).isBetween(50_000_000L, (long) (50_000_000 * 1.125));
+	}
+}
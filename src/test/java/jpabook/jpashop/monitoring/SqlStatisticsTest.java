@@ -0,0 +1,25 @@
+package jpabook.jpashop.monitoring;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class SqlStatisticsTest {
+
+	@Test
+	public void 바인드_값만_다른_SQL은_N플러스1로_잡힌다() throws Exception {
+		//given
+		SqlStatistics statistics = new SqlStatistics();
+		statistics.addStatement("select * from orders", 1000);
+		statistics.addStatement("select * from member where member_id=1", 1000);
+		statistics.addStatement("select * from member where member_id=2", 1000);
+		statistics.addStatement("select * from member  where member_id='3'", 1000);
+
+		//when
+		//then
+		assertThat(statistics.getStatementCount()).isEqualTo(4);
+		assertThat(statistics.getJdbcTimeNanos()).isEqualTo(4000);
+		assertThat(statistics.findRepeatedStatements(3)).containsExactly("select * from member where member_id=?");
+		assertThat(statistics.findRepeatedStatements(5)).isEmpty();
+	}
+}
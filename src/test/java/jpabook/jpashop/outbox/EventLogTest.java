@@ -0,0 +1,156 @@
+package jpabook.jpashop.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventLogTest {
+
+	private static final int SEGMENT_BYTES = 1024;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void flush_전에는_읽을_수_없다() throws Exception {
+		//given
+		EventLog log = open(folder.getRoot().toPath(), 10);
+
+		//when
+		log.append(100L, bytes("a"));
+		log.append(101L, bytes("b"));
+		List<EventRecord> beforeFlush = log.read(0, 10);
+		log.flush();
+		List<EventRecord> afterFlush = log.read(0, 10);
+
+		//then
+		assertThat(beforeFlush).isEmpty();
+		assertThat(afterFlush).extracting(EventRecord::getOffset).containsExactly(0L, 1L);
+		assertThat(afterFlush).extracting(EventRecord::getEventId).containsExactly(100L, 101L);
+		assertThat(afterFlush).extracting(EventRecord::payloadAsString).containsExactly("a", "b");
+		assertThat(log.read(1, 10)).extracting(EventRecord::payloadAsString).containsExactly("b");
+		log.close();
+	}
+
+	@Test
+	public void 세그먼트를_넘어가며_쓰고_재시작해도_이어서_읽는다() throws Exception {
+		//given: 레코드 하나 124바이트, 세그먼트 하나에 8개
+		Path directory = folder.getRoot().toPath();
+		EventLog log = open(directory, 10);
+		for (int i = 0; i < 20; i++) {
+			log.append(i, payload(i));
+		}
+		log.flush();
+		log.close();
+
+		//when
+		EventLog reopened = open(directory, 10);
+		long next = reopened.append(20, payload(20));
+		reopened.flush();
+
+		//then
+		assertThat(reopened.segmentCount()).isEqualTo(3);
+		assertThat(next).isEqualTo(20);
+		List<EventRecord> records = reopened.read(5, 100);
+		assertThat(records).extracting(EventRecord::getOffset)
+			.containsExactlyElementsOf(Stream.iterate(5L, i -> i + 1).limit(16).collect(Collectors.toList()));
+		assertThat(records.get(records.size() - 1).getPayload()).isEqualTo(payload(20));
+		assertThat(reopened.lastEventIds(3)).containsExactly(18L, 19L, 20L);
+		reopened.close();
+	}
+
+	@Test
+	public void 보관_개수를_넘는_세그먼트는_지운다() throws Exception {
+		//given
+		EventLog log = open(folder.getRoot().toPath(), 2);
+
+		//when
+		for (int i = 0; i < 30; i++) {
+			log.append(i, payload(i));
+		}
+		log.flush();
+
+		//then: 8개씩 [0..7][8..15][16..23][24..29] 중 마지막 두 개만 남는다.
+		assertThat(log.segmentCount()).isEqualTo(2);
+		assertThat(log.firstOffset()).isEqualTo(16);
+		assertThat(log.read(16, 100)).extracting(EventRecord::getOffset).startsWith(16L).endsWith(29L).hasSize(14);
+		//지워진 offset은 남은 첫 레코드로 건너뛰지 않고 알려준다.
+		assertThatThrownBy(() -> log.read(0, 100))
+			.isInstanceOf(OffsetExpiredException.class)
+			.hasFieldOrPropertyWithValue("offset", 0L)
+			.hasFieldOrPropertyWithValue("firstOffset", 16L);
+		assertThatThrownBy(() -> log.read(15, 100)).isInstanceOf(OffsetExpiredException.class);
+		log.close();
+	}
+
+	@Test
+	public void 끝이_잘린_레코드는_버리고_그_자리부터_쓴다() throws Exception {
+		//given
+		Path directory = folder.getRoot().toPath();
+		EventLog log = open(directory, 10);
+		log.append(1L, bytes("first"));
+		log.append(2L, bytes("second"));
+		log.flush();
+		log.close();
+		//두 번째 레코드의 payload 일부를 망가뜨린다. (쓰다가 죽은 것처럼)
+		Path file;
+		try (Stream<Path> files = Files.list(directory)) {
+			file = files.filter(f -> f.getFileName().toString().endsWith(".log")).findFirst().get();
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {'X'}), EventLog.HEADER_SIZE + 5 + EventLog.HEADER_SIZE);
+		}
+
+		//when
+		EventLog recovered = open(directory, 10);
+		long offset = recovered.append(3L, bytes("third"));
+		recovered.flush();
+
+		//then
+		assertThat(offset).isEqualTo(1);
+		assertThat(recovered.read(0, 10)).extracting(EventRecord::payloadAsString).containsExactly("first", "third");
+		recovered.close();
+	}
+
+	@Test
+	public void 세그먼트보다_큰_이벤트는_넣지_않는다() throws Exception {
+		//given
+		EventLog log = open(folder.getRoot().toPath(), 10);
+
+		//when, then
+		assertThat(log.maxPayloadBytes()).isEqualTo(SEGMENT_BYTES - EventLog.HEADER_SIZE);
+		assertThatThrownBy(() -> log.append(1L, new byte[log.maxPayloadBytes() + 1]))
+			.isInstanceOf(IllegalArgumentException.class);
+		assertThat(log.append(2L, new byte[log.maxPayloadBytes()])).isZero();
+		log.close();
+	}
+
+	private EventLog open(Path directory, int retentionSegments) {
+		EventLog log = new EventLog(directory, SEGMENT_BYTES, retentionSegments);
+		log.open();
+		return log;
+	}
+
+	private static byte[] payload(long i) {
+		byte[] payload = new byte[100];
+		payload[0] = (byte) i;
+		return payload;
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
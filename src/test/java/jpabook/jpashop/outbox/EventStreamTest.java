@@ -0,0 +1,166 @@
+package jpabook.jpashop.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.exception.NotEnoughStockException;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+
+/**
+ * 이벤트는 커밋된 outbox 줄만 옮기므로 @Transactional을 붙이지 않는다.
+ * 같은 컨텍스트의 다른 테스트 이벤트도 로그에 있으므로 aggregateId로 골라서 본다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class EventStreamTest {
+
+	@Autowired EventStream eventStream;
+	@Autowired OrderService orderService;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+	@Autowired ObjectMapper objectMapper;
+
+	@Test
+	public void 주문과_취소가_순서대로_로그에_남는다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(10);
+
+		//when
+		Long orderId = orderService.order(memberId, itemId, 2);
+		orderService.cancelOrder(orderId);
+		relayAll();
+
+		//then
+		List<JsonNode> events = events("ORDER", orderId);
+		assertThat(events).extracting(event -> event.get("type").asText()).containsExactly("ORDER_PLACED", "ORDER_CANCELED");
+		JsonNode placed = events.get(0).get("data");
+		assertThat(placed.get("memberId").asLong()).isEqualTo(memberId);
+		assertThat(placed.get("lines").get(0).get("itemId").asLong()).isEqualTo(itemId);
+		assertThat(placed.get("lines").get(0).get("count").asInt()).isEqualTo(2);
+		assertThat(eventStream.status().getOutboxPending()).isZero();
+	}
+
+	@Test
+	public void 롤백된_주문은_이벤트가_없다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long itemId = createBook(1);
+
+		//when
+		assertThatThrownBy(() -> orderService.order(memberId, itemId, 2))
+			.isInstanceOf(NotEnoughStockException.class);
+		relayAll();
+
+		//then
+		assertThat(all()).noneMatch(event -> event.get("type").asText().equals("ORDER_PLACED")
+				&& event.get("data").get("memberId").asLong() == memberId);
+	}
+
+	@Test
+	public void 상품_수정_이벤트() throws Exception {
+		//given
+		Long itemId = createBook(10);
+		Book book = new Book();
+		book.setName("event log book v2");
+		book.setPrice(12000);
+		book.setStockQuantity(7);
+
+		//when
+		itemService.updateItem(itemId, book);
+		relayAll();
+
+		//then
+		List<JsonNode> events = events("ITEM", itemId);
+		assertThat(events).hasSize(1);
+		assertThat(events.get(0).get("data").get("name").asText()).isEqualTo("event log book v2");
+		assertThat(events.get(0).get("data").get("stockQuantity").asInt()).isEqualTo(7);
+	}
+
+	@Test
+	public void 소비자는_commit한_offset부터_읽고_되돌리면_다시_읽는다() throws Exception {
+		//given
+		String consumer = "warehouse-" + System.nanoTime();
+		Long memberId = createMember();
+		Long itemId = createBook(10);
+		orderService.order(memberId, itemId, 1);
+		relayAll();
+		long end = eventStream.status().getEndOffset();
+		eventStream.commit(consumer, end);
+
+		//when
+		Long orderId = orderService.order(memberId, itemId, 1);
+		relayAll();
+		List<EventRecord> afterCommit = eventStream.poll(consumer, 10000, 0);
+		eventStream.commit(consumer, eventStream.status().getFirstOffset());
+		List<EventRecord> replayed = eventStream.poll(consumer, 10000, 0);
+
+		//then
+		assertThat(afterCommit).isNotEmpty().allMatch(record -> record.getOffset() >= end);
+		assertThat(afterCommit.stream().map(this::parse)).anyMatch(event -> event.get("aggregateId").asLong() == orderId);
+		assertThat(replayed.get(0).getOffset()).isEqualTo(eventStream.status().getFirstOffset());
+		assertThat(replayed.size()).isGreaterThan(afterCommit.size());
+	}
+
+	private void relayAll() {
+		while (eventStream.relay() > 0) {
+		}
+	}
+
+	private List<JsonNode> events(String aggregate, Long aggregateId) throws InterruptedException {
+		return all().stream()
+				.filter(event -> event.get("aggregate").asText().equals(aggregate) && event.get("aggregateId").asLong() == aggregateId)
+				.collect(Collectors.toList());
+	}
+
+	private List<JsonNode> all() throws InterruptedException {
+		return eventStream.read(eventStream.status().getFirstOffset(), Integer.MAX_VALUE, 0).stream()
+				.map(this::parse)
+				.collect(Collectors.toList());
+	}
+
+	private JsonNode parse(EventRecord record) {
+		try {
+			return objectMapper.readTree(record.getPayload());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("event-log-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int stock) {
+		Book book = new Book();
+		book.setName("event log book");
+		book.setPrice(10000);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
@@ -0,0 +1,43 @@
+package jpabook.jpashop.report;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SalesReportControllerTest {
+
+	@Autowired MockMvc mockMvc;
+
+	@Test
+	public void 상품_순위_limit이_범위를_벗어나면_400() throws Exception {
+		String today = LocalDate.now().toString();
+		for (String limit : new String[] {"0", "-1", "101"}) {
+			mockMvc.perform(get("/api/v1/reports/sales/items")
+					.param("from", today)
+					.param("to", today)
+					.param("limit", limit))
+					.andExpect(status().isBadRequest())
+					.andExpect(jsonPath("$.code").value("BAD_REQUEST"));
+		}
+		mockMvc.perform(get("/api/v1/reports/sales/items")
+				.param("from", today)
+				.param("to", today)
+				.param("limit", "100"))
+				.andExpect(status().isOk());
+	}
+}
@@ -0,0 +1,102 @@
+package jpabook.jpashop.report;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.report.SalesReportService.DailySales;
+import jpabook.jpashop.report.SalesReportService.StatusSales;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+
+/**
+ * 변화량은 커밋 직전에 기록되므로 @Transactional 없이 실제로 커밋한다.
+ * 테스트 프로필은 백그라운드 merge를 꺼두었으므로 읽기 전에 직접 merge 한다.
+ * 다른 테스트가 커밋한 주문이 있을 수 있어서 전후 차이로 확인한다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class SalesReportServiceTest {
+
+	@Autowired SalesReportService salesReportService;
+	@Autowired SalesRollupRecorder salesRollupRecorder;
+	@Autowired OrderService orderService;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+
+	@Test
+	public void 주문_취소가_집계에_반영된다() throws Exception {
+		//given
+		LocalDate today = LocalDate.now();
+		Long memberId = createMember();
+		Long itemId = createBook(10000, 100);
+		salesRollupRecorder.merge();
+		StatusSales orderBefore = find(today, OrderStatus.ORDER);
+		StatusSales cancelBefore = find(today, OrderStatus.CANCEL);
+
+		//when
+		orderService.order(memberId, itemId, 2);
+		Long canceledId = orderService.order(memberId, itemId, 3);
+		orderService.cancelOrder(canceledId);
+		//다시 취소해도 집계에 두 번 들어가지 않는다.
+		orderService.cancelOrder(canceledId);
+
+		//then
+		StatusSales unmerged = find(today, OrderStatus.ORDER);
+		assertThat(unmerged).isEqualTo(orderBefore);
+		assertThat(salesRollupRecorder.merge()).isGreaterThan(0);
+		StatusSales orderAfter = find(today, OrderStatus.ORDER);
+		StatusSales cancelAfter = find(today, OrderStatus.CANCEL);
+		assertThat(orderAfter.getOrderCount() - orderBefore.getOrderCount()).isEqualTo(1);
+		assertThat(orderAfter.getQuantity() - orderBefore.getQuantity()).isEqualTo(2);
+		assertThat(orderAfter.getRevenue() - orderBefore.getRevenue()).isEqualTo(20000);
+		assertThat(cancelAfter.getOrderCount() - cancelBefore.getOrderCount()).isEqualTo(1);
+		assertThat(cancelAfter.getRevenue() - cancelBefore.getRevenue()).isEqualTo(30000);
+		assertThat(salesReportService.findTopItems(today, today, 1000))
+			.filteredOn(item -> item.getItemId().equals(itemId))
+			.extracting(item -> item.getQuantity())
+			.containsExactly(2L);
+
+		//원본에서 다시 집계해도 같아야 한다.
+		List<DailySales> incremental = salesReportService.findDaily(today, today);
+		salesReportService.rebuild();
+		assertThat(salesReportService.findDaily(today, today)).isEqualTo(incremental);
+	}
+
+	private StatusSales find(LocalDate date, OrderStatus status) {
+		return salesReportService.findByStatus(date, date).stream()
+				.filter(s -> s.getStatus() == status)
+				.findFirst()
+				.orElse(new StatusSales(status, 0, 0, 0));
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("sales-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int price, int stock) {
+		Book book = new Book();
+		book.setName("sales book");
+		book.setPrice(price);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
@@ -0,0 +1,216 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.datasource.PrimaryReads;
+import jpabook.jpashop.datasource.ReadYourWrites;
+import jpabook.jpashop.monitoring.SqlStatistics;
+
+/**
+ * H2 메모리 DB 하나로 chunk 분할, 병합, 스레드 풀 포화, 실패 전파, 호출한 커넥션에서 읽는 경우를 확인한다.
+ * chunk_row 테이블에는 id 0 ~ 99가 들어 있다.
+ */
+public class ChunkedInLoaderTest {
+
+	private DataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+	private DataSourceTransactionManager transactionManager;
+	private final List<ChunkedInLoader> loaders = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		dataSource = new DriverManagerDataSource("jdbc:h2:mem:in-loader-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.execute("create table chunk_row (id int primary key)");
+		jdbcTemplate.batchUpdate("insert into chunk_row values (?)",
+				IntStream.range(0, 100).mapToObj(id -> new Object[] {id}).collect(Collectors.toList()));
+		transactionManager = new DataSourceTransactionManager(dataSource);
+	}
+
+	@After
+	public void tearDown() {
+		loaders.forEach(ChunkedInLoader::shutdown);
+		jdbcTemplate.execute("shutdown");
+	}
+
+	@Test
+	public void chunk로_나눠서_순서대로_합친다() throws Exception {
+		//given
+		ChunkedInLoader loader = loader(3, 2);
+		Queue<Integer> chunkSizes = new ConcurrentLinkedQueue<>();
+
+		//when 10개 -> 3, 3, 3, 1
+		List<Integer> result = loader.load(ids(0, 10), chunk -> {
+			chunkSizes.add(chunk.size());
+			return select(chunk);
+		});
+
+		//then
+		assertThat(result).isEqualTo(ids(0, 10));
+		assertThat(chunkSizes).containsExactlyInAnyOrder(3, 3, 3, 1);
+	}
+
+	@Test
+	public void chunk_하나면_호출한_스레드에서_바로_조회한다() throws Exception {
+		//given
+		ChunkedInLoader loader = loader(3, 2);
+		Queue<String> threads = new ConcurrentLinkedQueue<>();
+
+		//when
+		List<Integer> result = loader.load(ids(0, 3), chunk -> {
+			threads.add(Thread.currentThread().getName());
+			return select(chunk);
+		});
+
+		//then
+		assertThat(result).isEqualTo(ids(0, 3));
+		assertThat(threads).containsExactly(Thread.currentThread().getName());
+		assertThat(loader.load(Collections.<Integer>emptyList(), this::select)).isEmpty();
+	}
+
+	@Test
+	public void 풀이_가득_차면_호출한_스레드가_실행한다() throws Exception {
+		//given 스레드 1개, 큐 16개. 첫 chunk가 스레드를 붙잡고 있으면 18번째 chunk는 큐에 못 들어간다.
+		ChunkedInLoader loader = loader(1, 1);
+		String caller = Thread.currentThread().getName();
+		CountDownLatch callerRan = new CountDownLatch(1);
+		Queue<Integer> ranOnCaller = new ConcurrentLinkedQueue<>();
+
+		//when
+		List<Integer> result = loader.load(ids(0, 20), chunk -> {
+			if (Thread.currentThread().getName().equals(caller)) {
+				ranOnCaller.addAll(chunk);
+				callerRan.countDown();
+			} else if (chunk.get(0) == 0) {
+				await(callerRan);
+			}
+			return select(chunk);
+		});
+
+		//then
+		assertThat(result).isEqualTo(ids(0, 20));
+		assertThat(ranOnCaller).contains(17);
+	}
+
+	@Test
+	public void chunk가_실패하면_같은_예외를_던진다() throws Exception {
+		//given
+		ChunkedInLoader loader = loader(3, 2);
+
+		//when, then
+		assertThatThrownBy(() -> loader.load(ids(0, 10), chunk -> {
+			if (chunk.contains(5)) {
+				throw new IllegalArgumentException("chunk " + chunk);
+			}
+			return select(chunk);
+		}))
+			.isInstanceOf(IllegalArgumentException.class)
+			.hasMessage("chunk [3, 4, 5]");
+	}
+
+	@Test
+	public void 쓰기_트랜잭션_안에서는_커밋하지_않은_변경을_읽는다() throws Exception {
+		//given
+		ChunkedInLoader loader = loader(3, 2);
+		String caller = Thread.currentThread().getName();
+		Queue<String> threads = new ConcurrentLinkedQueue<>();
+
+		//when 같은 트랜잭션에서 지운 id는 나오지 않아야 한다.
+		List<Integer> result = new TransactionTemplate(transactionManager).execute(status -> {
+			jdbcTemplate.update("delete from chunk_row where id in (1, 7)");
+			return loader.load(ids(0, 10), chunk -> {
+				threads.add(Thread.currentThread().getName());
+				return select(chunk);
+			});
+		});
+
+		//then
+		assertThat(result).containsExactly(0, 2, 3, 4, 5, 6, 8, 9);
+		assertThat(threads).hasSize(4).containsOnly(caller);
+	}
+
+	@Test
+	public void 주DB에서_읽어야_하면_호출한_스레드에서_읽는다() throws Exception {
+		//given
+		ChunkedInLoader loader = loader(3, 2);
+		String caller = Thread.currentThread().getName();
+		Queue<String> threads = new ConcurrentLinkedQueue<>();
+
+		//when
+		List<Integer> result = PrimaryReads.call(() -> loader.load(ids(0, 10), chunk -> {
+			threads.add(Thread.currentThread().getName());
+			return select(chunk);
+		}));
+
+		//then
+		assertThat(result).isEqualTo(ids(0, 10));
+		assertThat(threads).hasSize(4).containsOnly(caller);
+	}
+
+	@Test
+	public void 풀_스레드에서_실행한_SQL도_요청_통계에_들어간다() throws Exception {
+		//given
+		ChunkedInLoader loader = loader(3, 2);
+		SqlStatistics.begin();
+
+		try {
+			//when (p6spy 대신 직접 기록)
+			loader.load(ids(0, 10), chunk -> {
+				SqlStatistics.current().addStatement("select id from chunk_row where id in (" + chunk.size() + ")", 0);
+				return select(chunk);
+			});
+
+			//then
+			assertThat(SqlStatistics.current().getStatementCount()).isEqualTo(4);
+		} finally {
+			SqlStatistics.end();
+		}
+	}
+
+	private ChunkedInLoader loader(int chunkSize, int threads) {
+		ChunkedInLoader loader = new ChunkedInLoader(transactionManager,
+				new StaticListableBeanFactory().getBeanProvider(ReadYourWrites.class), chunkSize, threads);
+		loaders.add(loader);
+		return loader;
+	}
+
+	private List<Integer> select(List<Integer> chunk) {
+		return new NamedParameterJdbcTemplate(dataSource).queryForList(
+				"select id from chunk_row where id in (:ids) order by id", Collections.singletonMap("ids", chunk), Integer.class);
+	}
+
+	private static List<Integer> ids(int from, int to) {
+		return IntStream.range(from, to).boxed().collect(Collectors.toList());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * 제약조건을 지웠다가 다시 만드므로(DDL은 바로 커밋된다) @Transactional을 붙이지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class MemberNameConstraintTest {
+
+	private static final long FIRST_ID = 6_000_000L;
+
+	@Autowired JdbcTemplate jdbcTemplate;
+	@Autowired MemberNameConstraint memberNameConstraint;
+
+	@After
+	public void tearDown() {
+		jdbcTemplate.update("delete from member where member_id between ? and ?", FIRST_ID, FIRST_ID + 10);
+		jdbcTemplate.execute("alter table member add constraint if not exists uk_member_name unique (name)");
+	}
+
+	@Test
+	public void 중복된_이름이_있으면_바꾸지_않고_멈춘다() {
+		//given: 제약조건이 생기기 전에 들어간 중복 이름
+		String name = "dup-" + System.nanoTime();
+		jdbcTemplate.execute("alter table member drop constraint uk_member_name");
+		insertMember(FIRST_ID, name);
+		insertMember(FIRST_ID + 1, name);
+
+		//when, then
+		assertThatThrownBy(() -> memberNameConstraint.check())
+			.isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining(name)
+			.hasMessageContaining(FIRST_ID + "," + (FIRST_ID + 1));
+		List<String> names = jdbcTemplate.queryForList(
+				"select name from member where member_id between ? and ?", String.class, FIRST_ID, FIRST_ID + 1);
+		assertThat(names).containsExactly(name, name);
+	}
+
+	@Test
+	public void 중복이_없으면_제약조건을_만든다() {
+		//given
+		String name = "unique-" + System.nanoTime();
+		jdbcTemplate.execute("alter table member drop constraint uk_member_name");
+		insertMember(FIRST_ID, name);
+
+		//when
+		memberNameConstraint.check();
+
+		//then
+		assertThatThrownBy(() -> insertMember(FIRST_ID + 1, name))
+			.isInstanceOf(DataIntegrityViolationException.class);
+	}
+
+	private void insertMember(long memberId, String name) {
+		jdbcTemplate.update("insert into member (member_id, name) values (?, ?)", memberId, name);
+	}
+}
@@ -0,0 +1,61 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import jpabook.jpashop.domain.OrderItem;
+
+/**
+ * hibernate_sequence로 id를 받던 주문상품이 이미 있는 DB에서 order_item_seq가 겹치는 id를 내주지 않는지 확인한다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class OrderItemSequenceAlignerTest {
+
+	private static final long EXISTING_ID = 5_000_000L;
+
+	@Autowired JdbcTemplate jdbcTemplate;
+	@Autowired OrderItemSequenceAligner aligner;
+
+	@After
+	public void tearDown() {
+		jdbcTemplate.update("delete from order_item where order_item_id = ?", EXISTING_ID);
+	}
+
+	@Test
+	public void 시퀀스를_기존_주문상품_id_뒤로_민다() {
+		//given: 예전 방식으로 들어간 주문상품
+		jdbcTemplate.update("insert into order_item (order_item_id, order_price, count) values (?, ?, ?)", EXISTING_ID, 1000, 1);
+
+		//when
+		aligner.align();
+
+		//then: 다음에 받는 구간 (v - allocationSize, v]이 기존 id보다 뒤
+		long next = jdbcTemplate.queryForObject("select next value for order_item_seq", Long.class);
+		assertThat(next - OrderItem.ID_ALLOCATION_SIZE).isGreaterThan(EXISTING_ID);
+	}
+
+	@Test
+	public void 이미_뒤에_있으면_그대로_둔다() {
+		//given
+		jdbcTemplate.update("insert into order_item (order_item_id, order_price, count) values (?, ?, ?)", EXISTING_ID, 1000, 1);
+		aligner.align();
+		long before = jdbcTemplate.queryForObject("select next value for order_item_seq", Long.class);
+
+		//when
+		aligner.align();
+
+		//then: align이 한 번 받아간 것 말고는 움직이지 않는다.
+		long after = jdbcTemplate.queryForObject("select next value for order_item_seq", Long.class);
+		assertThat(after).isEqualTo(before + 2L * OrderItem.ID_ALLOCATION_SIZE);
+	}
+}
@@ -0,0 +1,33 @@
+package jpabook.jpashop.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import jpabook.jpashop.repository.OrderSearchTemplates.Target;
+
+public class OrderSearchTemplatesTest {
+
+	@Test
+	public void 주문과_주문목록은_같은_조건을_각자의_경로로_건다() {
+		//given
+		int mask = OrderSearchTemplates.STATUS | OrderSearchTemplates.MEMBER_NAME | OrderSearchTemplates.ITEM_NAME;
+
+		//when
+		String order = OrderSearchTemplates.filter(Target.ORDER, mask);
+		String summary = OrderSearchTemplates.filter(Target.SUMMARY, mask);
+
+		//then
+		assertThat(order).isEqualTo(" join o.member m where o.status = :status and m.name like :memberName escape '\\'"
+				+ " and exists (select oi.id from OrderItem oi join oi.item i where oi.order = o and i.name like :itemName escape '\\')");
+		assertThat(summary).isEqualTo(" where s.status = :status and s.memberName like :memberName escape '\\'"
+				+ " and exists (select oi.id from OrderItem oi join oi.item i where oi.order.id = s.orderId and i.name like :itemName escape '\\')");
+		assertThat(OrderSearchTemplates.filter(Target.SUMMARY, 0)).isEmpty();
+		assertThat(new OrderSearchTemplates().peek(0)).isEqualTo("select o from Order o order by o.id desc");
+	}
+
+	@Test
+	public void 앞부분_일치_패턴은_와일드카드를_문자로_찾는다() {
+		assertThat(OrderSearchTemplates.prefixPattern("50%_off\\")).isEqualTo("50\\%\\_off\\\\%");
+	}
+}
@@ -0,0 +1,51 @@
+package jpabook.jpashop.repository.order.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.OrderStatus;
+
+public class OrderFlatGrouperTest {
+
+	@Test
+	public void 정렬된_row를_순서대로_묶는다() throws Exception {
+		//given
+		List<OrderFlatDto> rows = Arrays.asList(
+				row(1L, "JPA1 BOOK"),
+				row(1L, "JPA2 BOOK"),
+				row(2L, "SPRING1 BOOK"),
+				row(3L, "SPRING2 BOOK"),
+				row(3L, "SPRING3 BOOK"));
+
+		//when
+		List<OrderQueryDto> result = OrderFlatGrouper.group(rows);
+
+		//then
+		assertThat(result).extracting("orderId").containsExactly(1L, 2L, 3L);
+		assertThat(result.get(0).getOrderItems()).extracting("itemName").containsExactly("JPA1 BOOK", "JPA2 BOOK");
+		assertThat(result.get(1).getOrderItems()).hasSize(1);
+		assertThat(result.get(2).getOrderItems()).hasSize(2);
+	}
+
+	@Test
+	public void 빈_row는_빈_결과() throws Exception {
+		assertThat(OrderFlatGrouper.group(Collections.<OrderFlatDto>emptyList())).isEmpty();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void 정렬되지_않은_row는_예외() throws Exception {
+		OrderFlatGrouper.group(Arrays.asList(row(2L, "A"), row(1L, "B")));
+	}
+
+	private OrderFlatDto row(Long orderId, String itemName) {
+		return new OrderFlatDto(orderId, "userA", LocalDateTime.now(), OrderStatus.ORDER,
+				new Address("서울", "1", "1111"), itemName, 10000, 1);
+	}
+}
@@ -0,0 +1,111 @@
+package jpabook.jpashop.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import jpabook.jpashop.domain.Album;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.service.ItemService;
+
+/**
+ * 색인은 커밋 후에 반영되므로 @Transactional 없이 실제로 커밋한다.
+ * 다른 테스트의 상품과 섞이지 않도록 테스트마다 고유한 단어를 넣는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class ItemSearchIndexTest {
+
+	@Autowired ItemSearchIndex itemSearchIndex;
+	@Autowired ItemSearchIndexBuilder itemSearchIndexBuilder;
+	@Autowired ItemService itemService;
+
+	@Test
+	public void 필드별_검색과_순위() throws Exception {
+		//given
+		String word = uniqueWord();
+		Book byName = createBook(word + " 프로그래밍", "김영한", "978-89-6077-733-0");
+		Book byAuthor = createBook("자바 입문", word, "979-11-0000-000-1");
+		Album album = new Album();
+		album.setName("앨범");
+		album.setArtist(word + "band");
+		itemService.saveItem(album);
+
+		//when, then
+		//상품명 일치 > 저자 일치 > 접두어 일치
+		assertThat(itemSearchIndex.search(word, 10)).extracting(ItemSearchHit::getId)
+			.containsExactly(byName.getId(), byAuthor.getId(), album.getId());
+		//검색어는 모두 나와야 하고(AND), 두 글자 이상이면 접두어로도 찾는다.
+		assertThat(itemSearchIndex.search(word.toUpperCase() + " 프로그", 10)).extracting(ItemSearchHit::getId)
+			.containsExactly(byName.getId());
+		assertThat(itemSearchIndex.search("9788960777330 " + word, 10)).extracting(ItemSearchHit::getId)
+			.containsExactly(byName.getId());
+		assertThat(itemSearchIndex.search("앨범 " + word, 10)).extracting(ItemSearchHit::getType)
+			.containsExactly("ALBUM");
+		assertThat(itemSearchIndex.search(word, 1)).extracting(ItemSearchHit::getId)
+			.containsExactly(byName.getId());
+	}
+
+	@Test
+	public void 수정과_재구성() throws Exception {
+		//given
+		String before = uniqueWord();
+		String after = uniqueWord();
+		Book book = createBook(before, "저자", null);
+		itemSearchIndexBuilder.rebuild();
+		assertThat(itemSearchIndex.search(before, 10)).extracting(ItemSearchHit::getId).containsExactly(book.getId());
+
+		//when
+		Book form = new Book();
+		form.setName(after);
+		form.setPrice(book.getPrice());
+		form.setStockQuantity(book.getStockQuantity());
+		itemService.updateItem(book.getId(), form);
+
+		//then
+		assertThat(itemSearchIndex.search(before, 10)).isEmpty();
+		assertThat(itemSearchIndex.search(after, 10)).extracting(ItemSearchHit::getName).containsExactly(after);
+
+		//재구성해도 같고, 따로 들고 있던 변경은 base로 합쳐진다.
+		itemSearchIndexBuilder.rebuild();
+		assertThat(itemSearchIndex.status().getPending()).isZero();
+		assertThat(itemSearchIndex.search(before, 10)).isEmpty();
+		assertThat(itemSearchIndex.search(after, 10)).extracting(ItemSearchHit::getId).containsExactly(book.getId());
+	}
+
+	@Test
+	public void 쌓인_변경이_기준_이상이면_다시_만든다() throws Exception {
+		//given
+		String word = uniqueWord();
+		Book book = createBook(word, "저자", null);
+		assertThat(itemSearchIndex.status().getPending()).isPositive();
+
+		//when, then
+		assertThat(itemSearchIndexBuilder.mergeIfNeeded(Integer.MAX_VALUE)).isFalse();
+		assertThat(itemSearchIndexBuilder.mergeIfNeeded(1)).isTrue();
+		assertThat(itemSearchIndex.status().getPending()).isZero();
+		assertThat(itemSearchIndex.search(word, 10)).extracting(ItemSearchHit::getId).containsExactly(book.getId());
+		assertThat(itemSearchIndexBuilder.mergeIfNeeded(1)).isFalse();
+	}
+
+	private Book createBook(String name, String author, String isbn) {
+		Book book = new Book();
+		book.setName(name);
+		book.setAuthor(author);
+		book.setIsbn(isbn);
+		book.setPrice(10000);
+		book.setStockQuantity(10);
+		itemService.saveItem(book);
+		return book;
+	}
+
+	private static String uniqueWord() {
+		return "w" + Long.toString(System.nanoTime(), 36);
+	}
+}
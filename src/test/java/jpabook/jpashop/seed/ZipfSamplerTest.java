@@ -0,0 +1,26 @@
+package jpabook.jpashop.seed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ZipfSamplerTest {
+
+	@Test
+	public void 후보가_없으면_만들_수_없다() {
+		assertThatThrownBy(() -> new ZipfSampler(0, 1.0))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void 후보가_하나면_항상_0() {
+		ZipfSampler sampler = new ZipfSampler(1, 1.0);
+		Random random = new Random(42L);
+		for (int i = 0; i < 100; i++) {
+			assertThat(sampler.next(random)).isZero();
+		}
+	}
+}
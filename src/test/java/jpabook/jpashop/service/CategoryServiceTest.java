@@ -0,0 +1,109 @@
+package jpabook.jpashop.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import jpabook.jpashop.cache.CategoryTreeCache.Node;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.Item;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+public class CategoryServiceTest {
+
+	@Autowired EntityManager em;
+	@Autowired CategoryService categoryService;
+
+	@Test
+	public void 하위카테고리_상품조회() throws Exception {
+		//given
+		Long rootId = categoryService.addCategory(null, "도서");
+		Long childId = categoryService.addCategory(rootId, "IT");
+		Long grandChildId = categoryService.addCategory(childId, "JPA");
+		Long otherId = categoryService.addCategory(null, "음반");
+
+		Item book1 = createBook("도서 입문", rootId);
+		Item book2 = createBook("스프링", childId);
+		Item book3 = createBook("시골 JPA", grandChildId);
+		createBook("음반1", otherId);
+		em.flush();
+		em.clear();
+
+		//when
+		List<Item> rootItems = categoryService.findItems(rootId, 0, 10);
+		List<Item> childItems = categoryService.findItems(childId, 0, 10);
+
+		//then
+		assertThat(rootItems).extracting(Item::getId).containsExactly(book1.getId(), book2.getId(), book3.getId());
+		assertThat(categoryService.countItems(rootId)).isEqualTo(3);
+		assertThat(childItems).extracting(Item::getId).containsExactly(book2.getId(), book3.getId());
+		//페이징
+		assertThat(categoryService.findItems(rootId, 1, 1)).extracting(Item::getId).containsExactly(book2.getId());
+	}
+
+	@Test
+	public void 카테고리경로() throws Exception {
+		//given
+		Long rootId = categoryService.addCategory(null, "도서");
+		Long childId = categoryService.addCategory(rootId, "IT");
+		Long grandChildId = categoryService.addCategory(childId, "JPA");
+
+		//when
+		List<String> path = categoryService.findPath(grandChildId).stream()
+				.map(Node::getName)
+				.collect(Collectors.toList());
+
+		//then
+		assertThat(path).containsExactly("도서", "IT", "JPA");
+	}
+
+	@Test
+	public void closure_table이_없는_카테고리는_기동할_때_채운다() throws Exception {
+		//given: closure table 도입 전에 만든 카테고리
+		Long rootId = categoryService.addCategory(null, "도서");
+		Long childId = categoryService.addCategory(rootId, "IT");
+		Long grandChildId = categoryService.addCategory(childId, "JPA");
+		Item book1 = createBook("스프링", childId);
+		Item book2 = createBook("시골 JPA", grandChildId);
+		em.flush();
+		em.createNativeQuery("delete from category_closure where descendant_id in (:ids)")
+				.setParameter("ids", Arrays.asList(childId, grandChildId))
+				.executeUpdate();
+		em.clear();
+		assertThat(categoryService.findItems(rootId, 0, 10)).isEmpty();
+
+		//when
+		categoryService.repairClosuresOnStartup();
+		em.clear();
+
+		//then
+		assertThat(categoryService.findItems(rootId, 0, 10)).extracting(Item::getId).containsExactly(book1.getId(), book2.getId());
+		assertThat(categoryService.findItems(grandChildId, 0, 10)).extracting(Item::getId).containsExactly(book2.getId());
+	}
+
+	private Item createBook(String name, Long categoryId) {
+		Book book = new Book();
+		book.setName(name);
+		book.setPrice(10000);
+		book.setStockQuantity(10);
+		em.persist(book);
+		em.find(Category.class, categoryId).getItems().add(book);
+		return book;
+	}
+}
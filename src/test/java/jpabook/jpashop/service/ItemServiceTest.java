@@ -0,0 +1,52 @@
+package jpabook.jpashop.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import jpabook.jpashop.cache.ItemSnapshot;
+import jpabook.jpashop.domain.Book;
+
+/**
+ * 캐시된 상품 조회는 트랜잭션 밖에서 쓰이므로 @Transactional을 붙이지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class ItemServiceTest {
+
+	@Autowired ItemService itemService;
+
+	@Test
+	public void 캐시된_상품은_조회_시점의_값이고_수정하면_새로_읽는다() throws Exception {
+		//given
+		Book book = new Book();
+		book.setName("캐시 JPA");
+		book.setPrice(10000);
+		book.setStockQuantity(10);
+		book.setAuthor("김영한");
+		itemService.saveItem(book);
+		ItemSnapshot before = itemService.findOne(book.getId());
+
+		//when
+		Book change = new Book();
+		change.setName("캐시 JPA 2판");
+		change.setPrice(12000);
+		change.setStockQuantity(5);
+		itemService.updateItem(book.getId(), change);
+		ItemSnapshot after = itemService.findOne(book.getId());
+
+		//then
+		assertThat(before.getName()).isEqualTo("캐시 JPA");
+		assertThat(before.getAuthor()).isEqualTo("김영한");
+		assertThat(after.getName()).isEqualTo("캐시 JPA 2판");
+		assertThat(after.getPrice()).isEqualTo(12000);
+		assertThat(after.getStockQuantity()).isEqualTo(5);
+		assertThat(itemService.findItems()).extracting(ItemSnapshot::getId).contains(book.getId());
+	}
+}
@@ -64,4 +64,35 @@ public class MemberServiceTest {
 		fail("예외가 발생해야 한다.");
 		
 	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void 이름_변경_중복_예외() throws Exception{
+		//given
+		Member member1 = new Member();
+		member1.setName("kim");
+		Member member2 = new Member();
+		member2.setName("lee");
+		memberService.join(member1);
+		memberService.join(member2);
+		
+		//when
+		memberService.update(member2.getId(), "kim"); //예외가 발생해야 한다.
+		
+		//then
+		fail("예외가 발생해야 한다.");
+	}
+	
+	@Test
+	public void 같은_이름으로_변경() throws Exception{
+		//given
+		Member member = new Member();
+		member.setName("kim");
+		memberService.join(member);
+		
+		//when
+		memberService.update(member.getId(), "kim");
+		
+		//then
+		assertThat(memberRepository.findOne(member.getId()).getName()).isEqualTo("kim");
+	}
 }
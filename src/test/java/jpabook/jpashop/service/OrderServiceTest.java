@@ -3,6 +3,8 @@ package jpabook.jpashop.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+
 import javax.persistence.EntityManager;
 
 import org.junit.Test;
@@ -15,12 +17,19 @@ import org.springframework.transaction.annotation.Transactional;
 
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Item;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderSearch;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.OrderSummary;
 import jpabook.jpashop.domain.exception.NotEnoughStockException;
+import jpabook.jpashop.outbox.EventType;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderListPage;
+import jpabook.jpashop.repository.order.simplequery.OrderListRow;
+import jpabook.jpashop.repository.order.simplequery.OrderListSort;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -31,6 +40,8 @@ public class OrderServiceTest {
 	@Autowired EntityManager em;
 	@Autowired OrderService orderService;
 	@Autowired OrderRepository orderRepository;
+	@Autowired MemberService memberService;
+	@Autowired OrderSummaryService orderSummaryService;
 	
 	@Test
 	public void 상품주문() throws Exception{
@@ -51,8 +62,8 @@ public class OrderServiceTest {
 		assertThat(1).isEqualTo(getOrder.getOrderItems().size());
 		//주문 가격은 가격 * 수량이다.
 		assertThat(10000* orderCount).isEqualTo(getOrder.getTotalPrice());
-		//주문 수량만큼 재고가 줄어야 한다.
-		assertThat(8).isEqualTo(book.getStockQuantity());
+		//주문 수량만큼 재고가 줄어야 한다. (재고는 update로 차감하므로 다시 읽는다)
+		assertThat(8).isEqualTo(em.find(Item.class, book.getId()).getStockQuantity());
 	}
 
 
@@ -90,7 +101,254 @@ public class OrderServiceTest {
 		assertThat(OrderStatus.CANCEL).isEqualTo(getOrder.getStatus());
 		
 		//주문이 취소된 상품은 그만큼 재고가 증가해야 한다.
-		assertThat(item.getStockQuantity()).isEqualTo(10);
+		assertThat(em.find(Item.class, item.getId()).getStockQuantity()).isEqualTo(10);
+	}
+	
+	@Test
+	public void 같은_주문을_두번_취소하면_두번째는_무시한다() throws Exception {
+		//given
+		Member member = createMember();
+		Item item = createBook("시골 JPA", 10000, 10);
+		Long orderId = orderService.order(member.getId(), item.getId(), 2);
+		orderService.cancelOrder(orderId);
+		
+		//when
+		orderService.cancelOrder(orderId);
+		
+		//then
+		assertThat(orderRepository.findOne(orderId).getStatus()).isEqualTo(OrderStatus.CANCEL);
+		//재고는 한 번만 복구된다.
+		assertThat(em.find(Item.class, item.getId()).getStockQuantity()).isEqualTo(10);
+		//취소 이벤트도 한 번만 남는다.
+		Long canceledEvents = em.createQuery(
+				"select count(e) from OutboxEvent e where e.aggregateId = :orderId and e.type = :type", Long.class)
+				.setParameter("orderId", orderId)
+				.setParameter("type", EventType.ORDER_CANCELED)
+				.getSingleResult();
+		assertThat(canceledEvents).isEqualTo(1L);
+	}
+	
+	@Test
+	public void 장바구니주문() throws Exception {
+		//given
+		Member member = createMember();
+		Item book1 = createBook("시골 JPA", 10000, 10);
+		Item book2 = createBook("시골 스프링", 20000, 10);
+		
+		//when
+		Long orderId = orderService.orderCart(member.getId(), Arrays.asList(
+				new OrderLine(book2.getId(), 1),
+				new OrderLine(book1.getId(), 2),
+				new OrderLine(book2.getId(), 2)));
+		em.clear();
+		
+		//then
+		Order getOrder = orderRepository.findOne(orderId);
+		//같은 상품은 한 줄로 합쳐진다.
+		assertThat(getOrder.getOrderItems().size()).isEqualTo(2);
+		assertThat(getOrder.getTotalPrice()).isEqualTo(10000 * 2 + 20000 * 3);
+		assertThat(em.find(Item.class, book1.getId()).getStockQuantity()).isEqualTo(8);
+		assertThat(em.find(Item.class, book2.getId()).getStockQuantity()).isEqualTo(7);
+	}
+	
+	@Test(expected = NotEnoughStockException.class)
+	public void 장바구니주문_재고수량초과() throws Exception {
+		//given
+		Member member = createMember();
+		Item book1 = createBook("시골 JPA", 10000, 10);
+		Item book2 = createBook("시골 스프링", 20000, 1);
+		
+		//when
+		orderService.orderCart(member.getId(), Arrays.asList(
+				new OrderLine(book1.getId(), 2),
+				new OrderLine(book2.getId(), 2)));
+		
+		//then
+		fail("재고 수량 부족 예외가 발생해야 한다.");
+	}
+	
+	@Test
+	public void 주문요약_프로젝션() throws Exception {
+		//given
+		Member member = createMember();
+		Item book = createBook("시골 JPA", 10000, 10);
+		Long orderId = orderService.order(member.getId(), book.getId(), 2);
+		
+		//when
+		orderService.cancelOrder(orderId);
+		memberService.update(member.getId(), "회원2");
+		orderService.changeDeliveryAddress(orderId, new Address("부산", "ㄴㄴ", "456-456"));
+		em.flush();
+		em.clear();
+		
+		//then
+		OrderSummary summary = em.find(OrderSummary.class, orderId);
+		assertThat(summary.getStatus()).isEqualTo(OrderStatus.CANCEL);
+		assertThat(summary.getMemberName()).isEqualTo("회원2");
+		assertThat(summary.getAddress().getCity()).isEqualTo("부산");
+		assertThat(summary.getTotalAmount()).isEqualTo(20000L);
+		
+		//재구성하면 원본과 같아야 한다.
+		orderSummaryService.rebuild();
+		assertThat(orderSummaryService.check().isConsistent()).isTrue();
+	}
+	
+	@Test
+	public void 주문금액이_없는_주문은_채운다() throws Exception {
+		//given: total_amount 컬럼이 생기기 전 주문
+		Member member = createMember();
+		Item book1 = createBook("시골 JPA", 10000, 10);
+		Item book2 = createBook("시골 스프링", 20000, 10);
+		Long orderId = orderService.orderCart(member.getId(), Arrays.asList(
+				new OrderLine(book1.getId(), 2),
+				new OrderLine(book2.getId(), 1)));
+		em.flush();
+		em.createNativeQuery("update orders set total_amount = null where order_id = :orderId")
+				.setParameter("orderId", orderId)
+				.executeUpdate();
+		em.clear();
+		
+		//when
+		int rows = orderSummaryService.backfillTotalAmounts();
+		em.clear();
+		
+		//then
+		assertThat(rows).isGreaterThanOrEqualTo(1);
+		assertThat(orderRepository.findOne(orderId).getTotalAmount()).isEqualTo(10000L * 2 + 20000L);
+		assertThat(orderSummaryService.backfillTotalAmounts()).isZero();
+	}
+	
+	@Test
+	public void 기동할_때_주문과_수가_다르면_주문요약을_다시_만든다() throws Exception {
+		//given: 프로젝션 도입 전 주문
+		Member member = createMember();
+		Item book = createBook("시골 JPA", 10000, 10);
+		Long orderId = orderService.order(member.getId(), book.getId(), 2);
+		em.flush();
+		em.createNativeQuery("delete from order_summary where order_id = :orderId")
+				.setParameter("orderId", orderId)
+				.executeUpdate();
+		em.clear();
+		
+		//when
+		orderSummaryService.repairOnStartup();
+		em.clear();
+		
+		//then
+		OrderSummary summary = em.find(OrderSummary.class, orderId);
+		assertThat(summary).isNotNull();
+		assertThat(summary.getTotalAmount()).isEqualTo(20000L);
+		assertThat(orderSummaryService.check().isConsistent()).isTrue();
+	}
+	
+	@Test
+	public void 일괄취소() throws Exception {
+		//given
+		Member member = createMember();
+		Item book1 = createBook("시골 JPA", 10000, 10);
+		Item book2 = createBook("시골 스프링", 20000, 10);
+		Long orderId1 = orderService.order(member.getId(), book1.getId(), 2);
+		Long orderId2 = orderService.orderCart(member.getId(), Arrays.asList(
+				new OrderLine(book1.getId(), 3),
+				new OrderLine(book2.getId(), 1)));
+		Long canceledId = orderService.order(member.getId(), book2.getId(), 4);
+		orderService.cancelOrder(canceledId);
+		
+		//when
+		BulkCancelResult result = orderService.cancelOrders(Arrays.asList(orderId1, orderId2, canceledId));
+		em.clear();
+		
+		//then
+		assertThat(result.getCanceled()).isEqualTo(2);
+		assertThat(result.getAlreadyCanceled()).isEqualTo(1);
+		assertThat(result.getRestockedItems()).isEqualTo(2);
+		assertThat(orderRepository.findOne(orderId1).getStatus()).isEqualTo(OrderStatus.CANCEL);
+		assertThat(orderRepository.findOne(orderId2).getStatus()).isEqualTo(OrderStatus.CANCEL);
+		assertThat(em.find(OrderSummary.class, orderId2).getStatus()).isEqualTo(OrderStatus.CANCEL);
+		//이미 취소된 주문의 재고는 다시 복구하지 않는다.
+		assertThat(em.find(Item.class, book1.getId()).getStockQuantity()).isEqualTo(10);
+		assertThat(em.find(Item.class, book2.getId()).getStockQuantity()).isEqualTo(10);
+	}
+	
+	@Test
+	public void 일괄취소_배송완료() throws Exception {
+		//given
+		Member member = createMember();
+		Item book = createBook("시골 JPA", 10000, 10);
+		Long orderId1 = orderService.order(member.getId(), book.getId(), 2);
+		Long orderId2 = orderService.order(member.getId(), book.getId(), 3);
+		orderRepository.findOne(orderId2).getDelivery().setStatus(DeliveryStatus.COMP);
+		
+		//when
+		try {
+			orderService.cancelOrders(Arrays.asList(orderId1, orderId2));
+			fail("배송 완료된 주문이 있으면 예외가 발생해야 한다.");
+		} catch (IllegalStateException e) {
+			//then 하나도 취소되지 않는다.
+			em.clear();
+			assertThat(orderRepository.findOne(orderId1).getStatus()).isEqualTo(OrderStatus.ORDER);
+			assertThat(em.find(Item.class, book.getId()).getStockQuantity()).isEqualTo(5);
+		}
+	}
+	
+	@Test
+	public void 검색조건_일괄취소는_배송완료와_취소된_주문을_건너뛴다() throws Exception {
+		//given 다른 테스트의 주문과 섞이지 않도록 상품명으로 검색
+		Member member = createMember();
+		String itemName = "일괄취소-" + System.nanoTime();
+		Item book = createBook(itemName, 10000, 10);
+		Long orderId = orderService.order(member.getId(), book.getId(), 1);
+		Long deliveredId = orderService.order(member.getId(), book.getId(), 2);
+		Long canceledId = orderService.order(member.getId(), book.getId(), 3);
+		orderRepository.findOne(deliveredId).getDelivery().setStatus(DeliveryStatus.COMP);
+		orderService.cancelOrder(canceledId);
+		OrderSearch orderSearch = new OrderSearch();
+		orderSearch.setItemName(itemName);
+		
+		//when
+		BulkCancelResult result = orderService.cancelOrders(orderSearch);
+		em.clear();
+		
+		//then
+		assertThat(result.getCanceled()).isEqualTo(1);
+		assertThat(result.getAlreadyCanceled()).isEqualTo(1);
+		assertThat(result.getDelivered()).isEqualTo(1);
+		assertThat(orderRepository.findOne(orderId).getStatus()).isEqualTo(OrderStatus.CANCEL);
+		assertThat(orderRepository.findOne(deliveredId).getStatus()).isEqualTo(OrderStatus.ORDER);
+		assertThat(em.find(Item.class, book.getId()).getStockQuantity()).isEqualTo(8);
+	}
+	
+	@Test
+	public void 주문목록_페이지() throws Exception {
+		//given 다른 테스트의 주문과 섞이지 않도록 상품명으로 검색
+		Member member = createMember();
+		String itemName = "페이지-" + System.nanoTime();
+		Item book1 = createBook(itemName + "-1", 10000, 10);
+		Item book2 = createBook(itemName + "-2", 20000, 10);
+		Long orderId1 = orderService.order(member.getId(), book1.getId(), 3);
+		Long orderId2 = orderService.orderCart(member.getId(), Arrays.asList(
+				new OrderLine(book1.getId(), 1),
+				new OrderLine(book2.getId(), 1)));
+		Long orderId3 = orderService.order(member.getId(), book2.getId(), 2);
+		OrderSearch orderSearch = new OrderSearch();
+		orderSearch.setItemName(itemName);
+		
+		//when 주문 금액 순 2건씩
+		OrderListPage first = orderService.findOrderPage(orderSearch, OrderListSort.TOTAL_AMOUNT, true, 0, 2);
+		OrderListPage second = orderService.findOrderPage(orderSearch, OrderListSort.TOTAL_AMOUNT, true, 1, 2);
+		
+		//then 금액: orderId1 30000, orderId2 30000, orderId3 40000 (같으면 id 순)
+		assertThat(first.getTotal()).isEqualTo(3);
+		assertThat(first.getTotalPages()).isEqualTo(2);
+		assertThat(first.getRows()).extracting(OrderListRow::getOrderId).containsExactly(orderId1, orderId2);
+		assertThat(second.getRows()).extracting(OrderListRow::getOrderId).containsExactly(orderId3);
+		assertThat(second.hasNext()).isFalse();
+		
+		//대표상품은 첫 주문상품
+		OrderListRow cart = first.getRows().get(1);
+		assertThat(cart.getItemName()).isEqualTo(book1.getName());
+		assertThat(cart.getCount()).isEqualTo(1);
+		assertThat(cart.getItemKinds()).isEqualTo(2);
 	}
 	
 	private Item createBook(String name, int price, int stockQuantity) {
@@ -0,0 +1,105 @@
+package jpabook.jpashop.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 한 상품에 주문이 몰릴 때(플래시 세일) 재고가 초과 판매되지 않는지 확인한다.
+ * 각 주문이 자기 트랜잭션으로 커밋되어야 하므로 @Transactional을 붙이지 않는다.
+ * 한 상품에 몰린 주문의 처리량(orders/s)을 로그로 남긴다. (row lock 대기 시간 비교용)
+ */
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class StockConcurrencyTest {
+
+	private static final int THREADS = 16;
+
+	@Autowired OrderService orderService;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+
+	@Test
+	public void 동시_주문에도_재고가_초과_판매되지_않는다() throws Exception {
+		//given
+		int stock = 200;
+		int requests = 500;
+		Long memberId = createMember();
+		Long itemId = createBook(stock);
+
+		AtomicInteger success = new AtomicInteger();
+		AtomicInteger soldOut = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+
+		//when
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < requests; i++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				try {
+					orderService.order(memberId, itemId, 1);
+					success.incrementAndGet();
+				} catch (NotEnoughStockException e) {
+					soldOut.incrementAndGet();
+				}
+				return null;
+			}));
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		long elapsed = System.nanoTime() - begin;
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+
+		//then
+		int remaining = itemService.findOne(itemId).getStockQuantity();
+		log.info("hot item orders: threads={} requests={} success={} soldOut={} elapsed={}ms throughput={} orders/s",
+				THREADS, requests, success.get(), soldOut.get(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+				String.format("%.0f", requests / (elapsed / 1_000_000_000.0)));
+		assertThat(success.get()).isEqualTo(stock);
+		assertThat(soldOut.get()).isEqualTo(requests - stock);
+		assertThat(remaining).isEqualTo(0);
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("flash-sale-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int stock) {
+		Book book = new Book();
+		book.setName("flash sale book");
+		book.setPrice(10000);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
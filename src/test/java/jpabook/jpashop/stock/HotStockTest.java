@@ -0,0 +1,222 @@
+package jpabook.jpashop.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Book;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.exception.NotEnoughStockException;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderLine;
+import jpabook.jpashop.service.OrderService;
+
+/**
+ * 테스트 프로필은 핫 상품 재고가 켜져 있고 주기 반영은 사실상 꺼져 있다. (application-test.properties)
+ * 각 주문이 자기 트랜잭션으로 커밋되어야 하므로 @Transactional을 붙이지 않는다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@ActiveProfiles("test")
+public class HotStockTest {
+
+	private static final int THREADS = 16;
+
+	@Autowired HotStock hotStock;
+	@Autowired HotStockRepository hotStockRepository;
+	@Autowired OrderService orderService;
+	@Autowired MemberService memberService;
+	@Autowired ItemService itemService;
+	@Autowired PlatformTransactionManager transactionManager;
+	@Autowired EntityManager em;
+
+	@Test
+	public void 핫상품_동시_주문과_취소() throws Exception {
+		//given
+		int stock = 200;
+		int requests = 500;
+		Long memberId = createMember();
+		Long itemId = createBook(stock);
+		hotStock.activate(itemId);
+
+		Queue<Long> orderIds = new ConcurrentLinkedQueue<>();
+		AtomicInteger soldOut = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+
+		try {
+			//when
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < requests; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					try {
+						orderIds.add(orderService.order(memberId, itemId, 1));
+					} catch (NotEnoughStockException e) {
+						soldOut.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+
+			//then
+			assertThat(orderIds).hasSize(stock);
+			assertThat(soldOut.get()).isEqualTo(requests - stock);
+			assertThat(available(itemId)).isZero();
+			//반영 전에는 DB 재고가 그대로다.
+			assertThat(dbStock(itemId)).isEqualTo(stock);
+			hotStock.flush();
+			assertThat(dbStock(itemId)).isZero();
+
+			//취소는 커밋 후에 카운터로 돌아오고 다음 반영 때 DB로 간다.
+			orderService.cancelOrder(orderIds.peek());
+			assertThat(available(itemId)).isEqualTo(1);
+			hotStock.flush();
+			assertThat(dbStock(itemId)).isEqualTo(1);
+		} finally {
+			hotStock.deactivate(itemId);
+		}
+	}
+
+	@Test
+	public void 롤백되면_핫상품_재고를_돌려놓는다() throws Exception {
+		//given
+		Long memberId = createMember();
+		Long hotItemId = createBook(10);
+		Long itemId = createBook(1);
+		hotStock.activate(hotItemId);
+
+		try {
+			//when: 핫 상품은 차감되지만 다른 상품 재고가 모자라서 롤백
+			assertThatThrownBy(() -> orderService.orderCart(memberId, Arrays.asList(
+					new OrderLine(hotItemId, 3), new OrderLine(itemId, 2))))
+				.isInstanceOf(NotEnoughStockException.class);
+
+			//then
+			assertThat(available(hotItemId)).isEqualTo(10);
+			hotStock.flush();
+			assertThat(dbStock(hotItemId)).isEqualTo(10);
+			assertThat(dbStock(itemId)).isEqualTo(1);
+		} finally {
+			hotStock.deactivate(hotItemId);
+		}
+	}
+
+	/**
+	 * 핫 상품 주문끼리는 공유 row lock이 없어야 한다. (재고 카운터, 매출 집계 변화량 insert)
+	 * 주문 A가 모든 SQL을 실행하고 커밋 직전(변경 기록 fsync 뒤)에 멈춰 있는 동안 다른 회원의 주문 B가 끝나야 한다.
+	 * 같은 row를 update 했다면 B는 A가 커밋할 때까지 lock을 기다린다.
+	 */
+	@Test
+	public void 핫상품_주문은_다른_주문의_커밋을_기다리지_않는다() throws Exception {
+		//given
+		Long memberA = createMember();
+		Long memberB = createMember();
+		Long itemId = createBook(10);
+		hotStock.activate(itemId);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+		try {
+			Future<Long> orderA = executor.submit(() -> transaction.execute(status -> {
+				Long orderId = orderService.order(memberA, itemId, 1);
+				//주문이 등록한 동기화(매출 집계, 핫 상품 기록) 뒤에 실행된다.
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+					@Override
+					public void beforeCommit(boolean readOnly) {
+						em.flush();
+						blocked.countDown();
+						try {
+							release.await(30, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+				return orderId;
+			}));
+			assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+
+			//when: A가 커밋 직전에 멈춰 있는 동안
+			Future<Long> orderB = executor.submit(() -> orderService.order(memberB, itemId, 1));
+
+			//then: lock timeout(10초)보다 훨씬 빨리 끝난다.
+			Long orderIdB = orderB.get(5, TimeUnit.SECONDS);
+			assertThat(orderA.isDone()).isFalse();
+			release.countDown();
+			Long orderIdA = orderA.get(10, TimeUnit.SECONDS);
+
+			assertThat(orderIdA).isNotNull();
+			assertThat(orderIdB).isNotEqualTo(orderIdA);
+			assertThat(available(itemId)).isEqualTo(8);
+		} finally {
+			release.countDown();
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+			hotStock.deactivate(itemId);
+		}
+	}
+
+	private long available(Long itemId) {
+		return hotStock.status().getItems().stream()
+				.filter(item -> item.getItemId().equals(itemId))
+				.findFirst()
+				.get()
+				.getAvailable();
+	}
+
+	private int dbStock(Long itemId) {
+		return hotStockRepository.findStock(itemId);
+	}
+
+	private Long createMember() {
+		Member member = new Member();
+		member.setName("hot-stock-" + System.nanoTime());
+		member.setAddress(new Address("서울", "1", "1111"));
+		return memberService.join(member);
+	}
+
+	private Long createBook(int stock) {
+		Book book = new Book();
+		book.setName("hot stock book");
+		book.setPrice(10000);
+		book.setStockQuantity(stock);
+		itemService.saveItem(book);
+		return book.getId();
+	}
+}
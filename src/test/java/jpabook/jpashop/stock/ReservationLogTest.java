@@ -0,0 +1,95 @@
+package jpabook.jpashop.stock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SortedMap;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReservationLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void 재시작하면_체크포인트_이후_기록만_읽는다() throws Exception {
+		//given
+		Path directory = folder.getRoot().toPath();
+		ReservationLog log = open(directory, 0);
+		log.append(1L, -3);
+		log.append(2L, -1);
+		long last = log.append(1L, 2);
+		log.sync(last);
+		log.close();
+
+		//when
+		ReservationLog all = new ReservationLog(directory);
+		SortedMap<Long, Integer> deltas = all.recover(0);
+		ReservationLog afterTwo = new ReservationLog(directory);
+		SortedMap<Long, Integer> lastOnly = afterTwo.recover(2);
+
+		//then
+		assertThat(deltas).containsEntry(1L, -1).containsEntry(2L, -1).hasSize(2);
+		assertThat(all.lastSequence()).isEqualTo(3);
+		assertThat(lastOnly).containsEntry(1L, 2).hasSize(1);
+	}
+
+	@Test
+	public void 끝이_잘린_레코드는_버린다() throws Exception {
+		//given
+		Path directory = folder.getRoot().toPath();
+		ReservationLog log = open(directory, 0);
+		log.sync(log.append(1L, -5));
+		log.close();
+		Path file;
+		try (Stream<Path> files = Files.list(directory)) {
+			file = files.findFirst().get();
+		}
+		Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, StandardOpenOption.APPEND);
+
+		//when
+		ReservationLog recovered = new ReservationLog(directory);
+		SortedMap<Long, Integer> deltas = recovered.recover(0);
+
+		//then
+		assertThat(deltas).containsEntry(1L, -5).hasSize(1);
+		assertThat(recovered.lastSequence()).isEqualTo(1);
+	}
+
+	@Test
+	public void cut은_상품별_합계를_넘기고_반영된_파일만_지운다() throws Exception {
+		//given
+		Path directory = folder.getRoot().toPath();
+		ReservationLog log = open(directory, 10);
+		log.append(7L, -1);
+		log.append(7L, -1);
+		log.append(8L, 4);
+
+		//when
+		ReservationLog.Cut cut = log.cut();
+		ReservationLog.Cut empty = log.cut();
+		log.append(7L, -1);
+		log.truncate(cut.getSequence());
+		log.close();
+
+		//then
+		assertThat(cut.getSequence()).isEqualTo(13);
+		assertThat(cut.getDeltas()).containsEntry(7L, -2).containsEntry(8L, 4).hasSize(2);
+		assertThat(empty).isNull();
+		//반영된 파일은 지워지고 cut 뒤의 기록만 남아있다.
+		assertThat(new ReservationLog(directory).recover(0)).containsEntry(7L, -1).hasSize(1);
+	}
+
+	private static ReservationLog open(Path directory, long checkpoint) {
+		ReservationLog log = new ReservationLog(directory);
+		log.recover(checkpoint);
+		log.start();
+		return log;
+	}
+}